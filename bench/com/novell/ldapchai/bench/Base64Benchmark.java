@@ -0,0 +1,109 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.bench;
+
+import com.novell.ldapchai.util.internal.Base64Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the legacy {@link Base64Util} methods with the fast path methods used for answer hashes.
+ *
+ * @author Jason D. Rivard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base64Benchmark {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Raw hash length; 20 is SHA1, 64 is SHA-512 and the PBKDF2 output length.
+     */
+    @Param({"20", "64"})
+    public int length;
+
+    private byte[] raw;
+    private String encoded;
+    private byte[] encodedBytes;
+    private byte[] buffer;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Setup
+    public void setup()
+    {
+        raw = new byte[length];
+        new Random(length).nextBytes(raw);
+        encoded = Base64Util.encodeBytes(raw);
+        encodedBytes = Base64Util.encodeToBytes(raw);
+        buffer = new byte[Base64Util.encodedLength(length)];
+    }
+
+    @Benchmark
+    public String legacyEncode()
+    {
+        return Base64Util.encodeBytes(raw);
+    }
+
+    @Benchmark
+    public String fastEncodeToString()
+    {
+        return Base64Util.encodeToString(raw);
+    }
+
+    @Benchmark
+    public byte[] fastEncodeToBuffer()
+    {
+        Base64Util.encodeTo(raw, 0, raw.length, buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    public boolean legacyCompare()
+    {
+        return encoded.equalsIgnoreCase(Base64Util.encodeBytes(raw));
+    }
+
+    @Benchmark
+    public boolean fastCompare()
+    {
+        return Base64Util.encodedEquals(raw, encoded, true);
+    }
+
+    @Benchmark
+    public byte[] legacyDecode()
+            throws IOException
+    {
+        return Base64Util.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[] fastDecode()
+    {
+        return Base64Util.decodeToBytes(encodedBytes);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.bench;
+
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+
+import java.util.*;
+
+/**
+ * Shared setup for the benchmarks.
+ *
+ * @author Jason D. Rivard
+ */
+final class BenchmarkSupport {
+// ----------------------------- CONSTANTS ----------------------------
+
+    static final String BASE_DN = "ou=people,o=bench";
+    static final String BIND_DN = "cn=admin,o=bench";
+    static final String BIND_PASSWORD = "password";
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Return a configuration for an {@link InMemoryProvider} with every optional wrapper disabled.
+     */
+    static ChaiConfiguration newConfiguration(final String ldapURL)
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(ldapURL, BIND_DN, BIND_PASSWORD);
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.READONLY, "false");
+        chaiConfig.setSetting(ChaiSetting.WATCHDOG_ENABLE, "false");
+        chaiConfig.setSetting(ChaiSetting.WIRETRACE_ENABLE, "false");
+        chaiConfig.setSetting(ChaiSetting.STATISTICS_ENABLE, "false");
+        chaiConfig.setSetting(ChaiSetting.CACHE_ENABLE, "false");
+        chaiConfig.setSetting(ChaiSetting.FAILOVER_ENABLE, "false");
+        return chaiConfig;
+    }
+
+    /**
+     * Replace the contents of the directory registered for {@code ldapURL} with {@code userCount} users below
+     * {@link #BASE_DN}, named {@code cn=user0} through {@code cn=user<userCount-1>}.
+     */
+    static InMemoryDirectory populate(final String ldapURL, final int userCount)
+    {
+        final InMemoryDirectory directory = InMemoryDirectory.forURL(ldapURL);
+        directory.clear();
+        directory.putEntry(BASE_DN, attributes("objectClass", "organizationalUnit", "ou", "people"));
+        for (int i = 0; i < userCount; i++) {
+            directory.putEntry(userDN(i), attributes(
+                    "objectClass", "inetOrgPerson",
+                    "cn", "user" + i,
+                    "sn", "User",
+                    "givenName", "Bench" + i,
+                    "mail", "user" + i + "@bench.example",
+                    "description", "benchmark user number " + i
+            ));
+        }
+        return directory;
+    }
+
+    static String userDN(final int number)
+    {
+        return "cn=user" + number + "," + BASE_DN;
+    }
+
+    private static Map<String, List<String>> attributes(final String... nameValuePairs)
+    {
+        final Map<String, List<String>> attributes = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < nameValuePairs.length; i += 2) {
+            attributes.put(nameValuePairs[i], Collections.singletonList(nameValuePairs[i + 1]));
+        }
+        return attributes;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private BenchmarkSupport()
+    {
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.bench;
+
+import com.novell.ldapchai.impl.edir.entry.EdirEntries;
+import com.novell.ldapchai.util.internal.DateCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link DateCodec} with the {@link Calendar} and {@link SimpleDateFormat} code that
+ * {@link EdirEntries#convertZuluToDate(String)} and {@link EdirEntries#convertDateToZulu(Date)} used before.
+ *
+ * @author Jason D. Rivard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateCodecBenchmark {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String ZULU_VALUE = "20140315083012Z";
+    private static final String FILETIME_VALUE = "130394718120000000";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private Date date;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Setup
+    public void setup()
+    {
+        date = DateCodec.parseGeneralizedTime(ZULU_VALUE);
+    }
+
+    @Benchmark
+    public Date legacyParseZulu()
+    {
+        final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Zulu"));
+        cal.set(Calendar.YEAR, Integer.parseInt(ZULU_VALUE.substring(0, 4)));
+        cal.set(Calendar.MONTH, Integer.parseInt(ZULU_VALUE.substring(4, 6)) - 1);
+        cal.set(Calendar.DATE, Integer.parseInt(ZULU_VALUE.substring(6, 8)));
+        cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(ZULU_VALUE.substring(8, 10)));
+        cal.set(Calendar.MINUTE, Integer.parseInt(ZULU_VALUE.substring(10, 12)));
+        cal.set(Calendar.SECOND, Integer.parseInt(ZULU_VALUE.substring(12, 14)));
+        return cal.getTime();
+    }
+
+    @Benchmark
+    public Date simpleDateFormatParseZulu()
+            throws ParseException
+    {
+        final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyyMMddHHmmss'Z'");
+        timeFormat.setTimeZone(TimeZone.getTimeZone("Zulu"));
+        return timeFormat.parse(ZULU_VALUE);
+    }
+
+    @Benchmark
+    public Date convertZuluToDate()
+    {
+        return EdirEntries.convertZuluToDate(ZULU_VALUE);
+    }
+
+    @Benchmark
+    public String legacyFormatZulu()
+    {
+        final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyyMMddHHmmss'Z'");
+        timeFormat.setTimeZone(TimeZone.getTimeZone("Zulu"));
+        return timeFormat.format(date);
+    }
+
+    @Benchmark
+    public String convertDateToZulu()
+    {
+        return EdirEntries.convertDateToZulu(date);
+    }
+
+    @Benchmark
+    public Date parseWindowsFileTime()
+    {
+        return DateCodec.parseWindowsFileTime(FILETIME_VALUE);
+    }
+
+    @Benchmark
+    public String formatWindowsFileTime()
+    {
+        return DateCodec.formatWindowsFileTime(date);
+    }
+}
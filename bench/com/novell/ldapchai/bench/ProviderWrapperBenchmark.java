@@ -0,0 +1,119 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.bench;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-call overhead each wrapper added by {@code ChaiProviderFactory.addProviderWrappers} (and the
+ * fail over wrapper) puts in front of an in memory provider.  The {@code none} case is the bare provider; every
+ * other case enables exactly one wrapper, except {@code default} (the out of the box settings) and {@code all}.
+ *
+ * @author Jason D. Rivard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProviderWrapperBenchmark {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final String LDAP_URL = "ldap://wrapper-bench:389";
+
+    @Param({"none", "readOnly", "watchdog", "wireTrace", "statistics", "caching", "failOver", "default", "all"})
+    public String wrappers;
+
+    private ChaiProvider provider;
+    private String userDN;
+    private Set<String> attributes;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Setup
+    public void setup()
+            throws ChaiUnavailableException
+    {
+        BenchmarkSupport.populate(LDAP_URL, 1);
+        userDN = BenchmarkSupport.userDN(0);
+        attributes = new HashSet<String>(Arrays.asList("cn", "mail", "givenName"));
+
+        final ChaiConfiguration chaiConfig = BenchmarkSupport.newConfiguration(LDAP_URL);
+        if ("default".equals(wrappers)) {
+            for (final ChaiSetting setting : new ChaiSetting[]{ChaiSetting.READONLY, ChaiSetting.WATCHDOG_ENABLE,
+                    ChaiSetting.WIRETRACE_ENABLE, ChaiSetting.STATISTICS_ENABLE, ChaiSetting.CACHE_ENABLE,
+                    ChaiSetting.FAILOVER_ENABLE}) {
+                chaiConfig.setSetting(setting, setting.getDefaultValue());
+            }
+        } else {
+            final boolean all = "all".equals(wrappers);
+            enable(chaiConfig, ChaiSetting.READONLY, all || "readOnly".equals(wrappers));
+            enable(chaiConfig, ChaiSetting.WATCHDOG_ENABLE, all || "watchdog".equals(wrappers));
+            enable(chaiConfig, ChaiSetting.WIRETRACE_ENABLE, all || "wireTrace".equals(wrappers));
+            enable(chaiConfig, ChaiSetting.STATISTICS_ENABLE, all || "statistics".equals(wrappers));
+            enable(chaiConfig, ChaiSetting.CACHE_ENABLE, all || "caching".equals(wrappers));
+            enable(chaiConfig, ChaiSetting.FAILOVER_ENABLE, all || "failOver".equals(wrappers));
+        }
+
+        provider = ChaiProviderFactory.createProvider(chaiConfig);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        provider.close();
+    }
+
+    @Benchmark
+    public String readStringAttribute()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return provider.readStringAttribute(userDN, "mail");
+    }
+
+    @Benchmark
+    public Map<String, String> readStringAttributes()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return provider.readStringAttributes(userDN, attributes);
+    }
+
+    @Benchmark
+    public boolean compareStringAttribute()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return provider.compareStringAttribute(userDN, "cn", "user0");
+    }
+
+    private static void enable(final ChaiConfiguration chaiConfig, final ChaiSetting setting, final boolean enable)
+    {
+        chaiConfig.setSetting(setting, String.valueOf(enable));
+    }
+}
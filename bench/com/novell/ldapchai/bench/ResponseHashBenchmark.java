@@ -0,0 +1,105 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.bench;
+
+import com.novell.ldapchai.cr.ChaiChallenge;
+import com.novell.ldapchai.cr.ChaiCrFactory;
+import com.novell.ldapchai.cr.Challenge;
+import com.novell.ldapchai.cr.ResponseSet;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.exception.ChaiValidationException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiSetting;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures testing a stored response set (answer hashing and comparison) for each hashing format, and parsing a
+ * stored response set record.
+ *
+ * @author Jason D. Rivard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseHashBenchmark {
+// ------------------------------ FIELDS ------------------------------
+
+    @Param({"SHA1_SALT", "SHA512_SALT", "PBKDF2"})
+    public String formatType;
+
+    @Param({"1000"})
+    public int hashCount;
+
+    private ResponseSet responseSet;
+    private String storedValue;
+    private Map<Challenge, String> correctResponses;
+    private Map<Challenge, String> incorrectResponses;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Setup
+    public void setup()
+            throws ChaiValidationException, ChaiOperationException
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration();
+        chaiConfig.setSetting(ChaiSetting.CR_DEFAULT_FORMAT_TYPE, formatType);
+        chaiConfig.setSetting(ChaiSetting.CR_CHAI_SALT_COUNT, String.valueOf(hashCount));
+
+        correctResponses = new LinkedHashMap<Challenge, String>();
+        incorrectResponses = new LinkedHashMap<Challenge, String>();
+        for (int i = 0; i < 3; i++) {
+            final Challenge challenge = new ChaiChallenge(true, "benchmark question " + i, 1, 255, true);
+            correctResponses.put(challenge, "Answer Number " + i);
+            incorrectResponses.put(challenge, "wrong answer " + i);
+        }
+
+        final ResponseSet newResponseSet = ChaiCrFactory.newChaiResponseSet(correctResponses, Locale.US, 0, chaiConfig, null);
+        storedValue = newResponseSet.stringValue();
+        responseSet = ChaiCrFactory.parseChaiResponseSetXML(storedValue);
+    }
+
+    @Benchmark
+    public boolean testCorrectResponses()
+            throws ChaiUnavailableException
+    {
+        return responseSet.test(correctResponses);
+    }
+
+    @Benchmark
+    public boolean testIncorrectResponses()
+            throws ChaiUnavailableException
+    {
+        return responseSet.test(incorrectResponses);
+    }
+
+    @Benchmark
+    public ResponseSet parseStoredValue()
+            throws ChaiValidationException, ChaiOperationException
+    {
+        return ChaiCrFactory.parseChaiResponseSetXML(storedValue);
+    }
+}
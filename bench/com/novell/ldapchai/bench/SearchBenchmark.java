@@ -0,0 +1,100 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.bench;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.ChaiFactory;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.util.SearchHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how search results are materialized into maps and {@link ChaiEntry} sets, for small and large result
+ * sizes, through a provider with no optional wrappers.
+ *
+ * @author Jason D. Rivard
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final String LDAP_URL = "ldap://search-bench:389";
+
+    @Param({"10", "1000"})
+    public int resultSize;
+
+    private ChaiProvider provider;
+    private ChaiEntry baseEntry;
+    private SearchHelper searchHelper;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Setup
+    public void setup()
+            throws ChaiUnavailableException
+    {
+        BenchmarkSupport.populate(LDAP_URL, resultSize);
+        provider = ChaiProviderFactory.createProvider(BenchmarkSupport.newConfiguration(LDAP_URL));
+        baseEntry = ChaiFactory.createChaiEntry(BenchmarkSupport.BASE_DN, provider);
+
+        searchHelper = new SearchHelper();
+        searchHelper.setFilter("(&(objectClass=inetOrgPerson)(cn=user*))");
+        searchHelper.setAttributes("cn", "mail", "givenName", "sn");
+        searchHelper.setSearchScope(ChaiProvider.SEARCH_SCOPE.SUBTREE);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        provider.close();
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> search()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return provider.search(BenchmarkSupport.BASE_DN, searchHelper);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, List<String>>> searchMultiValues()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return provider.searchMultiValues(BenchmarkSupport.BASE_DN, searchHelper);
+    }
+
+    @Benchmark
+    public Set<ChaiEntry> entrySearch()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return baseEntry.search("(&(objectClass=inetOrgPerson)(cn=user*))");
+    }
+}
@@ -21,6 +21,7 @@ package com.novell.ldapchai;
 
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiModification;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.util.SearchHelper;
 
@@ -168,6 +169,32 @@ public interface ChaiEntry {
      */
     boolean isValid();
 
+    /**
+     * Read a set of attributes in a single ldap operation and keep the values as a snapshot of this entry.  Until
+     * the snapshot is cleared, {@link #readStringAttribute(String)}, {@link #readMultiStringAttribute(String)},
+     * {@link #readStringAttributes(java.util.Set)} and the conversion methods built on them, such as
+     * {@link #readDateAttribute(String)}, are answered from the snapshot for any of the prefetched attributes.
+     * Attributes that were not prefetched are still read from the directory.
+     * <p/>
+     * The snapshot is discarded by any modification made through this {@code ChaiEntry} instance, by
+     * {@link #clearSnapshot()}, and by a subsequent call to this method.  Changes made by other instances, other
+     * clients or by extended operations are not seen until then, so a snapshot should be held only for the duration
+     * of a related group of reads.
+     *
+     * @param attributeNames names of the attributes to read
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see ChaiUser#getStatusAttributes()
+     */
+    void prefetch(Set<String> attributeNames)
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Discard the snapshot taken by {@link #prefetch(java.util.Set)}, so that subsequent reads are sent to the
+     * directory.  Has no effect if there is no snapshot.
+     */
+    void clearSnapshot();
+
     /**
      * A convience method for reading boolean values from the ldap directory.  Note that ldap booleans actually
      * have three states: true, false and does not exist.  This method uses the general convention that does not
@@ -417,6 +444,26 @@ public interface ChaiEntry {
     void writeStringAttributes(Map<String,String> attributeValueProps)
             throws ChaiOperationException, ChaiUnavailableException;
 
+    /**
+     * Apply a list of modifications to the entry as a single ldap modify operation.  The directory either
+     * applies all of the modifications or none of them.
+     *
+     * @param modifications modifications to apply, in order
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     * @see com.novell.ldapchai.provider.ChaiProvider#modify(String, java.util.List)
+     */
+    void modify(List<ChaiModification> modifications)
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Get a new {@link ChaiEntryModifier} that accumulates changes to this entry and writes them
+     * using {@link #modify(java.util.List)}.
+     *
+     * @return a new, empty modifier for this entry
+     */
+    ChaiEntryModifier modifier();
+
     /**
      * Removes all existing values, if any, and sets the new values.
      *
@@ -0,0 +1,138 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiModification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accumulates changes to a single {@link ChaiEntry} and then writes them to the directory as one ldap modify
+ * operation.  Obtain an instance using {@link ChaiEntry#modifier()}.
+ * <pre>
+ *   theUser.modifier()
+ *          .add("member", "cn=group1,o=org", "cn=group2,o=org")
+ *          .delete("member", "cn=group3,o=org")
+ *          .replace("description", "new description")
+ *          .commit();
+ * </pre>
+ * Instances are not thread safe.  After {@link #commit()} returns, the modifier is empty and may be reused.
+ *
+ * @author Jason D. Rivard
+ * @see ChaiEntry#modify(java.util.List)
+ */
+public class ChaiEntryModifier {
+// ------------------------------ FIELDS ------------------------------
+
+    private final ChaiEntry chaiEntry;
+    private final List<ChaiModification> modifications = new ArrayList<ChaiModification>();
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public ChaiEntryModifier(final ChaiEntry chaiEntry)
+    {
+        if (chaiEntry == null) {
+            throw new NullPointerException("chaiEntry must not be null");
+        }
+        this.chaiEntry = chaiEntry;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public ChaiEntryModifier add(final String attributeName, final String... values)
+    {
+        return modification(ChaiModification.add(attributeName, values));
+    }
+
+    public ChaiEntryModifier addBinary(final String attributeName, final byte[]... values)
+    {
+        return modification(ChaiModification.addBinary(attributeName, values));
+    }
+
+    public ChaiEntryModifier delete(final String attributeName, final String... values)
+    {
+        return modification(ChaiModification.delete(attributeName, values));
+    }
+
+    public ChaiEntryModifier deleteBinary(final String attributeName, final byte[]... values)
+    {
+        return modification(ChaiModification.deleteBinary(attributeName, values));
+    }
+
+    public ChaiEntryModifier deleteAttribute(final String attributeName)
+    {
+        return modification(ChaiModification.deleteAttribute(attributeName));
+    }
+
+    public ChaiEntryModifier replace(final String attributeName, final String... values)
+    {
+        return modification(ChaiModification.replace(attributeName, values));
+    }
+
+    public ChaiEntryModifier replaceBinary(final String attributeName, final byte[]... values)
+    {
+        return modification(ChaiModification.replaceBinary(attributeName, values));
+    }
+
+    public ChaiEntryModifier modification(final ChaiModification modification)
+    {
+        if (modification == null) {
+            throw new NullPointerException("modification must not be null");
+        }
+        modifications.add(modification);
+        return this;
+    }
+
+    /**
+     * @return an unmodifiable view of the modifications accumulated so far, in the order they will be sent.
+     */
+    public List<ChaiModification> getModifications()
+    {
+        return Collections.unmodifiableList(modifications);
+    }
+
+    public boolean isEmpty()
+    {
+        return modifications.isEmpty();
+    }
+
+    /**
+     * Write the accumulated modifications to the directory as one ldap modify operation.  If no modifications
+     * have been accumulated, no operation is sent.  The accumulated modifications are only cleared if the
+     * operation succeeds.
+     *
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    public void commit()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if (modifications.isEmpty()) {
+            return;
+        }
+
+        chaiEntry.modify(new ArrayList<ChaiModification>(modifications));
+        modifications.clear();
+    }
+}
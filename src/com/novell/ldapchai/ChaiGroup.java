@@ -22,6 +22,7 @@ package com.novell.ldapchai;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 
+import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -68,6 +69,34 @@ public interface ChaiGroup extends ChaiEntry {
     Set<ChaiUser> getMembers()
             throws ChaiOperationException, ChaiUnavailableException;
 
+    /**
+     * Iterate the DNs of this group's members.  Unlike {@link #getMembers()}, implementations may read the
+     * membership from the directory in several smaller responses as the iterator advances.  For example the
+     * Active Directory implementation uses ranged retrieval ({@code member;range=0-*}), which also returns
+     * members beyond the server's per-response value limit.
+     * <p/>
+     * If the directory fails while reading a later portion of the membership, the iterator throws a
+     * {@link com.novell.ldapchai.exception.ChaiRuntimeException} whose cause is the underlying {@code ChaiException}.
+     *
+     * @return an iterator of member DNs.  The iterator does not support {@link Iterator#remove()}.
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    Iterator<String> iterateMemberDNs()
+            throws ChaiOperationException, ChaiUnavailableException;
+
+    /**
+     * Test if the supplied DN is a member of this group.  This uses an ldap compare against the group's
+     * member attribute rather than reading the membership list.
+     *
+     * @param memberDN DN of the prospective member
+     * @return true if the DN is a member of the group
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    boolean isMember(String memberDN)
+            throws ChaiOperationException, ChaiUnavailableException;
+
 
     /**
      * Convienence method to read this ChaiUser instance's {@link #ATTR_GROUP_NAME} attribute.
@@ -235,6 +235,28 @@ public interface ChaiUser extends ChaiEntry {
     ChaiPasswordPolicy getPasswordPolicy()
             throws ChaiUnavailableException, ChaiOperationException;
 
+    /**
+     * The attributes of this user read by the status methods of the implementation, such as {@link #isLocked()},
+     * {@link #isPasswordExpired()}, {@link #isAccountEnabled()}, {@link #readLastLoginTime()},
+     * {@link #readPasswordExpirationDate()} and {@link #readPasswordModificationDate()}.  Callers that check several
+     * of these at once can pass this set to {@link #prefetch(java.util.Set)} so they are answered from a single read:
+     * <pre>
+     *   user.prefetch(user.getStatusAttributes());
+     *   try {
+     *       final boolean locked = user.isLocked();
+     *       final boolean expired = user.isPasswordExpired();
+     *       ...
+     *   } finally {
+     *       user.clearSnapshot();
+     *   }
+     * </pre>
+     * Some status methods also read other entries, such as a password policy or domain object; those reads are not
+     * affected.
+     *
+     * @return the attribute names, never null
+     */
+    Set<String> getStatusAttributes();
+
     /**
      * Check to see if a user's password is expired.
      *
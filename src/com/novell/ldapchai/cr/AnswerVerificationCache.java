@@ -0,0 +1,216 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.cr;
+
+import com.novell.ldapchai.cr.bean.AnswerBean;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A short lived cache of answer verification results, used to avoid re-running thousands of digest rounds when the
+ * same candidate response is tested against the same stored answer more than once.
+ * <p/>
+ * Neither the candidate response nor a plain hash of it is kept.  Entries are keyed by an HMAC, using a random key
+ * generated for this JVM, of the stored answer and the candidate.  Key bytes are wiped when an entry is evicted
+ * or expires.  Only answers with an expensive test (salted digests, PBKDF2, bcrypt and scrypt) are cached.
+ *
+ * @author Jason D. Rivard
+ * @see com.novell.ldapchai.provider.ChaiSetting#CR_VERIFY_CACHE_SIZE
+ */
+class AnswerVerificationCache {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private static final SecretKeySpec MAC_KEY = makeKey();
+
+    private static final ThreadLocal<Mac> MAC = new ThreadLocal<Mac>() {
+        protected Mac initialValue()
+        {
+            try {
+                final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(MAC_KEY);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("unable to initialize " + MAC_ALGORITHM + ": " + e.getMessage());
+            }
+        }
+    };
+
+    private static final Map<CacheKey, CacheEntry> CACHE = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true);
+
+// -------------------------- STATIC METHODS --------------------------
+
+    private static SecretKeySpec makeKey()
+    {
+        final byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        return new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+    }
+
+    /**
+     * Test a response against an answer, re-using a recent result for the same answer and response if there is one.
+     *
+     * @param answer    the stored answer
+     * @param response  the candidate response
+     * @param cacheSize maximum number of results to keep; if less than one the cache is not used
+     * @param maxAge    maximum age in ms of a re-used result
+     * @return the result of {@link Answer#testAnswer(String)}
+     */
+    static boolean testAnswer(final Answer answer, final String response, final int cacheSize, final long maxAge)
+    {
+        if (cacheSize < 1 || maxAge <= 0 || response == null || !isCacheable(answer)) {
+            return answer.testAnswer(response);
+        }
+
+        final CacheKey key = new CacheKey(computeMac(answer, response));
+        final long now = System.currentTimeMillis();
+
+        synchronized (CACHE) {
+            final CacheEntry entry = CACHE.get(key);
+            if (entry != null) {
+                if (now - entry.timestamp < maxAge) {
+                    key.wipe();
+                    return entry.result;
+                }
+                CACHE.remove(key);
+                entry.key.wipe();
+            }
+        }
+
+        final boolean result = answer.testAnswer(response);
+
+        synchronized (CACHE) {
+            // remove any entry added meanwhile first, so the map holds the same key instance as the new entry.
+            final CacheEntry existing = CACHE.remove(key);
+            if (existing != null) {
+                existing.key.wipe();
+            }
+            CACHE.put(key, new CacheEntry(key, result, now));
+
+            final Iterator<CacheEntry> iter = CACHE.values().iterator();
+            while (iter.hasNext()) {
+                final CacheEntry eldest = iter.next();
+                if (CACHE.size() <= cacheSize && now - eldest.timestamp < maxAge) {
+                    break;
+                }
+                iter.remove();
+                eldest.key.wipe();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove and wipe all cached results.
+     */
+    static void clear()
+    {
+        synchronized (CACHE) {
+            for (final CacheEntry entry : CACHE.values()) {
+                entry.key.wipe();
+            }
+            CACHE.clear();
+        }
+    }
+
+    private static boolean isCacheable(final Answer answer)
+    {
+        return answer instanceof HashSaltAnswer || answer instanceof PKDBF2Answer || answer instanceof PasswordCryptAnswer;
+    }
+
+    private static byte[] computeMac(final Answer answer, final String response)
+    {
+        final AnswerBean storedAnswer = answer.asAnswerBean();
+        final StringBuilder sb = new StringBuilder();
+        sb.append(storedAnswer.getType()).append('\u0000');
+        sb.append(storedAnswer.getHashCount()).append('\u0000');
+        sb.append(storedAnswer.isCaseInsensitive()).append('\u0000');
+        sb.append(storedAnswer.getSalt()).append('\u0000');
+        sb.append(storedAnswer.getAnswerHash()).append('\u0000');
+
+        byte[] responseBytes = null;
+        try {
+            final Mac mac = MAC.get();
+            mac.update(sb.toString().getBytes("UTF-8"));
+            responseBytes = response.getBytes("UTF-8");
+            mac.update(responseBytes);
+            return mac.doFinal();
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("unable to encode response: " + e.getMessage());
+        } finally {
+            if (responseBytes != null) {
+                Arrays.fill(responseBytes, (byte) 0);
+            }
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class CacheKey {
+        private final byte[] value;
+        private final int hashCode;
+
+        private CacheKey(final byte[] value)
+        {
+            this.value = value;
+            this.hashCode = Arrays.hashCode(value);
+        }
+
+        private void wipe()
+        {
+            Arrays.fill(value, (byte) 0);
+        }
+
+        public boolean equals(final Object o)
+        {
+            return o instanceof CacheKey && Arrays.equals(value, ((CacheKey) o).value);
+        }
+
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+
+    private static class CacheEntry {
+        private final CacheKey key;
+        private final boolean result;
+        private final long timestamp;
+
+        private CacheEntry(final CacheKey key, final boolean result, final long timestamp)
+        {
+            this.key = key;
+            this.result = result;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.cr;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.SearchResultHandler;
+import com.novell.ldapchai.util.ChaiLogger;
+import com.novell.ldapchai.util.SearchHelper;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads and tests the Chai response sets of many users at once.
+ * <p/>
+ * The {@link ChaiSetting#CR_CHAI_STORAGE_ATTRIBUTE} of every matching user is read with a single streaming search
+ * (see {@link ChaiProvider#searchMultiValues(String, SearchHelper, SearchResultHandler)}), instead of one read per user
+ * as with {@link ChaiCrFactory#readChaiResponseSet(com.novell.ldapchai.ChaiUser)}.  Each user's stored values are
+ * parsed and tested on a pool of {@link ChaiSetting#CR_BATCH_VERIFY_THREADS} threads as the entries arrive, and each
+ * user's {@link Result} is passed to the {@link ResultHandler} as soon as it is available.  At most a few tasks per
+ * thread are queued at any time; while the queue is full the search waits for results to be handled, so neither the
+ * search results nor the verification results are accumulated in memory, whatever the size of the population.
+ * <pre>
+ *   final ChaiCrBatchVerifier verifier = new ChaiCrBatchVerifier(provider);
+ *   verifier.verify("ou=users,o=example", "(objectClass=inetOrgPerson)", responseSource, new ChaiCrBatchVerifier.ResultHandler() {
+ *       public void handleResult(final ChaiCrBatchVerifier.Result result) {
+ *           ...
+ *       }
+ *   });
+ * </pre>
+ * Instances may be shared between threads.
+ *
+ * @author Jason D. Rivard
+ */
+public class ChaiCrBatchVerifier {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final int QUEUED_TASKS_PER_THREAD = 4;
+
+// -------------------------- ENUMERATIONS --------------------------
+
+    public static enum Status {
+        /**
+         * The user's responses were tested and were correct.
+         */
+        PASSED,
+
+        /**
+         * The user's responses were tested and were not correct.
+         */
+        FAILED,
+
+        /**
+         * The user's response set was read, but the {@link ResponseSource} did not supply responses to test.
+         */
+        NOT_TESTED,
+
+        /**
+         * The user does not have a stored Chai response set.
+         */
+        NO_RESPONSE_SET,
+
+        /**
+         * The stored response set could not be parsed or tested, see {@link Result#getError()}.
+         */
+        ERROR
+    }
+
+// ------------------------------ FIELDS ------------------------------
+
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger(ChaiCrBatchVerifier.class);
+
+    private final ChaiProvider provider;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public ChaiCrBatchVerifier(final ChaiProvider provider)
+    {
+        if (provider == null) {
+            throw new NullPointerException("provider must not be null");
+        }
+
+        this.provider = provider;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Read and test the response sets of all users below {@code baseDN} matching {@code filter}.  Only users that
+     * have a value of the storage attribute are returned by the search.
+     * <p/>
+     * The {@code responseSource} is called on the pool threads, the {@code resultHandler} is called on the
+     * calling thread, in the order results become available.  If the handler throws a runtime exception, the search
+     * is abandoned, no further tasks are started and the exception is re-thrown once the outstanding tasks have been
+     * discarded.
+     * <p/>
+     * If the provider fails over to another server during the search, the search is restarted and some users may be
+     * verified, and reported to the handler, a second time.
+     *
+     * @param baseDN         A valid object DN for the top of the search
+     * @param filter         A valid ldap search filter selecting the users, or null to select every entry with a
+     *                       stored value
+     * @param responseSource supplies the responses to test for each user
+     * @param resultHandler  receives the result for each user
+     * @return the number of users processed
+     * @throws ChaiOperationException   If there is an error during the search
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    public int verify(
+            final String baseDN,
+            final String filter,
+            final ResponseSource responseSource,
+            final ResultHandler resultHandler
+    )
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if (responseSource == null) {
+            throw new NullPointerException("responseSource must not be null");
+        }
+
+        if (resultHandler == null) {
+            throw new NullPointerException("resultHandler must not be null");
+        }
+
+        final ChaiConfiguration chaiConfig = provider.getChaiConfiguration();
+        final String storageAttribute = chaiConfig.getSetting(ChaiSetting.CR_CHAI_STORAGE_ATTRIBUTE);
+
+        final StringBuilder searchFilter = new StringBuilder();
+        searchFilter.append("(&");
+        if (filter != null && filter.length() > 0) {
+            searchFilter.append(filter.startsWith("(") ? filter : "(" + filter + ")");
+        }
+        searchFilter.append("(").append(storageAttribute).append("=*))");
+
+        final SearchHelper searchHelper = new SearchHelper(
+                searchFilter.toString(),
+                ChaiProvider.SEARCH_SCOPE.SUBTREE,
+                Collections.singleton(storageAttribute)
+        );
+
+        int threads = chaiConfig.getIntSetting(ChaiSetting.CR_BATCH_VERIFY_THREADS);
+        if (threads < 1) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        // pool threads are only started as tasks are submitted, so a small population does not start them all
+        final ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new VerifierThreadFactory());
+        final TaskSubmitter submitter = new TaskSubmitter(
+                new ExecutorCompletionService<Result>(executor),
+                threads * QUEUED_TASKS_PER_THREAD,
+                storageAttribute,
+                chaiConfig,
+                responseSource,
+                resultHandler
+        );
+
+        try {
+            provider.searchMultiValues(baseDN, searchHelper, submitter);
+            if (submitter.failure != null) {
+                throw submitter.failure;
+            }
+
+            while (submitter.completed < submitter.submitted) {
+                submitter.handleNextResult();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOGGER.debug("verified stored response sets of " + submitter.completed + " users below " + baseDN);
+
+        return submitter.completed;
+    }
+
+    private static Result takeResult(final CompletionService<Result> completionService)
+    {
+        try {
+            return completionService.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for response set verification");
+        } catch (ExecutionException e) {
+            // VerifyTask reports its own errors, so this is unexpected
+            throw new IllegalStateException("unexpected error during response set verification: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static List<String> findValues(final Map<String, List<String>> attributes, final String attributeName)
+    {
+        if (attributes == null) {
+            return null;
+        }
+
+        final List<String> values = attributes.get(attributeName);
+        if (values != null) {
+            return values;
+        }
+
+        for (final Map.Entry<String, List<String>> entry : attributes.entrySet()) {
+            if (attributeName.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Supplies the responses to test for each user.  Implementations must be thread safe.
+     */
+    public static interface ResponseSource {
+        /**
+         * Return the responses to test for a user.
+         *
+         * @param userDN      the DN of the user
+         * @param responseSet the user's stored response set
+         * @return the responses to test, or null if the user's responses should not be tested
+         */
+        Map<Challenge, String> getResponses(String userDN, ResponseSet responseSet);
+    }
+
+    /**
+     * Receives the result for each user.
+     */
+    public static interface ResultHandler {
+        void handleResult(Result result);
+    }
+
+    /**
+     * The outcome of reading and testing a single user's response set.
+     */
+    public static class Result {
+        private final String userDN;
+        private final Status status;
+        private final ResponseSet responseSet;
+        private final Exception error;
+
+        private Result(final String userDN, final Status status, final ResponseSet responseSet, final Exception error)
+        {
+            this.userDN = userDN;
+            this.status = status;
+            this.responseSet = responseSet;
+            this.error = error;
+        }
+
+        public String getUserDN()
+        {
+            return userDN;
+        }
+
+        public Status getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * @return the user's stored response set, or null if there is none or it could not be parsed
+         */
+        public ResponseSet getResponseSet()
+        {
+            return responseSet;
+        }
+
+        /**
+         * @return the error that caused a status of {@link Status#ERROR}, otherwise null
+         */
+        public Exception getError()
+        {
+            return error;
+        }
+
+        public String toString()
+        {
+            return userDN + " " + status + (error == null ? "" : " (" + error.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Submits a task for each entry as the search returns it, handling results whenever the queue is full.
+     */
+    private static class TaskSubmitter implements SearchResultHandler {
+        private final CompletionService<Result> completionService;
+        private final int maxQueued;
+        private final String storageAttribute;
+        private final ChaiConfiguration chaiConfig;
+        private final ResponseSource responseSource;
+        private final ResultHandler resultHandler;
+
+        private int submitted;
+        private int completed;
+        private RuntimeException failure;
+
+        private TaskSubmitter(
+                final CompletionService<Result> completionService,
+                final int maxQueued,
+                final String storageAttribute,
+                final ChaiConfiguration chaiConfig,
+                final ResponseSource responseSource,
+                final ResultHandler resultHandler
+        )
+        {
+            this.completionService = completionService;
+            this.maxQueued = maxQueued;
+            this.storageAttribute = storageAttribute;
+            this.chaiConfig = chaiConfig;
+            this.responseSource = responseSource;
+            this.resultHandler = resultHandler;
+        }
+
+        public boolean handleResult(final String entryDN, final Map<String, List<String>> attributeValues)
+        {
+            try {
+                if (submitted - completed >= maxQueued) {
+                    handleNextResult();
+                }
+
+                completionService.submit(new VerifyTask(
+                        entryDN,
+                        findValues(attributeValues, storageAttribute),
+                        chaiConfig,
+                        responseSource
+                ));
+                submitted++;
+                return true;
+            } catch (RuntimeException e) {
+                failure = e;
+                return false;
+            }
+        }
+
+        private void handleNextResult()
+        {
+            final Result result = takeResult(completionService);
+            completed++;
+            resultHandler.handleResult(result);
+        }
+    }
+
+    private static class VerifyTask implements Callable<Result> {
+        private final String userDN;
+        private final List<String> values;
+        private final ChaiConfiguration chaiConfig;
+        private final ResponseSource responseSource;
+
+        private VerifyTask(
+                final String userDN,
+                final List<String> values,
+                final ChaiConfiguration chaiConfig,
+                final ResponseSource responseSource
+        )
+        {
+            this.userDN = userDN;
+            this.values = values;
+            this.chaiConfig = chaiConfig;
+            this.responseSource = responseSource;
+        }
+
+        public Result call()
+        {
+            ChaiResponseSet responseSet = null;
+            try {
+                responseSet = ChaiResponseSet.readStoredValues(chaiConfig, values);
+                if (responseSet == null) {
+                    return new Result(userDN, Status.NO_RESPONSE_SET, null, null);
+                }
+
+                final Map<Challenge, String> responses = responseSource.getResponses(userDN, responseSet);
+                if (responses == null) {
+                    return new Result(userDN, Status.NOT_TESTED, responseSet, null);
+                }
+
+                final boolean passed = responseSet.test(responses);
+                return new Result(userDN, passed ? Status.PASSED : Status.FAILED, responseSet, null);
+            } catch (Exception e) {
+                LOGGER.debug("error verifying response set of " + userDN + ": " + e.getMessage());
+                return new Result(userDN, Status.ERROR, responseSet, e);
+            }
+        }
+    }
+
+    private static class VerifierThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(r, "LDAP Chai ChaiCrBatchVerifier thread " + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
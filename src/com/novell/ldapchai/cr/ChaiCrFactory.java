@@ -163,7 +163,7 @@ public final class ChaiCrFactory {
             final AnswerFactory.AnswerConfiguration answerConfiguration = new AnswerFactory.AnswerConfiguration();
             answerConfiguration.caseInsensitive = chaiConfiguration.getBooleanSetting(ChaiSetting.CR_CASE_INSENSITIVE);
             answerConfiguration.formatType = formatType;
-            answerConfiguration.hashCount = Integer.parseInt(chaiConfiguration.getSetting(ChaiSetting.CR_CHAI_SALT_COUNT));
+            answerConfiguration.hashCount = chaiConfiguration.getIntSetting(ChaiSetting.CR_CHAI_SALT_COUNT);
             answerConfiguration.challengeText = challenge.getChallengeText();  //needed for helpdesk challenges
             final String answerText = crMap.get(challenge);
             final Answer answer = AnswerFactory.newAnswer(answerConfiguration, answerText);
@@ -240,10 +240,18 @@ public final class ChaiCrFactory {
         return ChaiResponseSet.readUserResponseSet(user);
     }
 
+    /**
+     * Parse a stored Chai response set value.  Values written in any {@link ChaiResponseSet.StorageFormat} are accepted.
+     *
+     * @param inputXmlString the stored value, as returned by a {@link com.novell.ldapchai.util.ConfigObjectRecord}'s payload
+     * @return the parsed ResponseSet, or null if the value is empty
+     * @throws ChaiValidationException
+     *                                  when there is a logical problem with the response set data, such as more randoms required then exist
+     */
     public static ResponseSet parseChaiResponseSetXML(final String inputXmlString)
             throws ChaiValidationException, ChaiOperationException
     {
-        return ChaiResponseSet.ChaiResponseXmlParser.parseChaiResponseSetXML(inputXmlString);
+        return ChaiResponseSet.parseStoredValue(inputXmlString, null);
     }
 
 }
\ No newline at end of file
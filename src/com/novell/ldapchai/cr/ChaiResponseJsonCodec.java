@@ -0,0 +1,244 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.cr;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiValidationException;
+import com.novell.ldapchai.util.ChaiLogger;
+import com.novell.ldapchai.util.internal.DateCodec;
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads and writes the {@link ChaiResponseSet.StorageFormat#JSON} storage format.  A record looks like:
+ * <pre>
+ * {"v":1,"minRandom":1,"locale":"en","chaiVersion":"0.6.5","caseInsensitive":true,"time":"2014-01-01 00:00:00 +0000",
+ *  "responses":[{"challenge":"What is your pet's name?","adminDefined":true,"required":true,"minLength":1,"maxLength":255,
+ *                "answer":{"format":"SHA1_SALT","salt":"...","hashcount":"1000","value":"B:..."}}]}
+ * </pre>
+ * Each answer is stored as the attributes and text of the element produced by {@link Answer#toXml()}, so every
+ * answer format, including encrypted helpdesk answers, is stored exactly as it is in the xml format.
+ *
+ * @author Jason D. Rivard
+ */
+class ChaiResponseJsonCodec {
+// ----------------------------- CONSTANTS ----------------------------
+
+    static final int VALUE_VERSION = 1;
+
+    private static final String ANSWER_VALUE_KEY = "value";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger(ChaiResponseJsonCodec.class.getName());
+
+    /**
+     * Gson instances are thread safe, so a single instance is shared.
+     */
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Indicates if a stored value is in the json format.  Xml values always start with {@code <}.
+     */
+    static boolean isJson(final String input)
+    {
+        for (int i = 0; i < input.length(); i++) {
+            final char c = input.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{';
+            }
+        }
+        return false;
+    }
+
+    static String toJson(final ChaiResponseSet rs)
+            throws ChaiValidationException, ChaiOperationException
+    {
+        final JsonRecord record = new JsonRecord();
+        record.v = VALUE_VERSION;
+        record.minRandom = rs.getChallengeSet().getMinRandomRequired();
+        record.locale = rs.getChallengeSet().getLocale().toString();
+        record.chaiVersion = ChaiConstant.CHAI_API_VERSION;
+        record.caseInsensitive = rs.isCaseInsensitive() ? Boolean.TRUE : null;
+        record.challengeSetID = rs.csIdentifier;
+        record.time = rs.timestamp == null ? null : DateCodec.formatChaiTimestamp(rs.timestamp);
+
+        if (rs.crMap != null && !rs.crMap.isEmpty()) {
+            record.responses = new ArrayList<JsonResponse>();
+            for (final Challenge loopChallenge : rs.crMap.keySet()) {
+                record.responses.add(toJsonResponse(loopChallenge, rs.crMap.get(loopChallenge)));
+            }
+        }
+
+        if (rs.helpdeskCrMap != null && !rs.helpdeskCrMap.isEmpty()) {
+            record.helpdeskResponses = new ArrayList<JsonResponse>();
+            for (final Challenge loopChallenge : rs.helpdeskCrMap.keySet()) {
+                record.helpdeskResponses.add(toJsonResponse(loopChallenge, rs.helpdeskCrMap.get(loopChallenge)));
+            }
+        }
+
+        return GSON.toJson(record);
+    }
+
+    /**
+     * Parse a stored json record.  As with the xml format, a record that can not be parsed results in an empty
+     * or partial response set rather than an exception.
+     */
+    static ChaiResponseSet.ParsedResponseSet parseRecord(final String input)
+            throws ChaiValidationException
+    {
+        final Map<Challenge, Answer> crMap = new LinkedHashMap<Challenge, Answer>();
+        final Map<Challenge, HelpdeskAnswer> helpdeskCrMap = new LinkedHashMap<Challenge, HelpdeskAnswer>();
+        int minRandRequired = 0;
+        String localeValue = null;
+        boolean caseInsensitive = false;
+        String csIdentifier = null;
+        Date timestamp = null;
+
+        try {
+            final JsonRecord record = GSON.fromJson(input, JsonRecord.class);
+            if (record == null) {
+                throw new JsonParseException("empty record");
+            }
+            if (record.v > VALUE_VERSION) {
+                throw new JsonParseException("unsupported record version " + record.v);
+            }
+
+            minRandRequired = record.minRandom;
+            localeValue = record.locale;
+            caseInsensitive = record.caseInsensitive != null && record.caseInsensitive;
+            csIdentifier = record.challengeSetID;
+
+            if (record.time != null) {
+                try {
+                    timestamp = DateCodec.parseChaiTimestamp(record.time);
+                } catch (ParseException e) {
+                    LOGGER.error("unexpected error attempting to parse timestamp: " + e.getMessage());
+                }
+            }
+
+            if (record.responses != null) {
+                for (final JsonResponse loopResponse : record.responses) {
+                    final Challenge newChallenge = toChallenge(loopResponse);
+                    final Answer answer = AnswerFactory.fromXml(toAnswerElement(loopResponse), caseInsensitive, newChallenge.getChallengeText());
+                    crMap.put(newChallenge, answer);
+                }
+            }
+
+            if (record.helpdeskResponses != null) {
+                for (final JsonResponse loopResponse : record.helpdeskResponses) {
+                    final Challenge newChallenge = toChallenge(loopResponse);
+                    final HelpdeskAnswer answer = (HelpdeskAnswer) AnswerFactory.fromXml(toAnswerElement(loopResponse), caseInsensitive, newChallenge.getChallengeText());
+                    helpdeskCrMap.put(newChallenge, answer);
+                }
+            }
+        } catch (JsonParseException e) {
+            LOGGER.debug("error parsing stored response record: " + e.getMessage());
+        }
+
+        Locale challengeLocale = Locale.getDefault();
+        if (localeValue != null) {
+            challengeLocale = new Locale(localeValue);
+        }
+
+        return new ChaiResponseSet.ParsedResponseSet(crMap, helpdeskCrMap, challengeLocale, minRandRequired, caseInsensitive, csIdentifier, timestamp);
+    }
+
+    private static JsonResponse toJsonResponse(final Challenge challenge, final Answer answer)
+            throws ChaiOperationException
+    {
+        final JsonResponse response = new JsonResponse();
+        response.challenge = challenge.getChallengeText();
+        response.adminDefined = challenge.isAdminDefined();
+        response.required = challenge.isRequired();
+        response.minLength = challenge.getMinLength();
+        response.maxLength = challenge.getMaxLength();
+
+        final Element answerElement = answer.toXml();
+        response.answer = new LinkedHashMap<String, String>();
+        for (final Attribute attribute : answerElement.getAttributes()) {
+            response.answer.put(attribute.getName(), attribute.getValue());
+        }
+        response.answer.put(ANSWER_VALUE_KEY, answerElement.getText());
+        return response;
+    }
+
+    private static Challenge toChallenge(final JsonResponse response)
+    {
+        if (response.challenge == null) {
+            throw new JsonParseException("missing challenge text");
+        }
+        return new ChaiChallenge(response.required, response.challenge, response.minLength, response.maxLength, response.adminDefined);
+    }
+
+    private static Element toAnswerElement(final JsonResponse response)
+    {
+        if (response.answer == null) {
+            throw new JsonParseException("missing answer for challenge '" + response.challenge + "'");
+        }
+
+        final Element answerElement = new Element(ChaiResponseSet.XML_NODE_ANSWER_VALUE);
+        for (final Map.Entry<String, String> entry : response.answer.entrySet()) {
+            if (ANSWER_VALUE_KEY.equals(entry.getKey())) {
+                answerElement.setText(entry.getValue());
+            } else if (entry.getValue() != null) {
+                answerElement.setAttribute(entry.getKey(), entry.getValue());
+            }
+        }
+        return answerElement;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class JsonRecord {
+        private int v;
+        private int minRandom;
+        private String locale;
+        private String chaiVersion;
+        private Boolean caseInsensitive;
+        private String challengeSetID;
+        private String time;
+        private List<JsonResponse> responses;
+        private List<JsonResponse> helpdeskResponses;
+    }
+
+    private static class JsonResponse {
+        private String challenge;
+        private boolean adminDefined;
+        private boolean required;
+        private int minLength;
+        private int maxLength;
+        private LinkedHashMap<String, String> answer;
+    }
+}
@@ -27,25 +27,54 @@ import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.exception.ChaiValidationException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiConfigurationSnapshot;
 import com.novell.ldapchai.provider.ChaiSetting;
 import com.novell.ldapchai.util.ChaiLogger;
 import com.novell.ldapchai.util.ConfigObjectRecord;
+import com.novell.ldapchai.util.internal.DateCodec;
 import org.jdom2.*;
-import org.jdom2.input.SAXBuilder;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
 
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class ChaiResponseSet extends AbstractResponseSet implements Serializable {
 // ----------------------------- CONSTANTS ----------------------------
 
 
+// -------------------------- ENUMERATIONS --------------------------
+
+    /**
+     * Format used when a response set is written to the directory.  Stored values in any format can always be read,
+     * so changing the format migrates each record the next time it is written.
+     *
+     * @see ChaiSetting#CR_CHAI_STORAGE_FORMAT
+     */
+    public enum StorageFormat {
+        /**
+         * The original xml format.
+         */
+        XML,
+
+        /**
+         * A compact, versioned json format.
+         */
+        JSON,
+    }
+
     // ------------------------------ FIELDS ------------------------------
 
     private static final ChaiLogger LOGGER = ChaiLogger.getLogger(ChaiResponseSet.class.getName());
@@ -76,21 +105,31 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
 
     final static String VALUE_VERSION = "2";
 
-    final static SimpleDateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
+    private final static String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    /**
+     * Parsed record caches, one per provider configuration, each sized by its own
+     * {@link ChaiSetting#CR_CHAI_PARSE_CACHE_SIZE}.
+     */
+    private static final Map<ChaiConfiguration, Map<String, ParsedResponseSet>> PARSE_CACHES = new WeakHashMap<ChaiConfiguration, Map<String, ParsedResponseSet>>();
 
     private final boolean caseInsensitive;
 
-    static {
-        DATE_FORMATTER.setTimeZone(TimeZone.getTimeZone("Zulu"));
-    }
+    /**
+     * Verify cache settings are runtime configuration, not part of the response set, so they are not serialized.  A
+     * deserialized response set does not use the cache.
+     */
+    private transient int verifyCacheSize;
+    private transient long verifyCacheMaxAge;
 
 // -------------------------- STATIC METHODS --------------------------
 
     static ChaiResponseSet readUserResponseSet(final ChaiUser theUser)
             throws ChaiUnavailableException, ChaiValidationException, ChaiOperationException
     {
-        final String corRecordIdentifer = theUser.getChaiProvider().getChaiConfiguration().getSetting(ChaiSetting.CR_CHAI_STORAGE_RECORD_ID);
-        final String corAttribute = theUser.getChaiProvider().getChaiConfiguration().getSetting(ChaiSetting.CR_CHAI_STORAGE_ATTRIBUTE);
+        final ChaiConfigurationSnapshot chaiSettings = theUser.getChaiProvider().getChaiConfiguration().getSnapshot();
+        final String corRecordIdentifer = chaiSettings.getSetting(ChaiSetting.CR_CHAI_STORAGE_RECORD_ID);
+        final String corAttribute = chaiSettings.getSetting(ChaiSetting.CR_CHAI_STORAGE_ATTRIBUTE);
 
         final ChaiResponseSet returnVal;
         final List<ConfigObjectRecord> corList = ConfigObjectRecord.readRecordFromLDAP(theUser, corAttribute, corRecordIdentifer, null, null);
@@ -99,15 +138,106 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
             final ConfigObjectRecord theCor = corList.get(0);
             payload = theCor.getPayload();
         }
-        returnVal = ChaiResponseXmlParser.parseChaiResponseSetXML(payload);
+        returnVal = parseStoredValue(payload, theUser.getChaiProvider().getChaiConfiguration());
 
         if (returnVal == null) {
             return null;
         }
 
+        returnVal.applyVerifySettings(theUser.getChaiProvider().getChaiConfiguration());
+        return returnVal;
+    }
+
+    /**
+     * Parse a user's response set from the already read values of the {@link ChaiSetting#CR_CHAI_STORAGE_ATTRIBUTE}.
+     * Values that are not records of the configured {@link ChaiSetting#CR_CHAI_STORAGE_RECORD_ID} are ignored.
+     *
+     * @param chaiConfiguration configuration of the provider the values were read with
+     * @param values            the values of the storage attribute, may be null
+     * @return the parsed response set, or null if there is no stored response set
+     */
+    static ChaiResponseSet readStoredValues(final ChaiConfiguration chaiConfiguration, final Collection<String> values)
+            throws ChaiValidationException, ChaiOperationException
+    {
+        final String corRecordIdentifer = chaiConfiguration.getSetting(ChaiSetting.CR_CHAI_STORAGE_RECORD_ID);
+
+        String payload = "";
+        if (values != null) {
+            for (final String value : values) {
+                if (value != null && value.regionMatches(true, 0, corRecordIdentifer, 0, corRecordIdentifer.length())) {
+                    final ConfigObjectRecord loopCor = ConfigObjectRecord.parseString(value);
+                    if (loopCor.getRecordType().equalsIgnoreCase(corRecordIdentifer)) {
+                        payload = loopCor.getPayload();
+                        break;
+                    }
+                }
+            }
+        }
+
+        final ChaiResponseSet returnVal = parseStoredValue(payload, chaiConfiguration);
+        if (returnVal != null) {
+            returnVal.applyVerifySettings(chaiConfiguration);
+        }
         return returnVal;
     }
 
+    /**
+     * Parse a stored response set in any supported {@link StorageFormat}.  When the configuration's
+     * {@link ChaiSetting#CR_CHAI_PARSE_CACHE_SIZE} is greater than zero, the parsed record is kept in that
+     * configuration's LRU cache keyed by the raw stored value, so reading an unchanged record again skips the parse.
+     * A new {@code ChaiResponseSet} is returned on every call.
+     *
+     * @param input             stored value
+     * @param chaiConfiguration configuration of the provider the value was read with, or null to bypass the cache
+     * @return the response set, or null if {@code input} is empty
+     */
+    static ChaiResponseSet parseStoredValue(final String input, final ChaiConfiguration chaiConfiguration)
+            throws ChaiValidationException, ChaiOperationException
+    {
+        if (input == null || input.length() < 1) {
+            return null;
+        }
+
+        final int cacheSize = chaiConfiguration == null ? 0 : chaiConfiguration.getIntSetting(ChaiSetting.CR_CHAI_PARSE_CACHE_SIZE);
+        if (cacheSize < 1) {
+            return parseRecord(input).toResponseSet();
+        }
+
+        ParsedResponseSet parsedRecord;
+        synchronized (PARSE_CACHES) {
+            final Map<String, ParsedResponseSet> parseCache = PARSE_CACHES.get(chaiConfiguration);
+            parsedRecord = parseCache == null ? null : parseCache.get(input);
+        }
+
+        if (parsedRecord == null) {
+            parsedRecord = parseRecord(input);
+            synchronized (PARSE_CACHES) {
+                Map<String, ParsedResponseSet> parseCache = PARSE_CACHES.get(chaiConfiguration);
+                if (parseCache == null) {
+                    parseCache = new LinkedHashMap<String, ParsedResponseSet>(16, 0.75f, true);
+                    PARSE_CACHES.put(chaiConfiguration, parseCache);
+                }
+                parseCache.put(input, parsedRecord);
+                final Iterator<String> iter = parseCache.keySet().iterator();
+                while (parseCache.size() > cacheSize && iter.hasNext()) {
+                    iter.next();
+                    iter.remove();
+                }
+            }
+        }
+
+        return parsedRecord.toResponseSet();
+    }
+
+    private static ParsedResponseSet parseRecord(final String input)
+            throws ChaiValidationException, ChaiOperationException
+    {
+        if (ChaiResponseJsonCodec.isJson(input)) {
+            return ChaiResponseJsonCodec.parseRecord(input);
+        }
+        return ChaiResponseXmlParser.parseRecord(input);
+    }
+
 
 // --------------------------- CONSTRUCTORS ---------------------------
 
@@ -128,6 +258,13 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
         this.timestamp = timestamp;
     }
 
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    boolean isCaseInsensitive()
+    {
+        return caseInsensitive;
+    }
+
 // ------------------------ CANONICAL METHODS ------------------------
 
     public String toString()
@@ -177,7 +314,7 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
         for (final Challenge loopChallenge : this.crMap.keySet()) {
             final String proposedResponse = testResponses.get(loopChallenge);
 
-            final boolean correct = crMap.get(loopChallenge).testAnswer(proposedResponse);
+            final boolean correct = AnswerVerificationCache.testAnswer(crMap.get(loopChallenge), proposedResponse, verifyCacheSize, verifyCacheMaxAge);
 
             if (correct && !loopChallenge.isRequired()) {
                 correctRandoms++;
@@ -202,8 +339,9 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
         }
 
 
-        final String corAttribute = user.getChaiProvider().getChaiConfiguration().getSetting(ChaiSetting.CR_CHAI_STORAGE_ATTRIBUTE);
-        final String corRecordIdentifier = user.getChaiProvider().getChaiConfiguration().getSetting(ChaiSetting.CR_CHAI_STORAGE_RECORD_ID);
+        final ChaiConfigurationSnapshot chaiSettings = user.getChaiProvider().getChaiConfiguration().getSnapshot();
+        final String corAttribute = chaiSettings.getSetting(ChaiSetting.CR_CHAI_STORAGE_ATTRIBUTE);
+        final String corRecordIdentifier = chaiSettings.getSetting(ChaiSetting.CR_CHAI_STORAGE_RECORD_ID);
 
         try {
             final ConfigObjectRecord theCor;
@@ -214,7 +352,8 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
                 theCor = ConfigObjectRecord.createNew(user, corAttribute, corRecordIdentifier, null, null);
             }
 
-            final String attributePaylod = rsToChaiXML(this);
+            final StorageFormat storageFormat = StorageFormat.valueOf(chaiSettings.getSetting(ChaiSetting.CR_CHAI_STORAGE_FORMAT));
+            final String attributePaylod = storageFormat == StorageFormat.JSON ? ChaiResponseJsonCodec.toJson(this) : rsToChaiXML(this);
 
             theCor.updatePayload(attributePaylod);
         } catch (ChaiOperationException e) {
@@ -225,169 +364,561 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
             throw new ChaiOperationException(e.getMessage(), ChaiError.UNKNOWN);
         }
 
-        LOGGER.info("successfully wrote Chai challenge/response set for user " + user.getEntryDN());
+        LOGGER.info(new ChaiLogger.MessageSupplier() {
+            public String get()
+            {
+                return "successfully wrote Chai challenge/response set for user " + user.getEntryDN();
+            }
+        });
         this.state = STATE.WRITTEN;
 
         return true;
     }
 
+    private void applyVerifySettings(final ChaiConfiguration chaiConfiguration)
+    {
+        verifyCacheSize = chaiConfiguration.getIntSetting(ChaiSetting.CR_VERIFY_CACHE_SIZE);
+        verifyCacheMaxAge = chaiConfiguration.getIntSetting(ChaiSetting.CR_VERIFY_CACHE_MAX_AGE);
+    }
+
     static String rsToChaiXML(final ChaiResponseSet rs)
             throws ChaiValidationException, ChaiOperationException
     {
-        final Element rootElement = new Element(XML_NODE_ROOT);
-        rootElement.setAttribute(XML_ATTRIBUTE_MIN_RANDOM_REQUIRED, String.valueOf(rs.getChallengeSet().getMinRandomRequired()));
-        rootElement.setAttribute(XML_ATTRIBUTE_LOCALE, rs.getChallengeSet().getLocale().toString());
-        rootElement.setAttribute(XML_ATTRIBUTE_VERSION, VALUE_VERSION);
-        rootElement.setAttribute(XML_ATTRIBUTE_CHAI_VERSION, ChaiConstant.CHAI_API_VERSION);
+        final StringBuilder sb = new StringBuilder(1024);
+        sb.append(XML_DECLARATION);
+        sb.append('<').append(XML_NODE_ROOT);
+        appendAttribute(sb, XML_ATTRIBUTE_MIN_RANDOM_REQUIRED, String.valueOf(rs.getChallengeSet().getMinRandomRequired()));
+        appendAttribute(sb, XML_ATTRIBUTE_LOCALE, rs.getChallengeSet().getLocale().toString());
+        appendAttribute(sb, XML_ATTRIBUTE_VERSION, VALUE_VERSION);
+        appendAttribute(sb, XML_ATTRIBUTE_CHAI_VERSION, ChaiConstant.CHAI_API_VERSION);
 
         if (rs.caseInsensitive) {
-            rootElement.setAttribute(XML_ATTRIBUTE_CASE_INSENSITIVE, "true");
+            appendAttribute(sb, XML_ATTRIBUTE_CASE_INSENSITIVE, "true");
         }
 
         if (rs.csIdentifier != null) {
-            rootElement.setAttribute(XML_ATTRIBUTE_CHALLENGE_SET_IDENTIFER, rs.csIdentifier);
+            appendAttribute(sb, XML_ATTRIBUTE_CHALLENGE_SET_IDENTIFER, rs.csIdentifier);
         }
 
         if (rs.timestamp != null) {
-            rootElement.setAttribute(XML_ATTRIBUTE_TIMESTAMP, DATE_FORMATTER.format(rs.timestamp));
+            appendAttribute(sb, XML_ATTRIBUTE_TIMESTAMP, DateCodec.formatChaiTimestamp(rs.timestamp));
         }
 
+        final int rootTagLength = sb.length();
+        sb.append('>');
+
         if (rs.crMap != null) {
             for (final Challenge loopChallenge : rs.crMap.keySet()) {
                 final Answer answer = rs.crMap.get(loopChallenge);
-                final Element responseElement = challengeToXml(loopChallenge, answer, XML_NODE_RESPONSE);
-                rootElement.addContent(responseElement);
+                appendChallenge(sb, loopChallenge, answer, XML_NODE_RESPONSE);
             }
         }
 
         if (rs.helpdeskCrMap != null) {
             for (final Challenge loopChallenge : rs.helpdeskCrMap.keySet()) {
                 final Answer answer = rs.helpdeskCrMap.get(loopChallenge);
-                final Element responseElement = challengeToXml(loopChallenge, answer, XML_NODE_HELPDESK_RESPONSE);
-                rootElement.addContent(responseElement);
+                appendChallenge(sb, loopChallenge, answer, XML_NODE_HELPDESK_RESPONSE);
             }
         }
 
-
-        final Document doc = new Document(rootElement);
-        final XMLOutputter outputter = new XMLOutputter();
-        final Format format = Format.getRawFormat();
-        format.setTextMode(Format.TextMode.PRESERVE);
-        format.setLineSeparator("");
-        outputter.setFormat(format);
-        return outputter.outputString(doc);
+        if (sb.length() == rootTagLength + 1) {
+            sb.setLength(rootTagLength);
+            sb.append(" />");
+        } else {
+            sb.append("</").append(XML_NODE_ROOT).append('>');
+        }
+        return sb.toString();
     }
 
-    private static Element challengeToXml(final Challenge loopChallenge, final Answer answer, final String elementName)
+    private static void appendChallenge(final StringBuilder sb, final Challenge loopChallenge, final Answer answer, final String elementName)
             throws ChaiOperationException
     {
-        final Element responseElement = new Element(elementName);
-        responseElement.addContent(new Element(XML_NODE_CHALLENGE).addContent(new Text(loopChallenge.getChallengeText())));
-        final Element answerElement = answer.toXml();
-        responseElement.addContent(answerElement);
-        responseElement.setAttribute(XML_ATTRIBUTE_ADMIN_DEFINED, String.valueOf(loopChallenge.isAdminDefined()));
-        responseElement.setAttribute(XML_ATTRIBUTE_REQUIRED, String.valueOf(loopChallenge.isRequired()));
-        responseElement.setAttribute(XNL_ATTRIBUTE_MIN_LENGTH, String.valueOf(loopChallenge.getMinLength()));
-        responseElement.setAttribute(XNL_ATTRIBUTE_MAX_LENGTH, String.valueOf(loopChallenge.getMaxLength()));
-        return responseElement;
+        final String challengeText = loopChallenge.getChallengeText() == null ? "" : loopChallenge.getChallengeText();
+        checkCharacterData(challengeText);
+
+        sb.append('<').append(elementName);
+        appendAttribute(sb, XML_ATTRIBUTE_ADMIN_DEFINED, String.valueOf(loopChallenge.isAdminDefined()));
+        appendAttribute(sb, XML_ATTRIBUTE_REQUIRED, String.valueOf(loopChallenge.isRequired()));
+        appendAttribute(sb, XNL_ATTRIBUTE_MIN_LENGTH, String.valueOf(loopChallenge.getMinLength()));
+        appendAttribute(sb, XNL_ATTRIBUTE_MAX_LENGTH, String.valueOf(loopChallenge.getMaxLength()));
+        sb.append('>');
+        sb.append('<').append(XML_NODE_CHALLENGE).append('>');
+        appendText(sb, challengeText);
+        sb.append("</").append(XML_NODE_CHALLENGE).append('>');
+        appendElement(sb, answer.toXml());
+        sb.append("</").append(elementName).append('>');
+    }
+
+    /**
+     * Writes an element produced by {@link Answer#toXml()}.  Answer elements only ever hold attributes and text,
+     * anything else is handed to JDOM's outputter so the result is always the same as serializing the whole document.
+     */
+    private static void appendElement(final StringBuilder sb, final Element element)
+    {
+        if (!isSimpleElement(element)) {
+            final XMLOutputter outputter = new XMLOutputter();
+            final Format format = Format.getRawFormat();
+            format.setTextMode(Format.TextMode.PRESERVE);
+            format.setLineSeparator("");
+            outputter.setFormat(format);
+            sb.append(outputter.outputString(element));
+            return;
+        }
+
+        sb.append('<').append(element.getName());
+        for (final Attribute attribute : element.getAttributes()) {
+            appendAttribute(sb, attribute.getName(), attribute.getValue());
+        }
+
+        final List<Content> contentList = element.getContent();
+        if (contentList.isEmpty()) {
+            sb.append(" />");
+            return;
+        }
+
+        sb.append('>');
+        for (final Content content : contentList) {
+            if (content instanceof Element) {
+                appendElement(sb, (Element) content);
+            } else {
+                appendText(sb, ((Text) content).getText());
+            }
+        }
+        sb.append("</").append(element.getName()).append('>');
+    }
+
+    private static boolean isSimpleElement(final Element element)
+    {
+        if (element.getNamespace() != Namespace.NO_NAMESPACE || !element.getAdditionalNamespaces().isEmpty()) {
+            return false;
+        }
+
+        for (final Attribute attribute : element.getAttributes()) {
+            if (attribute.getNamespace() != Namespace.NO_NAMESPACE) {
+                return false;
+            }
+        }
+
+        for (final Content content : element.getContent()) {
+            if (content instanceof CDATA) {
+                return false;
+            } else if (content instanceof Element) {
+                if (!isSimpleElement((Element) content)) {
+                    return false;
+                }
+            } else if (!(content instanceof Text)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void appendAttribute(final StringBuilder sb, final String name, final String value)
+    {
+        checkCharacterData(value);
+        sb.append(' ').append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\t':
+                    sb.append("&#x9;");
+                    break;
+                case '\n':
+                    sb.append("&#xA;");
+                    break;
+                case '\r':
+                    sb.append("&#xD;");
+                    break;
+                default:
+                    i = appendChar(sb, value, i);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void appendText(final StringBuilder sb, final String text)
+    {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '\r':
+                    sb.append("&#xD;");
+                    break;
+                default:
+                    i = appendChar(sb, text, i);
+            }
+        }
+    }
+
+    /**
+     * Appends the character at {@code index}, writing supplementary characters as a character reference the
+     * same way JDOM does.
+     *
+     * @return the index of the last char consumed
+     */
+    private static int appendChar(final StringBuilder sb, final String value, final int index)
+    {
+        final char c = value.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+            sb.append("&#x").append(Integer.toHexString(Character.toCodePoint(c, value.charAt(index + 1)))).append(';');
+            return index + 1;
+        }
+        sb.append(c);
+        return index;
+    }
+
+    private static void checkCharacterData(final String value)
+    {
+        final String reason = Verifier.checkCharacterData(value);
+        if (reason != null) {
+            throw new IllegalDataException("the value \"" + value + "\" is not legal xml character data: " + reason);
+        }
     }
 
     static class ChaiResponseXmlParser {
+        private static final SAXParserFactory PARSER_FACTORY = makeParserFactory();
+
+        private static final ThreadLocal<SAXParser> PARSER = new ThreadLocal<SAXParser>() {
+            protected SAXParser initialValue()
+            {
+                try {
+                    return PARSER_FACTORY.newSAXParser();
+                } catch (ParserConfigurationException e) {
+                    throw new IllegalStateException("unable to create xml parser: " + e.getMessage());
+                } catch (SAXException e) {
+                    throw new IllegalStateException("unable to create xml parser: " + e.getMessage());
+                }
+            }
+        };
+
         static ChaiResponseSet parseChaiResponseSetXML(final String input)
                 throws ChaiValidationException, ChaiOperationException {
             if (input == null || input.length() < 1) {
                 return null;
             }
 
+            return parseRecord(input).toResponseSet();
+        }
+
+        static ParsedResponseSet parseRecord(final String input)
+                throws ChaiValidationException, ChaiOperationException {
             final Map<Challenge, Answer> crMap = new LinkedHashMap<Challenge, Answer>();
             final Map<Challenge, HelpdeskAnswer> helpdeskCrMap = new LinkedHashMap<Challenge,HelpdeskAnswer>();
             int minRandRequired = 0;
-            Attribute localeAttr = null;
+            String localeValue = null;
             boolean caseInsensitive = false;
             String csIdentifier = null;
             Date timestamp = null;
 
             try {
-                final SAXBuilder builder = new SAXBuilder();
-                final Document doc = builder.build(new StringReader(input));
-                final Element rootElement = doc.getRootElement();
-                minRandRequired = rootElement.getAttribute(XML_ATTRIBUTE_MIN_RANDOM_REQUIRED).getIntValue();
-                localeAttr = rootElement.getAttribute(XML_ATTRIBUTE_LOCALE);
+                final RecordElements record = readElements(input);
+                final Map<String, String> rootAttributes = record.rootAttributes;
+                minRandRequired = intValue(rootAttributes, XML_ATTRIBUTE_MIN_RANDOM_REQUIRED);
+                localeValue = rootAttributes.get(XML_ATTRIBUTE_LOCALE);
 
-                {
-                    final Attribute caseAttr = rootElement.getAttribute(XML_ATTRIBUTE_CASE_INSENSITIVE);
-                    if (caseAttr != null && caseAttr.getBooleanValue()) {
-                        caseInsensitive = true;
-                    }
-                }
 
-                {
-                    final Attribute csIdentiferAttr = rootElement.getAttribute(XML_ATTRIBUTE_CHALLENGE_SET_IDENTIFER);
-                    if (csIdentiferAttr != null) {
-                        csIdentifier = csIdentiferAttr.getValue();
-                    }
+                if (rootAttributes.containsKey(XML_ATTRIBUTE_CASE_INSENSITIVE) && booleanValue(rootAttributes, XML_ATTRIBUTE_CASE_INSENSITIVE)) {
+                    caseInsensitive = true;
                 }
 
+                csIdentifier = rootAttributes.get(XML_ATTRIBUTE_CHALLENGE_SET_IDENTIFER);
+
                 {
-                    final Attribute timeAttr = rootElement.getAttribute(XML_ATTRIBUTE_TIMESTAMP);
-                    if (timeAttr != null) {
-                        final String timeStr = timeAttr.getValue();
+                    final String timeStr = rootAttributes.get(XML_ATTRIBUTE_TIMESTAMP);
+                    if (timeStr != null) {
                         try {
-                            timestamp = DATE_FORMATTER.parse(timeStr);
+                            timestamp = DateCodec.parseChaiTimestamp(timeStr);
                         } catch (ParseException e) {
                             LOGGER.error("unexpected error attempting to parse timestamp: " + e.getMessage());
                         }
                     }
                 }
 
-                for (final Object o : rootElement.getChildren(XML_NODE_RESPONSE)) {
-                    final Element loopResponseElement = (Element) o;
+                for (final ResponseElement loopResponseElement : record.responses) {
                     final Challenge newChallenge = parseResponseElement(loopResponseElement);
-                    final Answer answer = AnswerFactory.fromXml(loopResponseElement.getChild(XML_NODE_ANSWER_VALUE),caseInsensitive,newChallenge.getChallengeText());
+                    final Answer answer = AnswerFactory.fromXml(loopResponseElement.answerElement,caseInsensitive,newChallenge.getChallengeText());
                     crMap.put(newChallenge, answer);
                 }
-                for (final Object o : rootElement.getChildren(XML_NODE_HELPDESK_RESPONSE)) {
-                    final Element loopResponseElement = (Element) o;
+                for (final ResponseElement loopResponseElement : record.helpdeskResponses) {
                     final Challenge newChallenge = parseResponseElement(loopResponseElement);
-                    final HelpdeskAnswer answer = (HelpdeskAnswer)AnswerFactory.fromXml(loopResponseElement.getChild(XML_NODE_ANSWER_VALUE),caseInsensitive,newChallenge.getChallengeText());
+                    final HelpdeskAnswer answer = (HelpdeskAnswer)AnswerFactory.fromXml(loopResponseElement.answerElement,caseInsensitive,newChallenge.getChallengeText());
                     helpdeskCrMap.put(newChallenge, answer);
                 }
-            } catch (JDOMException e) {
+            } catch (SAXException e) {
                 LOGGER.debug("error parsing stored response record: " + e.getMessage());
             } catch (IOException e) {
                 LOGGER.debug("error parsing stored response record: " + e.getMessage());
+            } catch (JDOMException e) {
+                LOGGER.debug("error parsing stored response record: " + e.getMessage());
             } catch (NullPointerException e) {
                 LOGGER.debug("error parsing stored response record: " + e.getMessage());
             }
 
             Locale challengeLocale = Locale.getDefault();
-            if (localeAttr != null) {
-                challengeLocale = new Locale(localeAttr.getValue());
+            if (localeValue != null) {
+                challengeLocale = new Locale(localeValue);
             }
 
-            return new ChaiResponseSet(
-                    crMap,
-                    helpdeskCrMap,
-                    challengeLocale,
-                    minRandRequired,
-                    STATE.READ,
-                    caseInsensitive,
-                    csIdentifier,
-                    timestamp);
+            return new ParsedResponseSet(crMap, helpdeskCrMap, challengeLocale, minRandRequired, caseInsensitive, csIdentifier, timestamp);
         }
 
-        private static Challenge parseResponseElement(final Element loopResponseElement)
+        private static Challenge parseResponseElement(final ResponseElement loopResponseElement)
                 throws DataConversionException
         {
-            final boolean required = loopResponseElement.getAttribute(XML_ATTRIBUTE_REQUIRED).getBooleanValue();
-            final boolean adminDefined = loopResponseElement.getAttribute(XML_ATTRIBUTE_ADMIN_DEFINED).getBooleanValue();
+            final boolean required = booleanValue(loopResponseElement.attributes, XML_ATTRIBUTE_REQUIRED);
+            final boolean adminDefined = booleanValue(loopResponseElement.attributes, XML_ATTRIBUTE_ADMIN_DEFINED);
 
-            final String challengeText = loopResponseElement.getChild(XML_NODE_CHALLENGE).getText();
-            final int minLength = loopResponseElement.getAttribute(XNL_ATTRIBUTE_MIN_LENGTH).getIntValue();
-            final int maxLength = loopResponseElement.getAttribute(XNL_ATTRIBUTE_MAX_LENGTH).getIntValue();
+            if (loopResponseElement.challengeText == null) {
+                throw new NullPointerException("missing " + XML_NODE_CHALLENGE + " element");
+            }
+            final String challengeText = loopResponseElement.challengeText;
+            final int minLength = intValue(loopResponseElement.attributes, XNL_ATTRIBUTE_MIN_LENGTH);
+            final int maxLength = intValue(loopResponseElement.attributes, XNL_ATTRIBUTE_MAX_LENGTH);
 
             return new ChaiChallenge(required, challengeText, minLength, maxLength, adminDefined);
         }
+
+        /**
+         * Reads the record in a single streaming pass, keeping only the root attributes, the response attributes,
+         * the challenge text and a small element for each answer.  Nothing is returned unless the whole input is
+         * well formed.
+         */
+        private static RecordElements readElements(final String input)
+                throws SAXException, IOException
+        {
+            final RecordHandler handler = new RecordHandler();
+            final SAXParser parser = PARSER.get();
+            try {
+                parser.parse(new InputSource(new StringReader(input)), handler);
+            } finally {
+                parser.reset();
+            }
+            return handler.record;
+        }
+
+        /**
+         * Same conversion as {@link Attribute#getIntValue()}.
+         */
+        private static int intValue(final Map<String, String> attributes, final String name)
+                throws DataConversionException
+        {
+            final String value = attributes.get(name);
+            if (value == null) {
+                throw new NullPointerException("missing " + name + " attribute");
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new DataConversionException(name, "int");
+            }
+        }
+
+        /**
+         * Same conversion as {@link Attribute#getBooleanValue()}.
+         */
+        private static boolean booleanValue(final Map<String, String> attributes, final String name)
+                throws DataConversionException
+        {
+            final String value = attributes.get(name);
+            if (value == null) {
+                throw new NullPointerException("missing " + name + " attribute");
+            }
+            final String trimmed = value.trim();
+            if ("true".equalsIgnoreCase(trimmed) || "on".equalsIgnoreCase(trimmed) || "1".equals(trimmed) || "yes".equalsIgnoreCase(trimmed)) {
+                return true;
+            }
+            if ("false".equalsIgnoreCase(trimmed) || "off".equalsIgnoreCase(trimmed) || "0".equals(trimmed) || "no".equalsIgnoreCase(trimmed)) {
+                return false;
+            }
+            throw new DataConversionException(name, "boolean");
+        }
+
+        private static SAXParserFactory makeParserFactory()
+        {
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+            // stored records never contain a DTD
+            setFeature(factory, "http://apache.org/xml/features/disallow-doctype-decl", true);
+            setFeature(factory, "http://xml.org/sax/features/external-general-entities", false);
+            setFeature(factory, "http://xml.org/sax/features/external-parameter-entities", false);
+            return factory;
+        }
+
+        private static void setFeature(final SAXParserFactory factory, final String feature, final boolean value)
+        {
+            try {
+                factory.setFeature(feature, value);
+            } catch (Exception e) {
+                LOGGER.debug("xml parser does not support feature " + feature + ": " + e.getMessage());
+            }
+        }
+
+        private static class RecordHandler extends DefaultHandler {
+            private final RecordElements record = new RecordElements();
+            private int depth = 0;
+            private ResponseElement currentResponse = null;
+            private StringBuilder currentText = null;
+            private boolean readingChallenge = false;
+            private int textDepth = -1;
+
+            public void startElement(final String uri, final String localName, final String qName, final Attributes attributes)
+            {
+                depth++;
+                final String name = uri == null || uri.length() < 1 ? localName : null;
+                if (depth == 1) {
+                    record.rootAttributes = readAttributes(attributes);
+                } else if (depth == 2 && XML_NODE_RESPONSE.equals(name)) {
+                    currentResponse = new ResponseElement(readAttributes(attributes));
+                    record.responses.add(currentResponse);
+                } else if (depth == 2 && XML_NODE_HELPDESK_RESPONSE.equals(name)) {
+                    currentResponse = new ResponseElement(readAttributes(attributes));
+                    record.helpdeskResponses.add(currentResponse);
+                } else if (depth == 3 && currentResponse != null) {
+                    if (XML_NODE_CHALLENGE.equals(name) && currentResponse.challengeText == null) {
+                        currentText = new StringBuilder();
+                        readingChallenge = true;
+                        textDepth = depth;
+                    } else if (XML_NODE_ANSWER_VALUE.equals(name) && currentResponse.answerElement == null) {
+                        final Element answerElement = new Element(name);
+                        for (final Map.Entry<String, String> entry : readAttributes(attributes).entrySet()) {
+                            answerElement.setAttribute(entry.getKey(), entry.getValue());
+                        }
+                        currentResponse.answerElement = answerElement;
+                        currentText = new StringBuilder();
+                        readingChallenge = false;
+                        textDepth = depth;
+                    }
+                }
+            }
+
+            public void characters(final char[] ch, final int start, final int length)
+            {
+                if (depth == textDepth) {
+                    currentText.append(ch, start, length);
+                }
+            }
+
+            public void ignorableWhitespace(final char[] ch, final int start, final int length)
+            {
+                characters(ch, start, length);
+            }
+
+            public void endElement(final String uri, final String localName, final String qName)
+            {
+                if (depth == textDepth) {
+                    if (readingChallenge) {
+                        currentResponse.challengeText = currentText.toString();
+                    } else if (currentText.length() > 0) {
+                        currentResponse.answerElement.setText(currentText.toString());
+                    }
+                    currentText = null;
+                    textDepth = -1;
+                } else if (depth == 2) {
+                    currentResponse = null;
+                }
+                depth--;
+            }
+
+            private static Map<String, String> readAttributes(final Attributes attributes)
+            {
+                final Map<String, String> values = new LinkedHashMap<String, String>();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    final String namespaceURI = attributes.getURI(i);
+                    if (namespaceURI == null || namespaceURI.length() < 1) {
+                        values.put(attributes.getLocalName(i), attributes.getValue(i));
+                    }
+                }
+                return values;
+            }
+        }
+
+        private static class RecordElements {
+            private Map<String, String> rootAttributes = Collections.emptyMap();
+            private final List<ResponseElement> responses = new ArrayList<ResponseElement>();
+            private final List<ResponseElement> helpdeskResponses = new ArrayList<ResponseElement>();
+        }
+
+        private static class ResponseElement {
+            private final Map<String, String> attributes;
+            private String challengeText;
+            private Element answerElement;
+
+            private ResponseElement(final Map<String, String> attributes)
+            {
+                this.attributes = attributes;
+            }
+        }
+    }
+
+    /**
+     * The parsed contents of a stored record.  Challenges are locked when the first response set is built
+     * from them, and answers are immutable, so both are safely shared by every response set built from the
+     * same record.
+     */
+    static class ParsedResponseSet {
+        private final Map<Challenge, Answer> crMap;
+        private final Map<Challenge, HelpdeskAnswer> helpdeskCrMap;
+        private final Locale locale;
+        private final int minRandRequired;
+        private final boolean caseInsensitive;
+        private final String csIdentifier;
+        private final Date timestamp;
+
+        ParsedResponseSet(
+                final Map<Challenge, Answer> crMap,
+                final Map<Challenge, HelpdeskAnswer> helpdeskCrMap,
+                final Locale locale,
+                final int minRandRequired,
+                final boolean caseInsensitive,
+                final String csIdentifier,
+                final Date timestamp
+        )
+        {
+            this.crMap = crMap;
+            this.helpdeskCrMap = helpdeskCrMap;
+            this.locale = locale;
+            this.minRandRequired = minRandRequired;
+            this.caseInsensitive = caseInsensitive;
+            this.csIdentifier = csIdentifier;
+            this.timestamp = timestamp;
+        }
+
+        ChaiResponseSet toResponseSet()
+                throws ChaiValidationException
+        {
+            return new ChaiResponseSet(
+                    new LinkedHashMap<Challenge, Answer>(crMap),
+                    new LinkedHashMap<Challenge, HelpdeskAnswer>(helpdeskCrMap),
+                    locale,
+                    minRandRequired,
+                    STATE.READ,
+                    caseInsensitive,
+                    csIdentifier,
+                    timestamp == null ? null : new Date(timestamp.getTime()));
+        }
     }
 
     /**
@@ -404,7 +935,7 @@ public class ChaiResponseSet extends AbstractResponseSet implements Serializable
             throws ChaiValidationException
     {
         try {
-            return ChaiResponseXmlParser.parseChaiResponseSetXML(inputXmlString);
+            return parseStoredValue(inputXmlString, null);
         } catch (ChaiOperationException e) {
             throw new ChaiValidationException(e.getMessage(),e.getErrorCode());
         }
@@ -126,8 +126,8 @@ class HashSaltAnswer implements Answer {
 
         final String casedResponse = caseInsensitive ? testResponse.toLowerCase() : testResponse;
         final String saltedTest = salt + casedResponse;
-        final String hashedTest = hashValue(saltedTest);
-        return answerHash.equalsIgnoreCase(hashedTest);
+        final byte[] hashedTest = doHashBytes(saltedTest, hashCount, formatType, version);
+        return Base64Util.encodedEquals(hashedTest, answerHash, true);
     }
 
     protected String hashValue(final String input) {
@@ -141,6 +141,17 @@ class HashSaltAnswer implements Answer {
             final VERSION version
     )
             throws IllegalStateException
+    {
+        return Base64Util.encodeToString(doHashBytes(input, hashCount, formatType, version));
+    }
+
+    private static byte[] doHashBytes(
+            final String input,
+            final int hashCount,
+            final FormatType formatType,
+            final VERSION version
+    )
+            throws IllegalStateException
     {
         final String algorithm = supportedFormats.get(formatType);
         final MessageDigest md;
@@ -154,14 +165,13 @@ class HashSaltAnswer implements Answer {
         byte[] hashedBytes = input.getBytes();
         switch (version) {
             case A:
-                hashedBytes = md.digest(hashedBytes);
-                return Base64Util.encodeBytes(hashedBytes);
+                return md.digest(hashedBytes);
 
             case B:
                 for (int i = 0; i < hashCount; i++) {
                     hashedBytes = md.digest(hashedBytes);
                 }
-                return Base64Util.encodeBytes(hashedBytes);
+                return hashedBytes;
 
             default:
                 throw new IllegalStateException("unexpected version enum in hash method");
@@ -66,18 +66,20 @@ class PKDBF2Answer implements Answer {
         }
 
         final String casedResponse = caseInsensitive ? testResponse.toLowerCase() : testResponse;
-        final String hashedTest = hashValue(casedResponse);
-        return answerHash.equalsIgnoreCase(hashedTest);
+        return Base64Util.encodedEquals(hashBytes(casedResponse), answerHash, true);
     }
 
     protected String hashValue(final String input) {
+        return Base64Util.encodeToString(hashBytes(input));
+    }
+
+    private byte[] hashBytes(final String input) {
         try {
             final char[] chars = input.toCharArray();
             final byte[] saltBytes = salt.getBytes("UTF-8");
             final PBEKeySpec spec = new PBEKeySpec(chars, saltBytes, hashCount, 64 * 8);
             final SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-            final byte[] hash = skf.generateSecret(spec).getEncoded();
-            return Base64Util.encodeBytes(hash);
+            return skf.generateSecret(spec).getEncoded();
         } catch (Exception e) {
             throw new IllegalStateException("unable to perform PBKDF2 hashing operation: " + e.getMessage());
         }
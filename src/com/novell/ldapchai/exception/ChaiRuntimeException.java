@@ -30,4 +30,8 @@ public class ChaiRuntimeException extends RuntimeException {
     public ChaiRuntimeException(String message) {
         super(message);
     }
+
+    public ChaiRuntimeException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -21,11 +21,13 @@ package com.novell.ldapchai.impl;
 
 import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.ChaiEntryModifier;
 import com.novell.ldapchai.ChaiFactory;
 import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.edir.entry.EdirEntries;
+import com.novell.ldapchai.provider.ChaiModification;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.util.ChaiLogger;
 import com.novell.ldapchai.util.SearchHelper;
@@ -88,6 +90,12 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
      */
     protected ChaiProvider chaiProvider;
 
+    /**
+     * Attribute values read by {@link #prefetch(java.util.Set)}, keyed case insensitively by attribute name, or null
+     * if there is no snapshot.  Prefetched attributes without a value map to an empty list.
+     */
+    private volatile Map<String, List<String>> snapshot;
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
     /**
@@ -158,18 +166,21 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public final void addAttribute(final String attributeName, final String attributeValue)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.writeStringAttribute(entryDN, attributeName, Collections.singleton(attributeValue), false);
     }
 
     public final void addAttribute(final String attributeName, final Set<String> attributeValues)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.writeStringAttribute(entryDN, attributeName, attributeValues, false);
     }
 
     public final void addAttribute(final String attributeName, final String... attributeValues)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.writeStringAttribute(entryDN, attributeName, new HashSet<String>(Arrays.asList(attributeValues)), false);
     }
 
@@ -182,6 +193,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public final void deleteAttribute(final String attributeName, final String attributeValue)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.deleteStringAttributeValue(this.entryDN, attributeName, attributeValue);
     }
 
@@ -226,6 +238,84 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
         return parentDN.toString();
     }
 
+    public final void prefetch(final Set<String> attributeNames)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        snapshot = null;
+        if (attributeNames == null || attributeNames.isEmpty()) {
+            return;
+        }
+
+        final SearchHelper searchHelper = new SearchHelper();
+        searchHelper.setSearchScope(ChaiProvider.SEARCH_SCOPE.BASE);
+        searchHelper.setFilter(SearchHelper.DEFAULT_FILTER);
+        searchHelper.setAttributes(attributeNames);
+
+        final Map<String, Map<String, List<String>>> results = chaiProvider.searchMultiValues(entryDN, searchHelper);
+        if (results == null || results.isEmpty()) {
+            throw new ChaiOperationException("prefetch of " + entryDN + " returned no entry", ChaiError.NO_SUCH_ENTRY);
+        }
+
+        final Map<String, List<String>> newSnapshot = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        for (final String attributeName : attributeNames) {
+            newSnapshot.put(attributeName, Collections.<String>emptyList());
+        }
+        final Map<String, List<String>> entryValues = results.values().iterator().next();
+        for (final Map.Entry<String, List<String>> entry : entryValues.entrySet()) {
+            if (newSnapshot.containsKey(entry.getKey()) && entry.getValue() != null) {
+                newSnapshot.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<String>(entry.getValue())));
+            }
+        }
+        snapshot = newSnapshot;
+    }
+
+    public final void clearSnapshot()
+    {
+        snapshot = null;
+    }
+
+    /**
+     * Prefetch attributes for a method that reads several of them, unless a snapshot has already been taken (by the
+     * caller, or by an enclosing method).  Use as:
+     * <pre>
+     *   final boolean prefetched = prefetchIfAbsent(attributeNames);
+     *   try {
+     *       ...
+     *   } finally {
+     *       if (prefetched) {
+     *           clearSnapshot();
+     *       }
+     *   }
+     * </pre>
+     *
+     * @param attributeNames names of the attributes to read
+     * @return true if this call took the snapshot, and so must clear it
+     * @throws ChaiOperationException   If there is an error during the operation
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    protected final boolean prefetchIfAbsent(final Set<String> attributeNames)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if (snapshot != null || attributeNames == null || attributeNames.isEmpty()) {
+            return false;
+        }
+        prefetch(attributeNames);
+        return true;
+    }
+
+    /**
+     * @param attributeName an attribute name
+     * @return the prefetched values of the attribute, or null if the attribute is not in the snapshot
+     */
+    private List<String> readSnapshot(final String attributeName)
+    {
+        final Map<String, List<String>> currentSnapshot = snapshot;
+        if (currentSnapshot == null || attributeName == null) {
+            return null;
+        }
+        return currentSnapshot.get(attributeName);
+    }
+
     public final boolean isValid()
     {
         try {
@@ -287,6 +377,10 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public final Set<String> readMultiStringAttribute(final String attributeName)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        final List<String> prefetchedValues = readSnapshot(attributeName);
+        if (prefetchedValues != null) {
+            return new HashSet<String>(prefetchedValues);
+        }
         return chaiProvider.readMultiStringAttribute(entryDN, attributeName);
     }
 
@@ -329,6 +423,11 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public final String readStringAttribute(final String attributeName)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        final List<String> prefetchedValues = readSnapshot(attributeName);
+        if (prefetchedValues != null) {
+            return prefetchedValues.isEmpty() ? null : prefetchedValues.get(0);
+        }
+
         // Using the LDAP Helper, get the attribute for the selected attribute name.
         return chaiProvider.readStringAttribute(entryDN, attributeName);
     }
@@ -336,12 +435,25 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public final Map<String,String> readStringAttributes(final Set<String> attributes)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        final Map<String, List<String>> currentSnapshot = snapshot;
+        if (currentSnapshot != null && attributes != null && !attributes.isEmpty() && currentSnapshot.keySet().containsAll(attributes)) {
+            final Map<String,String> returnMap = new LinkedHashMap<String,String>();
+            for (final String attributeName : attributes) {
+                final List<String> prefetchedValues = currentSnapshot.get(attributeName);
+                if (!prefetchedValues.isEmpty()) {
+                    returnMap.put(attributeName, prefetchedValues.get(0));
+                }
+            }
+            return returnMap;
+        }
+
         return chaiProvider.readStringAttributes(this.entryDN, attributes);
     }
 
     public final void replaceAttribute(final String attributeName, final String oldValue, final String newValue)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.replaceStringAttribute(this.entryDN, attributeName, oldValue, newValue);
     }
 
@@ -371,18 +483,33 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public final void writeStringAttribute(final String attributeName, final String attributeValue)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.writeStringAttribute(this.entryDN, attributeName, attributeValue == null ? null : Collections.<String>singleton(attributeValue), true);
     }
 
     public final void writeStringAttributes(final Map<String,String> attributeValueProps)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.writeStringAttributes(this.entryDN, attributeValueProps, true);
     }
 
+    public final void modify(final List<ChaiModification> modifications)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        clearSnapshot();
+        chaiProvider.modify(this.entryDN, modifications);
+    }
+
+    public ChaiEntryModifier modifier()
+    {
+        return new ChaiEntryModifier(this);
+    }
+
     public final void writeStringAttribute(final String attributeName, final Set<String> attributeValues)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         // Using the LDAP Helper, set the attributes.
         chaiProvider.writeStringAttribute(this.entryDN, attributeName, attributeValues, true);
     }
@@ -390,6 +517,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public void writeStringAttribute(final String attributeName, final String... attributeValues)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         // Using the LDAP Helper, set the attributes.
         chaiProvider.writeStringAttribute(this.entryDN, attributeName, attributeValues == null ? null : new HashSet<String>(Arrays.asList(attributeValues)), true);
     }
@@ -397,6 +525,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public void writeBinaryAttribute(final String attributeName, final byte[]... attributeValues)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         // Using the LDAP Helper, set the attributes.
         chaiProvider.writeBinaryAttribute(this.entryDN, attributeName, attributeValues, true);
     }
@@ -404,6 +533,7 @@ public abstract class AbstractChaiEntry implements ChaiEntry {
     public void replaceBinaryAttribute(final String attributeName, final byte[] oldValue, final byte[] newValue)
             throws ChaiOperationException, ChaiUnavailableException
     {
+        clearSnapshot();
         chaiProvider.replaceBinaryAttribute(this.entryDN, attributeName, oldValue, newValue);
     }
 
@@ -29,6 +29,7 @@ import com.novell.ldapchai.provider.ChaiProvider;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -54,19 +55,27 @@ public abstract class AbstractChaiGroup extends AbstractChaiEntry implements Cha
     public Set<ChaiUser> getMembers()
             throws ChaiOperationException, ChaiUnavailableException
     {
-        // Search for the User DN object.
-        final Set<String> memberDNs = this.readMultiStringAttribute(ChaiConstant.ATTR_LDAP_MEMBER);
+        final Set<ChaiUser> returnSet = new HashSet<ChaiUser>();
 
-        // Search for the User DN object.
-        final Set<ChaiUser> returnSet = new HashSet<ChaiUser>(memberDNs.size());
-
-        for (final String userDN : memberDNs) {
+        for (final Iterator<String> memberDNs = this.iterateMemberDNs(); memberDNs.hasNext(); ) {
             // Create the ChaiUserImpl object and add it to the ArrayList.
-            returnSet.add(ChaiFactory.createChaiUser(userDN, this.getChaiProvider()));
+            returnSet.add(ChaiFactory.createChaiUser(memberDNs.next(), this.getChaiProvider()));
         }
         return Collections.unmodifiableSet(returnSet);
     }
 
+    public Iterator<String> iterateMemberDNs()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return Collections.unmodifiableSet(this.readMultiStringAttribute(ChaiConstant.ATTR_LDAP_MEMBER)).iterator();
+    }
+
+    public boolean isMember(final String memberDN)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return this.compareStringAttribute(ChaiConstant.ATTR_LDAP_MEMBER, memberDN);
+    }
+
     public String readGroupName()
             throws ChaiOperationException, ChaiUnavailableException
     {
@@ -24,11 +24,16 @@ import com.novell.ldapchai.exception.ChaiErrors;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiPasswordPolicyException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.exception.ChaiError;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.util.PasswordRuleChecker;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -165,6 +170,11 @@ public abstract class AbstractChaiUser extends AbstractChaiEntry implements Chai
         return null;
     }
 
+    public Set<String> getStatusAttributes()
+    {
+        return Collections.singleton(ATTR_LOGIN_DISABLED);
+    }
+
     public boolean isPasswordExpired() throws ChaiUnavailableException, ChaiOperationException {
         return false;
     }
@@ -188,6 +198,69 @@ public abstract class AbstractChaiUser extends AbstractChaiEntry implements Chai
     public void unlock() throws ChaiOperationException, ChaiUnavailableException {
     }
 
+    /**
+     * Test a password against the rules of a password policy without modifying the directory.  The values of the
+     * policy's disallowed attributes are read from this user, all other rules are evaluated locally
+     * by a {@link PasswordRuleChecker}.
+     *
+     * @param passwordPolicy the policy to test against, typically the result of {@link #getPasswordPolicy()}.  If null, the password is not tested.
+     * @param password       the password to test
+     * @return true if the password meets the policy's rules
+     * @throws ChaiPasswordPolicyException for the first violated rule
+     * @throws ChaiUnavailableException    If the directory server(s) are unavailable
+     */
+    protected boolean testPasswordRules(final ChaiPasswordPolicy passwordPolicy, final String password)
+            throws ChaiUnavailableException, ChaiPasswordPolicyException
+    {
+        if (passwordPolicy == null) {
+            return true;
+        }
+
+        final PasswordRuleChecker ruleChecker = new PasswordRuleChecker(passwordPolicy);
+        final Map<String, String> attributeValues = readPasswordRuleAttributes(ruleChecker.getDisallowedAttributes());
+        return checkPasswordRuleErrors(ruleChecker.check(password, attributeValues));
+    }
+
+    /**
+     * Read the values of the attributes that a password policy does not allow in the password.
+     *
+     * @param attributeNames names of the attributes to read
+     * @return the attribute values, or null if there are no attributes to read or they can not be read, in which
+     *         case the rule should not be evaluated
+     * @throws ChaiUnavailableException If the directory server(s) are unavailable
+     */
+    protected Map<String, String> readPasswordRuleAttributes(final Collection<String> attributeNames)
+            throws ChaiUnavailableException
+    {
+        if (attributeNames == null || attributeNames.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return this.readStringAttributes(new HashSet<String>(attributeNames));
+        } catch (ChaiOperationException e) {
+            LOGGER.debug("unable to read disallowed attribute values while testing password policy: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Report the result of testing a password against locally evaluated policy rules.
+     *
+     * @param errors the rule violations, in the order they were detected
+     * @return true if there are no violations
+     * @throws ChaiPasswordPolicyException for the first violated rule
+     */
+    protected static boolean checkPasswordRuleErrors(final List<ChaiError> errors)
+            throws ChaiPasswordPolicyException
+    {
+        if (errors != null && !errors.isEmpty()) {
+            final ChaiError firstError = errors.get(0);
+            throw new ChaiPasswordPolicyException("password does not meet policy rule " + firstError, firstError);
+        }
+        return true;
+    }
+
     public boolean isLocked() throws ChaiOperationException, ChaiUnavailableException {
         return false;
     }
@@ -22,24 +22,13 @@ package com.novell.ldapchai.impl.ad.entry;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.util.internal.DateCodec;
 
 import java.math.BigInteger;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.TimeZone;
 
 public class ADEntries {
 
-    final static long AD_EPOCH_OFFSET_MS;
-
-    static {
-        final Calendar msEpochCalender = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
-        msEpochCalender.clear();
-        msEpochCalender.set(1601, 0, 1, 0, 0);
-        AD_EPOCH_OFFSET_MS = msEpochCalender.getTime().getTime();
-    }
-
     private ADEntries() {
     }
 
@@ -52,28 +41,12 @@ public class ADEntries {
      */
     public static String convertDateToWinEpoch(final Date date)
     {
-        if (date == null) {
-            throw new NullPointerException("date must be non-null");
-        }
-
-        final long inputAsMs = date.getTime();
-        final long inputAsADMs = inputAsMs - AD_EPOCH_OFFSET_MS;
-        final long inputAsADNs = inputAsADMs * 10000;
-
-        return String.valueOf(inputAsADNs);
+        return DateCodec.formatWindowsFileTime(date);
     }
 
     public static Date convertWinEpochToDate(final String dateString)
     {
-        if (dateString == null) {
-            throw new NullPointerException("dateString must be non-null");
-        }
-
-        final long timestampAsNs = Long.parseLong(dateString);
-        final long timestampAsMs = timestampAsNs / 10000;
-        final long timestampAsJavaMs = timestampAsMs + AD_EPOCH_OFFSET_MS;
-
-        return new Date(timestampAsJavaMs);
+        return DateCodec.parseWindowsFileTime(dateString);
     }
 
     static Date readDateAttribute(final ChaiEntry chaiEntry, final String attributeName) throws ChaiUnavailableException, ChaiOperationException {
@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.impl.ad.entry;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiGroup;
 import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
@@ -26,6 +27,7 @@ import com.novell.ldapchai.impl.AbstractChaiGroup;
 import com.novell.ldapchai.provider.ChaiProvider;
 
 import java.util.Date;
+import java.util.Iterator;
 
 class GroupImpl extends AbstractChaiGroup implements Group, ChaiGroup {
     public GroupImpl(final String groupDN, final ChaiProvider chaiProvider) {
@@ -41,4 +43,13 @@ class GroupImpl extends AbstractChaiGroup implements Group, ChaiGroup {
         return ADEntries.readGUID(this);
     }
 
+    /**
+     * Iterates the membership using ranged retrieval, so groups larger than the server's
+     * MaxValRange (1500 values by default) are returned completely.
+     */
+    @Override
+    public Iterator<String> iterateMemberDNs() throws ChaiOperationException, ChaiUnavailableException {
+        return new RangedValueIterator(this, ChaiConstant.ATTR_LDAP_MEMBER);
+    }
+
 }
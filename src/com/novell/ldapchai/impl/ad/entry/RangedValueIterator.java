@@ -0,0 +1,134 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl.ad.entry;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.exception.ChaiException;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiRuntimeException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.util.SearchHelper;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the values of a multi-valued attribute using Active Directory ranged retrieval.  Each page is
+ * requested as {@code attribute;range=<start>-*}, and the server replies with the range it actually returned,
+ * such as {@code member;range=0-1499}, or {@code member;range=1500-*} for the final page.
+ *
+ * @author Jason D. Rivard
+ */
+class RangedValueIterator implements Iterator<String> {
+// ------------------------------ FIELDS ------------------------------
+
+    private final ChaiEntry chaiEntry;
+    private final String attributeName;
+
+    private Iterator<String> currentPage = Collections.<String>emptyList().iterator();
+    private int nextStart = 0;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    RangedValueIterator(final ChaiEntry chaiEntry, final String attributeName)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        this.chaiEntry = chaiEntry;
+        this.attributeName = attributeName;
+        readNextPage();
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface Iterator ---------------------
+
+    public boolean hasNext()
+    {
+        while (!currentPage.hasNext() && nextStart >= 0) {
+            try {
+                readNextPage();
+            } catch (ChaiException e) {
+                throw new ChaiRuntimeException("error reading range " + nextStart + "-* of " + attributeName + " from " + chaiEntry.getEntryDN() + ": " + e.getMessage(), e);
+            }
+        }
+        return currentPage.hasNext();
+    }
+
+    public String next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentPage.next();
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException("remove not supported");
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private void readNextPage()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final SearchHelper searchHelper = new SearchHelper();
+        searchHelper.setFilter(SearchHelper.DEFAULT_FILTER);
+        searchHelper.setSearchScope(ChaiProvider.SEARCH_SCOPE.BASE);
+        searchHelper.setAttributes(attributeName + ";range=" + nextStart + "-*");
+
+        final Map<String, Map<String, List<String>>> results = chaiEntry.getChaiProvider().searchMultiValues(chaiEntry.getEntryDN(), searchHelper);
+
+        // the search is base scoped, so there is at most one result; its key may not exactly match the entryDN.
+        final Map<String, List<String>> entryValues = results.isEmpty() ? null : results.values().iterator().next();
+
+        final int requestedStart = nextStart;
+        nextStart = -1;
+        currentPage = Collections.<String>emptyList().iterator();
+
+        if (entryValues == null) {
+            return;
+        }
+
+        final String rangePrefix = attributeName.toLowerCase() + ";range=";
+        for (final String returnedName : entryValues.keySet()) {
+            final String lowerName = returnedName.toLowerCase();
+            if (lowerName.startsWith(rangePrefix)) {
+                currentPage = entryValues.get(returnedName).iterator();
+                final String range = lowerName.substring(rangePrefix.length());
+                final String rangeEnd = range.substring(range.indexOf('-') + 1);
+                if (!"*".equals(rangeEnd)) {
+                    final int end = Integer.parseInt(rangeEnd);
+                    nextStart = end >= requestedStart ? end + 1 : -1;
+                }
+                return;
+            } else if (lowerName.equals(attributeName.toLowerCase())) {
+                // server returned all values without ranging
+                currentPage = entryValues.get(returnedName).iterator();
+                return;
+            }
+        }
+    }
+}
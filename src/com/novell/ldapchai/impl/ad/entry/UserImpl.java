@@ -42,6 +42,14 @@ class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser {
     private static final int COMPUTED_ACCOUNT_CONTROL_UC_PASSWORD_EXPIRED = 0x800000;
     private static final int ADS_UF_DONT_EXPIRE_PASSWD = 0x10000;
 
+    private static final Set<String> STATUS_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "msDS-User-Account-Control-Computed",
+            "lockoutTime",
+            "pwdLastSet",
+            "userAccountControl",
+            ATTR_LAST_LOGIN
+    )));
+
     UserImpl(final String userDN, final ChaiProvider chaiProvider)
     {
         super(userDN, chaiProvider);
@@ -51,6 +59,11 @@ class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser {
         theGroup.addAttribute("member",this.getEntryDN());
     }
 
+    public Set<String> getStatusAttributes()
+    {
+        return STATUS_ATTRIBUTES;
+    }
+
     public ChaiPasswordPolicy getPasswordPolicy() throws ChaiUnavailableException, ChaiOperationException {
 
         final Map<String, String> policyMap = new LinkedHashMap<String, String>();
@@ -95,7 +108,14 @@ class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser {
     }
 
     public boolean testPasswordPolicy(String testPassword) throws ChaiUnavailableException, ChaiPasswordPolicyException {
-        return false;
+        final ChaiPasswordPolicy passwordPolicy;
+        try {
+            passwordPolicy = this.getPasswordPolicy();
+        } catch (ChaiOperationException e) {
+            LOGGER.debug("unexpected error while reading password policy for " + this.getEntryDN() + ": " + e.getMessage());
+            return true;
+        }
+        return testPasswordRules(passwordPolicy, testPassword);
     }
 
     public void unlock()
@@ -175,6 +195,19 @@ class UserImpl extends AbstractChaiUser implements User, Top, ChaiUser {
 
     public boolean isLocked()
             throws ChaiOperationException, ChaiUnavailableException
+    {
+        final boolean prefetched = prefetchIfAbsent(STATUS_ATTRIBUTES);
+        try {
+            return readLockedStatus();
+        } finally {
+            if (prefetched) {
+                clearSnapshot();
+            }
+        }
+    }
+
+    private boolean readLockedStatus()
+            throws ChaiOperationException, ChaiUnavailableException
     {
         // modern versions of ad have a (somewhat) sane way of checking account lockout; heaven forbid a boolean attribute.
         final String computedBit = readStringAttribute("msDS-User-Account-Control-Computed");
@@ -26,9 +26,19 @@ import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiUser;
 import com.novell.ldapchai.provider.ChaiProvider;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 class DirectoryServer389User extends AbstractChaiUser implements ChaiUser {
+    private static final Set<String> STATUS_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            ATTR_PASSWORD_EXPIRE_TIME,
+            ATTR_LOGIN_DISABLED,
+            "pwdLockout"
+    )));
+
     public DirectoryServer389User(final String userDN, final ChaiProvider chaiProvider) {
         super(userDN, chaiProvider);
     }
@@ -55,6 +65,12 @@ class DirectoryServer389User extends AbstractChaiUser implements ChaiUser {
         }
     }
 
+    @Override
+    public Set<String> getStatusAttributes()
+    {
+        return STATUS_ATTRIBUTES;
+    }
+
     @Override
     public Date readPasswordExpirationDate() throws ChaiUnavailableException, ChaiOperationException {
         return readDateAttribute(ATTR_PASSWORD_EXPIRE_TIME);
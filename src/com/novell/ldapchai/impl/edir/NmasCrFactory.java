@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.impl.edir;
 
+import com.novell.ldapchai.ChaiConstant;
 import com.novell.ldapchai.ChaiEntry;
 import com.novell.ldapchai.ChaiFactory;
 import com.novell.ldapchai.ChaiPasswordPolicy;
@@ -33,6 +34,10 @@ import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.exception.ChaiValidationException;
 import com.novell.ldapchai.impl.edir.entry.NspmPasswordPolicy;
 import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.DirectoryChangeEvent;
+import com.novell.ldapchai.provider.DirectoryChangeFeed;
+import com.novell.ldapchai.provider.DirectoryChangeListener;
 import com.novell.ldapchai.util.ChaiLogger;
 import com.novell.ldapchai.util.StringHelper;
 import com.novell.security.nmas.jndi.ldap.ext.DeleteLoginConfigRequest;
@@ -42,11 +47,42 @@ import org.jdom2.JDOMException;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NmasCrFactory {
 
     final static private ChaiLogger LOGGER = ChaiLogger.getLogger(NmasCrFactory.class);
 
+    private static final String ATTR_REQUIRED_QUESTIONS = "nsimRequiredQuestions";
+    private static final String ATTR_RANDOM_QUESTIONS = "nsimRandomQuestions";
+    private static final String ATTR_NUMBER_RANDOM_QUESTIONS = "nsimNumberRandomQuestions";
+
+    /**
+     * Upper bound on the number of cached challenge sets, the cache is simply cleared when it is reached.
+     */
+    private static final int MAX_CACHED_CHALLENGE_SETS = 256;
+
+    private static final Map<String, CachedChallengeSet> CHALLENGE_SET_CACHE = new ConcurrentHashMap<String, CachedChallengeSet>();
+
+    static {
+        // cache keys are bindURLs|challengeSetDN|locale|identifier
+        DirectoryChangeFeed.addGlobalListener(new DirectoryChangeListener() {
+            public void directoryChanged(final DirectoryChangeEvent event)
+            {
+                final String prefix = event.getBindURLs() + "|";
+                for (final Iterator<String> iter = CHALLENGE_SET_CACHE.keySet().iterator(); iter.hasNext();) {
+                    final String cacheKey = iter.next();
+                    if (cacheKey.startsWith(prefix)) {
+                        final int dnEnd = cacheKey.indexOf('|', prefix.length());
+                        if (event.affectsEntry(cacheKey.substring(prefix.length(), dnEnd == -1 ? cacheKey.length() : dnEnd))) {
+                            iter.remove();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
 
     private static ChallengeSet readNmasAssignedChallengeSetPolicy(
             final ChaiProvider provider,
@@ -61,13 +97,57 @@ public class NmasCrFactory {
             return null;
         }
 
-        final List<Challenge> challenges = new ArrayList<Challenge>();
+        final int maxAge = provider.getChaiConfiguration().getIntSetting(ChaiSetting.EDIRECTORY_CHALLENGE_SET_CACHE_MAX_AGE);
+        if (maxAge < 0) {
+            final ChaiEntry csSetEntry = ChaiFactory.createChaiEntry(challengeSetDN, provider);
+            final Set<String> attributes = new HashSet<String>(Arrays.asList(ATTR_REQUIRED_QUESTIONS, ATTR_RANDOM_QUESTIONS, ATTR_NUMBER_RANDOM_QUESTIONS));
+            return parseChallengeSet(csSetEntry.readStringAttributes(attributes), locale, identifer);
+        }
+
+        final String cacheKey = provider.getChaiConfiguration().getSetting(ChaiSetting.BIND_URLS)
+                + "|" + challengeSetDN.toLowerCase()
+                + "|" + (locale == null ? "" : locale.toString())
+                + "|" + (identifer == null ? "" : identifer);
+        final CachedChallengeSet cachedSet = CHALLENGE_SET_CACHE.get(cacheKey);
+
+        if (cachedSet != null && System.currentTimeMillis() - cachedSet.validatedTime < maxAge) {
+            return cachedSet.challengeSet;
+        }
+
         final ChaiEntry csSetEntry = ChaiFactory.createChaiEntry(challengeSetDN, provider);
 
-        final Map<String,String> allValues = csSetEntry.readStringAttributes(Collections.<String>emptySet());
+        // a cached set only needs the (small) modify timestamp to be revalidated.
+        if (cachedSet != null && cachedSet.modifyTimestamp != null) {
+            final String modifyTimestamp = csSetEntry.readStringAttribute(ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP);
+            if (cachedSet.modifyTimestamp.equals(modifyTimestamp)) {
+                CHALLENGE_SET_CACHE.put(cacheKey, new CachedChallengeSet(cachedSet.challengeSet, modifyTimestamp));
+                return cachedSet.challengeSet;
+            }
+        }
+
+        final Set<String> attributes = new HashSet<String>(Arrays.asList(ATTR_REQUIRED_QUESTIONS, ATTR_RANDOM_QUESTIONS, ATTR_NUMBER_RANDOM_QUESTIONS, ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP));
+        final Map<String,String> values = csSetEntry.readStringAttributes(attributes);
+        final ChaiChallengeSet challengeSet = parseChallengeSet(values, locale, identifer);
+        challengeSet.lock();
+
+        if (CHALLENGE_SET_CACHE.size() >= MAX_CACHED_CHALLENGE_SETS) {
+            CHALLENGE_SET_CACHE.clear();
+        }
+        CHALLENGE_SET_CACHE.put(cacheKey, new CachedChallengeSet(challengeSet, values.get(ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP)));
+        return challengeSet;
+    }
+
+    private static ChaiChallengeSet parseChallengeSet(
+            final Map<String,String> allValues,
+            final Locale locale,
+            final String identifer
+    )
+            throws ChaiValidationException
+    {
+        final List<Challenge> challenges = new ArrayList<Challenge>();
 
-        final String requiredQuestions = allValues.get("nsimRequiredQuestions");
-        final String randomQuestions = allValues.get("nsimRandomQuestions");
+        final String requiredQuestions = allValues.get(ATTR_REQUIRED_QUESTIONS);
+        final String randomQuestions = allValues.get(ATTR_RANDOM_QUESTIONS);
 
         try {
             if (requiredQuestions != null && requiredQuestions.length() > 0) {
@@ -82,7 +162,7 @@ public class NmasCrFactory {
             LOGGER.debug(e);
         }
 
-        final int minRandQuestions = StringHelper.convertStrToInt(allValues.get("nsimNumberRandomQuestions"), 0);
+        final int minRandQuestions = StringHelper.convertStrToInt(allValues.get(ATTR_NUMBER_RANDOM_QUESTIONS), 0);
 
         return new ChaiChallengeSet(challenges, minRandQuestions, locale, identifer);
     }
@@ -100,7 +180,9 @@ public class NmasCrFactory {
      * @param passwordPolicy the policy to examine to find a challenge set.
      * @param locale         desired retreival locale.  If the stored ChallengeSet is internationalized,
      *                       the appropriate localized strings will be returned.
-     * @return A valid ChallengeSet if found, otherwise null.
+     * @return A valid ChallengeSet if found, otherwise null.  Unless caching is disabled using
+     *         {@link com.novell.ldapchai.provider.ChaiSetting#EDIRECTORY_CHALLENGE_SET_CACHE_MAX_AGE}, the returned
+     *         set is locked and shared with other callers.
      * @throws ChaiOperationException   If there is an error during the operation
      * @throws ChaiUnavailableException If the directory server(s) are unavailable
      * @throws ChaiValidationException  when there is a logical problem with the challenge set data, such as more randoms required then exist
@@ -220,4 +302,16 @@ public class NmasCrFactory {
                 csIdentifier
         );
     }
+
+    private static class CachedChallengeSet {
+        private final ChaiChallengeSet challengeSet;
+        private final String modifyTimestamp;
+        private final long validatedTime = System.currentTimeMillis();
+
+        private CachedChallengeSet(final ChaiChallengeSet challengeSet, final String modifyTimestamp)
+        {
+            this.challengeSet = challengeSet;
+            this.modifyTimestamp = modifyTimestamp;
+        }
+    }
 }
@@ -30,12 +30,12 @@ import com.novell.ldapchai.provider.ChaiSetting;
 import com.novell.ldapchai.util.ChaiLogger;
 import com.novell.ldapchai.util.DefaultChaiPasswordPolicy;
 import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.DateCodec;
 import com.novell.security.nmas.jndi.ldap.ext.GetPwdPolicyInfoRequest;
 import com.novell.security.nmas.jndi.ldap.ext.GetPwdPolicyInfoResponse;
 
 import javax.naming.ldap.ExtendedResponse;
 import java.math.BigInteger;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -62,16 +62,11 @@ public class EdirEntries {
      *
      * @param date The Date to be converted
      * @return A string formated such as "199412161032Z".
+     * @see DateCodec#formatGeneralizedTime(java.util.Date)
      */
     public static String convertDateToZulu(final Date date)
     {
-        if (date == null) {
-            throw new NullPointerException();
-        }
-
-        final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyyMMddHHmmss'Z'");
-        timeFormat.setTimeZone(TimeZone.getTimeZone("Zulu"));
-        return timeFormat.format(date);
+        return DateCodec.formatGeneralizedTime(date);
     }
 
     static boolean convertStrToBoolean(final String string)
@@ -102,32 +97,11 @@ public class EdirEntries {
      * @param dateString a date string in the format of "yyyyMMddHHmmss'Z'", for example "199412161032Z"
      * @return A Date object representing the string date
      * @throws IllegalArgumentException if dateString is incorrectly formatted
+     * @see DateCodec#parseGeneralizedTime(String)
      */
     public static Date convertZuluToDate(final String dateString)
     {
-        if (dateString == null) {
-            throw new NullPointerException();
-        }
-
-        if (dateString.length() < 15) {
-            throw new IllegalArgumentException("zulu date too short");
-        }
-
-        if (!"Z".equalsIgnoreCase(String.valueOf(dateString.charAt(14)))) {
-            throw new IllegalArgumentException("zulu date must end in 'Z'");
-        }
-
-        // Zulu TimeZone is same as GMT or UTC
-        final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Zulu"));
-
-        cal.set(Calendar.YEAR, Integer.parseInt(dateString.substring(0, 4)));
-        cal.set(Calendar.MONTH, Integer.parseInt(dateString.substring(4, 6)) - 1);
-        cal.set(Calendar.DATE, Integer.parseInt(dateString.substring(6, 8)));
-        cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(dateString.substring(8, 10)));
-        cal.set(Calendar.MINUTE, Integer.parseInt(dateString.substring(10, 12)));
-        cal.set(Calendar.SECOND, Integer.parseInt(dateString.substring(12, 14)));
-
-        return cal.getTime();
+        return DateCodec.parseGeneralizedTime(dateString);
     }
 
     /**
@@ -34,6 +34,16 @@ import javax.naming.ldap.ExtendedResponse;
 import java.util.*;
 
 class InetOrgPersonImpl extends AbstractChaiUser implements InetOrgPerson, ChaiUser {
+    private static final Set<String> STATUS_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            ChaiConstant.ATTR_LDAP_LOGIN_GRACE_LIMIT,
+            ChaiConstant.ATTR_LDAP_LOGIN_GRACE_REMAINING,
+            ATTR_PASSWORD_EXPIRE_TIME,
+            ATTR_LOCKED_BY_INTRUDER,
+            ATTR_LOGIN_DISABLED,
+            ATTR_LAST_LOGIN,
+            "pwdChangedTime"
+    )));
+
     public String getLdapObjectClassName()
     {
         return InetOrgPerson.OBJECT_CLASS_VALUE;
@@ -50,6 +60,11 @@ class InetOrgPersonImpl extends AbstractChaiUser implements InetOrgPerson, ChaiU
         return EdirEntries.readPasswordPolicy(this);
     }
 
+    public Set<String> getStatusAttributes()
+    {
+        return STATUS_ATTRIBUTES;
+    }
+
 
     public boolean testPasswordPolicy(final String password)
             throws ChaiUnavailableException, ChaiPasswordPolicyException
@@ -261,13 +276,20 @@ class InetOrgPersonImpl extends AbstractChaiUser implements InetOrgPerson, ChaiU
     }
 
     public Date readPasswordExpirationDate() throws ChaiUnavailableException, ChaiOperationException {
-        Date returnDate = readDateAttribute(ATTR_PASSWORD_EXPIRE_TIME);
-        if (returnDate == null) {
-            if (isPasswordExpired()) {
-                returnDate = new Date();
+        final boolean prefetched = prefetchIfAbsent(STATUS_ATTRIBUTES);
+        try {
+            Date returnDate = readDateAttribute(ATTR_PASSWORD_EXPIRE_TIME);
+            if (returnDate == null) {
+                if (isPasswordExpired()) {
+                    returnDate = new Date();
+                }
+            }
+            return returnDate;
+        } finally {
+            if (prefetched) {
+                clearSnapshot();
             }
         }
-        return returnDate;
     }
 
     @Override
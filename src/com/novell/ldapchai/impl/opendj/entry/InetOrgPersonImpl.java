@@ -28,9 +28,14 @@ import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.impl.AbstractChaiUser;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.util.ChaiLogger;
+import com.novell.ldapchai.util.internal.DateCodec;
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Robert Meakins
@@ -38,6 +43,14 @@ import java.util.Date;
 class InetOrgPersonImpl extends AbstractChaiUser implements InetOrgPerson, ChaiUser {
     
     private static final ChaiLogger LOGGER = ChaiLogger.getLogger(OpenDJPasswordPolicy.class);
+
+    private static final Set<String> STATUS_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            ATTR_PASSWORD_RESET,
+            ATTR_PASSWORD_EXPIRATION_TIME,
+            ATTR_PASSWORD_CHANGED_TIME,
+            ATTR_PASSWORD_POLICY_SUBENTRY_DN,
+            ATTR_LAST_LOGIN_TIME_DEFAULT
+    )));
     
     @Override
     public String getLdapObjectClassName()
@@ -57,6 +70,12 @@ class InetOrgPersonImpl extends AbstractChaiUser implements InetOrgPerson, ChaiU
         return OpenDJEntries.readPasswordPolicy(this);
     }
 
+    @Override
+    public Set<String> getStatusAttributes()
+    {
+        return STATUS_ATTRIBUTES;
+    }
+
     @Override
     public boolean testPassword(String passwordValue)
             throws ChaiUnavailableException, ChaiPasswordPolicyException
@@ -68,7 +87,20 @@ class InetOrgPersonImpl extends AbstractChaiUser implements InetOrgPerson, ChaiU
     public boolean testPasswordPolicy(final String password)
             throws ChaiUnavailableException, ChaiPasswordPolicyException
     {
-        return false;
+        final OpenDJPasswordRules passwordRules;
+        try {
+            passwordRules = OpenDJPasswordRules.forEntry(this);
+        } catch (ChaiOperationException e) {
+            LOGGER.debug("unexpected error while reading password policy for " + this.getEntryDN() + ": " + e.getMessage());
+            return true;
+        }
+
+        if (passwordRules == null) {
+            return true;
+        }
+
+        final Map<String, String> attributeValues = readPasswordRuleAttributes(passwordRules.getMatchAttributes());
+        return checkPasswordRuleErrors(passwordRules.validate(password, attributeValues));
     }
 
     @Override
@@ -96,46 +128,71 @@ class InetOrgPersonImpl extends AbstractChaiUser implements InetOrgPerson, ChaiU
     public boolean isPasswordExpired()
             throws ChaiUnavailableException, ChaiOperationException
     {
-        if ("true".equalsIgnoreCase(readStringAttribute(ATTR_PASSWORD_RESET))) {
-            return true;
-        }
-        
-        final Date expireDate = readPasswordExpirationDate();
+        final boolean prefetched = prefetchIfAbsent(STATUS_ATTRIBUTES);
+        try {
+            if ("true".equalsIgnoreCase(readStringAttribute(ATTR_PASSWORD_RESET))) {
+                return true;
+            }
 
-        if (expireDate == null) {
-            return false;
-        }
+            final Date expireDate = readPasswordExpirationDate();
+
+            if (expireDate == null) {
+                return false;
+            }
 
-        return expireDate.before(new Date());
+            return expireDate.before(new Date());
+        } finally {
+            if (prefetched) {
+                clearSnapshot();
+            }
+        }
     }
 
     @Override
     public final Date readLastLoginTime()
             throws ChaiOperationException, ChaiUnavailableException
     {
+        boolean prefetched = false;
         try {
+            prefetched = prefetchIfAbsent(STATUS_ATTRIBUTES);
+
             // Try to read password policy to get the name of the last login
             // time attribute and the last login time format
-            final String passwordPolicyDn = readStringAttribute(InetOrgPerson.ATTR_PASSWORD_POLICY_SUBENTRY_DN);
-            OpenDJPasswordPolicy openDJPasswordPolicy = new OpenDJPasswordPolicy(passwordPolicyDn, getChaiProvider());
-            String lastLoginTimeAttribute = openDJPasswordPolicy.getLastLoginTimeAttribute();
-            String lastLoginTimeFormat = openDJPasswordPolicy.getLastLoginTimeFormat();
-            
-            DateFormat df = new SimpleDateFormat(readStringAttribute(lastLoginTimeFormat));
+            final OpenDJPasswordRules passwordRules = OpenDJPasswordRules.forEntry(this);
+            if (passwordRules == null) {
+                LOGGER.debug("no password policy for " + getEntryDN() + " while trying to obtain last login time - reading default attribute.");
+                return readDefaultLastLoginTime();
+            }
+            final String lastLoginTimeAttribute = passwordRules.getLastLoginTimeAttribute();
+            final String lastLoginTimeFormat = passwordRules.getLastLoginTimeFormat();
+            if (lastLoginTimeAttribute == null || lastLoginTimeFormat == null) {
+                LOGGER.debug("password policy for " + getEntryDN() + " has no last login time attribute - reading default attribute.");
+                return readDefaultLastLoginTime();
+            }
+
+            final DateFormat df = DateCodec.dateFormat(lastLoginTimeFormat);
             return df.parse(readStringAttribute(lastLoginTimeAttribute));
-            
-            
         } catch (Exception e) {
             LOGGER.warn("failed to read password policy while trying to obtain last login time - attempting to read default attribute.", e);
-            try {
-                return readDateAttribute(ATTR_LAST_LOGIN_TIME_DEFAULT);
-            } catch (ChaiOperationException coe) {
-                LOGGER.error("Could not read last login time - returning epoch", coe);
-                return new Date(0);
+            return readDefaultLastLoginTime();
+        } finally {
+            if (prefetched) {
+                clearSnapshot();
             }
         }
     }
 
+    private Date readDefaultLastLoginTime()
+            throws ChaiUnavailableException
+    {
+        try {
+            return readDateAttribute(ATTR_LAST_LOGIN_TIME_DEFAULT);
+        } catch (ChaiOperationException coe) {
+            LOGGER.error("Could not read last login time - returning epoch", coe);
+            return new Date(0);
+        }
+    }
+
     @Override
     public final void changePassword(final String oldPassword, final String newPassword)
             throws ChaiUnavailableException, ChaiPasswordPolicyException, ChaiOperationException
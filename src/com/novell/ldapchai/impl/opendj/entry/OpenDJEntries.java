@@ -24,8 +24,8 @@ import com.novell.ldapchai.exception.ChaiOperationException;
 import com.novell.ldapchai.exception.ChaiUnavailableException;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.util.ChaiLogger;
-import com.novell.ldapchai.util.DefaultChaiPasswordPolicy;
 import com.novell.ldapchai.util.SearchHelper;
+import com.novell.ldapchai.util.internal.DateCodec;
 import java.util.*;
 
 /**
@@ -116,21 +116,19 @@ public class OpenDJEntries {
         }
     }
 
+    /**
+     * Read the password policy assigned to an entry.  The policy and its validators are compiled once and the
+     * result is shared by every entry with the same policy, see {@link com.novell.ldapchai.provider.ChaiSetting#OPENDJ_PASSWORD_POLICY_CACHE_MAX_AGE}.
+     *
+     * @param theUser the entry to read the policy of
+     * @return the entry's password policy, or null if the entry has no password policy subentry
+     * @throws com.novell.ldapchai.exception.ChaiUnavailableException If the ldap server(s) are not available
+     * @throws com.novell.ldapchai.exception.ChaiOperationException   If there is an error during the operation
+     */
     public static ChaiPasswordPolicy readPasswordPolicy(final ChaiEntry theUser)
             throws ChaiOperationException, ChaiUnavailableException
     {
-        ChaiPasswordPolicy passwordPolicy = null;
-        
-        final String passwordPolicyDn = theUser.readStringAttribute(InetOrgPerson.ATTR_PASSWORD_POLICY_SUBENTRY_DN);
-        
-        if (passwordPolicyDn != null && passwordPolicyDn.length() > 0) {
-            OpenDJPasswordPolicy openDJPasswordPolicy = new OpenDJPasswordPolicy(passwordPolicyDn, theUser.getChaiProvider());
-            openDJPasswordPolicy.processValidators();
-                    
-            passwordPolicy = DefaultChaiPasswordPolicy.createDefaultChaiPasswordPolicyByRule(openDJPasswordPolicy.getPolicyRules());
-        }
-        
-        return passwordPolicy;
+        return OpenDJPasswordRules.forEntry(theUser);
     }
     
     
@@ -141,35 +139,11 @@ public class OpenDJEntries {
      * @param dateString a date string in the format of "yyyyMMddHHmmss'Z'", for example "199412161032Z"
      * @return A Date object representing the string date
      * @throws IllegalArgumentException if dateString is incorrectly formatted
+     * @see DateCodec#parseGeneralizedTime(String)
      */
     public static Date convertZuluToDate(final String dateString)
     {
-        if (dateString == null) {
-            throw new NullPointerException();
-        }
-
-        if (dateString.length() < 15) {
-            throw new IllegalArgumentException("zulu date too short");
-        }
-
-        if (!dateString.matches("^\\d{14}(\\.\\d{3})?Z")) {
-            throw new IllegalArgumentException("zulu date must end in 'Z'");
-        }
-
-        // Zulu TimeZone is same as GMT or UTC
-        final Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Zulu"));
-
-        cal.set(Calendar.YEAR, Integer.parseInt(dateString.substring(0, 4)));
-        cal.set(Calendar.MONTH, Integer.parseInt(dateString.substring(4, 6)) - 1);
-        cal.set(Calendar.DATE, Integer.parseInt(dateString.substring(6, 8)));
-        cal.set(Calendar.HOUR_OF_DAY, Integer.parseInt(dateString.substring(8, 10)));
-        cal.set(Calendar.MINUTE, Integer.parseInt(dateString.substring(10, 12)));
-        cal.set(Calendar.SECOND, Integer.parseInt(dateString.substring(12, 14)));
-        if (dateString.length() == 19) {
-            cal.set(Calendar.MILLISECOND, Integer.parseInt(dateString.substring(15, 18)));
-        }
-
-        return cal.getTime();
+        return DateCodec.parseGeneralizedTime(dateString);
     }
     
     //read all attribute values from object at dn.
@@ -39,6 +39,7 @@ import java.util.*;
 public class OpenDJPasswordPolicy extends TopImpl implements ChaiPasswordPolicy {
     private final Map<String, String> ruleMap = new HashMap<String, String>();
     private final Map<String, List<String>> allEntryValues = new HashMap<String, List<String>>();
+    private OpenDJPasswordRules compiledRules;
     
     private static final ChaiLogger LOGGER = ChaiLogger.getLogger(OpenDJPasswordPolicy.class);
     
@@ -133,107 +134,48 @@ public class OpenDJPasswordPolicy extends TopImpl implements ChaiPasswordPolicy
         }
     }
     
+    /**
+     * The rules of this policy, as read by the most recent call to {@link #processValidators()}.
+     *
+     * @return an unmodifiable map of the policy rules
+     */
     public Map<ChaiPasswordRule, String> getPolicyRules() {
+        if (compiledRules != null) {
+            return compiledRules.getPolicyRules();
+        }
+
         final Map<ChaiPasswordRule, String> policyRules = new HashMap<ChaiPasswordRule, String>();
-        
         for (String key : ruleMap.keySet()) {
             policyRules.put(ChaiPasswordRule.forKey(key), ruleMap.get(key));
         }
-        
-        return policyRules;
+        return Collections.unmodifiableMap(policyRules);
     }
-    
+
+    /**
+     * Read and interpret the validator entries of this policy.
+     *
+     * @throws ChaiUnavailableException If the ldap server(s) are not available
+     * @throws ChaiOperationException   If there is an error reading the validators
+     * @deprecated validators are now compiled once per policy and shared, use {@link OpenDJEntries#readPasswordPolicy(com.novell.ldapchai.ChaiEntry)}.
+     */
+    @Deprecated
     public void processValidators()
             throws ChaiUnavailableException, ChaiOperationException {
-        List<String> validators = allEntryValues.get(VALIDATOR_ATTR_NAME);
-        
+        final List<Map<String, List<String>>> validatorValues = new ArrayList<Map<String, List<String>>>();
+        final List<String> validators = allEntryValues.get(VALIDATOR_ATTR_NAME);
         if (validators != null) {
             for (String validatorDn : validators) {
-                // Get all attributes for the validator
-                Map<String, List<String>> attrs = OpenDJEntries.getAllAttributesForDn(validatorDn, getChaiProvider());
-                
-                try {
-                    if (attrs.get("objectClass").contains(VALIDATOR_ATTRIBUTE_VALUE_OBJECTCLASS_NAME)) {
-                        
-                        List<String> attrsToMatch = attrs.get(VALIDATOR_MATCH_ATTRIBUTE_ATTR_NAME);
-                        StringBuilder disallowedAttrs = new StringBuilder();
-                        for (String disallowedAttr : attrsToMatch) {
-                            disallowedAttrs.append(disallowedAttr);
-                            disallowedAttrs.append("\n");
-                        }
-                        ruleMap.put(ChaiPasswordRule.DisallowedAttributes.getKey(), disallowedAttrs.substring(0, disallowedAttrs.length() - 1));
-                        
-                    } else if (attrs.get("objectClass").contains(VALIDATOR_LENGTH_BASED_OBJECTCLASS_NAME)) {
-                        
-                        List<String> minLengthList = attrs.get(VALIDATOR_MIN_LENGTH_ATTR_NAME);
-                        List<String> maxLengthList = attrs.get(VALIDATOR_MAX_LENGTH_ATTR_NAME);
-
-                        if (minLengthList.size() == 1) {
-                            ruleMap.put(ChaiPasswordRule.MinimumLength.getKey(), minLengthList.get(0));
-                        }
-
-                        if (maxLengthList.size() == 1) {
-                            ruleMap.put(ChaiPasswordRule.MaximumLength.getKey(), maxLengthList.get(0));
-                        }
-                        
-                    } else if (attrs.get("objectClass").contains(VALIDATOR_REPEATED_CHARS_OBJECTCLASS_NAME)) {
-                        
-                        List<String> repeatedCharsList = attrs.get(VALIDATOR_MAX_CONSECUTIVE_LENGTH_ATTR_NAME);
-                        if (repeatedCharsList.size() == 1) {
-                            ruleMap.put(ChaiPasswordRule.MaximumSequentialRepeat.getKey(), repeatedCharsList.get(0));
-                        }
-                        
-                    } else if (attrs.get("objectClass").contains(VALIDATOR_UNIQUE_CHARS_OBJECTCLASS_NAME)) {
-                        
-                        List<String> uniqueCharsList = attrs.get(VALIDATOR_MIN_UNIQUE_ATTR_NAME);
-                        if (uniqueCharsList.size() == 1) {
-                            ruleMap.put(ChaiPasswordRule.MinimumUnique.getKey(), uniqueCharsList.get(0));
-                        }
-                        
-                    } else if (attrs.get("objectClass").contains(VALIDATOR_CHARACTER_SET_OBJECTCLASS_NAME)) {
-                        
-                        // allowUnclassified - if false means that only chars
-                        // defined in this validator may be used in passwords
-                        boolean allowUnclassified = true;
-                        List<String> allowUnclassifiedList = attrs.get(VALIDATOR_ALLOW_UNCLASSIFIED_ATTR_NAME);
-                        if (allowUnclassifiedList.size() == 1 
-                                && allowUnclassifiedList.get(0).equalsIgnoreCase("false")) {
-                            allowUnclassified = false;
-                            ruleMap.put(ChaiPasswordRule.AllowNumeric.getKey(), "false");
-                            ruleMap.put(ChaiPasswordRule.AllowSpecial.getKey(), "false");
-                        }
-                        
-                        List<String> characterSets = attrs.get(VALIDATOR_CHARACTER_SET_ATTR_NAME);
-                        for (String characterSet : characterSets) {
-                            String minChaiPasswordRule = null;
-                            if (characterSet.contains("ABCD") || characterSet.contains("WXYZ")) { 
-                                // Assume upper case
-                                minChaiPasswordRule = ChaiPasswordRule.MinimumUpperCase.getKey();
-                            } else if (characterSet.contains("abcd") || characterSet.contains("wxyz")) {
-                                // Assume lower case
-                                minChaiPasswordRule = ChaiPasswordRule.MinimumLowerCase.getKey();
-                            } else if (characterSet.contains("1234")) {
-                                // Assume numeric
-                                minChaiPasswordRule = ChaiPasswordRule.MinimumNumeric.getKey();
-                                ruleMap.put(ChaiPasswordRule.AllowNumeric.getKey(), "true");
-                            } else if (characterSet.contains("()")) {
-                                // Assume special
-                                minChaiPasswordRule = ChaiPasswordRule.MinimumSpecial.getKey();
-                                ruleMap.put(ChaiPasswordRule.AllowSpecial.getKey(), "true");
-                            }
-                            
-                            // "Minimum" integer appears before the first colon
-                            int colonIndex = characterSet.indexOf(":");
-                            String minAllowed = characterSet.substring(0, colonIndex);
-                            ruleMap.put(minChaiPasswordRule, minAllowed);
-                        }
-                    }
-                } catch (Exception e) {
-                    LOGGER.error("error while processing validators to obtain ChaiPasswordRules", e);
+                final Map<String, List<String>> attrs = OpenDJEntries.getAllAttributesForDn(validatorDn, getChaiProvider());
+                if (attrs != null) {
+                    validatorValues.add(attrs);
                 }
-                System.out.println(ruleMap);
             }
         }
+
+        compiledRules = new OpenDJPasswordRules(allEntryValues, validatorValues);
+        for (final Map.Entry<ChaiPasswordRule, String> entry : compiledRules.getPolicyRules().entrySet()) {
+            ruleMap.put(entry.getKey().getKey(), entry.getValue());
+        }
     }
     
     public String getLastLoginTimeAttribute() {
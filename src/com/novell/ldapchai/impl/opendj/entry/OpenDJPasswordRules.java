@@ -0,0 +1,685 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl.opendj.entry;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.ChaiPasswordPolicy;
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.DirectoryChangeEvent;
+import com.novell.ldapchai.provider.DirectoryChangeFeed;
+import com.novell.ldapchai.provider.DirectoryChangeListener;
+import com.novell.ldapchai.util.ChaiLogger;
+import com.novell.ldapchai.util.ChaiUtility;
+import com.novell.ldapchai.util.GenericRuleHelper;
+import com.novell.ldapchai.util.PasswordRuleHelper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, compiled form of an OpenDJ password policy and its password validator entries.
+ * <p/>
+ * The policy and validator entries are read and interpreted once.  Each {@code ds-cfg-character-set} value is
+ * compiled into a bit set of its code points, and classified as upper case, lower case, numeric or special by
+ * examining its members.  The result serves both as the {@link ChaiPasswordPolicy} reported for a user and as a
+ * local validator that mirrors the server side validators, see {@link #validate(String, java.util.Map)}.  A
+ * validator's {@code ds-cfg-min-character-sets} value is enforced by {@code validate}, but has no
+ * {@link ChaiPasswordRule} equivalent.
+ * <p/>
+ * Compiled rules are cached per directory and policy DN for {@link ChaiSetting#OPENDJ_PASSWORD_POLICY_CACHE_MAX_AGE},
+ * so every user that shares a policy shares a single instance.  If a {@link DirectoryChangeFeed} is running, a
+ * cached policy is discarded as soon as the policy entry changes.
+ *
+ * @author Jason D. Rivard
+ */
+final class OpenDJPasswordRules implements ChaiPasswordPolicy {
+// ----------------------------- CONSTANTS ----------------------------
+
+    static final String VALIDATOR_CHARACTER_SET_RANGES_ATTR_NAME = "ds-cfg-character-set-ranges";
+    static final String VALIDATOR_CASE_SENSITIVE_ATTR_NAME = "ds-cfg-case-sensitive-validation";
+    static final String VALIDATOR_TEST_REVERSED_ATTR_NAME = "ds-cfg-test-reversed-password";
+    static final String VALIDATOR_ENABLED_ATTR_NAME = "ds-cfg-enabled";
+    static final String VALIDATOR_MIN_CHARACTER_SETS_ATTR_NAME = "ds-cfg-min-character-sets";
+
+    /**
+     * Upper bound on the number of cached policies, the cache is simply cleared when it is reached.
+     */
+    private static final int MAX_CACHE_ENTRIES = 256;
+
+// ------------------------------ FIELDS ------------------------------
+
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger(OpenDJPasswordRules.class);
+
+    private static final Map<String, CachedRules> CACHE = new ConcurrentHashMap<String, CachedRules>();
+
+    static {
+        // cache keys are bindURLs|passwordPolicyDn
+        DirectoryChangeFeed.addGlobalListener(new DirectoryChangeListener() {
+            public void directoryChanged(final DirectoryChangeEvent event)
+            {
+                final String prefix = event.getBindURLs() + "|";
+                for (final Iterator<String> iter = CACHE.keySet().iterator(); iter.hasNext();) {
+                    final String cacheKey = iter.next();
+                    if (cacheKey.startsWith(prefix) && event.affectsEntry(cacheKey.substring(prefix.length()))) {
+                        iter.remove();
+                    }
+                }
+            }
+        });
+    }
+
+    private final Map<String, String> ruleValues;
+    private final Map<ChaiPasswordRule, String> policyRules;
+
+    private final int minLength;
+    private final int maxLength;
+    private final int maxConsecutive;
+    private final boolean consecutiveCaseSensitive;
+    private final int minUnique;
+    private final boolean uniqueCaseSensitive;
+    private final List<CharacterSet> characterSets;
+    private final List<CharacterSetGroup> characterSetGroups;
+    private final boolean allowUnclassified;
+    private final List<String> matchAttributes;
+    private final boolean testReversed;
+
+    private final String lastLoginTimeAttribute;
+    private final String lastLoginTimeFormat;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Read the compiled rules for the password policy assigned to an entry.
+     *
+     * @param theUser the entry to read the policy of
+     * @return the compiled rules, or null if the entry has no password policy subentry
+     * @throws ChaiUnavailableException If the ldap server(s) are not available
+     * @throws ChaiOperationException   If there is an error reading the policy
+     */
+    static OpenDJPasswordRules forEntry(final ChaiEntry theUser)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final String passwordPolicyDn = theUser.readStringAttribute(InetOrgPerson.ATTR_PASSWORD_POLICY_SUBENTRY_DN);
+        if (passwordPolicyDn == null || passwordPolicyDn.length() < 1) {
+            return null;
+        }
+        return forPolicy(passwordPolicyDn, theUser.getChaiProvider());
+    }
+
+    /**
+     * Read the compiled rules for a password policy entry, using the cached rules when they are recent enough.
+     *
+     * @param passwordPolicyDn dn of the OpenDJ password policy entry
+     * @param chaiProvider     provider used to read the policy and its validators
+     * @return the compiled rules
+     * @throws ChaiUnavailableException If the ldap server(s) are not available
+     * @throws ChaiOperationException   If there is an error reading the policy
+     */
+    static OpenDJPasswordRules forPolicy(final String passwordPolicyDn, final ChaiProvider chaiProvider)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final int maxAge = chaiProvider.getChaiConfiguration().getIntSetting(ChaiSetting.OPENDJ_PASSWORD_POLICY_CACHE_MAX_AGE);
+        if (maxAge <= 0) {
+            return compile(passwordPolicyDn, chaiProvider);
+        }
+
+        final String cacheKey = chaiProvider.getChaiConfiguration().getSetting(ChaiSetting.BIND_URLS) + "|" + passwordPolicyDn.toLowerCase();
+        final CachedRules cachedRules = CACHE.get(cacheKey);
+        if (cachedRules != null && System.currentTimeMillis() - cachedRules.timestamp < maxAge) {
+            return cachedRules.rules;
+        }
+
+        final OpenDJPasswordRules rules = compile(passwordPolicyDn, chaiProvider);
+        if (CACHE.size() >= MAX_CACHE_ENTRIES) {
+            CACHE.clear();
+        }
+        CACHE.put(cacheKey, new CachedRules(rules, System.currentTimeMillis()));
+        return rules;
+    }
+
+    /**
+     * Read a password policy entry and each of its enabled validator entries, and compile them.
+     */
+    static OpenDJPasswordRules compile(final String passwordPolicyDn, final ChaiProvider chaiProvider)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Map<String, List<String>> policyValues = OpenDJEntries.getAllAttributesForDn(passwordPolicyDn, chaiProvider);
+        final List<Map<String, List<String>>> validatorValues = new ArrayList<Map<String, List<String>>>();
+
+        final List<String> validatorDNs = policyValues == null ? null : policyValues.get(OpenDJPasswordPolicy.VALIDATOR_ATTR_NAME);
+        if (validatorDNs != null) {
+            for (final String validatorDn : validatorDNs) {
+                final Map<String, List<String>> values = OpenDJEntries.getAllAttributesForDn(validatorDn, chaiProvider);
+                if (values != null) {
+                    validatorValues.add(values);
+                }
+            }
+        }
+
+        return new OpenDJPasswordRules(policyValues == null ? Collections.<String, List<String>>emptyMap() : policyValues, validatorValues);
+    }
+
+    private static String singleValue(final Map<String, List<String>> values, final String attributeName)
+    {
+        final List<String> valueList = values.get(attributeName);
+        return valueList != null && valueList.size() == 1 ? valueList.get(0) : null;
+    }
+
+    private static int intValue(final Map<String, List<String>> values, final String attributeName)
+    {
+        final String value = singleValue(values, attributeName);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("ignoring non-numeric value '" + value + "' for " + attributeName);
+            }
+        }
+        return 0;
+    }
+
+    private static boolean booleanValue(final Map<String, List<String>> values, final String attributeName, final boolean defaultValue)
+    {
+        final String value = singleValue(values, attributeName);
+        return value == null ? defaultValue : "true".equalsIgnoreCase(value.trim());
+    }
+
+    private static boolean hasObjectClass(final Map<String, List<String>> values, final String objectClass)
+    {
+        final List<String> objectClasses = values.get("objectClass");
+        if (objectClasses != null) {
+            for (final String loopClass : objectClasses) {
+                if (objectClass.equalsIgnoreCase(loopClass)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int foldCase(final int codePoint, final boolean caseSensitive)
+    {
+        return caseSensitive ? codePoint : Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+
+    private static void addError(final List<ChaiError> errors, final ChaiError error)
+    {
+        if (!errors.contains(error)) {
+            errors.add(error);
+        }
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    OpenDJPasswordRules(final Map<String, List<String>> policyValues, final List<Map<String, List<String>>> validatorValues)
+    {
+        int minLength = 0;
+        int maxLength = 0;
+        int maxConsecutive = 0;
+        boolean consecutiveCaseSensitive = false;
+        int minUnique = 0;
+        boolean uniqueCaseSensitive = false;
+        final List<CharacterSet> characterSets = new ArrayList<CharacterSet>();
+        final List<CharacterSetGroup> characterSetGroups = new ArrayList<CharacterSetGroup>();
+        boolean allowUnclassified = true;
+        final Set<String> matchAttributes = new HashSet<String>();
+        boolean testReversed = false;
+
+        for (final Map<String, List<String>> values : validatorValues) {
+            if (!booleanValue(values, VALIDATOR_ENABLED_ATTR_NAME, true)) {
+                continue;
+            }
+
+            if (hasObjectClass(values, OpenDJPasswordPolicy.VALIDATOR_LENGTH_BASED_OBJECTCLASS_NAME)) {
+                minLength = Math.max(minLength, intValue(values, OpenDJPasswordPolicy.VALIDATOR_MIN_LENGTH_ATTR_NAME));
+                final int validatorMax = intValue(values, OpenDJPasswordPolicy.VALIDATOR_MAX_LENGTH_ATTR_NAME);
+                if (validatorMax > 0) {
+                    maxLength = maxLength == 0 ? validatorMax : Math.min(maxLength, validatorMax);
+                }
+
+            } else if (hasObjectClass(values, OpenDJPasswordPolicy.VALIDATOR_REPEATED_CHARS_OBJECTCLASS_NAME)) {
+                final int validatorMax = intValue(values, OpenDJPasswordPolicy.VALIDATOR_MAX_CONSECUTIVE_LENGTH_ATTR_NAME);
+                if (validatorMax > 0) {
+                    maxConsecutive = maxConsecutive == 0 ? validatorMax : Math.min(maxConsecutive, validatorMax);
+                    consecutiveCaseSensitive = booleanValue(values, VALIDATOR_CASE_SENSITIVE_ATTR_NAME, false);
+                }
+
+            } else if (hasObjectClass(values, OpenDJPasswordPolicy.VALIDATOR_UNIQUE_CHARS_OBJECTCLASS_NAME)) {
+                final int validatorMin = intValue(values, OpenDJPasswordPolicy.VALIDATOR_MIN_UNIQUE_ATTR_NAME);
+                if (validatorMin > minUnique) {
+                    minUnique = validatorMin;
+                    uniqueCaseSensitive = booleanValue(values, VALIDATOR_CASE_SENSITIVE_ATTR_NAME, false);
+                }
+
+            } else if (hasObjectClass(values, OpenDJPasswordPolicy.VALIDATOR_ATTRIBUTE_VALUE_OBJECTCLASS_NAME)) {
+                final List<String> attributes = values.get(OpenDJPasswordPolicy.VALIDATOR_MATCH_ATTRIBUTE_ATTR_NAME);
+                if (attributes != null) {
+                    matchAttributes.addAll(attributes);
+                }
+                testReversed = testReversed || booleanValue(values, VALIDATOR_TEST_REVERSED_ATTR_NAME, true);
+
+            } else if (hasObjectClass(values, OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_OBJECTCLASS_NAME)) {
+                if (!booleanValue(values, OpenDJPasswordPolicy.VALIDATOR_ALLOW_UNCLASSIFIED_ATTR_NAME, true)) {
+                    allowUnclassified = false;
+                }
+                final int firstSet = characterSets.size();
+                final List<String> setValues = values.get(OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME);
+                if (setValues != null) {
+                    for (final String setValue : setValues) {
+                        final CharacterSet characterSet = CharacterSet.parse(setValue, false);
+                        if (characterSet != null) {
+                            characterSets.add(characterSet);
+                        }
+                    }
+                }
+                final List<String> rangeValues = values.get(VALIDATOR_CHARACTER_SET_RANGES_ATTR_NAME);
+                if (rangeValues != null) {
+                    for (final String rangeValue : rangeValues) {
+                        final CharacterSet characterSet = CharacterSet.parse(rangeValue, true);
+                        if (characterSet != null) {
+                            characterSets.add(characterSet);
+                        }
+                    }
+                }
+                final int minimumSets = intValue(values, VALIDATOR_MIN_CHARACTER_SETS_ATTR_NAME);
+                if (minimumSets > 0) {
+                    characterSetGroups.add(new CharacterSetGroup(firstSet, characterSets.size(), minimumSets));
+                }
+            }
+        }
+
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.maxConsecutive = maxConsecutive;
+        this.consecutiveCaseSensitive = consecutiveCaseSensitive;
+        this.minUnique = minUnique;
+        this.uniqueCaseSensitive = uniqueCaseSensitive;
+        this.characterSets = Collections.unmodifiableList(characterSets);
+        this.characterSetGroups = Collections.unmodifiableList(characterSetGroups);
+        this.allowUnclassified = allowUnclassified;
+        this.matchAttributes = Collections.unmodifiableList(new ArrayList<String>(matchAttributes));
+        this.testReversed = testReversed;
+
+        this.lastLoginTimeAttribute = singleValue(policyValues, OpenDJPasswordPolicy.LAST_LOGIN_TIME_ATTR_ATTR_NAME);
+        this.lastLoginTimeFormat = singleValue(policyValues, OpenDJPasswordPolicy.LAST_LOGIN_TIME_FORMAT_ATTR_NAME);
+
+        final Map<ChaiPasswordRule, String> rules = makeRules(policyValues);
+        final Map<String, String> keyedRules = new LinkedHashMap<String, String>();
+        for (final Map.Entry<ChaiPasswordRule, String> entry : rules.entrySet()) {
+            keyedRules.put(entry.getKey().getKey(), entry.getValue());
+        }
+        this.policyRules = Collections.unmodifiableMap(rules);
+        this.ruleValues = Collections.unmodifiableMap(keyedRules);
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * The rules of this policy, expressed as {@link ChaiPasswordRule} values.
+     *
+     * @return an unmodifiable map containing a value for every {@link ChaiPasswordRule}
+     */
+    Map<ChaiPasswordRule, String> getPolicyRules()
+    {
+        return policyRules;
+    }
+
+    String getLastLoginTimeAttribute()
+    {
+        return lastLoginTimeAttribute;
+    }
+
+    String getLastLoginTimeFormat()
+    {
+        return lastLoginTimeFormat;
+    }
+
+    /**
+     * Names of the attributes that the password may not match, see {@link #validate(String, java.util.Map)}.
+     */
+    List<String> getMatchAttributes()
+    {
+        return matchAttributes;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface ChaiPasswordPolicy ---------------------
+
+    public String getValue(final String key)
+    {
+        return ruleValues.get(key);
+    }
+
+    public String getValue(final ChaiPasswordRule rule)
+    {
+        return policyRules.get(rule);
+    }
+
+    public Set<String> getKeys()
+    {
+        return ruleValues.keySet();
+    }
+
+    public PasswordRuleHelper getRuleHelper()
+    {
+        return new GenericRuleHelper(this);
+    }
+
+    public ChaiEntry getPolicyEntry()
+    {
+        return null;
+    }
+
+// ------------------------ CANONICAL METHODS ------------------------
+
+    public String toString()
+    {
+        return ChaiUtility.passwordPolicyToString(this);
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private Map<ChaiPasswordRule, String> makeRules(final Map<String, List<String>> policyValues)
+    {
+        final Map<ChaiPasswordRule, String> rules = new LinkedHashMap<ChaiPasswordRule, String>();
+        for (final ChaiPasswordRule rule : ChaiPasswordRule.values()) {
+            rules.put(rule, rule.getDefaultValue());
+        }
+
+        final String maxAge = singleValue(policyValues, OpenDJPasswordPolicy.MAX_PASSWORD_AGE_ATTR_NAME);
+        if (maxAge != null) {
+            rules.put(ChaiPasswordRule.ExpirationInterval, maxAge);
+        }
+
+        rules.put(ChaiPasswordRule.MinimumLength, String.valueOf(minLength));
+        rules.put(ChaiPasswordRule.MaximumLength, String.valueOf(maxLength));
+        rules.put(ChaiPasswordRule.MaximumSequentialRepeat, String.valueOf(maxConsecutive));
+        rules.put(ChaiPasswordRule.MinimumUnique, String.valueOf(minUnique));
+
+        if (!matchAttributes.isEmpty()) {
+            final StringBuilder sb = new StringBuilder();
+            for (final String attribute : matchAttributes) {
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                sb.append(attribute);
+            }
+            rules.put(ChaiPasswordRule.DisallowedAttributes, sb.toString());
+        }
+
+        // numeric and special characters are only restricted when unclassified characters are not allowed.
+        boolean allowNumeric = allowUnclassified;
+        boolean allowSpecial = allowUnclassified;
+        final Map<ChaiPasswordRule, Integer> minimums = new HashMap<ChaiPasswordRule, Integer>();
+        for (final CharacterSet characterSet : characterSets) {
+            allowNumeric = allowNumeric || characterSet.containsNumeric;
+            allowSpecial = allowSpecial || characterSet.containsSpecial;
+            if (characterSet.minimumRule != null) {
+                final Integer existing = minimums.get(characterSet.minimumRule);
+                minimums.put(characterSet.minimumRule, (existing == null ? 0 : existing) + characterSet.minimum);
+            }
+        }
+        for (final Map.Entry<ChaiPasswordRule, Integer> entry : minimums.entrySet()) {
+            rules.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        rules.put(ChaiPasswordRule.AllowNumeric, String.valueOf(allowNumeric));
+        rules.put(ChaiPasswordRule.AllowSpecial, String.valueOf(allowSpecial));
+
+        return rules;
+    }
+
+    /**
+     * Evaluate a password the way the policy's validators would, in a single pass over its code points.
+     *
+     * @param password        the password to evaluate
+     * @param attributeValues values of the {@link #getMatchAttributes() match attributes} for the user, keyed by attribute
+     *                        name in any case.  May be null, in which case the attribute value validator is not evaluated.
+     * @return all rule violations, or an empty list if the password passes every validator
+     */
+    List<ChaiError> validate(final String password, final Map<String, String> attributeValues)
+    {
+        final List<ChaiError> errors = new ArrayList<ChaiError>();
+        final String value = password == null ? "" : password;
+
+        final int[] setCounts = new int[characterSets.size()];
+        final Set<Integer> uniqueChars = minUnique > 0 ? new HashSet<Integer>() : null;
+        boolean invalidChar = false;
+        int length = 0;
+        int consecutive = 0;
+        int highestConsecutive = 0;
+        int previousChar = -1;
+
+        for (int i = 0; i < value.length(); ) {
+            final int c = value.codePointAt(i);
+            i += Character.charCount(c);
+            length++;
+
+            boolean classified = false;
+            for (int s = 0; s < setCounts.length; s++) {
+                if (characterSets.get(s).chars.get(c)) {
+                    setCounts[s]++;
+                    classified = true;
+                }
+            }
+            if (!classified && !allowUnclassified) {
+                invalidChar = true;
+            }
+
+            if (maxConsecutive > 0) {
+                final int folded = foldCase(c, consecutiveCaseSensitive);
+                consecutive = folded == previousChar ? consecutive + 1 : 1;
+                highestConsecutive = Math.max(highestConsecutive, consecutive);
+                previousChar = folded;
+            }
+
+            if (uniqueChars != null) {
+                uniqueChars.add(foldCase(c, uniqueCaseSensitive));
+            }
+        }
+
+        if (minLength > 0 && length < minLength) {
+            addError(errors, ChaiError.PASSWORD_TOO_SHORT);
+        }
+        if (maxLength > 0 && length > maxLength) {
+            addError(errors, ChaiError.PASSWORD_TOO_LONG);
+        }
+        for (int s = 0; s < setCounts.length; s++) {
+            final CharacterSet characterSet = characterSets.get(s);
+            if (setCounts[s] < characterSet.minimum) {
+                addError(errors, characterSet.error);
+            }
+        }
+        for (final CharacterSetGroup group : characterSetGroups) {
+            int usedSets = 0;
+            for (int s = group.firstSet; s < group.endSet; s++) {
+                if (setCounts[s] > 0) {
+                    usedSets++;
+                }
+            }
+            if (usedSets < group.minimumSets) {
+                addError(errors, ChaiError.PASSWORD_BADPASSWORD);
+            }
+        }
+        if (invalidChar) {
+            addError(errors, ChaiError.PASSWORD_INVALID_CHAR);
+        }
+        if (maxConsecutive > 0 && highestConsecutive > maxConsecutive) {
+            addError(errors, ChaiError.PASSWORD_TOO_MANY_REPEAT);
+        }
+        if (uniqueChars != null && uniqueChars.size() < minUnique) {
+            addError(errors, ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE);
+        }
+
+        if (attributeValues != null && value.length() > 0) {
+            final String reversed = testReversed ? new StringBuilder(value).reverse().toString() : null;
+            final Map<String, String> caseInsensitiveValues = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+            caseInsensitiveValues.putAll(attributeValues);
+            for (final String attribute : matchAttributes) {
+                final String attributeValue = caseInsensitiveValues.get(attribute);
+                if (attributeValue != null && (value.equalsIgnoreCase(attributeValue) || (reversed != null && reversed.equalsIgnoreCase(attributeValue)))) {
+                    addError(errors, ChaiError.PASSWORD_SAMEASATTR);
+                    break;
+                }
+            }
+        }
+
+        return errors;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A single {@code ds-cfg-character-set} or {@code ds-cfg-character-set-ranges} value, such as {@code 1:abcdefg}
+     * or {@code 1:a-z}.
+     */
+    private static class CharacterSet {
+        private final int minimum;
+        private final BitSet chars;
+        private final ChaiPasswordRule minimumRule;
+        private final ChaiError error;
+        private final boolean containsNumeric;
+        private final boolean containsSpecial;
+
+        private CharacterSet(final int minimum, final BitSet chars)
+        {
+            this.minimum = minimum;
+            this.chars = chars;
+
+            boolean allUpper = true;
+            boolean allLower = true;
+            boolean allNumeric = true;
+            boolean allSpecial = true;
+            boolean anyNumeric = false;
+            boolean anySpecial = false;
+            for (int c = chars.nextSetBit(0); c >= 0; c = chars.nextSetBit(c + 1)) {
+                final boolean numeric = Character.isDigit(c);
+                final boolean special = !Character.isLetterOrDigit(c);
+                allUpper = allUpper && Character.isUpperCase(c);
+                allLower = allLower && Character.isLowerCase(c);
+                allNumeric = allNumeric && numeric;
+                allSpecial = allSpecial && special;
+                anyNumeric = anyNumeric || numeric;
+                anySpecial = anySpecial || special;
+            }
+            this.containsNumeric = anyNumeric;
+            this.containsSpecial = anySpecial;
+
+            if (allUpper) {
+                minimumRule = ChaiPasswordRule.MinimumUpperCase;
+                error = ChaiError.PASSWORD_NOT_ENOUGH_UPPER;
+            } else if (allLower) {
+                minimumRule = ChaiPasswordRule.MinimumLowerCase;
+                error = ChaiError.PASSWORD_NOT_ENOUGH_LOWER;
+            } else if (allNumeric) {
+                minimumRule = ChaiPasswordRule.MinimumNumeric;
+                error = ChaiError.PASSWORD_NOT_ENOUGH_NUM;
+            } else if (allSpecial) {
+                minimumRule = ChaiPasswordRule.MinimumSpecial;
+                error = ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL;
+            } else {
+                minimumRule = null;
+                error = ChaiError.PASSWORD_BADPASSWORD;
+            }
+        }
+
+        static CharacterSet parse(final String value, final boolean ranges)
+        {
+            final int colonIndex = value == null ? -1 : value.indexOf(':');
+            if (colonIndex < 1) {
+                LOGGER.error("ignoring malformed character set value '" + value + "'");
+                return null;
+            }
+
+            final int minimum;
+            try {
+                minimum = Integer.parseInt(value.substring(0, colonIndex).trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error("ignoring character set value with non-numeric minimum '" + value + "'");
+                return null;
+            }
+
+            final String definition = value.substring(colonIndex + 1);
+            final BitSet chars = new BitSet();
+            for (int i = 0; i < definition.length(); ) {
+                final int c = definition.codePointAt(i);
+                i += Character.charCount(c);
+                if (ranges && i < definition.length() && definition.charAt(i) == '-' && i + 1 < definition.length()) {
+                    final int end = definition.codePointAt(i + 1);
+                    i += 1 + Character.charCount(end);
+                    if (end >= c) {
+                        chars.set(c, end + 1);
+                    }
+                } else {
+                    chars.set(c);
+                }
+            }
+
+            if (chars.isEmpty()) {
+                return null;
+            }
+            return new CharacterSet(minimum, chars);
+        }
+    }
+
+    /**
+     * The character sets of a single validator with a {@code ds-cfg-min-character-sets} value.  A password must contain
+     * at least one character from {@code minimumSets} of them, in addition to each set's own minimum.
+     */
+    private static class CharacterSetGroup {
+        private final int firstSet;
+        private final int endSet;
+        private final int minimumSets;
+
+        private CharacterSetGroup(final int firstSet, final int endSet, final int minimumSets)
+        {
+            this.firstSet = firstSet;
+            this.endSet = endSet;
+            this.minimumSets = minimumSets;
+        }
+    }
+
+    private static class CachedRules {
+        private final OpenDJPasswordRules rules;
+        private final long timestamp;
+
+        private CachedRules(final OpenDJPasswordRules rules, final long timestamp)
+        {
+            this.rules = rules;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -460,6 +460,19 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             return null;
         }
 
+        public final void searchMultiValues(final String baseDN, final SearchHelper searchHelper, final SearchResultHandler handler)
+        {
+            if (baseDN == null) {
+                throw new NullPointerException("baseDN must not be null");
+            }
+            if (searchHelper == null) {
+                throw new NullPointerException("searchHelper must not be null");
+            }
+            if (handler == null) {
+                throw new NullPointerException("handler must not be null");
+            }
+        }
+
         public final void writeBinaryAttribute(
                 final String entryDN,
                 final String attributeName,
@@ -504,6 +517,24 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
             }
         }
 
+        public final void modify(final String entryDN, final List<ChaiModification> modifications)
+        {
+            if (entryDN == null) {
+                throw new NullPointerException("entryDN must not be null");
+            }
+            if (modifications == null) {
+                throw new NullPointerException("modifications must not be null");
+            }
+            if (modifications.isEmpty()) {
+                throw new NullPointerException("modifications must not be empty");
+            }
+            for (final ChaiModification modification : modifications) {
+                if (modification == null) {
+                    throw new NullPointerException("modifications must not contain null");
+                }
+            }
+        }
+
         public DIRECTORY_VENDOR getDirectoryVendor() throws ChaiUnavailableException {
             return null;
         }
@@ -536,7 +567,7 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
     protected void preCheckExtendedOperation(final ExtendedRequest request)
             throws ChaiOperationException
     {
-        final boolean cacheFailures = "true".equalsIgnoreCase(this.getChaiConfiguration().getSetting(ChaiSetting.EXTENDED_OPERATION_FAILURE_CACHE));
+        final boolean cacheFailures = this.getChaiConfiguration().getBooleanSetting(ChaiSetting.EXTENDED_OPERATION_FAILURE_CACHE);
         if (cacheFailures) {
             final Map<String, Object> providerProps = this.getProviderProperties();
             final Map<String, Exception> cacheFailureMap = (Map<String,Exception>)providerProps.get(EXTENDED_FAILURE_CACHE_KEY);
@@ -551,7 +582,7 @@ abstract class AbstractProvider implements ChaiProvider, ChaiProviderImplementor
     protected void cacheExtendedOperationException(final ExtendedRequest request, final Exception e)
             throws ChaiOperationException
     {
-        final boolean cacheFailures = "true".equalsIgnoreCase(this.getChaiConfiguration().getSetting(ChaiSetting.EXTENDED_OPERATION_FAILURE_CACHE));
+        final boolean cacheFailures = this.getChaiConfiguration().getBooleanSetting(ChaiSetting.EXTENDED_OPERATION_FAILURE_CACHE);
         if (cacheFailures) {
             final ChaiOperationException opExcep = ChaiOperationException.forErrorMessage(e.getMessage());
             if (opExcep.getErrorCode() == ChaiError.UNSUPPORTED_OPERATION) {
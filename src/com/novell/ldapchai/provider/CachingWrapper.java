@@ -30,6 +30,11 @@ import java.util.*;
 
 /**
  * Implenents a 'naive' caching wrapper around a provider.
+ * <p/>
+ * Cached results expire after {@link ChaiSetting#CACHE_MAXIMUM_AGE}.  Without a change feed, any modify operation
+ * clears the entire cache.  If {@link ChaiSetting#CACHE_CHANGE_FEED_ENABLE} is set, a {@link DirectoryChangeFeed}
+ * invalidates the cached results of each changed entry (and searches containing it), and a local modify operation only
+ * invalidates the results for the modified entry.
  *
  * @author Jason D. Rivard
  */
@@ -44,6 +49,15 @@ class CachingWrapper extends AbstractWrapper {
     private ChaiProvider realProvider;
     private ChaiProvider memorizedProvider;
 
+    private final String bindURLs;
+    private volatile DirectoryChangeFeed changeFeed;
+    private final DirectoryChangeListener changeListener = new DirectoryChangeListener() {
+        public void directoryChanged(final DirectoryChangeEvent event)
+        {
+            getMemorizer().invalidate(event);
+        }
+    };
+
 // -------------------------- STATIC METHODS --------------------------
 
     static ChaiProviderImplementor forProvider(final ChaiProviderImplementor chaiProvider)
@@ -68,11 +82,17 @@ class CachingWrapper extends AbstractWrapper {
             throw new IllegalStateException("chaiProvider is already wrapped for caching");
         }
 
-        final int setting_maxSize = Integer.parseInt(providerImpl.getChaiConfiguration().getSetting(ChaiSetting.CACHE_MAXIMUM_SIZE));
-        final int setting_maxTime = Integer.parseInt(providerImpl.getChaiConfiguration().getSetting(ChaiSetting.CACHE_MAXIMUM_AGE));
+        final int setting_maxSize = providerImpl.getChaiConfiguration().getIntSetting(ChaiSetting.CACHE_MAXIMUM_SIZE);
+        final int setting_maxTime = providerImpl.getChaiConfiguration().getIntSetting(ChaiSetting.CACHE_MAXIMUM_AGE);
 
         this.realProvider = providerImpl;
-        this.memorizedProvider = (ChaiProviderImplementor) Memorizer.forObject(realProvider, setting_maxSize, setting_maxTime);
+        this.memorizedProvider = (ChaiProviderImplementor) Memorizer.forObject(realProvider, setting_maxTime, setting_maxSize);
+        this.bindURLs = providerImpl.getChaiConfiguration().getSetting(ChaiSetting.BIND_URLS);
+
+        if (providerImpl.getChaiConfiguration().getBooleanSetting(ChaiSetting.CACHE_CHANGE_FEED_ENABLE)) {
+            changeFeed = DirectoryChangeFeed.forConfiguration(providerImpl.getChaiConfiguration());
+            changeFeed.addListener(changeListener);
+        }
     }
 
 // ------------------------ INTERFACE METHODS ------------------------
@@ -87,7 +107,18 @@ class CachingWrapper extends AbstractWrapper {
             throws Throwable
     {
         if (m.getAnnotation(ChaiProviderImplementor.ModifyOperation.class) != null) {
-            clearCache();
+            final DirectoryChangeFeed currentFeed = changeFeed;
+            if (currentFeed != null && currentFeed.isConnected() && args != null && args.length > 0 && args[0] instanceof String) {
+                // other entries changed as a side effect will be reported by the change feed; while the feed is
+                // not connected nothing reports them, so the whole cache is cleared instead
+                getMemorizer().invalidate(new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.MODIFY, (String) args[0], null, -1));
+            } else {
+                clearCache();
+            }
+        }
+
+        if ("close".equals(m.getName())) {
+            releaseChangeFeed();
         }
 
         try {
@@ -105,7 +136,21 @@ class CachingWrapper extends AbstractWrapper {
 
     public void clearCache()
     {
-        ((Memorizer) memorizedProvider).clearCache();
+        getMemorizer().clearCache();
+    }
+
+    private Memorizer getMemorizer()
+    {
+        return (Memorizer) Proxy.getInvocationHandler(memorizedProvider);
+    }
+
+    private synchronized void releaseChangeFeed()
+    {
+        if (changeFeed != null) {
+            changeFeed.removeListener(changeListener);
+            changeFeed.release();
+            changeFeed = null;
+        }
     }
 
 // -------------------------- INNER CLASSES --------------------------
@@ -121,6 +166,11 @@ class CachingWrapper extends AbstractWrapper {
 
         private final Object lock = new Object();
 
+        /**
+         * Incremented by each invalidation, so a value read while an invalidation happens is not cached.
+         */
+        private long invalidationCount = 0;
+
         // timeout values stored as primitives for performance.
         private int maxSize = Integer.parseInt(ChaiSetting.CACHE_MAXIMUM_SIZE.getDefaultValue());
         private int maxAge = Integer.parseInt(ChaiSetting.CACHE_MAXIMUM_AGE.getDefaultValue());
@@ -132,15 +182,14 @@ class CachingWrapper extends AbstractWrapper {
                 return memorizedObject;
             }
 
-            final Object p = Proxy.newProxyInstance(
+            final Memorizer memorizer = new Memorizer(memorizedObject);
+            memorizer.maxAge = maxAge >= 0 ? maxAge : 0;
+            memorizer.maxSize = maxSize >= 0 ? maxSize : 0;
+
+            return Proxy.newProxyInstance(
                     memorizedObject.getClass().getClassLoader(),
                     memorizedObject.getClass().getInterfaces(),
-                    new Memorizer(memorizedObject));
-
-            ((Memorizer) p).maxAge = maxAge >= 0 ? maxAge : 0;
-            ((Memorizer) p).maxSize = maxSize >= 0 ? maxSize : 0;
-
-            return p;
+                    memorizer);
         }
 
         private Memorizer(final Object memorizedObject)
@@ -151,31 +200,87 @@ class CachingWrapper extends AbstractWrapper {
 
         public void clearCache()
         {
-            hardCache.clear();
+            synchronized (lock) {
+                hardCache.clear();
+                weakCache.clear();
+                valueStack.clear();
+                invalidationCount++;
+            }
+        }
+
+        /**
+         * Remove the cached values made stale by a change.  Values read from an entry are removed if the entry changed,
+         * and search results are removed if the changed entry is within the search base.  Values that are not
+         * read from an entry (such as the directory vendor) are only removed by a
+         * {@link DirectoryChangeEvent.Type#RESYNC}.
+         */
+        public void invalidate(final DirectoryChangeEvent event)
+        {
+            if (event.getType() == DirectoryChangeEvent.Type.RESYNC) {
+                clearCache();
+                return;
+            }
+
+            synchronized (lock) {
+                invalidationCount++;
+                for (final Method method : hardCache.keySet()) {
+                    final boolean isSearch = method.getAnnotation(ChaiProviderImplementor.SearchOperation.class) != null;
+                    for (final Iterator<ValueWrapper> iter = hardCache.get(method).values().iterator(); iter.hasNext();) {
+                        final ValueWrapper vw = iter.next();
+                        if (isStale(event, isSearch, vw.getKey())) {
+                            iter.remove();
+                            valueStack.remove(vw);
+                        }
+                    }
+                }
+
+                for (final Method method : weakCache.keySet()) {
+                    final boolean isSearch = method.getAnnotation(ChaiProviderImplementor.SearchOperation.class) != null;
+                    for (final Iterator<List<Object>> iter = weakCache.get(method).keySet().iterator(); iter.hasNext();) {
+                        if (isStale(event, isSearch, iter.next())) {
+                            iter.remove();
+                        }
+                    }
+                }
+            }
+        }
+
+        private static boolean isStale(final DirectoryChangeEvent event, final boolean isSearch, final List<Object> key)
+        {
+            if (key.isEmpty() || !(key.get(0) instanceof String)) {
+                return false;
+            }
+            final String dn = (String) key.get(0);
+            return isSearch ? event.affectsSubtree(dn) : event.affectsEntry(dn);
         }
 
         public Object invoke(final Object object, final Method method, final Object[] args)
                 throws Throwable
         {
-            if (method.getReturnType().equals(Void.TYPE)) {
-                // Don't cache void methods
-                return invoke(memorizedObject, method, args);
-            } else {
-                final List<Object> key = Arrays.asList(args);
-
-                Object value = this.getCachedValue(method, key);
+            try {
+                if (method.getReturnType().equals(Void.TYPE)) {
+                    // Don't cache void methods
+                    return method.invoke(memorizedObject, args);
+                } else {
+                    final List<Object> key = args == null ? Collections.<Object>emptyList() : Arrays.asList(args);
+
+                    Object value;
+                    final long startInvalidationCount;
+                    synchronized (lock) {
+                        value = this.getCachedValue(method, key);
+                        startInvalidationCount = invalidationCount;
+                    }
 
-                // value is not in cache, so invoke method normaly
-                if (value == null) {
-                    try {
-                        value = invoke(memorizedObject, method, args);
-                        addCachedValue(new ValueWrapper(method, key, value));
-                    } catch (Exception e) {
-                        throw e.getCause();
+                    // value is not in cache, so invoke method normaly
+                    if (value == null) {
+                        value = method.invoke(memorizedObject, args);
+                        addCachedValue(new ValueWrapper(method, key, value), startInvalidationCount);
                     }
-                }
 
-                return value;
+                    return value;
+                }
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
             }
         }
 
@@ -240,9 +345,12 @@ class CachingWrapper extends AbstractWrapper {
             }
         }
 
-        private void addCachedValue(final ValueWrapper vw)
+        private void addCachedValue(final ValueWrapper vw, final long startInvalidationCount)
         {
             synchronized (lock) {
+                if (startInvalidationCount != invalidationCount) {
+                    return;
+                }
                 final Map<List<Object>, ValueWrapper> cachedInvocations = this.getHardCachedInvocations(vw.getMethod());
                 cachedInvocations.put(vw.getKey(), vw);
                 valueStack.remove(vw);
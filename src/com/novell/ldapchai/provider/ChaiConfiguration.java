@@ -36,6 +36,9 @@ import java.util.*;
  * instance, it is automatically locked.  Thus, a {@link ChaiProvider}'s configuration can not be modifed
  * once it is used to create a {@link ChaiProvider}.
  * <p/>
+ * Locking also takes a {@link ChaiConfigurationSnapshot} of the settings, which then answers {@link #getSetting(ChaiSetting)},
+ * the typed getters and {@link #bindURLsAsList()} without re-reading or re-parsing the settings.
+ * <p/>
  * This class is <i>cloneable</i> and clones are created in an unlocked state.
  *
  * @author Jason D. Rivard
@@ -53,6 +56,7 @@ public class ChaiConfiguration implements Cloneable, Serializable {
 
     private Serializable implementationConfiguration;
     private volatile transient boolean locked;
+    private volatile transient ChaiConfigurationSnapshot snapshot;
     private Properties settings = new Properties(DEFAULT_SETTINGS);
     private X509TrustManager[] trustManager = null;
 
@@ -239,6 +243,10 @@ public class ChaiConfiguration implements Cloneable, Serializable {
      */
     public String getSetting(final ChaiSetting setting)
     {
+        final ChaiConfigurationSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            return currentSnapshot.getSetting(setting);
+        }
         return settings.getProperty(setting.getKey());
     }
 
@@ -250,10 +258,47 @@ public class ChaiConfiguration implements Cloneable, Serializable {
      */
     public boolean getBooleanSetting(final ChaiSetting setting)
     {
+        final ChaiConfigurationSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            return currentSnapshot.getBooleanSetting(setting);
+        }
         final String settingValue = getSetting(setting);
         return StringHelper.convertStrToBoolean(settingValue);
     }
 
+    /**
+     * Get an individual setting value as an int.
+     *
+     * @param setting the setting to return
+     * @return the int value of the setting
+     * @throws IllegalArgumentException if the setting value is not an integer
+     */
+    public int getIntSetting(final ChaiSetting setting)
+    {
+        final ChaiConfigurationSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            return currentSnapshot.getIntSetting(setting);
+        }
+        try {
+            return Integer.valueOf(getSetting(setting));
+        } catch (Exception e) {
+            // doesnt matter, we're throwing anyway.
+        }
+        throw new IllegalArgumentException("misconfigured value; " + setting + " should be Integer, but is not");
+    }
+
+    /**
+     * Get a typed, immutable copy of the current settings.  A locked configuration returns the snapshot taken when it
+     * was locked; an unlocked configuration returns a new snapshot on each call.
+     *
+     * @return a snapshot of the settings
+     */
+    public ChaiConfigurationSnapshot getSnapshot()
+    {
+        final ChaiConfigurationSnapshot currentSnapshot = snapshot;
+        return currentSnapshot != null ? currentSnapshot : new ChaiConfigurationSnapshot(settings);
+    }
+
 
 // -------------------------- OTHER METHODS --------------------------
 
@@ -264,6 +309,10 @@ public class ChaiConfiguration implements Cloneable, Serializable {
      */
     public List<String> bindURLsAsList()
     {
+        final ChaiConfigurationSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot != null) {
+            return currentSnapshot.getBindURLs();
+        }
         final List<String> results = new ArrayList<String>();
         results.addAll(Arrays.asList(getSetting(ChaiSetting.BIND_URLS).split(LDAP_URL_SEPERATOR_REGEX_PATTERN)));
         return Collections.unmodifiableList(results);
@@ -274,16 +323,6 @@ public class ChaiConfiguration implements Cloneable, Serializable {
         return settings.getProperty(ChaiSetting.BIND_PASSWORD.getKey());
     }
 
-    int getIntSetting(final ChaiSetting name)
-    {
-        try {
-            return Integer.valueOf(getSetting(name));
-        } catch (Exception e) {
-            // doesnt matter, we're throwing anyway.
-        }
-        throw new IllegalArgumentException("misconfigured value; " + name + " should be Integer, but is not");
-    }
-
     /**
      * Get the current settings of the {@code ChaiProvider}.
      *
@@ -311,12 +350,16 @@ public class ChaiConfiguration implements Cloneable, Serializable {
     /**
      * Lock this {@code ChaiConfiguration}.  Once locked, all of the setter methods will throw an {@link IllegalStateException}.
      * In order to be locked, both an implementation class and implementation configuration must be set.
+     * Locking takes the {@link ChaiConfigurationSnapshot} used to answer setting lookups from then on.
      */
-    public void lock()
+    public synchronized void lock()
     {
         if (getSetting(ChaiSetting.PROVIDER_IMPLEMENTATION).length() < 1) {
             throw new IllegalStateException("implementation class is required to lock configuration");
         }
+        if (snapshot == null) {
+            snapshot = new ChaiConfigurationSnapshot(settings);
+        }
         locked = true;
     }
 
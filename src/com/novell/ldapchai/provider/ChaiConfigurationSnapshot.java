@@ -0,0 +1,130 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.StringHelper;
+
+import java.util.*;
+
+/**
+ * An immutable, pre-parsed copy of the settings of a {@link ChaiConfiguration}.
+ * <p/>
+ * Every {@link ChaiSetting} is read once, when the snapshot is made, and kept as a string and (where the value
+ * parses) as a boolean and an int, indexed by the setting's ordinal.  The bind URLs are split once.  A locked
+ * {@code ChaiConfiguration} makes its snapshot when {@link ChaiConfiguration#lock()} is called and answers
+ * {@link ChaiConfiguration#getSetting(ChaiSetting)} and the typed getters from it, so callers on hot paths do not
+ * need to cache or re-parse setting values themselves.
+ *
+ * @author Jason D. Rivard
+ * @see ChaiConfiguration#getSnapshot()
+ */
+public final class ChaiConfigurationSnapshot {
+// ------------------------------ FIELDS ------------------------------
+
+    private final String[] values;
+    private final boolean[] booleanValues;
+    private final int[] intValues;
+    private final boolean[] intValid;
+    private final List<String> bindURLs;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    ChaiConfigurationSnapshot(final Properties settings)
+    {
+        final ChaiSetting[] allSettings = ChaiSetting.values();
+        values = new String[allSettings.length];
+        booleanValues = new boolean[allSettings.length];
+        intValues = new int[allSettings.length];
+        intValid = new boolean[allSettings.length];
+
+        for (final ChaiSetting setting : allSettings) {
+            final int index = setting.ordinal();
+            final String value = settings.getProperty(setting.getKey());
+            values[index] = value;
+            booleanValues[index] = StringHelper.convertStrToBoolean(value);
+            if (value != null) {
+                try {
+                    intValues[index] = Integer.parseInt(value);
+                    intValid[index] = true;
+                } catch (NumberFormatException e) {
+                    // not an int setting
+                }
+            }
+        }
+
+        final String urlValue = values[ChaiSetting.BIND_URLS.ordinal()];
+        final List<String> urls = new ArrayList<String>();
+        if (urlValue != null) {
+            urls.addAll(Arrays.asList(urlValue.split(ChaiConfiguration.LDAP_URL_SEPERATOR_REGEX_PATTERN)));
+        }
+        bindURLs = Collections.unmodifiableList(urls);
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Get an individual setting value
+     *
+     * @param setting the setting to return
+     * @return the value or the default value if no value exists.
+     */
+    public String getSetting(final ChaiSetting setting)
+    {
+        return values[setting.ordinal()];
+    }
+
+    /**
+     * Get an individual setting value as a boolean, using the same rules as
+     * {@link ChaiConfiguration#getBooleanSetting(ChaiSetting)}.
+     *
+     * @param setting the setting to return
+     * @return the boolean value of the setting
+     */
+    public boolean getBooleanSetting(final ChaiSetting setting)
+    {
+        return booleanValues[setting.ordinal()];
+    }
+
+    /**
+     * Get an individual setting value as an int.
+     *
+     * @param setting the setting to return
+     * @return the int value of the setting
+     * @throws IllegalArgumentException if the setting value is not an integer
+     */
+    public int getIntSetting(final ChaiSetting setting)
+    {
+        final int index = setting.ordinal();
+        if (!intValid[index]) {
+            throw new IllegalArgumentException("misconfigured value; " + setting + " should be Integer, but is not");
+        }
+        return intValues[index];
+    }
+
+    /**
+     * Returns an immutable list of the ldap URLs.
+     *
+     * @return an immutable list of the ldapURLS.
+     */
+    public List<String> getBindURLs()
+    {
+        return bindURLs;
+    }
+}
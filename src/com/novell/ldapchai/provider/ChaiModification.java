@@ -0,0 +1,255 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A single add, delete or replace of one attribute's values, used with
+ * {@link ChaiProvider#modify(String, java.util.List)}.  A list of {@code ChaiModification}s is sent to
+ * the directory as one ldap modify request, so the server applies all of them or none of them.
+ * <p/>
+ * Values are either string or binary; a single instance never holds both.  Instances are immutable and
+ * are obtained using the static factory methods.
+ *
+ * @author Jason D. Rivard
+ * @see com.novell.ldapchai.ChaiEntryModifier
+ */
+public final class ChaiModification implements Serializable {
+// -------------------------- ENUMERATIONS --------------------------
+
+    /**
+     * The kind of change made to the attribute.
+     */
+    public static enum ModificationType {
+        /**
+         * Add the values to the attribute, retaining any existing values.
+         */
+        ADD,
+
+        /**
+         * Remove the values from the attribute.  If no values are given, the attribute is removed entirely.
+         */
+        DELETE,
+
+        /**
+         * Remove any existing values and set the given values.  If no values are given, the attribute is removed entirely.
+         */
+        REPLACE
+    }
+
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final long serialVersionUID = 1L;
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final ModificationType type;
+    private final String attributeName;
+    private final String[] stringValues;
+    private final byte[][] binaryValues;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    public static ChaiModification add(final String attributeName, final String... values)
+    {
+        return new ChaiModification(ModificationType.ADD, attributeName, values, null);
+    }
+
+    public static ChaiModification addBinary(final String attributeName, final byte[]... values)
+    {
+        return new ChaiModification(ModificationType.ADD, attributeName, null, values);
+    }
+
+    public static ChaiModification delete(final String attributeName, final String... values)
+    {
+        return new ChaiModification(ModificationType.DELETE, attributeName, values, null);
+    }
+
+    public static ChaiModification deleteBinary(final String attributeName, final byte[]... values)
+    {
+        return new ChaiModification(ModificationType.DELETE, attributeName, null, values);
+    }
+
+    /**
+     * Remove all values of the attribute.
+     *
+     * @param attributeName name of the attribute to remove
+     * @return a modification that removes the attribute
+     */
+    public static ChaiModification deleteAttribute(final String attributeName)
+    {
+        return new ChaiModification(ModificationType.DELETE, attributeName, new String[0], null);
+    }
+
+    public static ChaiModification replace(final String attributeName, final String... values)
+    {
+        return new ChaiModification(ModificationType.REPLACE, attributeName, values, null);
+    }
+
+    public static ChaiModification replaceBinary(final String attributeName, final byte[]... values)
+    {
+        return new ChaiModification(ModificationType.REPLACE, attributeName, null, values);
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private ChaiModification(
+            final ModificationType type,
+            final String attributeName,
+            final String[] stringValues,
+            final byte[][] binaryValues
+    )
+    {
+        if (attributeName == null || attributeName.length() < 1) {
+            throw new NullPointerException("attributeName must not be null or empty");
+        }
+
+        if (stringValues != null) {
+            for (final String value : stringValues) {
+                if (value == null) {
+                    throw new NullPointerException("values must not contain null");
+                }
+            }
+        }
+
+        if (binaryValues != null) {
+            for (final byte[] value : binaryValues) {
+                if (value == null) {
+                    throw new NullPointerException("values must not contain null");
+                }
+            }
+        }
+
+        if (type == ModificationType.ADD && valueCount(stringValues, binaryValues) == 0) {
+            throw new IllegalArgumentException("at least one value must be supplied to add to " + attributeName);
+        }
+
+        this.type = type;
+        this.attributeName = attributeName;
+        this.stringValues = stringValues == null ? null : stringValues.clone();
+        this.binaryValues = binaryValues == null ? null : deepCopy(binaryValues);
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public ModificationType getType()
+    {
+        return type;
+    }
+
+    public String getAttributeName()
+    {
+        return attributeName;
+    }
+
+    /**
+     * Indicates if the values of this modification are binary.
+     *
+     * @return true if {@link #getBinaryValues()} should be used to read the values.
+     */
+    public boolean isBinary()
+    {
+        return binaryValues != null;
+    }
+
+    /**
+     * @return a copy of the string values, or an empty array if this modification is binary.
+     */
+    public String[] getStringValues()
+    {
+        return stringValues == null ? new String[0] : stringValues.clone();
+    }
+
+    /**
+     * @return a copy of the binary values, or an empty array if this modification is not binary.
+     */
+    public byte[][] getBinaryValues()
+    {
+        return binaryValues == null ? new byte[0][] : deepCopy(binaryValues);
+    }
+
+    /**
+     * @return the number of values carried by this modification.
+     */
+    public int getValueCount()
+    {
+        return valueCount(stringValues, binaryValues);
+    }
+
+// ------------------------ CANONICAL METHODS ------------------------
+
+    public boolean equals(final Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChaiModification)) {
+            return false;
+        }
+
+        final ChaiModification that = (ChaiModification) o;
+        return type == that.type
+                && attributeName.equals(that.attributeName)
+                && Arrays.equals(stringValues, that.stringValues)
+                && Arrays.deepEquals(binaryValues, that.binaryValues);
+    }
+
+    public int hashCode()
+    {
+        int result = type.hashCode();
+        result = 31 * result + attributeName.hashCode();
+        result = 31 * result + Arrays.hashCode(stringValues);
+        result = 31 * result + Arrays.deepHashCode(binaryValues);
+        return result;
+    }
+
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(type).append(" ").append(attributeName);
+        if (binaryValues != null) {
+            sb.append(" (").append(binaryValues.length).append(" binary values)");
+        } else {
+            sb.append(" ").append(Arrays.toString(stringValues));
+        }
+        return sb.toString();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static int valueCount(final String[] stringValues, final byte[][] binaryValues)
+    {
+        if (stringValues != null) {
+            return stringValues.length;
+        }
+        return binaryValues == null ? 0 : binaryValues.length;
+    }
+
+    private static byte[][] deepCopy(final byte[][] values)
+    {
+        final byte[][] copy = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            copy[i] = values[i].clone();
+        }
+        return copy;
+    }
+}
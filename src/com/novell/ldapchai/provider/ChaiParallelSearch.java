@@ -0,0 +1,524 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.util.ChaiLogger;
+import com.novell.ldapchai.util.LdapFilter;
+import com.novell.ldapchai.util.SearchHelper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a subtree search as several smaller searches at the same time, and merges their results into a single stream.
+ * <p/>
+ * By default the search is partitioned by child entry: the base entry is searched on its own, and every child of the
+ * base is searched as a separate subtree, so the merged results are the same as those of the subtree search.  The
+ * children that match {@link ChaiSetting#PARALLEL_SEARCH_CONTAINER_FILTER} are each searched as a partition of their
+ * own; the subtree searches of the other children are grouped into a few partitions, one per thread.  Listing the
+ * children costs two one level searches, and each child costs one search, so a base with very many direct children
+ * (such as a flat people container) is better partitioned by filter.  Alternatively {@link #setPartitionFilters(List)} partitions the search by filter; each partition filter is combined
+ * with the search filter and searched from the base.  The partition filters should not overlap, since results are not
+ * de-duplicated; {@link #prefixPartitions(String, String...)} builds a complete, non overlapping set of partitions
+ * from attribute value prefixes.
+ * <p/>
+ * At most {@link ChaiSetting#PARALLEL_SEARCH_THREADS} partitions are searched at once, and since {@code ChaiProvider}
+ * implementations are not thread safe, no more than the number of providers supplied: each provider is used by one
+ * thread at a time.  Supply several providers, for example one per replica as returned by
+ * {@link #createReplicaProviders(ChaiConfiguration)}, to search in parallel.  Callers whose providers are thread safe
+ * can allow several threads to share a provider with {@link #setShareProviders(boolean)}.
+ * Results are passed to the {@link SearchResultHandler} one at a time, in no particular order.
+ * <pre>
+ *   final ChaiParallelSearch parallelSearch = new ChaiParallelSearch(providers);
+ *   parallelSearch.setPartitionFilters(ChaiParallelSearch.prefixPartitions("uid", "a", "b", "c", ...));
+ *   parallelSearch.search("o=example", new SearchHelper("(objectClass=inetOrgPerson)"), new SearchResultHandler() {
+ *       public boolean handleResult(final String entryDN, final Map&lt;String, List&lt;String&gt;&gt; attributeValues)
+ *       {
+ *           ...
+ *           return true;
+ *       }
+ *   });
+ * </pre>
+ * Instances are not thread safe.
+ *
+ * @author Jason D. Rivard
+ */
+public class ChaiParallelSearch {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger(ChaiParallelSearch.class);
+
+    private final List<ChaiProvider> providers;
+    private int threads;
+    private boolean shareProviders;
+    private LdapFilter containerFilter;
+    private List<LdapFilter> partitionFilters;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Build partition filters that split entries by the first characters of an attribute value.  One partition is
+     * returned for each prefix, and a final partition matches every entry that matches none of the prefixes,
+     * including entries without the attribute.  Prefixes are matched using the attribute's matching rules, which are
+     * usually case insensitive, and should not be prefixes of each other.
+     *
+     * @param attributeName the attribute to partition by, such as {@code uid}
+     * @param prefixes      the value prefixes, such as {@code "a"} to {@code "z"}
+     * @return the partition filters
+     */
+    public static List<LdapFilter> prefixPartitions(final String attributeName, final String... prefixes)
+    {
+        final List<LdapFilter> partitions = new ArrayList<LdapFilter>();
+        for (final String prefix : prefixes) {
+            partitions.add(LdapFilter.substring(attributeName, prefix, null, null));
+        }
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("at least one prefix is required");
+        }
+        partitions.add(LdapFilter.not(partitions.size() == 1 ? partitions.get(0) : LdapFilter.or(new ArrayList<LdapFilter>(partitions))));
+        return partitions;
+    }
+
+    /**
+     * Create one provider for each of the {@link ChaiSetting#BIND_URLS} of a configuration, so that partitions are
+     * searched on different servers.  Servers that can not be reached are skipped.  The caller is responsible for
+     * closing the returned providers.
+     *
+     * @param chaiConfiguration the configuration to copy for each server
+     * @return a provider for each reachable server
+     * @throws ChaiUnavailableException if none of the servers can be reached
+     */
+    public static List<ChaiProvider> createReplicaProviders(final ChaiConfiguration chaiConfiguration)
+            throws ChaiUnavailableException
+    {
+        final List<ChaiProvider> replicaProviders = new ArrayList<ChaiProvider>();
+        ChaiUnavailableException lastError = null;
+        for (final String ldapURL : chaiConfiguration.bindURLsAsList()) {
+            try {
+                final ChaiConfiguration replicaConfiguration = (ChaiConfiguration) chaiConfiguration.clone();
+                replicaConfiguration.setSetting(ChaiSetting.BIND_URLS, ldapURL);
+                replicaProviders.add(ChaiProviderFactory.createProvider(replicaConfiguration));
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException("unable to clone configuration: " + e.getMessage());
+            } catch (ChaiUnavailableException e) {
+                LOGGER.warn("unable to connect to " + ldapURL + ", it will not be used for parallel searches: " + e.getMessage());
+                lastError = e;
+            }
+        }
+
+        if (replicaProviders.isEmpty()) {
+            throw lastError != null ? lastError : new ChaiUnavailableException("no ldap urls are configured", ChaiError.UNKNOWN);
+        }
+        return replicaProviders;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public ChaiParallelSearch(final ChaiProvider provider)
+    {
+        this(Collections.singletonList(provider));
+    }
+
+    public ChaiParallelSearch(final List<ChaiProvider> providers)
+    {
+        if (providers == null || providers.isEmpty()) {
+            throw new NullPointerException("at least one provider is required");
+        }
+        for (final ChaiProvider provider : providers) {
+            if (provider == null) {
+                throw new NullPointerException("providers must not contain null");
+            }
+        }
+
+        final ChaiConfiguration chaiConfig = providers.get(0).getChaiConfiguration();
+        this.providers = Collections.unmodifiableList(new ArrayList<ChaiProvider>(providers));
+        this.threads = Math.max(1, chaiConfig.getIntSetting(ChaiSetting.PARALLEL_SEARCH_THREADS));
+        this.containerFilter = LdapFilter.parse(chaiConfig.getSetting(ChaiSetting.PARALLEL_SEARCH_CONTAINER_FILTER));
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public void setThreads(final int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    public boolean isShareProviders()
+    {
+        return shareProviders;
+    }
+
+    /**
+     * Allow more partitions to be searched at once than there are providers, by using a provider from several threads
+     * at the same time.  Only enable this for providers that are safe for concurrent use.
+     *
+     * @param shareProviders true to share providers between threads
+     */
+    public void setShareProviders(final boolean shareProviders)
+    {
+        this.shareProviders = shareProviders;
+    }
+
+    public LdapFilter getContainerFilter()
+    {
+        return containerFilter;
+    }
+
+    public void setContainerFilter(final LdapFilter containerFilter)
+    {
+        if (containerFilter == null) {
+            throw new NullPointerException("containerFilter must not be null");
+        }
+        this.containerFilter = containerFilter;
+    }
+
+    /**
+     * @return the partition filters, or null if the search is partitioned by container
+     */
+    public List<LdapFilter> getPartitionFilters()
+    {
+        return partitionFilters;
+    }
+
+    /**
+     * @param partitionFilters the filters to partition the search by, or null to partition by container
+     */
+    public void setPartitionFilters(final List<LdapFilter> partitionFilters)
+    {
+        this.partitionFilters = partitionFilters == null || partitionFilters.isEmpty()
+                ? null
+                : Collections.unmodifiableList(new ArrayList<LdapFilter>(partitionFilters));
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Search and return the merged results in a map, as
+     * {@link ChaiProvider#searchMultiValues(String, SearchHelper)} does.
+     *
+     * @param baseDN       the base of the search
+     * @param searchHelper the search
+     * @return the results, keyed by entry dn
+     * @throws ChaiOperationException   If an error is encountered during any of the partition searches
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public Map<String, Map<String, List<String>>> searchMultiValues(final String baseDN, final SearchHelper searchHelper)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final Map<String, Map<String, List<String>>> results = new HashMap<String, Map<String, List<String>>>();
+        search(baseDN, searchHelper, new SearchResultHandler() {
+            public boolean handleResult(final String entryDN, final Map<String, List<String>> attributeValues)
+            {
+                results.put(entryDN, attributeValues);
+                return true;
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Search each partition and pass every result to {@code handler}.  A search with a scope other than
+     * {@link ChaiProvider.SEARCH_SCOPE#SUBTREE} is not partitioned.  The {@link SearchHelper#getMaxResults()} of the
+     * search applies to the merged results.
+     *
+     * @param baseDN       the base of the search
+     * @param searchHelper the search
+     * @param handler      receives the results; it is never called by more than one thread at a time
+     * @return the number of results passed to the handler
+     * @throws ChaiOperationException   If an error is encountered during any of the partition searches
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public long search(final String baseDN, final SearchHelper searchHelper, final SearchResultHandler handler)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        AbstractProvider.INPUT_VALIDATOR.searchMultiValues(baseDN, searchHelper, handler);
+
+        final List<Partition> partitions = makePartitions(baseDN, searchHelper);
+        final MergedHandler mergedHandler = new MergedHandler(handler, searchHelper.getMaxResults());
+        final int threadCount = Math.min(effectiveThreads(), partitions.size());
+        LOGGER.trace("searching " + baseDN + " as " + partitions.size() + " partitions using " + threadCount + " threads");
+
+        if (threadCount <= 1) {
+            for (int i = 0; i < partitions.size() && !mergedHandler.isStopped(); i++) {
+                searchPartition(partitions.get(i), providers.get(0), mergedHandler);
+            }
+        } else {
+            // without sharing, there are as many idle providers as threads, so a provider is always available
+            final Queue<ChaiProvider> idleProviders = shareProviders
+                    ? null
+                    : new ConcurrentLinkedQueue<ChaiProvider>(providers.subList(0, threadCount));
+            final ExecutorService executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ParallelSearchThreadFactory());
+            try {
+                final List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (int i = 0; i < partitions.size(); i++) {
+                    final Partition partition = partitions.get(i);
+                    final ChaiProvider sharedProvider = providers.get(i % providers.size());
+                    futures.add(executor.submit(new Runnable() {
+                        public void run()
+                        {
+                            if (mergedHandler.isStopped()) {
+                                return;
+                            }
+                            if (idleProviders == null) {
+                                searchPartition(partition, sharedProvider, mergedHandler);
+                            } else {
+                                final ChaiProvider provider = idleProviders.poll();
+                                try {
+                                    searchPartition(partition, provider, mergedHandler);
+                                } finally {
+                                    idleProviders.add(provider);
+                                }
+                            }
+                        }
+                    }));
+                }
+
+                for (final Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (Exception e) {
+                        LOGGER.error("unexpected error waiting for parallel search partition: " + e.getMessage(), e);
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        final Exception failure = mergedHandler.getFailure();
+        if (failure instanceof ChaiOperationException) {
+            throw (ChaiOperationException) failure;
+        } else if (failure instanceof ChaiUnavailableException) {
+            throw (ChaiUnavailableException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new ChaiOperationException("error during parallel search: " + failure.getMessage(), ChaiError.UNKNOWN);
+        }
+
+        return mergedHandler.getResultCount();
+    }
+
+    private int effectiveThreads()
+    {
+        return shareProviders ? threads : Math.min(threads, providers.size());
+    }
+
+    private static void searchPartition(final Partition partition, final ChaiProvider provider, final MergedHandler mergedHandler)
+    {
+        try {
+            for (int i = 0; i < partition.baseDNs.size() && !mergedHandler.isStopped(); i++) {
+                provider.searchMultiValues(partition.baseDNs.get(i), partition.searchHelpers.get(i), mergedHandler);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("error searching partition " + partition + ": " + e.getMessage());
+            mergedHandler.fail(e);
+        }
+    }
+
+    private List<Partition> makePartitions(final String baseDN, final SearchHelper searchHelper)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final List<Partition> partitions = new ArrayList<Partition>();
+        if (searchHelper.getSearchScope() != ChaiProvider.SEARCH_SCOPE.SUBTREE) {
+            partitions.add(new Partition(baseDN, searchHelper));
+            return partitions;
+        }
+
+        final LdapFilter searchFilter = LdapFilter.parse(searchHelper.getFilter());
+
+        if (partitionFilters != null) {
+            for (final LdapFilter partitionFilter : partitionFilters) {
+                partitions.add(new Partition(baseDN, copySearch(searchHelper, LdapFilter.and(searchFilter, partitionFilter), ChaiProvider.SEARCH_SCOPE.SUBTREE)));
+            }
+            return partitions;
+        }
+
+        final Set<String> childDNs = listChildren(baseDN, LdapFilter.present("objectClass"));
+        final Set<String> containerDNs = new HashSet<String>();
+        for (final String containerDN : listChildren(baseDN, containerFilter)) {
+            containerDNs.add(DirectoryChangeEvent.normalizeDN(containerDN));
+        }
+
+        final SearchHelper subtreeSearch = copySearch(searchHelper, searchFilter, ChaiProvider.SEARCH_SCOPE.SUBTREE);
+        final List<Partition> otherPartitions = new ArrayList<Partition>();
+        otherPartitions.add(new Partition(baseDN, copySearch(searchHelper, searchFilter, ChaiProvider.SEARCH_SCOPE.BASE)));
+        int otherCount = 0;
+        for (final String childDN : childDNs) {
+            if (containerDNs.contains(DirectoryChangeEvent.normalizeDN(childDN))) {
+                partitions.add(new Partition(childDN, subtreeSearch));
+            } else {
+                final int groupIndex = otherCount++ % Math.max(1, effectiveThreads());
+                if (groupIndex == otherPartitions.size()) {
+                    otherPartitions.add(new Partition());
+                }
+                otherPartitions.get(groupIndex).add(childDN, subtreeSearch);
+            }
+        }
+        partitions.addAll(otherPartitions);
+        return partitions;
+    }
+
+    private Set<String> listChildren(final String baseDN, final LdapFilter filter)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final SearchHelper childSearch = new SearchHelper();
+        childSearch.setFilter(filter);
+        childSearch.setSearchScope(ChaiProvider.SEARCH_SCOPE.ONE);
+        childSearch.returnNoAttributes();
+
+        final Set<String> childDNs = new LinkedHashSet<String>();
+        providers.get(0).searchMultiValues(baseDN, childSearch, new SearchResultHandler() {
+            public boolean handleResult(final String entryDN, final Map<String, List<String>> attributeValues)
+            {
+                childDNs.add(entryDN);
+                return true;
+            }
+        });
+        return childDNs;
+    }
+
+    private static SearchHelper copySearch(final SearchHelper searchHelper, final LdapFilter filter, final ChaiProvider.SEARCH_SCOPE searchScope)
+    {
+        final SearchHelper copy = new SearchHelper();
+        copy.setFilter(filter);
+        copy.setSearchScope(searchScope);
+        copy.setAttributes(searchHelper.getAttributes());
+        copy.setMaxResults(searchHelper.getMaxResults());
+        copy.setTimeLimit(searchHelper.getTimeLimit());
+        return copy;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * One or more searches that are run one after another on the same thread.
+     */
+    private static class Partition {
+        private final List<String> baseDNs = new ArrayList<String>();
+        private final List<SearchHelper> searchHelpers = new ArrayList<SearchHelper>();
+
+        private Partition()
+        {
+        }
+
+        private Partition(final String baseDN, final SearchHelper searchHelper)
+        {
+            add(baseDN, searchHelper);
+        }
+
+        private void add(final String baseDN, final SearchHelper searchHelper)
+        {
+            baseDNs.add(baseDN);
+            searchHelpers.add(searchHelper);
+        }
+
+        public String toString()
+        {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < baseDNs.size(); i++) {
+                sb.append(i == 0 ? "" : ", ");
+                sb.append(searchHelpers.get(i).getSearchScope()).append(" ").append(baseDNs.get(i)).append(" ").append(searchHelpers.get(i).getFilter());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Passes the results of every partition to the caller's handler, one at a time, and stops every partition once the
+     * handler abandons the search, the maximum results are reached, or a partition fails.
+     */
+    private static class MergedHandler implements SearchResultHandler {
+        private final SearchResultHandler handler;
+        private final int maxResults;
+        private long resultCount;
+        private volatile boolean stopped;
+        private Exception failure;
+
+        private MergedHandler(final SearchResultHandler handler, final int maxResults)
+        {
+            this.handler = handler;
+            this.maxResults = maxResults;
+        }
+
+        public synchronized boolean handleResult(final String entryDN, final Map<String, List<String>> attributeValues)
+        {
+            if (stopped) {
+                return false;
+            }
+
+            resultCount++;
+            if (!handler.handleResult(entryDN, attributeValues) || (maxResults > 0 && resultCount >= maxResults)) {
+                stopped = true;
+            }
+            return !stopped;
+        }
+
+        private synchronized void fail(final Exception e)
+        {
+            if (failure == null) {
+                failure = e;
+            }
+            stopped = true;
+        }
+
+        private boolean isStopped()
+        {
+            return stopped;
+        }
+
+        private synchronized Exception getFailure()
+        {
+            return failure;
+        }
+
+        private synchronized long getResultCount()
+        {
+            return resultCount;
+        }
+    }
+
+    private static class ParallelSearchThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(r, "LDAP Chai ChaiParallelSearch thread " + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
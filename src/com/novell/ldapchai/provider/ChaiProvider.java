@@ -395,6 +395,29 @@ public interface ChaiProvider {
     public Map<String, Map<String, List<String>>> searchMultiValues(final String baseDN, final String filter, final Set<String> attributes, SEARCH_SCOPE searchScope)
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
 
+    /**
+     * Perform a search where multiple values of an object are returned, passing each entry to a handler as it is
+     * received instead of collecting the results.  Memory use does not grow with the number of entries, so this
+     * method is suitable for searches that return very large numbers of entries, such as an export of a whole tree.
+     * <p/>
+     * When {@link ChaiSetting#LDAP_SEARCH_PAGE_SIZE} is greater than zero, implementations that support it request the
+     * entries in pages using the RFC 2696 paged results control.
+     * <p/>
+     * Results are not cached.  If the connection fails during the search and the provider fails over to another
+     * server, the search is restarted, and the handler may receive some entries a second time.
+     *
+     * @param baseDN       A valid entryDN
+     * @param searchHelper A Chai searchHelper
+     * @param handler      Receives each entry; returning false abandons the search
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     */
+    @ChaiProviderImplementor.LdapOperation
+    @ChaiProviderImplementor.SearchOperation
+    public void searchMultiValues(String baseDN, SearchHelper searchHelper, SearchResultHandler handler)
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
+
     /**
      * Write the binary values to the specified object's specified attribute.
      *
@@ -444,6 +467,24 @@ public interface ChaiProvider {
     public void writeStringAttributes(String entryDN, Map<String,String> attributeValueProps, boolean overwrite)
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
 
+    /**
+     * Apply a list of modifications to the specified object as a single ldap modify operation.  The modifications
+     * may mix add, delete and replace operations of string and binary values across any number of attributes, and
+     * are applied by the directory in the order given.  Because the list is sent as one request, the directory either
+     * applies all of the modifications or none of them.
+     *
+     * @param entryDN       A valid entryDN
+     * @param modifications The modifications to apply, must not be empty
+     * @throws ChaiOperationException   If an error is encountered during the operation
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     * @throws IllegalStateException    If the underlying connection is not in an available state
+     * @see com.novell.ldapchai.ChaiEntry#modify(java.util.List)
+     */
+    @ChaiProviderImplementor.LdapOperation
+    @ChaiProviderImplementor.ModifyOperation
+    public void modify(String entryDN, List<ChaiModification> modifications)
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException;
+
     /**
      * Discovers and returns the Chai API's interpretation of the vendor of the configured directory.
      * {@code ChaiProvider} implementations will typically cache this value for the life of the instance.
@@ -153,7 +153,7 @@ public final class ChaiProviderFactory {
 
         ChaiProviderImplementor providerImpl;
         try {
-            final boolean enableFailover = chaiConfiguration.getSetting(ChaiSetting.FAILOVER_ENABLE).equalsIgnoreCase("true");
+            final boolean enableFailover = chaiConfiguration.getBooleanSetting(ChaiSetting.FAILOVER_ENABLE);
 
             if (enableFailover) {
                 providerImpl = FailOverWrapper.forConfiguration(chaiConfiguration);
@@ -210,11 +210,11 @@ public final class ChaiProviderFactory {
     {
         final ChaiConfiguration chaiConfiguration = providerImpl.getChaiConfiguration();
 
-        final boolean enableReadOnly =      "true".equalsIgnoreCase(chaiConfiguration.getSetting(ChaiSetting.READONLY));
-        final boolean enableWatchdog =      "true".equalsIgnoreCase(chaiConfiguration.getSetting(ChaiSetting.WATCHDOG_ENABLE));
-        final boolean enableWireTrace =     "true".equalsIgnoreCase(chaiConfiguration.getSetting(ChaiSetting.WIRETRACE_ENABLE));
-        final boolean enableStatistics =    "true".equalsIgnoreCase(chaiConfiguration.getSetting(ChaiSetting.STATISTICS_ENABLE));
-        final boolean enableCaching =       "true".equalsIgnoreCase(chaiConfiguration.getSetting(ChaiSetting.CACHE_ENABLE));
+        final boolean enableReadOnly =      chaiConfiguration.getBooleanSetting(ChaiSetting.READONLY);
+        final boolean enableWatchdog =      chaiConfiguration.getBooleanSetting(ChaiSetting.WATCHDOG_ENABLE);
+        final boolean enableWireTrace =     chaiConfiguration.getBooleanSetting(ChaiSetting.WIRETRACE_ENABLE);
+        final boolean enableStatistics =    chaiConfiguration.getBooleanSetting(ChaiSetting.STATISTICS_ENABLE);
+        final boolean enableCaching =       chaiConfiguration.getBooleanSetting(ChaiSetting.CACHE_ENABLE);
 
         if (enableReadOnly && !(providerImpl instanceof ReadOnlyWrapper)) {
             LOGGER.trace("adding ReadOnlyWrapper to provider instance");
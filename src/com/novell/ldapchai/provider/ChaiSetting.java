@@ -20,9 +20,12 @@
 package com.novell.ldapchai.provider;
 
 import com.novell.ldapchai.cr.Answer;
+import com.novell.ldapchai.cr.ChaiResponseSet;
+import com.novell.ldapchai.util.LdapFilter;
 
 import java.io.Serializable;
 import java.net.URI;
+import java.util.regex.Pattern;
 
 /**
  * All settings for LDAP Chai used by {@link ChaiConfiguration}.
@@ -164,6 +167,49 @@ public enum ChaiSetting {
      */
     CACHE_MAXIMUM_AGE("chai.cache.maximumAge", "1000", true, Validator.INTEGER_VALIDATOR),
 
+    /**
+     * Follow the directory's changes, and invalidate cached results by DN as soon as an entry changes.  Only used if
+     * {@link #CACHE_ENABLE} is also <i>true</i>.  With a change feed, much longer values of {@link #CACHE_MAXIMUM_AGE}
+     * can be used, and local modifications invalidate only the modified entry instead of the entire cache.
+     * <p/>
+     * Note that if this setting is enabled, a change feed thread and connection will be running for each directory.
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.cache.changeFeed.enable</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>false</td></tr>
+     * </table>
+     *
+     * @see DirectoryChangeFeed
+     */
+    CACHE_CHANGE_FEED_ENABLE("chai.cache.changeFeed.enable", "false", true, Validator.BOOLEAN_VALIDATOR),
+
+    /**
+     * How the change feed reads changes, one of the values of {@link DirectoryChangeFeed.Mode}.
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.cache.changeFeed.mode</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>AUTO</td></tr>
+     * </table>
+     */
+    CACHE_CHANGE_FEED_MODE("chai.cache.changeFeed.mode", "AUTO", true, Validator.CHANGE_FEED_MODE_VALIDATOR),
+
+    /**
+     * Base DN of the change feed's persistent search.  If empty, a persistent search is made on each of the
+     * directory's naming contexts.
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.cache.changeFeed.baseDN</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td></td></tr>
+     * </table>
+     */
+    CACHE_CHANGE_FEED_BASE_DN("chai.cache.changeFeed.baseDN", "", true, null),
+
+    /**
+     * Time (in ms) between change log polls, and between attempts to reconnect the change feed.
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.cache.changeFeed.pollInterval</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>1000</td></tr>
+     * </table>
+     */
+    CACHE_CHANGE_FEED_POLL_INTERVAL("chai.cache.changeFeed.pollInterval", "1000", true, Validator.INTEGER_VALIDATOR),
+
     /**
      * Enable chai statistics.  If enabled, each ChaiProvider will maintain statistics and make them
      * available via {@link com.novell.ldapchai.provider.ChaiProvider#getProviderStatistics()}.
@@ -278,6 +324,58 @@ public enum ChaiSetting {
      */
     WIRETRACE_ENABLE("chai.wireDebug.enable", "false", true, Validator.BOOLEAN_VALIDATOR),
 
+    /**
+     * Wire trace sampling rate.  When wire tracing is enabled, only one out of every <i>n</i> ldap operations
+     * will be traced.  A value of 1 traces every operation.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.wireDebug.sampleRate</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>1</td></tr>
+     * </table>
+     * @see #WIRETRACE_ENABLE
+     */
+    WIRETRACE_SAMPLE_RATE("chai.wireDebug.sampleRate", "1", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Wire trace DN filter.  If not empty, only ldap operations whose target entry DN (or search base DN)
+     * matches this regular expression will be traced.  Operations without a DN parameter are always
+     * eligible for tracing.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.wireDebug.dnPattern</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>(blank)</td></tr>
+     * </table>
+     * @see #WIRETRACE_ENABLE
+     */
+    WIRETRACE_DN_PATTERN("chai.wireDebug.dnPattern", "", true, Validator.REGEX_VALIDATOR),
+
+    /**
+     * Maximum number of characters of a traced parameter list or result to be output.  Longer values are
+     * truncated; a result is only serialized up to this length, so large search results are not converted in full.
+     * A value of zero or less disables truncation.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.wireDebug.maxLength</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>4096</td></tr>
+     * </table>
+     * @see #WIRETRACE_ENABLE
+     */
+    WIRETRACE_MAX_LENGTH("chai.wireDebug.maxLength", "4096", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Size of the wire trace ring buffer.  Trace messages are placed into the buffer and written to the log
+     * by a background thread so ldap request threads are never blocked by the logging system.  If the buffer
+     * is full, the oldest pending message is discarded.  A value of zero causes trace messages to be written
+     * directly on the calling thread.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.wireDebug.bufferSize</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>1024</td></tr>
+     * </table>
+     * @see #WIRETRACE_ENABLE
+     */
+    WIRETRACE_BUFFER_SIZE("chai.wireDebug.bufferSize", "1024", true, Validator.INTEGER_VALIDATOR),
+
     /**
      * Enable fail over when multiple servers are present.  Also allows retries to a single server
      * in case of connection problems.
@@ -345,6 +443,19 @@ public enum ChaiSetting {
      */
     LDAP_FOLLOW_REFERRALS("chai.ldap.followReferrals", "false", true, Validator.BOOLEAN_VALIDATOR),
 
+    /**
+     * Number of entries to request in each page of a streaming search (see
+     * {@link ChaiProvider#searchMultiValues(String, com.novell.ldapchai.util.SearchHelper, SearchResultHandler)}),
+     * using the RFC 2696 paged results control.  Directories that limit the number of entries returned by a single
+     * search, such as Active Directory, return every entry of a paged search.  A value of zero disables paging.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.ldap.searchPageSize</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>500</td></tr>
+     * </table>
+     */
+    LDAP_SEARCH_PAGE_SIZE("chai.ldap.searchPageSize", "500", true, Validator.INTEGER_VALIDATOR),
+
     /**
      * Set the fully qualified class name of the {@code ChaiProvider} class name to be used.  By default this is
      * the class name for the {@link JNDIProviderImpl} class.
@@ -369,6 +480,31 @@ public enum ChaiSetting {
      */
     EDIRECTORY_ENABLE_NMAS("chai.edirectory.enableNMAS", "false", true, Validator.BOOLEAN_VALIDATOR),
 
+    /**
+     * Maximum age (in ms) of a cached NMAS challenge set policy.  Parsed challenge sets are cached by challenge set
+     * DN and locale, and shared as locked {@link com.novell.ldapchai.cr.ChallengeSet} instances.  Once a cached set
+     * is older than this value, only the entry's modifyTimestamp is read to check that it is still current.  A value of
+     * zero checks the modifyTimestamp on every read, a negative value disables the cache.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.edirectory.challengeSetCacheMaxAge</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>60000</td></tr>
+     * </table>
+     */
+    EDIRECTORY_CHALLENGE_SET_CACHE_MAX_AGE("chai.edirectory.challengeSetCacheMaxAge", "60000", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Maximum age (in ms) of a compiled OpenDJ password policy.  The policy entry and its password validator
+     * entries are read and compiled once, and the result is shared by every user with the same policy until it
+     * reaches this age.  A value of zero reads the policy each time it is needed.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.opendj.passwordPolicyCacheMaxAge</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>60000</td></tr>
+     * </table>
+     */
+    OPENDJ_PASSWORD_POLICY_CACHE_MAX_AGE("chai.opendj.passwordPolicyCacheMaxAge", "60000", true, Validator.INTEGER_VALIDATOR),
+
     /**
      * Cache failed operations due to unknown extended operations.  Once an unknown extended operation for a
      * given {@link ChaiProvider} occurs it will not be retried.
@@ -392,6 +528,56 @@ public enum ChaiSetting {
      */
     READONLY("chai.provider.readonly", "false", true, Validator.BOOLEAN_VALIDATOR),
 
+    /**
+     * Maximum number of write requests a {@link ChaiWritePipeline} will have outstanding at the same time.  Each of the
+     * pipeline's providers has at most one request outstanding, so a pipeline with a single provider always sends
+     * each queued operation only after the previous operation has completed.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.writePipeline.maxOutstanding</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>4</td></tr>
+     * </table>
+     */
+    WRITE_PIPELINE_MAX_OUTSTANDING("chai.writePipeline.maxOutstanding", "4", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Allow a {@link ChaiWritePipeline} to use RFC 5805 ldap transactions when the directory advertises them.  When
+     * a transaction is used, all of the queued operations are committed or rolled back together.  Operations in a
+     * transaction are sent directly on the JNDI connection and bypass the watchdog, fail over, statistics and wire
+     * trace wrappers.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.writePipeline.transactionsEnable</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>true</td></tr>
+     * </table>
+     */
+    WRITE_PIPELINE_TRANSACTIONS_ENABLE("chai.writePipeline.transactionsEnable", "true", true, Validator.BOOLEAN_VALIDATOR),
+
+    /**
+     * Maximum number of partition searches a {@link ChaiParallelSearch} runs at the same time.  A value of one runs
+     * the partitions one after another.  Unless providers are shared, no more partitions are searched at once than
+     * the search has providers.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.parallelSearch.threads</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>4</td></tr>
+     * </table>
+     */
+    PARALLEL_SEARCH_THREADS("chai.parallelSearch.threads", "4", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Filter used by a {@link ChaiParallelSearch} to find the child containers of the search base, each of which is
+     * searched as a separate partition.  Other children of the base are still searched, grouped into shared partitions.
+     * <p/>
+     * <table border="0">
+     * <tr><td style="text-align: right"><i>Key: </i></td><td>chai.parallelSearch.containerFilter</td></tr>
+     * <tr><td style="text-align: right"><i>Default: </i></td><td>(|(objectClass=organizationalUnit)(objectClass=organization)(objectClass=container)(objectClass=domain))</td></tr>
+     * </table>
+     */
+    PARALLEL_SEARCH_CONTAINER_FILTER("chai.parallelSearch.containerFilter",
+            "(|(objectClass=organizationalUnit)(objectClass=organization)(objectClass=container)(objectClass=domain))",
+            true, Validator.LDAP_FILTER_VALIDATOR),
+
     /**
      * Specify a default directory vendor.  If not empty, {@link ChaiProvider} implementations <b>should</b> always
      * return the configured value regardless of the actual directory type when {@link ChaiProvider#getDirectoryVendor()} 
@@ -472,6 +658,54 @@ public enum ChaiSetting {
      */
     CR_CHAI_SALT_COUNT("chai.cr.chai.saltCount", "1000", true, Validator.INTEGER_VALIDATOR),
 
+    /**
+     * Setting key to control the number of parsed Chai Challenge/Response records kept in memory.  Records are
+     * cached by their stored value, so a record that has changed in the directory is always parsed again.  Each
+     * provider configuration has its own cache of this size.  A value of zero disables the cache.
+     * <p/>
+     * <i>Default: </i><b>0</b>
+     *
+     * @see com.novell.ldapchai.cr.ChaiResponseSet
+     */
+    CR_CHAI_PARSE_CACHE_SIZE("chai.cr.chai.parseCacheSize", "0", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Maximum number of answer verification results to keep, shared across all response sets read from the
+     * directory.  When a response set is tested more than once with the same response, a recent result is re-used
+     * instead of re-computing the (intentionally slow) answer hash.  Results are keyed by an HMAC of the stored
+     * answer and response, the response itself is never kept.  Zero disables the cache.
+     * <p/>
+     * <i>Default: </i><b>0</b>
+     */
+    CR_VERIFY_CACHE_SIZE("chai.cr.verifyCacheSize", "0", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Maximum age (in ms) of a re-used answer verification result, see {@link #CR_VERIFY_CACHE_SIZE}.
+     * <p/>
+     * <i>Default: </i><b>60000</b>
+     */
+    CR_VERIFY_CACHE_MAX_AGE("chai.cr.verifyCacheMaxAge", "60000", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Number of threads a {@link com.novell.ldapchai.cr.ChaiCrBatchVerifier} uses to parse and test response sets.
+     * Zero uses one thread per available processor.
+     * <p/>
+     * <i>Default: </i><b>0</b>
+     */
+    CR_BATCH_VERIFY_THREADS("chai.cr.batchVerifyThreads", "0", true, Validator.INTEGER_VALIDATOR),
+
+    /**
+     * Setting key to control the format used when writing Chai Challenge/Response records.  Records in any format
+     * are always readable, so existing records are converted the next time they are written.  Must be one of
+     * the values of {@link com.novell.ldapchai.cr.ChaiResponseSet.StorageFormat}.
+     * <p/>
+     * <i>Default: </i><b>XML</b>
+     *
+     * @see com.novell.ldapchai.cr.ChaiResponseSet
+     * @see com.novell.ldapchai.util.ConfigObjectRecord
+     */
+    CR_CHAI_STORAGE_FORMAT("chai.cr.chai.storageFormat", "XML", true, Validator.CR_STORAGE_FORMAT_VALIDATOR),
+
 
     ;
 
@@ -584,6 +818,20 @@ public enum ChaiSetting {
             }
         };
 
+        static final Validator REGEX_VALIDATOR = new Validator() {
+            public void validate(final String value)
+            {
+                if (value == null || value.length() < 1) {
+                    return;
+                }
+                try {
+                    Pattern.compile(value);
+                } catch (Exception e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+            }
+        };
+
         static final Validator CR_FORMAT_VALIDATOR = new Validator() {
             public void validate(final String value) {
                 try {
@@ -595,5 +843,31 @@ public enum ChaiSetting {
                 }
             }
         };
+
+        static final Validator CR_STORAGE_FORMAT_VALIDATOR = new Validator() {
+            public void validate(final String value) {
+                try {
+                    ChaiResponseSet.StorageFormat.valueOf(value);
+                } catch (Exception e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+            }
+        };
+
+        static final Validator CHANGE_FEED_MODE_VALIDATOR = new Validator() {
+            public void validate(final String value) {
+                try {
+                    DirectoryChangeFeed.Mode.valueOf(value);
+                } catch (Exception e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+            }
+        };
+
+        static final Validator LDAP_FILTER_VALIDATOR = new Validator() {
+            public void validate(final String value) {
+                LdapFilter.parse(value);
+            }
+        };
     }
 }
@@ -0,0 +1,794 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.util.ChaiLogger;
+import com.novell.ldapchai.util.SearchHelper;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.ExtendedRequest;
+import javax.naming.ldap.ExtendedResponse;
+import javax.naming.ldap.LdapContext;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queues create, modify and delete operations and sends them to the directory as a batch.
+ * <p/>
+ * When the directory advertises RFC 5805 ldap transactions (OpenDJ, for example) and
+ * {@link ChaiSetting#WRITE_PIPELINE_TRANSACTIONS_ENABLE} is true, the whole batch is sent inside a single transaction
+ * and is committed or rolled back as a unit.  Transactions are only used with the JNDI provider.  The transaction
+ * requires a control on every operation, which the {@link ChaiProvider} methods can not send, so a transaction is
+ * sent directly on the JNDI connection of the (first) provider, <b>bypassing the provider's wrappers</b>: there is no
+ * watchdog, fail over, statistics or wire trace for operations sent in a transaction, and the
+ * {@link ChaiSetting#READONLY} setting is checked by the pipeline itself.  Transactions are not used when
+ * {@link ChaiSetting#CACHE_ENABLE} is true, because the cache would not be invalidated.  Set
+ * {@link ChaiSetting#WRITE_PIPELINE_TRANSACTIONS_ENABLE} to false to always send operations through the providers.
+ * <p/>
+ * Otherwise the operations are sent using the provider methods.  {@code ChaiProvider} implementations are not thread
+ * safe, so operations are only sent concurrently when the pipeline is given more than one provider (for example one
+ * per server, see {@link ChaiParallelSearch#createReplicaProviders(ChaiConfiguration)}); each provider is used by one
+ * thread at a time, and at most {@link ChaiSetting#WRITE_PIPELINE_MAX_OUTSTANDING} operations are outstanding at once.
+ * A pipeline with a single provider sends one operation at a time.  Operations against the same entry are always sent
+ * in the order they were queued, on the same provider.  Operations against different entries may be sent
+ * concurrently, so when one operation depends on another entry (for example adding a new user to a group, or creating
+ * an entry below a new container) call {@link #barrier()} between them.  Every operation queued before a barrier
+ * completes before any operation queued after it is sent.  When operations are spread over providers for different
+ * servers, an entry created on one server may not yet have replicated to another when operations after a barrier are
+ * sent.
+ * <p/>
+ * Each call to {@link #execute()} returns one {@link Result} per queued operation, in the order queued.  Instances
+ * are not thread safe.
+ * <pre>
+ *   final ChaiWritePipeline pipeline = new ChaiWritePipeline(provider);
+ *   pipeline.createEntry(userDN, "inetOrgPerson", userAttributes);
+ *   pipeline.barrier();
+ *   pipeline.modify(groupDN, Collections.singletonList(ChaiModification.add("member", userDN)));
+ *   for (final ChaiWritePipeline.Result result : pipeline.execute()) {
+ *       ...
+ *   }
+ * </pre>
+ *
+ * @author Jason D. Rivard
+ */
+public class ChaiWritePipeline {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String OID_START_TRANSACTION = "1.3.6.1.1.21.1";
+    private static final String OID_TRANSACTION_SPECIFICATION = "1.3.6.1.1.21.2";
+    private static final String OID_END_TRANSACTION = "1.3.6.1.1.21.3";
+
+// -------------------------- ENUMERATIONS --------------------------
+
+    public static enum OperationType {
+        CREATE,
+        MODIFY,
+        DELETE
+    }
+
+    public static enum Status {
+        /**
+         * The operation was applied by the directory.
+         */
+        SUCCESS,
+
+        /**
+         * The directory rejected the operation, see {@link Result#getError()}.
+         */
+        FAILED,
+
+        /**
+         * The operation was not sent, because an earlier operation on the same entry failed or the directory
+         * became unavailable.
+         */
+        NOT_ATTEMPTED,
+
+        /**
+         * The operation was accepted as part of a transaction, but the transaction was not committed.
+         */
+        ROLLED_BACK
+    }
+
+// ------------------------------ FIELDS ------------------------------
+
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger(ChaiWritePipeline.class);
+
+    private final ChaiProvider provider;
+    private final List<ChaiProvider> providers;
+    private final List<List<Operation>> stages = new ArrayList<List<Operation>>();
+    private int maxOutstanding;
+    private boolean transactionsEnabled;
+    private Boolean transactionsSupported;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public ChaiWritePipeline(final ChaiProvider provider)
+    {
+        this(Collections.singletonList(provider));
+    }
+
+    /**
+     * Create a pipeline that sends operations on several providers at once.  Each provider is only used by one thread
+     * at a time.  The configuration, and the connection used for transactions, are those of the first provider.
+     *
+     * @param providers the providers to send operations with
+     */
+    public ChaiWritePipeline(final List<ChaiProvider> providers)
+    {
+        if (providers == null || providers.isEmpty()) {
+            throw new NullPointerException("provider must not be null");
+        }
+        for (final ChaiProvider loopProvider : providers) {
+            if (loopProvider == null) {
+                throw new NullPointerException("provider must not be null");
+            }
+        }
+
+        final ChaiConfiguration chaiConfig = providers.get(0).getChaiConfiguration();
+        this.provider = providers.get(0);
+        this.providers = Collections.unmodifiableList(new ArrayList<ChaiProvider>(providers));
+        this.maxOutstanding = Math.max(1, chaiConfig.getIntSetting(ChaiSetting.WRITE_PIPELINE_MAX_OUTSTANDING));
+        this.transactionsEnabled = chaiConfig.getBooleanSetting(ChaiSetting.WRITE_PIPELINE_TRANSACTIONS_ENABLE)
+                && !chaiConfig.getBooleanSetting(ChaiSetting.CACHE_ENABLE);
+        this.stages.add(new ArrayList<Operation>());
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @return the maximum number of outstanding operations; no more than one per provider are ever outstanding
+     */
+    public int getMaxOutstanding()
+    {
+        return maxOutstanding;
+    }
+
+    public void setMaxOutstanding(final int maxOutstanding)
+    {
+        this.maxOutstanding = Math.max(1, maxOutstanding);
+    }
+
+    public boolean isTransactionsEnabled()
+    {
+        return transactionsEnabled;
+    }
+
+    public void setTransactionsEnabled(final boolean transactionsEnabled)
+    {
+        this.transactionsEnabled = transactionsEnabled;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public ChaiWritePipeline createEntry(final String entryDN, final String baseObjectClass, final Map<String,String> stringAttributes)
+    {
+        AbstractProvider.INPUT_VALIDATOR.createEntry(entryDN, baseObjectClass, stringAttributes);
+        return createEntry(entryDN, Collections.singleton(baseObjectClass), stringAttributes);
+    }
+
+    public ChaiWritePipeline createEntry(final String entryDN, final Set<String> baseObjectClasses, final Map<String,String> stringAttributes)
+    {
+        AbstractProvider.INPUT_VALIDATOR.createEntry(entryDN, baseObjectClasses, stringAttributes);
+        final Map<String,String> attributes = stringAttributes == null
+                ? Collections.<String,String>emptyMap()
+                : new LinkedHashMap<String,String>(stringAttributes);
+        return queue(new Operation(OperationType.CREATE, entryDN, new LinkedHashSet<String>(baseObjectClasses), attributes, null));
+    }
+
+    public ChaiWritePipeline modify(final String entryDN, final List<ChaiModification> modifications)
+    {
+        AbstractProvider.INPUT_VALIDATOR.modify(entryDN, modifications);
+        return queue(new Operation(OperationType.MODIFY, entryDN, null, null, new ArrayList<ChaiModification>(modifications)));
+    }
+
+    public ChaiWritePipeline deleteEntry(final String entryDN)
+    {
+        AbstractProvider.INPUT_VALIDATOR.deleteEntry(entryDN);
+        return queue(new Operation(OperationType.DELETE, entryDN, null, null, null));
+    }
+
+    /**
+     * Require every operation queued so far to complete before any operation queued afterwards is sent.
+     *
+     * @return this pipeline
+     */
+    public ChaiWritePipeline barrier()
+    {
+        if (!stages.get(stages.size() - 1).isEmpty()) {
+            stages.add(new ArrayList<Operation>());
+        }
+        return this;
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (final List<Operation> stage : stages) {
+            size += stage.size();
+        }
+        return size;
+    }
+
+    /**
+     * Send all queued operations and empty the queue.  Failures are reported in the returned results rather than
+     * thrown.
+     *
+     * @return one result per queued operation, in the order queued
+     */
+    public List<Result> execute()
+    {
+        final List<Operation> allOperations = new ArrayList<Operation>();
+        for (final List<Operation> stage : stages) {
+            allOperations.addAll(stage);
+        }
+
+        final List<List<Operation>> executeStages = new ArrayList<List<Operation>>(stages);
+        stages.clear();
+        stages.add(new ArrayList<Operation>());
+
+        if (allOperations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Map<Operation, Result> results = new IdentityHashMap<Operation, Result>();
+        final LdapContext transactionContext = transactionContext();
+        if (transactionContext == null || !executeInTransaction(transactionContext, allOperations, results)) {
+            executePipelined(executeStages, results);
+        }
+
+        final List<Result> returnList = new ArrayList<Result>(allOperations.size());
+        for (final Operation operation : allOperations) {
+            returnList.add(results.get(operation));
+        }
+        return Collections.unmodifiableList(returnList);
+    }
+
+    private ChaiWritePipeline queue(final Operation operation)
+    {
+        stages.get(stages.size() - 1).add(operation);
+        return this;
+    }
+
+    private void executePipelined(final List<List<Operation>> executeStages, final Map<Operation, Result> results)
+    {
+        final Map<Operation, Result> syncResults = Collections.synchronizedMap(results);
+        final boolean[] unavailable = new boolean[]{false};
+        final int concurrency = Math.min(maxOutstanding, providers.size());
+        final Queue<ChaiProvider> idleProviders = new ConcurrentLinkedQueue<ChaiProvider>(providers.subList(0, concurrency));
+        ExecutorService executor = null;
+
+        try {
+            for (final List<Operation> stage : executeStages) {
+                // operations against the same entry form a lane, and are sent in order on a single thread.  DNs are
+                // compared ignoring case and the spaces around separators, so "cn=a, o=b" and "CN=a,o=b" share a lane.
+                final Map<String, List<Operation>> lanes = new LinkedHashMap<String, List<Operation>>();
+                for (final Operation operation : stage) {
+                    final String laneKey = DirectoryChangeEvent.normalizeDN(operation.getEntryDN());
+                    List<Operation> lane = lanes.get(laneKey);
+                    if (lane == null) {
+                        lane = new ArrayList<Operation>();
+                        lanes.put(laneKey, lane);
+                    }
+                    lane.add(operation);
+                }
+
+                if (concurrency <= 1 || lanes.size() <= 1) {
+                    for (final List<Operation> lane : lanes.values()) {
+                        executeLane(lane, provider, syncResults, unavailable);
+                    }
+                } else {
+                    if (executor == null) {
+                        executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                                new LinkedBlockingQueue<Runnable>(), new PipelineThreadFactory());
+                    }
+
+                    final List<Future<?>> futures = new ArrayList<Future<?>>();
+                    for (final List<Operation> lane : lanes.values()) {
+                        futures.add(executor.submit(new Runnable() {
+                            public void run()
+                            {
+                                // there are as many idle providers as threads, so a provider is always available
+                                final ChaiProvider laneProvider = idleProviders.poll();
+                                try {
+                                    executeLane(lane, laneProvider, syncResults, unavailable);
+                                } finally {
+                                    idleProviders.add(laneProvider);
+                                }
+                            }
+                        }));
+                    }
+
+                    for (final Future<?> future : futures) {
+                        try {
+                            future.get();
+                        } catch (Exception e) {
+                            LOGGER.error("unexpected error waiting for write pipeline operation: " + e.getMessage(), e);
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void executeLane(final List<Operation> lane, final ChaiProvider provider, final Map<Operation, Result> results, final boolean[] unavailable)
+    {
+        boolean laneFailed = false;
+        for (final Operation operation : lane) {
+            final boolean skip;
+            synchronized (unavailable) {
+                skip = laneFailed || unavailable[0];
+            }
+
+            if (skip) {
+                results.put(operation, new Result(operation, Status.NOT_ATTEMPTED, null));
+                continue;
+            }
+
+            try {
+                switch (operation.getType()) {
+                    case CREATE:
+                        provider.createEntry(operation.getEntryDN(), operation.getObjectClasses(), operation.getAttributes());
+                        break;
+                    case MODIFY:
+                        provider.modify(operation.getEntryDN(), operation.getModifications());
+                        break;
+                    case DELETE:
+                        provider.deleteEntry(operation.getEntryDN());
+                        break;
+                }
+                results.put(operation, new Result(operation, Status.SUCCESS, null));
+            } catch (ChaiUnavailableException e) {
+                LOGGER.debug("directory unavailable during write pipeline " + operation + ", remaining operations will not be attempted: " + e.getMessage());
+                synchronized (unavailable) {
+                    unavailable[0] = true;
+                }
+                laneFailed = true;
+                results.put(operation, new Result(operation, Status.FAILED, e));
+            } catch (Exception e) {
+                laneFailed = true;
+                results.put(operation, new Result(operation, Status.FAILED, e));
+            }
+        }
+    }
+
+    /**
+     * Returns the provider's underlying {@code LdapContext} if the batch can be sent inside an ldap transaction, otherwise null.
+     * The context is used directly, so the provider's wrappers do not see the operations of a transaction and the
+     * read only setting must be checked here.
+     */
+    private LdapContext transactionContext()
+    {
+        if (!transactionsEnabled || !(provider instanceof ChaiProviderImplementor)) {
+            return null;
+        }
+
+        if (provider.getChaiConfiguration().getBooleanSetting(ChaiSetting.READONLY)) {
+            return null;
+        }
+
+        try {
+            final Object connectionObject = ((ChaiProviderImplementor) provider).getConnectionObject();
+            if (!(connectionObject instanceof LdapContext)) {
+                return null;
+            }
+
+            if (transactionsSupported == null) {
+                transactionsSupported = readTransactionSupport();
+                LOGGER.debug("ldap transaction support for write pipeline: " + transactionsSupported);
+            }
+
+            return transactionsSupported ? (LdapContext) connectionObject : null;
+        } catch (Exception e) {
+            LOGGER.debug("unable to determine ldap transaction support, transactions will not be used: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean readTransactionSupport()
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        final SearchHelper searchHelper = new SearchHelper();
+        searchHelper.setAttributes("supportedExtension", "supportedControl");
+        searchHelper.setFilter("(objectClass=*)");
+        searchHelper.setMaxResults(1);
+        searchHelper.setSearchScope(ChaiProvider.SEARCH_SCOPE.BASE);
+
+        final Map<String, Map<String, List<String>>> results = provider.searchMultiValues("", searchHelper);
+        final Map<String, List<String>> rootDseValues = results == null ? null : results.get("");
+        if (rootDseValues == null) {
+            return false;
+        }
+
+        final Set<String> supported = new HashSet<String>();
+        for (final String attributeName : rootDseValues.keySet()) {
+            if ("supportedExtension".equalsIgnoreCase(attributeName) || "supportedControl".equalsIgnoreCase(attributeName)) {
+                supported.addAll(rootDseValues.get(attributeName));
+            }
+        }
+
+        return supported.contains(OID_START_TRANSACTION)
+                && supported.contains(OID_END_TRANSACTION)
+                && supported.contains(OID_TRANSACTION_SPECIFICATION);
+    }
+
+    /**
+     * Send all operations inside a single RFC 5805 transaction.
+     *
+     * @return false if the transaction could not be started, in which case no operations have been sent.
+     */
+    private boolean executeInTransaction(final LdapContext ldapContext, final List<Operation> operations, final Map<Operation, Result> results)
+    {
+        final byte[] transactionID;
+        try {
+            final ExtendedResponse response = ldapContext.extendedOperation(new TransactionRequest(OID_START_TRANSACTION, null));
+            transactionID = response == null ? null : response.getEncodedValue();
+        } catch (NamingException e) {
+            LOGGER.debug("unable to start ldap transaction, operations will be sent without a transaction: " + e.getMessage());
+            return false;
+        }
+
+        if (transactionID == null || transactionID.length == 0) {
+            LOGGER.debug("ldap transaction start response did not include a transaction identifier, operations will be sent without a transaction");
+            return false;
+        }
+
+        LdapContext txnContext = null;
+        Exception failure = null;
+        int acceptedCount = 0;
+        boolean operationRejected = false;
+        try {
+            txnContext = ldapContext.newInstance(new Control[]{new TransactionSpecificationControl(transactionID)});
+            for (final Operation operation : operations) {
+                try {
+                    executeWithContext(txnContext, operation);
+                    acceptedCount++;
+                } catch (NamingException e) {
+                    failure = convertNamingException(e);
+                    operationRejected = true;
+                    break;
+                }
+            }
+        } catch (NamingException e) {
+            failure = convertNamingException(e);
+        } finally {
+            if (txnContext != null) {
+                try {
+                    txnContext.close();
+                } catch (NamingException e) {
+                    // nothing to do
+                }
+            }
+        }
+
+        final boolean commit = failure == null;
+        try {
+            ldapContext.extendedOperation(new TransactionRequest(OID_END_TRANSACTION, encodeEndTransaction(transactionID, commit)));
+        } catch (NamingException e) {
+            if (commit) {
+                failure = convertNamingException(e);
+            } else {
+                LOGGER.debug("error aborting ldap transaction: " + e.getMessage());
+            }
+        }
+
+        // operations are sent in order, so everything before acceptedCount was accepted into the transaction
+        for (int i = 0; i < operations.size(); i++) {
+            final Operation operation = operations.get(i);
+            final Result result;
+            if (failure == null) {
+                result = new Result(operation, Status.SUCCESS, null);
+            } else if (i < acceptedCount || !operationRejected) {
+                result = new Result(operation, Status.ROLLED_BACK, failure);
+            } else if (i == acceptedCount) {
+                result = new Result(operation, Status.FAILED, failure);
+            } else {
+                result = new Result(operation, Status.NOT_ATTEMPTED, null);
+            }
+            results.put(operation, result);
+        }
+
+        return true;
+    }
+
+    private static void executeWithContext(final LdapContext ldapContext, final Operation operation)
+            throws NamingException
+    {
+        final String entryDN = JNDIProviderImpl.addJndiEscape(operation.getEntryDN());
+        switch (operation.getType()) {
+            case CREATE:
+                ldapContext.createSubcontext(entryDN, JNDIProviderImpl.makeCreateAttributes(operation.getObjectClasses(), operation.getAttributes())).close();
+                break;
+            case MODIFY:
+                ldapContext.modifyAttributes(entryDN, JNDIProviderImpl.makeModificationItems(operation.getModifications()));
+                break;
+            case DELETE:
+                ldapContext.destroySubcontext(entryDN);
+                break;
+        }
+    }
+
+    private static Exception convertNamingException(final NamingException e)
+    {
+        if (e instanceof CommunicationException || e instanceof ServiceUnavailableException) {
+            return new ChaiUnavailableException(e.getMessage(), ChaiError.COMMUNICATION);
+        }
+        return ChaiOperationException.forErrorMessage(e.getMessage());
+    }
+
+    /**
+     * BER encodes the RFC 5805 end transaction request value:
+     * <pre>
+     *   txnEndReq ::= SEQUENCE {
+     *        commit         BOOLEAN DEFAULT TRUE,
+     *        identifier     OCTET STRING }
+     * </pre>
+     */
+    static byte[] encodeEndTransaction(final byte[] transactionID, final boolean commit)
+    {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (!commit) {
+            body.write(0x01);
+            body.write(0x01);
+            body.write(0x00);
+        }
+        body.write(0x04);
+        writeBerLength(body, transactionID.length);
+        body.write(transactionID, 0, transactionID.length);
+
+        final byte[] bodyBytes = body.toByteArray();
+        final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        encoded.write(0x30);
+        writeBerLength(encoded, bodyBytes.length);
+        encoded.write(bodyBytes, 0, bodyBytes.length);
+        return encoded.toByteArray();
+    }
+
+    private static void writeBerLength(final ByteArrayOutputStream out, final int length)
+    {
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length <= 0xFF) {
+            out.write(0x81);
+            out.write(length);
+        } else if (length <= 0xFFFF) {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length & 0xFF);
+        } else {
+            out.write(0x84);
+            out.write(length >> 24);
+            out.write((length >> 16) & 0xFF);
+            out.write((length >> 8) & 0xFF);
+            out.write(length & 0xFF);
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A queued write operation.
+     */
+    public static class Operation {
+        private final OperationType type;
+        private final String entryDN;
+        private final Set<String> objectClasses;
+        private final Map<String,String> attributes;
+        private final List<ChaiModification> modifications;
+
+        private Operation(
+                final OperationType type,
+                final String entryDN,
+                final Set<String> objectClasses,
+                final Map<String,String> attributes,
+                final List<ChaiModification> modifications
+        )
+        {
+            this.type = type;
+            this.entryDN = entryDN;
+            this.objectClasses = objectClasses == null ? null : Collections.unmodifiableSet(objectClasses);
+            this.attributes = attributes == null ? null : Collections.unmodifiableMap(attributes);
+            this.modifications = modifications == null ? null : Collections.unmodifiableList(modifications);
+        }
+
+        public OperationType getType()
+        {
+            return type;
+        }
+
+        public String getEntryDN()
+        {
+            return entryDN;
+        }
+
+        /**
+         * @return the object classes of a {@link OperationType#CREATE} operation, otherwise null
+         */
+        public Set<String> getObjectClasses()
+        {
+            return objectClasses;
+        }
+
+        /**
+         * @return the attributes of a {@link OperationType#CREATE} operation, otherwise null
+         */
+        public Map<String,String> getAttributes()
+        {
+            return attributes;
+        }
+
+        /**
+         * @return the modifications of a {@link OperationType#MODIFY} operation, otherwise null
+         */
+        public List<ChaiModification> getModifications()
+        {
+            return modifications;
+        }
+
+        public String toString()
+        {
+            return type + " " + entryDN;
+        }
+    }
+
+    /**
+     * The outcome of a single queued operation.
+     */
+    public static class Result {
+        private final Operation operation;
+        private final Status status;
+        private final Exception error;
+
+        private Result(final Operation operation, final Status status, final Exception error)
+        {
+            this.operation = operation;
+            this.status = status;
+            this.error = error;
+        }
+
+        public Operation getOperation()
+        {
+            return operation;
+        }
+
+        public Status getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * @return the error that caused the operation to fail or be rolled back, otherwise null
+         */
+        public Exception getError()
+        {
+            return error;
+        }
+
+        public boolean isSuccess()
+        {
+            return status == Status.SUCCESS;
+        }
+
+        public String toString()
+        {
+            return operation + " " + status + (error == null ? "" : " (" + error.getMessage() + ")");
+        }
+    }
+
+    private static class PipelineThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+
+        public Thread newThread(final Runnable r)
+        {
+            final Thread thread = new Thread(r, "LDAP Chai ChaiWritePipeline thread " + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class TransactionRequest implements ExtendedRequest {
+        private static final long serialVersionUID = 1L;
+
+        private final String oid;
+        private final byte[] value;
+
+        private TransactionRequest(final String oid, final byte[] value)
+        {
+            this.oid = oid;
+            this.value = value;
+        }
+
+        public String getID()
+        {
+            return oid;
+        }
+
+        public byte[] getEncodedValue()
+        {
+            return value;
+        }
+
+        public ExtendedResponse createExtendedResponse(final String id, final byte[] berValue, final int offset, final int length)
+        {
+            final byte[] responseValue;
+            if (berValue == null) {
+                responseValue = null;
+            } else {
+                responseValue = new byte[length];
+                System.arraycopy(berValue, offset, responseValue, 0, length);
+            }
+
+            return new ExtendedResponse() {
+                public String getID()
+                {
+                    return id;
+                }
+
+                public byte[] getEncodedValue()
+                {
+                    return responseValue;
+                }
+            };
+        }
+    }
+
+    private static class TransactionSpecificationControl implements Control {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] transactionID;
+
+        private TransactionSpecificationControl(final byte[] transactionID)
+        {
+            this.transactionID = transactionID;
+        }
+
+        public String getID()
+        {
+            return OID_TRANSACTION_SPECIFICATION;
+        }
+
+        public boolean isCritical()
+        {
+            return true;
+        }
+
+        public byte[] getEncodedValue()
+        {
+            return transactionID;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import java.io.Serializable;
+import java.util.regex.Pattern;
+
+/**
+ * A change to a directory entry, as reported by a {@link DirectoryChangeFeed}.
+ * <p/>
+ * A {@link Type#RESYNC} event does not describe a single entry; it is sent when the feed (re)connects or finds that
+ * it has missed changes, and means that anything cached from the directory should be discarded.
+ *
+ * @author Jason D. Rivard
+ */
+public final class DirectoryChangeEvent implements Serializable {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern DN_SEPARATOR_PATTERN = Pattern.compile("\\s*([,=+])\\s*");
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final String bindURLs;
+    private final Type type;
+    private final String entryDN;
+    private final String previousDN;
+    private final long changeNumber;
+    private final long timestamp;
+
+// -------------------------- ENUMERATIONS --------------------------
+
+    public enum Type {
+        ADD,
+        DELETE,
+        MODIFY,
+        MODDN,
+        RESYNC,
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Reduce a DN to a form suitable for comparison: lower case, without spaces around separators.
+     *
+     * @param dn a DN
+     * @return the normalized dn, or null if dn is null
+     */
+    public static String normalizeDN(final String dn)
+    {
+        if (dn == null) {
+            return null;
+        }
+        return DN_SEPARATOR_PATTERN.matcher(dn.trim().toLowerCase()).replaceAll("$1");
+    }
+
+    /**
+     * Test if a DN is equal to, or a descendant of, a base DN.
+     *
+     * @param normalizedDN     a dn, as returned by {@link #normalizeDN(String)}
+     * @param normalizedBaseDN a base dn, as returned by {@link #normalizeDN(String)}; an empty base contains every entry
+     * @return true if the dn is within the subtree of the base
+     */
+    static boolean isWithin(final String normalizedDN, final String normalizedBaseDN)
+    {
+        if (normalizedBaseDN.length() == 0 || normalizedDN.equals(normalizedBaseDN)) {
+            return true;
+        }
+        return normalizedDN.endsWith(normalizedBaseDN) && normalizedDN.charAt(normalizedDN.length() - normalizedBaseDN.length() - 1) == ',';
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    DirectoryChangeEvent(
+            final String bindURLs,
+            final Type type,
+            final String entryDN,
+            final String previousDN,
+            final long changeNumber
+    )
+    {
+        this.bindURLs = bindURLs;
+        this.type = type;
+        this.entryDN = entryDN;
+        this.previousDN = previousDN;
+        this.changeNumber = changeNumber;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @return the {@link ChaiSetting#BIND_URLS} value of the configuration the feed was created for
+     */
+    public String getBindURLs()
+    {
+        return bindURLs;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return the DN of the changed entry (after the change, for {@link Type#MODDN}), or null for {@link Type#RESYNC}
+     */
+    public String getEntryDN()
+    {
+        return entryDN;
+    }
+
+    /**
+     * @return the DN of a renamed entry before the change, otherwise null
+     */
+    public String getPreviousDN()
+    {
+        return previousDN;
+    }
+
+    /**
+     * @return the directory's change number, or -1 if the directory did not report one
+     */
+    public long getChangeNumber()
+    {
+        return changeNumber;
+    }
+
+    /**
+     * @return the time the event was received
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+// ------------------------ CANONICAL METHODS ------------------------
+
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("DirectoryChangeEvent: ").append(type);
+        if (entryDN != null) {
+            sb.append(" ").append(entryDN);
+        }
+        if (previousDN != null) {
+            sb.append(" (was ").append(previousDN).append(")");
+        }
+        if (changeNumber >= 0) {
+            sb.append(", changeNumber=").append(changeNumber);
+        }
+        return sb.toString();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Test if a cached value read from an entry is made stale by this event.
+     *
+     * @param dn the dn of the entry the value was read from
+     * @return true if the event is a {@link Type#RESYNC}, or the dn is the changed entry (or, for a rename, the entry's
+     *         previous dn)
+     */
+    public boolean affectsEntry(final String dn)
+    {
+        if (type == Type.RESYNC) {
+            return true;
+        }
+        final String normalizedDN = normalizeDN(dn);
+        return normalizedDN.equals(normalizeDN(entryDN)) || (previousDN != null && normalizedDN.equals(normalizeDN(previousDN)));
+    }
+
+    /**
+     * Test if a cached search result is made stale by this event.
+     *
+     * @param baseDN the base dn of the search
+     * @return true if the event is a {@link Type#RESYNC}, or the changed entry (or, for a rename, the entry's previous
+     *         dn) is within the subtree of the base
+     */
+    public boolean affectsSubtree(final String baseDN)
+    {
+        if (type == Type.RESYNC) {
+            return true;
+        }
+        final String normalizedBase = normalizeDN(baseDN);
+        return isWithin(normalizeDN(entryDN), normalizedBase) || (previousDN != null && isWithin(normalizeDN(previousDN), normalizedBase));
+    }
+}
@@ -0,0 +1,868 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import com.novell.ldapchai.util.ChaiLogger;
+import com.novell.ldapchai.util.FilterTemplate;
+import com.novell.ldapchai.util.SearchHelper;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.HasControls;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows the changes made to a directory, so that cached data can be invalidated as soon as an entry changes rather
+ * than when its cache entry expires.
+ * <p/>
+ * A feed reads changes in one of two ways, see {@link Mode}:
+ * <ul>
+ * <li><b>Persistent search</b> (draft-ietf-ldapext-psearch), supported by eDirectory, OpenDJ and 389 Directory
+ * Server.  A search with the persistent search control is held open on each naming context (or on
+ * {@link ChaiSetting#CACHE_CHANGE_FEED_BASE_DN}), and each entry returned is a change.  This requires the JNDI
+ * provider.</li>
+ * <li><b>Change log</b> (draft-good-ldap-changelog), as published under {@code cn=changelog} by OpenDJ and 389
+ * Directory Server.  The change log is polled every {@link ChaiSetting#CACHE_CHANGE_FEED_POLL_INTERVAL} ms, starting
+ * from the root DSE's {@code lastChangeNumber}.</li>
+ * </ul>
+ * Each feed uses its own connection(s), made with the credentials of its configuration, and runs on daemon threads.
+ * Whenever a feed (re)connects, or finds it has missed changes, it sends a {@link DirectoryChangeEvent.Type#RESYNC}
+ * event.
+ * <p/>
+ * Feeds are shared: {@link #forConfiguration(ChaiConfiguration)} returns the running feed for the same directory and
+ * credentials, and the feed is stopped when each caller has called {@link #release()}.  When
+ * {@link ChaiSetting#CACHE_CHANGE_FEED_ENABLE} is set, the caching provider wrapper uses a feed to invalidate its cached
+ * results by DN.  Caches elsewhere in the api (such as the eDirectory challenge set and OpenDJ password policy caches)
+ * are registered with {@link #addGlobalListener(DirectoryChangeListener)}.
+ *
+ * @author Jason D. Rivard
+ */
+public final class DirectoryChangeFeed {
+// ----------------------------- CONSTANTS ----------------------------
+
+    static final String PERSISTENT_SEARCH_OID = "2.16.840.1.113730.3.4.3";
+    static final String ENTRY_CHANGE_NOTIFICATION_OID = "2.16.840.1.113730.3.4.7";
+
+    /**
+     * PersistentSearch ::= SEQUENCE { changeTypes INTEGER (add, delete, modify and modDN), changesOnly TRUE, returnECs TRUE }
+     */
+    private static final byte[] PERSISTENT_SEARCH_VALUE = {0x30, 0x09, 0x02, 0x01, 0x0f, 0x01, 0x01, (byte) 0xff, 0x01, 0x01, (byte) 0xff};
+
+    private static final String CHANGELOG_DN = "cn=changelog";
+    private static final int CHANGELOG_BATCH_SIZE = 500;
+    private static final FilterTemplate CHANGELOG_FILTER = FilterTemplate.compile("(&(changeNumber>={0})(changeNumber<={1}))");
+
+    private static final String ATTR_CHANGE_NUMBER = "changeNumber";
+    private static final String ATTR_CHANGE_TYPE = "changeType";
+    private static final String ATTR_TARGET_DN = "targetDN";
+    private static final String ATTR_NEW_RDN = "newRDN";
+    private static final String ATTR_NEW_SUPERIOR = "newSuperior";
+
+    private static final String ATTR_SUPPORTED_CONTROL = "supportedControl";
+    private static final String ATTR_NAMING_CONTEXTS = "namingContexts";
+    private static final String ATTR_CHANGELOG = "changelog";
+    private static final String ATTR_LAST_CHANGE_NUMBER = "lastChangeNumber";
+
+    private static final String THREAD_NAME = "LDAP Chai DirectoryChangeFeed";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private static final ChaiLogger LOGGER = ChaiLogger.getLogger(DirectoryChangeFeed.class);
+
+    private static final Map<String, DirectoryChangeFeed> ACTIVE_FEEDS = new HashMap<String, DirectoryChangeFeed>();
+    private static final List<DirectoryChangeListener> GLOBAL_LISTENERS = new CopyOnWriteArrayList<DirectoryChangeListener>();
+
+    private final String feedKey;
+    private final ChaiConfiguration chaiConfiguration;
+    private final String bindURLs;
+    private final Mode configuredMode;
+    private final String configuredBaseDN;
+    private final int pollInterval;
+
+    private final List<DirectoryChangeListener> listeners = new CopyOnWriteArrayList<DirectoryChangeListener>();
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private int referenceCount = 0;
+
+    private volatile boolean running = false;
+    private volatile Mode activeMode = null;
+    private volatile long lastEventTime = 0;
+    private final AtomicLong eventCount = new AtomicLong(0);
+    private final AtomicLong resyncCount = new AtomicLong(0);
+
+// -------------------------- ENUMERATIONS --------------------------
+
+    public enum Mode {
+        /**
+         * Use persistent search if the directory advertises the control, otherwise the change log if it has one.
+         */
+        AUTO,
+        PERSISTENT_SEARCH,
+        CHANGELOG,
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Get the feed for a directory, starting it if it is not already running.  Each call must be matched by a call to
+     * {@link #release()}.
+     *
+     * @param chaiConfiguration a configuration for the directory to follow
+     * @return a running feed
+     */
+    public static DirectoryChangeFeed forConfiguration(final ChaiConfiguration chaiConfiguration)
+    {
+        final String feedKey = chaiConfiguration.getSetting(ChaiSetting.BIND_URLS)
+                + "|" + chaiConfiguration.getSetting(ChaiSetting.BIND_DN)
+                + "|" + chaiConfiguration.getSetting(ChaiSetting.CACHE_CHANGE_FEED_MODE)
+                + "|" + chaiConfiguration.getSetting(ChaiSetting.CACHE_CHANGE_FEED_BASE_DN);
+
+        synchronized (ACTIVE_FEEDS) {
+            DirectoryChangeFeed feed = ACTIVE_FEEDS.get(feedKey);
+            if (feed == null) {
+                feed = new DirectoryChangeFeed(feedKey, chaiConfiguration);
+                ACTIVE_FEEDS.put(feedKey, feed);
+                feed.start();
+            }
+            feed.referenceCount++;
+            return feed;
+        }
+    }
+
+    /**
+     * Register a listener for the events of every feed.
+     *
+     * @param listener the listener
+     */
+    public static void addGlobalListener(final DirectoryChangeListener listener)
+    {
+        GLOBAL_LISTENERS.add(listener);
+    }
+
+    public static void removeGlobalListener(final DirectoryChangeListener listener)
+    {
+        GLOBAL_LISTENERS.remove(listener);
+    }
+
+    private static List<String> values(final Map<String, List<String>> attributeValues, final String attributeName)
+    {
+        if (attributeValues != null) {
+            for (final String loopName : attributeValues.keySet()) {
+                if (attributeName.equalsIgnoreCase(loopName)) {
+                    return attributeValues.get(loopName);
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static String firstValue(final Map<String, List<String>> attributeValues, final String attributeName)
+    {
+        final List<String> values = values(attributeValues, attributeName);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    private static Map<String, List<String>> readRootDSE(final ChaiProvider provider)
+            throws Exception
+    {
+        final SearchHelper searchHelper = new SearchHelper();
+        searchHelper.setAttributes(ATTR_SUPPORTED_CONTROL, ATTR_NAMING_CONTEXTS, ATTR_CHANGELOG, ATTR_LAST_CHANGE_NUMBER);
+        searchHelper.setFilter(SearchHelper.DEFAULT_FILTER);
+        searchHelper.setSearchScope(ChaiProvider.SEARCH_SCOPE.BASE);
+
+        final Map<String, Map<String, List<String>>> results = provider.searchMultiValues("", searchHelper);
+        final Map<String, List<String>> rootDseValues = results == null ? null : results.get("");
+        return rootDseValues == null ? Collections.<String, List<String>>emptyMap() : rootDseValues;
+    }
+
+    /**
+     * The parent of a dn, found by removing its first (unescaped) rdn.
+     */
+    private static String parentDN(final String dn)
+    {
+        for (int i = 0; i < dn.length(); i++) {
+            final char c = dn.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ',') {
+                return dn.substring(i + 1).trim();
+            }
+        }
+        return "";
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private DirectoryChangeFeed(final String feedKey, final ChaiConfiguration chaiConfiguration)
+    {
+        this.feedKey = feedKey;
+        this.chaiConfiguration = chaiConfiguration;
+        this.bindURLs = chaiConfiguration.getSetting(ChaiSetting.BIND_URLS);
+        this.configuredMode = Mode.valueOf(chaiConfiguration.getSetting(ChaiSetting.CACHE_CHANGE_FEED_MODE));
+        this.configuredBaseDN = chaiConfiguration.getSetting(ChaiSetting.CACHE_CHANGE_FEED_BASE_DN);
+        this.pollInterval = chaiConfiguration.getIntSetting(ChaiSetting.CACHE_CHANGE_FEED_POLL_INTERVAL);
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @return the mode in use, or null if the feed has not yet connected or the directory supports neither mode
+     */
+    public Mode getActiveMode()
+    {
+        return activeMode;
+    }
+
+    /**
+     * @return the number of events sent to listeners, including {@link DirectoryChangeEvent.Type#RESYNC} events
+     */
+    public long getEventCount()
+    {
+        return eventCount.get();
+    }
+
+    /**
+     * @return the number of {@link DirectoryChangeEvent.Type#RESYNC} events sent to listeners
+     */
+    public long getResyncCount()
+    {
+        return resyncCount.get();
+    }
+
+    /**
+     * @return the time the last event was sent to listeners, or zero if none have been sent
+     */
+    public long getLastEventTime()
+    {
+        return lastEventTime;
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * A feed is connected when it has chosen a mode and every worker has an open connection to the directory.  Only
+     * then will changes made by this or any other client be reported to listeners.
+     *
+     * @return true if the feed is currently reporting changes
+     */
+    public boolean isConnected()
+    {
+        if (!running || activeMode == null) {
+            return false;
+        }
+        synchronized (workers) {
+            if (workers.isEmpty()) {
+                return false;
+            }
+            for (final Worker worker : workers) {
+                if (!worker.connected) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+// ------------------------ CANONICAL METHODS ------------------------
+
+    public String toString()
+    {
+        return "DirectoryChangeFeed: " + bindURLs + ", mode: " + (activeMode == null ? configuredMode : activeMode) + ", events: " + eventCount.get() + ", resyncs: " + resyncCount.get();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public void addListener(final DirectoryChangeListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final DirectoryChangeListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Release a feed returned by {@link #forConfiguration(ChaiConfiguration)}.  The feed is stopped when it has been
+     * released by every caller.
+     */
+    public void release()
+    {
+        synchronized (ACTIVE_FEEDS) {
+            if (referenceCount <= 0) {
+                return;
+            }
+            referenceCount--;
+            if (referenceCount == 0) {
+                ACTIVE_FEEDS.remove(feedKey);
+                stop();
+            }
+        }
+    }
+
+    private void start()
+    {
+        running = true;
+        final Thread controllerThread = new Thread(new Runnable() {
+            public void run()
+            {
+                startWorkers();
+            }
+        }, THREAD_NAME);
+        controllerThread.setDaemon(true);
+        controllerThread.start();
+    }
+
+    private void stop()
+    {
+        running = false;
+        synchronized (workers) {
+            for (final Worker worker : workers) {
+                worker.shutdown();
+            }
+            workers.clear();
+        }
+        LOGGER.debug("stopped " + this.toString());
+    }
+
+    /**
+     * Read the root DSE, choose the mode and start a worker thread for each persistent search, or for the change log.
+     */
+    private void startWorkers()
+    {
+        int urlIndex = 0;
+        while (running) {
+            ChaiProviderImplementor provider = null;
+            try {
+                provider = openProvider(urlIndex);
+                final Map<String, List<String>> rootDseValues = readRootDSE(provider);
+
+                final boolean psearchSupported = values(rootDseValues, ATTR_SUPPORTED_CONTROL).contains(PERSISTENT_SEARCH_OID);
+                final boolean changelogSupported = !values(rootDseValues, ATTR_CHANGELOG).isEmpty() || !values(rootDseValues, ATTR_LAST_CHANGE_NUMBER).isEmpty();
+
+                final Mode mode;
+                if (configuredMode == Mode.AUTO) {
+                    mode = psearchSupported ? Mode.PERSISTENT_SEARCH : changelogSupported ? Mode.CHANGELOG : null;
+                } else {
+                    mode = configuredMode;
+                }
+
+                if (mode == null) {
+                    LOGGER.warn("directory " + bindURLs + " supports neither persistent search nor a change log, cached values will only expire by age");
+                    return;
+                }
+
+                final List<Worker> newWorkers = new ArrayList<Worker>();
+                if (mode == Mode.PERSISTENT_SEARCH) {
+                    final List<String> baseDNs = new ArrayList<String>();
+                    if (configuredBaseDN != null && configuredBaseDN.length() > 0) {
+                        baseDNs.add(configuredBaseDN);
+                    } else {
+                        for (final String namingContext : values(rootDseValues, ATTR_NAMING_CONTEXTS)) {
+                            if (!CHANGELOG_DN.equalsIgnoreCase(namingContext)) {
+                                baseDNs.add(namingContext);
+                            }
+                        }
+                    }
+                    for (final String baseDN : baseDNs) {
+                        newWorkers.add(new PersistentSearchWorker(baseDN));
+                    }
+                } else {
+                    newWorkers.add(new ChangelogWorker());
+                }
+
+                synchronized (workers) {
+                    if (!running) {
+                        return;
+                    }
+                    activeMode = mode;
+                    for (final Worker worker : newWorkers) {
+                        workers.add(worker);
+                        worker.start();
+                    }
+                }
+
+                LOGGER.debug("started " + this.toString() + " with " + newWorkers.size() + " worker(s)");
+                return;
+            } catch (Exception e) {
+                LOGGER.debug("unable to start change feed for " + bindURLs + ": " + e.getMessage());
+                urlIndex++;
+            } finally {
+                if (provider != null) {
+                    provider.close();
+                }
+            }
+
+            if (!pause()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Open a dedicated, unwrapped connection to one of the configuration's urls.
+     */
+    private ChaiProviderImplementor openProvider(final int urlIndex)
+            throws Exception
+    {
+        final List<String> urls = chaiConfiguration.bindURLsAsList();
+        final ChaiConfiguration feedConfiguration = (ChaiConfiguration) chaiConfiguration.clone();
+        feedConfiguration.setSetting(ChaiSetting.BIND_URLS, urls.get(urlIndex % urls.size()));
+        feedConfiguration.setSetting(ChaiSetting.JNDI_ENABLE_POOL, "false");
+        feedConfiguration.lock();
+        return ChaiProviderFactory.createConcreateProvider(feedConfiguration, true);
+    }
+
+    private boolean pause()
+    {
+        try {
+            Thread.sleep(pollInterval);
+            return running;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    void fire(final DirectoryChangeEvent event)
+    {
+        if (!running) {
+            return;
+        }
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace(event.toString());
+        }
+
+        for (final DirectoryChangeListener listener : listeners) {
+            notifyListener(listener, event);
+        }
+        for (final DirectoryChangeListener listener : GLOBAL_LISTENERS) {
+            notifyListener(listener, event);
+        }
+
+        // counted once every listener has handled the event, so a caller that sees the count knows caches are updated
+        lastEventTime = event.getTimestamp();
+        if (event.getType() == DirectoryChangeEvent.Type.RESYNC) {
+            resyncCount.incrementAndGet();
+        }
+        eventCount.incrementAndGet();
+    }
+
+    private static void notifyListener(final DirectoryChangeListener listener, final DirectoryChangeEvent event)
+    {
+        try {
+            listener.directoryChanged(event);
+        } catch (RuntimeException e) {
+            LOGGER.error("error in directory change listener " + listener + ": " + e.getMessage(), e);
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Reads changes on its own thread and connection, reconnecting (to the next url) after an error.
+     */
+    private abstract class Worker implements Runnable {
+        private final Thread thread;
+        private volatile ChaiProviderImplementor provider;
+        private volatile boolean connected = false;
+
+        protected Worker(final String description)
+        {
+            thread = new Thread(this, THREAD_NAME + " " + description);
+            thread.setDaemon(true);
+        }
+
+        void start()
+        {
+            thread.start();
+        }
+
+        public void run()
+        {
+            int urlIndex = 0;
+            while (running) {
+                try {
+                    provider = openProvider(urlIndex);
+                    // changes made while not connected are unknown
+                    connected = true;
+                    fire(new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.RESYNC, null, null, -1));
+                    consume(provider);
+                } catch (Exception e) {
+                    if (running) {
+                        LOGGER.debug("change feed for " + bindURLs + " interrupted, will reconnect: " + e.getMessage());
+                        urlIndex++;
+                    }
+                } finally {
+                    connected = false;
+                    closeProvider();
+                }
+
+                if (!pause()) {
+                    return;
+                }
+            }
+        }
+
+        void shutdown()
+        {
+            closeProvider();
+            thread.interrupt();
+        }
+
+        private void closeProvider()
+        {
+            final ChaiProviderImplementor currentProvider = provider;
+            provider = null;
+            if (currentProvider != null) {
+                try {
+                    currentProvider.close();
+                } catch (Exception e) {
+                    LOGGER.trace("error closing change feed connection: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Read changes until the connection fails or the feed is stopped.
+         */
+        abstract void consume(ChaiProviderImplementor provider)
+                throws Exception;
+    }
+
+    private class PersistentSearchWorker extends Worker {
+        private final String baseDN;
+        private volatile NamingEnumeration<SearchResult> results;
+
+        PersistentSearchWorker(final String baseDN)
+        {
+            super(baseDN);
+            this.baseDN = baseDN;
+        }
+
+        void consume(final ChaiProviderImplementor provider)
+                throws Exception
+        {
+            final Object connectionObject = provider.getConnectionObject();
+            if (!(connectionObject instanceof LdapContext)) {
+                throw new IllegalStateException("persistent search requires an LdapContext, not " + (connectionObject == null ? "null" : connectionObject.getClass().getName()));
+            }
+
+            final Control[] requestControls = {new BasicControl(PERSISTENT_SEARCH_OID, true, PERSISTENT_SEARCH_VALUE)};
+            final LdapContext searchContext = ((LdapContext) connectionObject).newInstance(requestControls);
+            try {
+                final SearchControls searchControls = new SearchControls();
+                searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+                searchControls.setReturningAttributes(new String[]{"1.1"});
+                searchControls.setReturningObjFlag(false);
+
+                results = searchContext.search(new LdapName(baseDN), SearchHelper.DEFAULT_FILTER, searchControls);
+                while (running && results.hasMore()) {
+                    fire(toEvent(results.next()));
+                }
+            } finally {
+                if (results != null) {
+                    try {
+                        results.close();
+                    } catch (Exception e) {
+                        // nothing to do
+                    }
+                }
+                searchContext.close();
+            }
+        }
+
+        void shutdown()
+        {
+            final NamingEnumeration<SearchResult> currentResults = results;
+            if (currentResults != null) {
+                try {
+                    // abandons the search, which unblocks the worker thread
+                    currentResults.close();
+                } catch (Exception e) {
+                    // nothing to do
+                }
+            }
+            super.shutdown();
+        }
+
+        private DirectoryChangeEvent toEvent(final SearchResult searchResult)
+        {
+            final String entryDN = searchResult.getNameInNamespace();
+            if (searchResult instanceof HasControls) {
+                try {
+                    final Control[] responseControls = ((HasControls) searchResult).getControls();
+                    if (responseControls != null) {
+                        for (final Control control : responseControls) {
+                            if (ENTRY_CHANGE_NOTIFICATION_OID.equals(control.getID())) {
+                                return decodeEntryChangeNotification(entryDN, control.getEncodedValue());
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    LOGGER.debug("unable to read entry change notification for " + entryDN + ": " + e.getMessage());
+                }
+            }
+            return new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.MODIFY, entryDN, null, -1);
+        }
+
+        /**
+         * EntryChangeNotification ::= SEQUENCE { changeType ENUMERATED, previousDN LDAPDN OPTIONAL, changeNumber INTEGER OPTIONAL }
+         */
+        private DirectoryChangeEvent decodeEntryChangeNotification(final String entryDN, final byte[] value)
+                throws UnsupportedEncodingException
+        {
+            final BerReader reader = new BerReader(value);
+            final int sequenceEnd = reader.enter(0x30);
+            final long changeType = reader.readInteger(0x0a);
+            String previousDN = null;
+            long changeNumber = -1;
+            while (reader.position() < sequenceEnd) {
+                final int tag = reader.peekTag();
+                if (tag == 0x04) {
+                    previousDN = reader.readString(0x04);
+                } else if (tag == 0x02) {
+                    changeNumber = reader.readInteger(0x02);
+                } else {
+                    reader.skip();
+                }
+            }
+
+            final DirectoryChangeEvent.Type type;
+            switch ((int) changeType) {
+                case 1:
+                    type = DirectoryChangeEvent.Type.ADD;
+                    break;
+                case 2:
+                    type = DirectoryChangeEvent.Type.DELETE;
+                    break;
+                case 8:
+                    type = DirectoryChangeEvent.Type.MODDN;
+                    break;
+                default:
+                    type = DirectoryChangeEvent.Type.MODIFY;
+            }
+            return new DirectoryChangeEvent(bindURLs, type, entryDN, previousDN, changeNumber);
+        }
+    }
+
+    private class ChangelogWorker extends Worker {
+        ChangelogWorker()
+        {
+            super(CHANGELOG_DN);
+        }
+
+        void consume(final ChaiProviderImplementor provider)
+                throws Exception
+        {
+            final String lastChangeNumber = firstValue(readRootDSE(provider), ATTR_LAST_CHANGE_NUMBER);
+            long nextChange = lastChangeNumber == null ? 1 : Long.parseLong(lastChangeNumber.trim()) + 1;
+
+            final SearchHelper searchHelper = new SearchHelper(ChaiProvider.SEARCH_SCOPE.ONE);
+            searchHelper.setAttributes(ATTR_CHANGE_NUMBER, ATTR_CHANGE_TYPE, ATTR_TARGET_DN, ATTR_NEW_RDN, ATTR_NEW_SUPERIOR);
+            searchHelper.setMaxResults(CHANGELOG_BATCH_SIZE);
+
+            while (running) {
+                // each query asks for an explicit range, so a server is never free to pick which part of a larger
+                // backlog it returns, and any change number missing from the range is a gap
+                final long lastRequested = nextChange + CHANGELOG_BATCH_SIZE - 1;
+                searchHelper.setFilter(CHANGELOG_FILTER, String.valueOf(nextChange), String.valueOf(lastRequested));
+                final Map<String, Map<String, List<String>>> results = provider.searchMultiValues(CHANGELOG_DN, searchHelper);
+
+                final SortedMap<Long, Map<String, List<String>>> changes = new TreeMap<Long, Map<String, List<String>>>();
+                if (results != null) {
+                    for (final Map<String, List<String>> changeValues : results.values()) {
+                        final String changeNumber = firstValue(changeValues, ATTR_CHANGE_NUMBER);
+                        if (changeNumber != null) {
+                            changes.put(Long.parseLong(changeNumber.trim()), changeValues);
+                        }
+                    }
+                }
+
+                if (changes.isEmpty()) {
+                    final String currentChangeNumber = firstValue(readRootDSE(provider), ATTR_LAST_CHANGE_NUMBER);
+                    final long lastChange = currentChangeNumber == null ? nextChange - 1 : Long.parseLong(currentChangeNumber.trim());
+                    if (lastChange >= nextChange) {
+                        // the directory has moved on, but nothing in the range is left in the change log
+                        LOGGER.debug("change log for " + bindURLs + " is missing changes " + nextChange + " to " + lastRequested);
+                        fire(new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.RESYNC, null, null, lastChange));
+                        nextChange = lastChange + 1;
+                        continue;
+                    }
+                } else {
+                    final long expectedCount = changes.lastKey() - nextChange + 1;
+                    if (changes.firstKey() > nextChange || changes.size() != expectedCount) {
+                        // the change log was trimmed before the changes were read, or has holes
+                        LOGGER.debug("change log for " + bindURLs + " is missing " + (expectedCount - changes.size())
+                                + " of changes " + nextChange + " to " + changes.lastKey());
+                        fire(new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.RESYNC, null, null, changes.firstKey()));
+                    }
+                    for (final Map.Entry<Long, Map<String, List<String>>> change : changes.entrySet()) {
+                        final DirectoryChangeEvent event = toEvent(change.getKey(), change.getValue());
+                        if (event != null) {
+                            fire(event);
+                        }
+                    }
+                    nextChange = changes.lastKey() + 1;
+                }
+
+                if ((changes.isEmpty() || changes.lastKey() < lastRequested) && !pause()) {
+                    return;
+                }
+            }
+        }
+
+        private DirectoryChangeEvent toEvent(final long changeNumber, final Map<String, List<String>> changeValues)
+        {
+            final String targetDN = firstValue(changeValues, ATTR_TARGET_DN);
+            if (targetDN == null) {
+                return null;
+            }
+
+            final String changeType = firstValue(changeValues, ATTR_CHANGE_TYPE);
+            if ("add".equalsIgnoreCase(changeType)) {
+                return new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.ADD, targetDN, null, changeNumber);
+            } else if ("delete".equalsIgnoreCase(changeType)) {
+                return new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.DELETE, targetDN, null, changeNumber);
+            } else if ("modrdn".equalsIgnoreCase(changeType) || "moddn".equalsIgnoreCase(changeType)) {
+                final String newRDN = firstValue(changeValues, ATTR_NEW_RDN);
+                final String newSuperior = firstValue(changeValues, ATTR_NEW_SUPERIOR);
+                if (newRDN == null) {
+                    return new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.MODDN, targetDN, null, changeNumber);
+                }
+                final String superior = newSuperior != null ? newSuperior : parentDN(targetDN);
+                final String newDN = superior.length() > 0 ? newRDN + "," + superior : newRDN;
+                return new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.MODDN, newDN, targetDN, changeNumber);
+            }
+            return new DirectoryChangeEvent(bindURLs, DirectoryChangeEvent.Type.MODIFY, targetDN, null, changeNumber);
+        }
+    }
+
+    /**
+     * Just enough of a BER decoder to read response control values.
+     */
+    private static class BerReader {
+        private final byte[] data;
+        private int pos = 0;
+
+        BerReader(final byte[] data)
+        {
+            if (data == null) {
+                throw new IllegalArgumentException("missing control value");
+            }
+            this.data = data;
+        }
+
+        int position()
+        {
+            return pos;
+        }
+
+        int peekTag()
+        {
+            check(1);
+            return data[pos] & 0xff;
+        }
+
+        /**
+         * Read the header of a constructed element, and return the position of its end.
+         */
+        int enter(final int expectedTag)
+        {
+            final int length = readHeader(expectedTag);
+            return pos + length;
+        }
+
+        long readInteger(final int expectedTag)
+        {
+            final int length = readHeader(expectedTag);
+            check(length);
+            long value = length > 0 && data[pos] < 0 ? -1 : 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | (data[pos++] & 0xff);
+            }
+            return value;
+        }
+
+        String readString(final int expectedTag)
+                throws UnsupportedEncodingException
+        {
+            final int length = readHeader(expectedTag);
+            check(length);
+            final String value = new String(data, pos, length, "UTF-8");
+            pos += length;
+            return value;
+        }
+
+        void skip()
+        {
+            pos++;
+            final int length = readLength();
+            check(length);
+            pos += length;
+        }
+
+        private int readHeader(final int expectedTag)
+        {
+            final int tag = peekTag();
+            if (tag != expectedTag) {
+                throw new IllegalArgumentException("unexpected ber tag " + tag + " at position " + pos + ", expected " + expectedTag);
+            }
+            pos++;
+            return readLength();
+        }
+
+        private int readLength()
+        {
+            check(1);
+            final int first = data[pos++] & 0xff;
+            if (first < 0x80) {
+                return first;
+            }
+            final int octets = first & 0x7f;
+            if (octets > 3) {
+                throw new IllegalArgumentException("unsupported ber length at position " + pos);
+            }
+            check(octets);
+            int length = 0;
+            for (int i = 0; i < octets; i++) {
+                length = (length << 8) | (data[pos++] & 0xff);
+            }
+            return length;
+        }
+
+        private void check(final int length)
+        {
+            if (pos + length > data.length) {
+                throw new IllegalArgumentException("truncated ber value");
+            }
+        }
+    }
+}
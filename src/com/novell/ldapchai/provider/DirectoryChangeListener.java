@@ -0,0 +1,38 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+/**
+ * Receives the changes reported by a {@link DirectoryChangeFeed}.
+ * <p/>
+ * Listeners are called on the feed's thread, and should return quickly.
+ *
+ * @author Jason D. Rivard
+ */
+public interface DirectoryChangeListener {
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Called for each change read from the directory.
+     *
+     * @param event the change
+     */
+    void directoryChanged(DirectoryChangeEvent event);
+}
@@ -91,8 +91,8 @@ class FailOverWrapper implements InvocationHandler {
     private FailOverWrapper(final ChaiConfiguration chaiConfig)
             throws ChaiUnavailableException
     {
-        final int settingMaxRetries = Integer.parseInt(chaiConfig.getSetting(ChaiSetting.FAILOVER_CONNECT_RETRIES));
-        final int settingMinFailbackTime = Integer.parseInt(chaiConfig.getSetting(ChaiSetting.FAILOVER_MINIMUM_FAILBACK_TIME));
+        final int settingMaxRetries = chaiConfig.getIntSetting(ChaiSetting.FAILOVER_CONNECT_RETRIES);
+        final int settingMinFailbackTime = chaiConfig.getIntSetting(ChaiSetting.FAILOVER_MINIMUM_FAILBACK_TIME);
 
         final ChaiProviderImplementor failOverHelper;
         try {
@@ -289,7 +289,12 @@ class FailOverWrapper implements InvocationHandler {
 
             if (LAST_KNOWN_GOOD_CACHE.containsKey(urlListHashCode)) {
                 activeSlot = LAST_KNOWN_GOOD_CACHE.get(urlListHashCode);
-                LOGGER.debug("using slot #" + activeSlot + " (" + proividerSlots.get(activeSlot).getUrl() + ") as initial bind URL due to Last Known Good cache");
+                LOGGER.debug(new ChaiLogger.MessageSupplier() {
+                    public String get()
+                    {
+                        return "using slot #" + activeSlot + " (" + proividerSlots.get(activeSlot).getUrl() + ") as initial bind URL due to Last Known Good cache";
+                    }
+                });
             }
         }
 
@@ -383,18 +388,33 @@ class FailOverWrapper implements InvocationHandler {
 
 
                     if (proividerSlots.size() > 1) {
-                        LOGGER.info("failing over to " + proividerSlots.get(activeSlot).getUrl());
+                        LOGGER.info(new ChaiLogger.MessageSupplier() {
+                            public String get()
+                            {
+                                return "failing over to " + proividerSlots.get(activeSlot).getUrl();
+                            }
+                        });
                     }
 
                     try {
                         makeNewProvider(activeSlot);
                         success = true;
-                    } catch (ChaiUnavailableException e) {
+                    } catch (final ChaiUnavailableException e) {
                         lastConnectionException = e;
                         if (settings.failOverHelper.errorIsRetryable(e)) {
-                            LOGGER.debug("error connecting to ldap server, will retry, " + e.getMessage());
+                            LOGGER.debug(new ChaiLogger.MessageSupplier() {
+                                public String get()
+                                {
+                                    return "error connecting to ldap server, will retry, " + e.getMessage();
+                                }
+                            });
                         } else {
-                            LOGGER.debug("detected unretryable error while rotating servers: " + e.getMessage());
+                            LOGGER.debug(new ChaiLogger.MessageSupplier() {
+                                public String get()
+                                {
+                                    return "detected unretryable error while rotating servers: " + e.getMessage();
+                                }
+                            });
                             break;
                         }
                     }
@@ -78,7 +78,7 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
             final URI ldapURL = URI.create(chaiConfig.bindURLsAsList().get(0));
 
             if (ldapURL.getScheme().equalsIgnoreCase("ldaps")) {
-                final boolean usePromiscuousSSL = Boolean.parseBoolean(chaiConfig.getSetting(ChaiSetting.PROMISCUOUS_SSL));
+                final boolean usePromiscuousSSL = chaiConfig.getBooleanSetting(ChaiSetting.PROMISCUOUS_SSL);
                 if (usePromiscuousSSL) {
                     try {
                         final SSLContext sc = SSLContext.getInstance("SSL");
@@ -415,6 +415,26 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
         return searchImpl(baseDN, searchHelper, false);
     }
 
+    /**
+     * Results are read from the connection as they arrive; the paged results control is not used.
+     */
+    @ChaiProviderImplementor.LdapOperation
+    public void searchMultiValues(
+            final String baseDN,
+            final SearchHelper searchHelper,
+            final SearchResultHandler handler)
+            throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        activityPreCheck();
+        INPUT_VALIDATOR.searchMultiValues(baseDN, searchHelper, handler);
+
+        try {
+            searchImpl(baseDN, searchHelper, false, handler);
+        } catch (LDAPException e) {
+            throw ChaiOperationException.forErrorMessage(e.getLDAPErrorMessage());
+        }
+    }
+
     @ChaiProviderImplementor.LdapOperation
     @ChaiProviderImplementor.ModifyOperation
     public void writeBinaryAttribute(final String entryDN, final String attribute, final byte[][] values, final boolean overwrite)
@@ -506,6 +526,51 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
         }
     }
 
+    @LdapOperation
+    @ModifyOperation
+    public final void modify(final String entryDN, final List<ChaiModification> modifications)
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        INPUT_VALIDATOR.modify(entryDN, modifications);
+
+        final LDAPModification[] modificationArray = new LDAPModification[modifications.size()];
+        int loopCounter = 0;
+        for (final ChaiModification modification : modifications) {
+            final LDAPAttribute ldapAttr = new LDAPAttribute(modification.getAttributeName());
+            if (modification.isBinary()) {
+                for (final byte[] value : modification.getBinaryValues()) {
+                    ldapAttr.addValue(value);
+                }
+            } else {
+                for (final String value : modification.getStringValues()) {
+                    ldapAttr.addValue(value);
+                }
+            }
+
+            final int modOption;
+            switch (modification.getType()) {
+                case ADD:
+                    modOption = LDAPModification.ADD;
+                    break;
+                case DELETE:
+                    modOption = LDAPModification.DELETE;
+                    break;
+                default:
+                    modOption = LDAPModification.REPLACE;
+            }
+
+            modificationArray[loopCounter] = new LDAPModification(modOption, ldapAttr);
+            loopCounter++;
+        }
+
+        try {
+            ldapConnection.modify(entryDN, modificationArray);
+        } catch (LDAPException e) {
+            throw ChaiOperationException.forErrorMessage(e.getLDAPErrorMessage());
+        }
+    }
+
 // --------------------- Interface ChaiProviderImplementor ---------------------
 
     public Object getConnectionObject()
@@ -535,10 +600,41 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
 // -------------------------- OTHER METHODS --------------------------
 
     public Map<String, Map<String, List<String>>> searchImpl(
-            String baseDN,
-            SearchHelper searchHelper,
+            final String baseDN,
+            final SearchHelper searchHelper,
             final boolean onlyFirstValue)
             throws ChaiOperationException, ChaiUnavailableException, IllegalStateException
+    {
+        final Map<String, Map<String, List<String>>> returnMap = new LinkedHashMap<String, Map<String, List<String>>>();
+
+        try {
+            searchImpl(baseDN, searchHelper, onlyFirstValue, new SearchResultHandler() {
+                public boolean handleResult(final String entryDN, final Map<String, List<String>> attributeValues)
+                {
+                    returnMap.put(entryDN, attributeValues);
+                    return true;
+                }
+            });
+        } catch (LDAPException e) {
+            // check to see if there any results. If there are results, then
+            // return them.  If no results, then throw the exception.  Most likely
+            // cause of results+exception is search size/time exceeded.
+
+            if (!returnMap.isEmpty()) {
+                return Collections.unmodifiableMap(returnMap);
+            }
+
+            throw ChaiOperationException.forErrorMessage(e.getLDAPErrorMessage());
+        }
+        return Collections.unmodifiableMap(returnMap);
+    }
+
+    private void searchImpl(
+            String baseDN,
+            SearchHelper searchHelper,
+            final boolean onlyFirstValue,
+            final SearchResultHandler handler)
+            throws ChaiOperationException, ChaiUnavailableException, LDAPException
     {
         activityPreCheck();
 
@@ -568,24 +664,21 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
                 ldapScope = -1;
         }
 
-        final Map<String, Map<String, List<String>>> returnMap = new LinkedHashMap<String, Map<String, List<String>>>();
-
         final LDAPSearchConstraints constraints = new LDAPSearchConstraints();
         constraints.setMaxResults(searchHelper.getMaxResults());
         constraints.setTimeLimit(searchHelper.getTimeLimit());
 
         final String[] returnAttributes = searchHelper.getAttributes() == null ? null : searchHelper.getAttributes().toArray(new String[searchHelper.getAttributes().size()]);
 
-        final LDAPSearchResults results;
-        try {
-            results = ldapConnection.search(
-                    baseDN,
-                    ldapScope, searchHelper.getFilter(),
-                    returnAttributes,
-                    false,
-                    constraints
-            );
+        final LDAPSearchResults results = ldapConnection.search(
+                baseDN,
+                ldapScope, searchHelper.getFilter(),
+                returnAttributes,
+                false,
+                constraints
+        );
 
+        try {
             while (results.hasMore()) {
                 final LDAPEntry loopEntry = results.next();
                 final String loopDN = loopEntry.getDN();
@@ -599,20 +692,16 @@ public class JLDAPProviderImpl extends AbstractProvider implements ChaiProviderI
                         loopAttributes.put(loopAttr.getName(), Arrays.asList(loopAttr.getStringValueArray()));
                     }
                 }
-                returnMap.put(loopDN, loopAttributes);
+                if (!handler.handleResult(loopDN, loopAttributes)) {
+                    return;
+                }
             }
-        } catch (LDAPException e) {
-            // check to see if there any results. If there are results, then
-            // return them.  If no results, then throw the exception.  Most likely
-            // cause of results+exception is search size/time exceeded.
-
-            if (!returnMap.isEmpty()) {
-                return Collections.unmodifiableMap(returnMap);
+        } finally {
+            if (results.hasMore()) {
+                // abandon the rest of an unfinished search
+                ldapConnection.abandon(results);
             }
-
-            throw ChaiOperationException.forErrorMessage(e.getLDAPErrorMessage());
         }
-        return Collections.unmodifiableMap(returnMap);
     }
 
     public boolean isConnected() {
@@ -28,12 +28,16 @@ import com.novell.ldapchai.util.SearchHelper;
 
 import javax.naming.*;
 import javax.naming.directory.*;
+import javax.naming.ldap.Control;
 import javax.naming.ldap.ExtendedRequest;
 import javax.naming.ldap.ExtendedResponse;
 import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.util.*;
@@ -256,19 +260,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         activityPreCheck();
         INPUT_VALIDATOR.createEntry(entryDN, baseObjectClasses, stringAttributes);
 
-        final Attributes attrs = new BasicAttributes();
-
-        //Put in the base object class an attribute
-        final BasicAttribute objectClassAttr = new BasicAttribute(ChaiConstant.ATTR_LDAP_OBJECTCLASS);
-        for (final String loopClass : baseObjectClasses) {
-            objectClassAttr.add(loopClass);
-        }
-        attrs.put(objectClassAttr);
-
-        //Add each of the attributes required.
-        for (final String key : stringAttributes.keySet()) {
-            attrs.put(key, stringAttributes.get(key));
-        }
+        final Attributes attrs = makeCreateAttributes(baseObjectClasses, stringAttributes);
 
         // Create the object.
         final DirContext ldapConnection = getLdapConnection();
@@ -603,6 +595,86 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         return this.searchImplementation(baseDN, searchHelper, true);
     }
 
+    public final void searchMultiValues(final String baseDN, final SearchHelper searchHelper, final SearchResultHandler handler)
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        INPUT_VALIDATOR.searchMultiValues(baseDN, searchHelper, handler);
+
+        final SearchHelper searchCopy;
+        try { // make a copy so if it changes somewhere else we won't be affected.
+            searchCopy = (SearchHelper) searchHelper.clone();
+        } catch (CloneNotSupportedException e) {
+            LOGGER.fatal("unexpected clone of SearchHelper failed during chai search", e);
+            throw new ChaiOperationException("unexpected clone of SearchHelper failed during chai search", ChaiError.UNKNOWN);
+        }
+
+        final SearchControls ctls = makeSearchControls(searchCopy);
+        final int pageSize = chaiConfig.getIntSetting(ChaiSetting.LDAP_SEARCH_PAGE_SIZE);
+
+        LdapContext searchContext = null;
+        NamingEnumeration<SearchResult> answer = null;
+        try {
+            // a new context shares the connection, but has its own request controls
+            searchContext = getLdapConnection().newInstance(pageSize > 0
+                    ? new Control[]{new PagedResultsControl(pageSize, Control.NONCRITICAL)}
+                    : null);
+
+            byte[] cookie;
+            do {
+                answer = executeSearch(searchContext, baseDN, searchCopy, ctls);
+                while (answer.hasMore()) {
+                    final SearchResult searchResult = answer.next();
+                    if (!handler.handleResult(readEntryDN(searchResult, baseDN), readAttributeValues(searchResult, true))) {
+                        return;
+                    }
+                }
+                answer.close();
+                answer = null;
+
+                cookie = pageSize > 0 ? readPagedResultsCookie(searchContext.getResponseControls()) : null;
+                if (cookie != null) {
+                    searchContext.setRequestControls(new Control[]{new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
+                }
+            } while (cookie != null);
+        } catch (IOException e) {
+            throw new ChaiOperationException("unable to encode paged results control: " + e.getMessage(), ChaiError.UNKNOWN);
+        } catch (NamingException e) {
+            convertNamingException(e);
+        } finally {
+            if (answer != null) {
+                try {
+                    answer.close();
+                } catch (NamingException e) {
+                    // nothing to do
+                }
+            }
+            if (searchContext != null) {
+                try {
+                    searchContext.close();
+                } catch (NamingException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cookie for the next page, or null if there are no more pages or the directory does not page
+     */
+    private static byte[] readPagedResultsCookie(final Control[] responseControls)
+    {
+        if (responseControls != null) {
+            for (final Control control : responseControls) {
+                if (control instanceof PagedResultsResponseControl) {
+                    final byte[] cookie = ((PagedResultsResponseControl) control).getCookie();
+                    return cookie == null || cookie.length == 0 ? null : cookie;
+                }
+            }
+        }
+        return null;
+    }
+
     @LdapOperation
     @ModifyOperation
     public final void writeBinaryAttribute(
@@ -773,6 +845,27 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         }
     }
 
+    @LdapOperation
+    @ModifyOperation
+    public final void modify(final String entryDN, final List<ChaiModification> modifications)
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        INPUT_VALIDATOR.modify(entryDN, modifications);
+
+        final ModificationItem[] modificationItems = makeModificationItems(modifications);
+
+        // get ldap connection
+        final LdapContext ldapConnection = getLdapConnection();
+
+        // Modify the Attributes.
+        try {
+            ldapConnection.modifyAttributes(addJndiEscape(entryDN), modificationItems);
+        } catch (NamingException e) {
+            convertNamingException(e);
+        }
+    }
+
 // --------------------- Interface ChaiProviderImplementor ---------------------
 
     /**
@@ -828,7 +921,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         env.put(Context.SECURITY_CREDENTIALS, chaiConfig.getBindPassword());
 
         // set the JNDI pooler up
-        final boolean jndiConnectionPoolEnable = Boolean.valueOf(chaiConfig.getSetting(ChaiSetting.JNDI_ENABLE_POOL));
+        final boolean jndiConnectionPoolEnable = chaiConfig.getBooleanSetting(ChaiSetting.JNDI_ENABLE_POOL);
         if (jndiConnectionPoolEnable) {
             env.put("com.sun.jndi.ldap.connect.pool", "true");
             env.put("com.sun.jndi.ldap.connect.pool.initsize", String.valueOf(DEFAULT_INITIAL_POOL_SIZE));
@@ -853,7 +946,7 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         final boolean isSecureLdapURL = (URI.create(ldapURL)).getScheme().equalsIgnoreCase("ldaps");
 
         //setup blind SSL socket factory
-        final boolean promiscuousMode = Boolean.valueOf(chaiConfig.getSetting(ChaiSetting.PROMISCUOUS_SSL));
+        final boolean promiscuousMode = chaiConfig.getBooleanSetting(ChaiSetting.PROMISCUOUS_SSL);
         if (isSecureLdapURL) {
             if (promiscuousMode) {
                 try {
@@ -908,17 +1001,8 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         // replace a null dn with an empty string
         baseDN = baseDN != null ? baseDN : "";
 
-        final Map<String, List<String>> emptyMap = Collections.emptyMap();
-
         // Define the Search Controls object.
-        final SearchControls ctls = new SearchControls();
-        ctls.setReturningObjFlag(false);
-        ctls.setReturningAttributes(new String[0]);
-        ctls.setSearchScope(searchHelper.getSearchScope().getJndiScopeInt());
-        final String[] returnAttributes = searchHelper.getAttributes() == null ? null : searchHelper.getAttributes().toArray(new String[searchHelper.getAttributes().size()]);
-        ctls.setReturningAttributes(returnAttributes);
-        ctls.setTimeLimit(searchHelper.getTimeLimit());
-        ctls.setCountLimit(searchHelper.getMaxResults());
+        final SearchControls ctls = makeSearchControls(searchHelper);
 
         final Map<String, Map<String, List<String>>> results = new HashMap<String, Map<String, List<String>>>();
 
@@ -926,40 +1010,10 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
 
         try {
             // Search in the tree.
-            final LdapContext ldapConnection = getLdapConnection();
-            answer = ldapConnection.search(addJndiEscape(baseDN), searchHelper.getFilter(), ctls);
+            answer = executeSearch(getLdapConnection(), baseDN, searchHelper, ctls);
             while (answer.hasMore()) {
                 final SearchResult searchResult = answer.next();
-                final StringBuilder entryDN = new StringBuilder();
-                entryDN.append(removeJndiEscapes(searchResult.getName()));
-                if (baseDN != null && baseDN.length() > 0) {
-                    if (entryDN.length() > 0) {
-                        entryDN.append(',');
-                    }
-                    entryDN.append(baseDN);
-                }
-
-                final NamingEnumeration attributeEnum = searchResult.getAttributes().getAll();
-                if (attributeEnum.hasMore()) {
-                    final Map<String, List<String>> attrValues = new HashMap<String, List<String>>();
-                    while (attributeEnum.hasMore()) {
-                        final Attribute loopAttribute = (Attribute) attributeEnum.next();
-                        final String attrName = loopAttribute.getID();
-                        final List<String> valueList = new ArrayList<String>();
-                        for (NamingEnumeration attrValueEnum = loopAttribute.getAll(); attrValueEnum.hasMore();) {
-                            final Object value = attrValueEnum.next();
-                            valueList.add(value.toString());
-                            if (!returnAllValues) {
-                                attrValueEnum.close();
-                                break;
-                            }
-                        }
-                        attrValues.put(attrName, Collections.unmodifiableList(valueList));
-                    }
-                    results.put(entryDN.toString(), Collections.unmodifiableMap(attrValues));
-                } else {
-                    results.put(entryDN.toString(), emptyMap);
-                }
+                results.put(readEntryDN(searchResult, baseDN), readAttributeValues(searchResult, returnAllValues));
             }
 
             return Collections.unmodifiableMap(results);
@@ -985,6 +1039,72 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         }
     }
 
+    private static SearchControls makeSearchControls(final SearchHelper searchHelper)
+    {
+        final SearchControls ctls = new SearchControls();
+        ctls.setReturningObjFlag(false);
+        ctls.setSearchScope(searchHelper.getSearchScope().getJndiScopeInt());
+        final String[] returnAttributes = searchHelper.getAttributes() == null ? null : searchHelper.getAttributes().toArray(new String[searchHelper.getAttributes().size()]);
+        ctls.setReturningAttributes(returnAttributes);
+        ctls.setTimeLimit(searchHelper.getTimeLimit());
+        ctls.setCountLimit(searchHelper.getMaxResults());
+        return ctls;
+    }
+
+    private static NamingEnumeration<SearchResult> executeSearch(
+            final LdapContext ldapContext,
+            final String baseDN,
+            final SearchHelper searchHelper,
+            final SearchControls ctls
+    )
+            throws NamingException
+    {
+        if (searchHelper.getFilterTemplate() != null) {
+            // let jndi escape and encode the filter arguments
+            return ldapContext.search(addJndiEscape(baseDN), searchHelper.getFilterTemplate().getPattern(), searchHelper.getFilterArguments(), ctls);
+        }
+        return ldapContext.search(addJndiEscape(baseDN), searchHelper.getFilter(), ctls);
+    }
+
+    private static String readEntryDN(final SearchResult searchResult, final String baseDN)
+    {
+        final StringBuilder entryDN = new StringBuilder();
+        entryDN.append(removeJndiEscapes(searchResult.getName()));
+        if (baseDN != null && baseDN.length() > 0) {
+            if (entryDN.length() > 0) {
+                entryDN.append(',');
+            }
+            entryDN.append(baseDN);
+        }
+        return entryDN.toString();
+    }
+
+    private static Map<String, List<String>> readAttributeValues(final SearchResult searchResult, final boolean returnAllValues)
+            throws NamingException
+    {
+        final NamingEnumeration attributeEnum = searchResult.getAttributes().getAll();
+        if (!attributeEnum.hasMore()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, List<String>> attrValues = new HashMap<String, List<String>>();
+        while (attributeEnum.hasMore()) {
+            final Attribute loopAttribute = (Attribute) attributeEnum.next();
+            final String attrName = loopAttribute.getID();
+            final List<String> valueList = new ArrayList<String>();
+            for (NamingEnumeration attrValueEnum = loopAttribute.getAll(); attrValueEnum.hasMore();) {
+                final Object value = attrValueEnum.next();
+                valueList.add(value.toString());
+                if (!returnAllValues) {
+                    attrValueEnum.close();
+                    break;
+                }
+            }
+            attrValues.put(attrName, Collections.unmodifiableList(valueList));
+        }
+        return Collections.unmodifiableMap(attrValues);
+    }
+
     private LdapContext getLdapConnection()
             throws ChaiUnavailableException
     {
@@ -1033,6 +1153,62 @@ public class JNDIProviderImpl extends AbstractProvider implements ChaiProviderIm
         return input;
     }
 
+    static Attributes makeCreateAttributes(final Set<String> baseObjectClasses, final Map<String,String> stringAttributes)
+    {
+        final Attributes attrs = new BasicAttributes();
+
+        //Put in the base object class an attribute
+        final BasicAttribute objectClassAttr = new BasicAttribute(ChaiConstant.ATTR_LDAP_OBJECTCLASS);
+        for (final String loopClass : baseObjectClasses) {
+            objectClassAttr.add(loopClass);
+        }
+        attrs.put(objectClassAttr);
+
+        //Add each of the attributes required.
+        if (stringAttributes != null) {
+            for (final String key : stringAttributes.keySet()) {
+                attrs.put(key, stringAttributes.get(key));
+            }
+        }
+
+        return attrs;
+    }
+
+    static ModificationItem[] makeModificationItems(final List<ChaiModification> modifications)
+    {
+        // Create the ModificationItems, one per chai modification, in the order given
+        final ModificationItem[] modificationItems = new ModificationItem[modifications.size()];
+        int loopCounter = 0;
+        for (final ChaiModification modification : modifications) {
+            final BasicAttribute attribute = new BasicAttribute(modification.getAttributeName());
+            if (modification.isBinary()) {
+                for (final byte[] value : modification.getBinaryValues()) {
+                    attribute.add(value);
+                }
+            } else {
+                for (final String value : modification.getStringValues()) {
+                    attribute.add(value);
+                }
+            }
+
+            final int modType;
+            switch (modification.getType()) {
+                case ADD:
+                    modType = DirContext.ADD_ATTRIBUTE;
+                    break;
+                case DELETE:
+                    modType = DirContext.REMOVE_ATTRIBUTE;
+                    break;
+                default:
+                    modType = DirContext.REPLACE_ATTRIBUTE;
+            }
+
+            modificationItems[loopCounter] = new ModificationItem(modType, attribute);
+            loopCounter++;
+        }
+        return modificationItems;
+    }
+
     protected static String addJndiEscape(final String input) {
         if (input == null) {
             return null;
@@ -0,0 +1,42 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Receives the entries of a streaming search, see
+ * {@link ChaiProvider#searchMultiValues(String, com.novell.ldapchai.util.SearchHelper, SearchResultHandler)}.
+ *
+ * @author Jason D. Rivard
+ */
+public interface SearchResultHandler {
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Called for each entry, in the order the directory returns them.
+     *
+     * @param entryDN         the dn of the entry
+     * @param attributeValues the values of the requested attributes, keyed by attribute name
+     * @return true to continue the search, false to abandon it
+     */
+    boolean handleResult(String entryDN, Map<String, List<String>> attributeValues);
+}
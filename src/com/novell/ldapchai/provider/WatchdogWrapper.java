@@ -101,7 +101,7 @@ class WatchdogWrapper implements InvocationHandler {
     )
     {
         //check to make sure watchdog ise enabled;
-        final boolean watchDogEnabled = Boolean.parseBoolean(chaiProvider.getChaiConfiguration().getSetting(ChaiSetting.WATCHDOG_ENABLE));
+        final boolean watchDogEnabled = chaiProvider.getChaiConfiguration().getBooleanSetting(ChaiSetting.WATCHDOG_ENABLE);
         if (!watchDogEnabled) {
             final String errorStr = "attempt to obtain WatchdogWrapper wrapper when watchdog is not enabled in chai config";
             LOGGER.warn(errorStr);
@@ -129,10 +129,10 @@ class WatchdogWrapper implements InvocationHandler {
         this.realProvider = realProvider;
         this.originalProviderConfig = realProvider.getChaiConfiguration();
 
-        setting_watchdogFrequency = Integer.parseInt(originalProviderConfig.getSetting(ChaiSetting.WATCHDOG_CHECK_FREQUENCY));
+        setting_watchdogFrequency = originalProviderConfig.getIntSetting(ChaiSetting.WATCHDOG_CHECK_FREQUENCY);
 
-        setting_operationTimeout = Integer.parseInt(originalProviderConfig.getSetting(ChaiSetting.WATCHDOG_OPERATION_TIMEOUT));
-        setting_idleTimeout = Integer.parseInt(originalProviderConfig.getSetting(ChaiSetting.WATCHDOG_IDLE_TIMEOUT));
+        setting_operationTimeout = originalProviderConfig.getIntSetting(ChaiSetting.WATCHDOG_OPERATION_TIMEOUT);
+        setting_idleTimeout = originalProviderConfig.getIntSetting(ChaiSetting.WATCHDOG_IDLE_TIMEOUT);
 
         watchdogManager.registerInstance(this);
 
@@ -142,7 +142,7 @@ class WatchdogWrapper implements InvocationHandler {
     private void checkForPwExpiration()
 
     {
-        final boolean doPwExpCheck = realProvider.getChaiConfiguration().getBooleanSetting(ChaiSetting.WATCHDOG_DISABLE_IF_PW_EXPIRED);
+        final boolean doPwExpCheck = originalProviderConfig.getBooleanSetting(ChaiSetting.WATCHDOG_DISABLE_IF_PW_EXPIRED);
         if (!doPwExpCheck) {
             return;
         }
@@ -151,7 +151,7 @@ class WatchdogWrapper implements InvocationHandler {
 
         final boolean userPwExpired;
         try {
-            final String bindUserDN = realProvider.getChaiConfiguration().getSetting(ChaiSetting.BIND_DN);
+            final String bindUserDN = originalProviderConfig.getSetting(ChaiSetting.BIND_DN);
             final ChaiUser bindUser = ChaiFactory.createChaiUser(bindUserDN, realProvider);
             userPwExpired = bindUser.isPasswordExpired();
         } catch (ChaiException e) {
@@ -163,7 +163,7 @@ class WatchdogWrapper implements InvocationHandler {
             LOGGER.info("connection user account password is currently expired.  Disabling watchdog timeout.");
             setting_idleTimeout = Integer.MAX_VALUE;
         } else {
-            setting_idleTimeout = realProvider.getChaiConfiguration().getIntSetting(ChaiSetting.WATCHDOG_IDLE_TIMEOUT);
+            setting_idleTimeout = originalProviderConfig.getIntSetting(ChaiSetting.WATCHDOG_IDLE_TIMEOUT);
         }
     }
 
@@ -278,14 +278,18 @@ class WatchdogWrapper implements InvocationHandler {
 
     private synchronized void handleIdleTimeout()
     {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("ldap idle timeout detected, closing ldap connection");
-        if (realProvider != null) {
-            sb.append(" for ");
-            sb.append(realProvider.toString());
-        }
-
-        LOGGER.debug(sb.toString());
+        LOGGER.debug(new ChaiLogger.MessageSupplier() {
+            public String get()
+            {
+                final StringBuilder sb = new StringBuilder();
+                sb.append("ldap idle timeout detected, closing ldap connection");
+                if (realProvider != null) {
+                    sb.append(" for ");
+                    sb.append(realProvider.toString());
+                }
+                return sb.toString();
+            }
+        });
         synchronized (this) {
             if (realProvider != null) {
                 this.realProvider.close();
@@ -311,22 +315,24 @@ class WatchdogWrapper implements InvocationHandler {
             return;
         }
 
-        {
-            final StringBuilder sb = new StringBuilder();
-            sb.append("reopening ldap connection for ");
-            sb.append(originalProviderConfig.getSetting(ChaiSetting.BIND_DN));
-            LOGGER.debug(sb.toString());
-        }
+        LOGGER.debug(new ChaiLogger.MessageSupplier() {
+            public String get()
+            {
+                return "reopening ldap connection for " + originalProviderConfig.getSetting(ChaiSetting.BIND_DN);
+            }
+        });
 
         // if old provider exists, try to close it first.
         if (realProvider != null) {
             try {
                 realProvider.close();
             } catch (Exception e) {
-                final StringBuilder sb = new StringBuilder();
-                sb.append("error during pre-close connection for ");
-                sb.append(originalProviderConfig.getSetting(ChaiSetting.BIND_DN));
-                LOGGER.debug(sb.toString());
+                LOGGER.debug(new ChaiLogger.MessageSupplier() {
+                    public String get()
+                    {
+                        return "error during pre-close connection for " + originalProviderConfig.getSetting(ChaiSetting.BIND_DN);
+                    }
+                });
             } finally {
                 realProvider = null;
             }
@@ -334,13 +340,13 @@ class WatchdogWrapper implements InvocationHandler {
 
         try {
             realProvider = ChaiProviderFactory.createProvider(originalProviderConfig);
-        } catch (Exception e) {
-            final StringBuilder sb = new StringBuilder();
-            sb.append("error reopening ldap connection for ");
-            sb.append(originalProviderConfig.getSetting(ChaiSetting.BIND_DN));
-            sb.append(" ");
-            sb.append(e.toString());
-            LOGGER.debug(sb.toString());
+        } catch (final Exception e) {
+            LOGGER.debug(new ChaiLogger.MessageSupplier() {
+                public String get()
+                {
+                    return "error reopening ldap connection for " + originalProviderConfig.getSetting(ChaiSetting.BIND_DN) + " " + e.toString();
+                }
+            });
             throw e;
         }
 
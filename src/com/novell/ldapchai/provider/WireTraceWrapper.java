@@ -21,17 +21,28 @@ package com.novell.ldapchai.provider;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
 import com.novell.ldapchai.util.ChaiLogger;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.regex.Pattern;
 
 /**
  * Simple wire trace provider wrapper.  Adds lots of debugging info to the log4j trace level.
+ * <p/>
+ * Trace output is only generated when the log4j trace level is enabled for this class, and may be further
+ * limited by sampling or a DN pattern.  Trace messages are written to the log by a background thread.
  *
  * @author Jason D. Rivard
  * @see ChaiSetting#WIRETRACE_ENABLE
+ * @see ChaiSetting#WIRETRACE_SAMPLE_RATE
+ * @see ChaiSetting#WIRETRACE_DN_PATTERN
+ * @see ChaiSetting#WIRETRACE_MAX_LENGTH
+ * @see ChaiSetting#WIRETRACE_BUFFER_SIZE
  */
 class WireTraceWrapper extends AbstractWrapper {
 // ----------------------------- CONSTANTS ----------------------------
@@ -41,8 +52,21 @@ class WireTraceWrapper extends AbstractWrapper {
 
     private static final ChaiLogger LOGGER = ChaiLogger.getLogger(WireTraceWrapper.class);
 
+    /**
+     * Gson instances are thread safe, so a single instance is shared by all wrappers.
+     */
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private static ChaiLogger asyncTraceLogger;
+
     private volatile long operationCounter;
 
+    // settings stored as primitives for performance.
+    private final int setting_sampleRate;
+    private final int setting_maxLength;
+    private final Pattern setting_dnPattern;
+    private final ChaiLogger traceLogger;
+
 // -------------------------- STATIC METHODS --------------------------
 
     /**
@@ -56,7 +80,7 @@ class WireTraceWrapper extends AbstractWrapper {
     )
     {
         //check to make sure watchdog ise enabled;
-        final boolean watchDogEnabled = Boolean.parseBoolean(chaiProvider.getChaiConfiguration().getSetting(ChaiSetting.WIRETRACE_ENABLE));
+        final boolean watchDogEnabled = chaiProvider.getChaiConfiguration().getBooleanSetting(ChaiSetting.WIRETRACE_ENABLE);
         if (!watchDogEnabled) {
             final String errorStr = "attempt to obtain WireTrace wrapper when watchdog is not enabled in chai config";
             LOGGER.warn(errorStr);
@@ -74,6 +98,48 @@ class WireTraceWrapper extends AbstractWrapper {
                 new WireTraceWrapper(chaiProvider));
     }
 
+    private static synchronized ChaiLogger getTraceLogger(final int bufferSize)
+    {
+        if (bufferSize < 1) {
+            return LOGGER;
+        }
+
+        if (asyncTraceLogger == null) {
+            asyncTraceLogger = ChaiLogger.getAsyncLogger(WireTraceWrapper.class, bufferSize);
+        }
+        return asyncTraceLogger;
+    }
+
+    static String truncate(final String input, final int maxLength)
+    {
+        if (input == null || maxLength < 1 || input.length() <= maxLength) {
+            return input;
+        }
+
+        final StringBuilder sb = new StringBuilder(maxLength + 32);
+        sb.append(input, 0, maxLength);
+        sb.append("...[truncated ").append(input.length() - maxLength).append(" chars]");
+        return sb.toString();
+    }
+
+    /**
+     * Serialize a value as json, stopping as soon as more than {@code maxLength} characters have been produced, so a
+     * large result is not serialized in full only to be truncated.
+     */
+    static String toTruncatedJson(final Object value, final int maxLength)
+    {
+        final LimitedWriter writer = new LimitedWriter(maxLength);
+        try {
+            GSON.toJson(value, writer);
+        } catch (JsonIOException e) {
+            if (!(e.getCause() instanceof LimitReachedException)) {
+                throw e;
+            }
+            return writer.toString() + "...[truncated]";
+        }
+        return writer.toString();
+    }
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
     WireTraceWrapper(
@@ -81,6 +147,15 @@ class WireTraceWrapper extends AbstractWrapper {
     )
     {
         this.realProvider = realProvider;
+
+        final ChaiConfiguration chaiConfig = realProvider.getChaiConfiguration();
+        setting_sampleRate = Math.max(1, chaiConfig.getIntSetting(ChaiSetting.WIRETRACE_SAMPLE_RATE));
+        setting_maxLength = chaiConfig.getIntSetting(ChaiSetting.WIRETRACE_MAX_LENGTH);
+
+        final String dnPattern = chaiConfig.getSetting(ChaiSetting.WIRETRACE_DN_PATTERN);
+        setting_dnPattern = dnPattern == null || dnPattern.length() < 1 ? null : Pattern.compile(dnPattern, Pattern.CASE_INSENSITIVE);
+
+        traceLogger = getTraceLogger(chaiConfig.getIntSetting(ChaiSetting.WIRETRACE_BUFFER_SIZE));
     }
 
 // ------------------------ INTERFACE METHODS ------------------------
@@ -97,11 +172,13 @@ class WireTraceWrapper extends AbstractWrapper {
         final boolean isLdap = method.getAnnotation(ChaiProviderImplementor.LdapOperation.class) != null;
 
         try {
-            if (isLdap) {
-                return traceInvokation(method, args);
-            } else {
-                return method.invoke(realProvider, args);
+            if (isLdap && LOGGER.isTraceEnabled()) {
+                final long opNumber = getNextCounter();
+                if (isTraceable(opNumber, args)) {
+                    return traceInvokation(method, args, opNumber);
+                }
             }
+            return method.invoke(realProvider, args);
         } catch (InvocationTargetException e) {
             throw e.getTargetException();
         } catch (Exception e) {
@@ -111,17 +188,32 @@ class WireTraceWrapper extends AbstractWrapper {
 
 // -------------------------- OTHER METHODS --------------------------
 
+    /**
+     * Determine if a sampled operation should be traced.  Only called once the log4j trace level is known to be
+     * enabled, so no other work is performed when tracing is off in the logging system.
+     */
+    private boolean isTraceable(final long opNumber, final Object[] args)
+    {
+        if (setting_sampleRate > 1 && opNumber % setting_sampleRate != 0) {
+            return false;
+        }
+
+        if (setting_dnPattern != null && args != null && args.length > 0 && args[0] instanceof String) {
+            return setting_dnPattern.matcher((String) args[0]).find();
+        }
+
+        return true;
+    }
+
     private Object traceInvokation(
             final Method method,
-            final Object[] args)
+            final Object[] args,
+            final long opNumber)
             throws Throwable
     {
-        final long opNumber = getNextCounter();
         final String messageLabel = "id=" + realProvider.getIdentifier() + ",op#" + opNumber;
 
-        if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace("begin " + messageLabel + " method " + AbstractProvider.methodToDebugStr(method, args));
-        }
+        traceLogger.trace("begin " + messageLabel + " method " + truncate(AbstractProvider.methodToDebugStr(method, args), setting_maxLength));
 
         final long startTime = System.currentTimeMillis();
         final Object result = method.invoke(realProvider, args);
@@ -130,15 +222,13 @@ class WireTraceWrapper extends AbstractWrapper {
         String debugResult = null;
         if (result != null) {
             try {
-                debugResult = (new GsonBuilder().disableHtmlEscaping().create()).toJson(result);
+                debugResult = toTruncatedJson(result, setting_maxLength);
             } catch (Exception e) {
-                debugResult = toString();
+                debugResult = truncate(String.valueOf(result), setting_maxLength);
             }
         }
 
-        if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace("finish " + messageLabel + " result: " + (debugResult== null ? "null" : debugResult) + " (" + totalTime + "ms)");
-        }
+        traceLogger.trace("finish " + messageLabel + " result: " + debugResult + " (" + totalTime + "ms)");
 
         return result;
     }
@@ -148,4 +238,77 @@ class WireTraceWrapper extends AbstractWrapper {
         operationCounter++;
         return operationCounter;
     }
-}
\ No newline at end of file
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Thrown by {@link LimitedWriter} to abandon serialization once its limit is reached.
+     */
+    private static class LimitReachedException extends IOException {
+        private LimitReachedException()
+        {
+            super("trace output limit reached");
+        }
+    }
+
+    /**
+     * Collects at most {@code maxLength} characters, then fails the write that would exceed them.  A
+     * {@code maxLength} of zero or less does not limit the output.
+     */
+    private static class LimitedWriter extends Writer {
+        private final StringBuilder sb = new StringBuilder();
+        private final int maxLength;
+
+        private LimitedWriter(final int maxLength)
+        {
+            this.maxLength = maxLength;
+        }
+
+        public void write(final char[] cbuf, final int off, final int len)
+                throws IOException
+        {
+            final int accepted = accept(len);
+            sb.append(cbuf, off, accepted);
+            if (accepted < len) {
+                throw new LimitReachedException();
+            }
+        }
+
+        public void write(final String str, final int off, final int len)
+                throws IOException
+        {
+            final int accepted = accept(len);
+            sb.append(str, off, off + accepted);
+            if (accepted < len) {
+                throw new LimitReachedException();
+            }
+        }
+
+        public void write(final int c)
+                throws IOException
+        {
+            if (accept(1) < 1) {
+                throw new LimitReachedException();
+            }
+            sb.append((char) c);
+        }
+
+        private int accept(final int len)
+        {
+            return maxLength < 1 ? len : Math.min(len, maxLength - sb.length());
+        }
+
+        public void flush()
+        {
+        }
+
+        public void close()
+        {
+        }
+
+        public String toString()
+        {
+            return sb.toString();
+        }
+    }
+}
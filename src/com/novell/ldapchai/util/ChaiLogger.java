@@ -19,16 +19,38 @@
 
 package com.novell.ldapchai.util;
 
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Internal Chai API logging wrapper.  Users of Chai should ignore this class.
+ * <p/>
+ * In addition to the plain message methods, each level has a {@link MessageSupplier} variant.  The supplier is
+ * only evaluated if the level is enabled, so callers on hot paths can avoid building messages that will not be output.
+ * <p/>
+ * Output may optionally be made asynchronous by calling {@link #setAsyncBufferSize(int)}.  When enabled, log events
+ * are placed in a bounded buffer and written to log4j by a background thread.  Logging calls never block; if the
+ * buffer is full the oldest pending event is discarded.  The timestamp, thread name, NDC and MDC of an asynchronous
+ * event are captured when it is logged, but location information is not, so layouts using %C, %F, %L, %l or %M
+ * report the async output thread instead of the caller.
  *
  * @author Jason D. Rivard
  */
 public class ChaiLogger {
 // ------------------------------ FIELDS ------------------------------
 
+    private static final String FQCN = ChaiLogger.class.getName();
+
+    private static volatile AsyncOutput globalAsyncOutput;
+
     private final String name;
     private final org.apache.log4j.Logger logger;
+    private final AsyncOutput asyncOutput;
 
 // -------------------------- STATIC METHODS --------------------------
 
@@ -42,12 +64,49 @@ public class ChaiLogger {
         return new ChaiLogger(name);
     }
 
+    /**
+     * Get a logger that always writes asynchronously through its own dedicated buffer, regardless of the global
+     * async setting.  As with the global async setting, each event keeps the caller's timestamp, thread name, NDC
+     * and MDC, but not its location information.
+     *
+     * @param className  class name of the logger
+     * @param bufferSize maximum number of pending log events, if less than one a normal logger is returned
+     * @return a new logger instance
+     */
+    public static ChaiLogger getAsyncLogger(final Class className, final int bufferSize)
+    {
+        if (bufferSize < 1) {
+            return getLogger(className);
+        }
+        return new ChaiLogger(className.getName(), new AsyncOutput(bufferSize));
+    }
+
+    /**
+     * Enable or disable asynchronous output for all loggers.
+     *
+     * @param bufferSize maximum number of pending log events, or zero to disable asynchronous output.
+     */
+    public static synchronized void setAsyncBufferSize(final int bufferSize)
+    {
+        final AsyncOutput oldOutput = globalAsyncOutput;
+        globalAsyncOutput = bufferSize > 0 ? new AsyncOutput(bufferSize) : null;
+        if (oldOutput != null) {
+            oldOutput.shutdown();
+        }
+    }
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
     public ChaiLogger(final String name)
+    {
+        this(name, null);
+    }
+
+    private ChaiLogger(final String name, final AsyncOutput asyncOutput)
     {
         this.name = name;
-        logger = org.apache.log4j.Logger.getLogger(name);
+        this.logger = org.apache.log4j.Logger.getLogger(name);
+        this.asyncOutput = asyncOutput;
     }
 
 // --------------------- GETTER / SETTER METHODS ---------------------
@@ -61,42 +120,71 @@ public class ChaiLogger {
 
     public void debug(final Object message)
     {
-        logger.debug(message);
+        if (logger.isDebugEnabled()) {
+            output(Level.DEBUG, message, null);
+        }
     }
 
     public void debug(final Object message, final Exception exception)
     {
-        logger.trace(message, exception);
+        if (logger.isDebugEnabled()) {
+            output(Level.DEBUG, message, exception);
+        }
+    }
+
+    public void debug(final MessageSupplier message)
+    {
+        if (logger.isDebugEnabled()) {
+            output(Level.DEBUG, message.get(), null);
+        }
     }
 
     public void error(final Object message)
     {
-        logger.error(message);
+        output(Level.ERROR, message, null);
     }
 
     public void error(final Object message, final Exception exception)
     {
-        logger.error(message, exception);
+        output(Level.ERROR, message, exception);
+    }
+
+    public void error(final MessageSupplier message)
+    {
+        if (logger.isEnabledFor(Level.ERROR)) {
+            output(Level.ERROR, message.get(), null);
+        }
     }
 
     public void fatal(final Object message)
     {
-        logger.fatal(message);
+        output(Level.FATAL, message, null);
     }
 
     public void fatal(final Object message, final Exception exception)
     {
-        logger.fatal(message, exception);
+        output(Level.FATAL, message, exception);
     }
 
     public void info(final Object message)
     {
-        logger.info(message);
+        if (logger.isInfoEnabled()) {
+            output(Level.INFO, message, null);
+        }
     }
 
     public void info(final Object message, final Exception exception)
     {
-        logger.info(message, exception);
+        if (logger.isInfoEnabled()) {
+            output(Level.INFO, message, exception);
+        }
+    }
+
+    public void info(final MessageSupplier message)
+    {
+        if (logger.isInfoEnabled()) {
+            output(Level.INFO, message.get(), null);
+        }
     }
 
     public boolean isDebugEnabled()
@@ -116,21 +204,137 @@ public class ChaiLogger {
 
     public void trace(final Object message)
     {
-        logger.trace(message);
+        if (logger.isTraceEnabled()) {
+            output(Level.TRACE, message, null);
+        }
     }
 
     public void trace(final Object message, final Exception exception)
     {
-        logger.debug(message, exception);
+        if (logger.isTraceEnabled()) {
+            output(Level.TRACE, message, exception);
+        }
+    }
+
+    public void trace(final MessageSupplier message)
+    {
+        if (logger.isTraceEnabled()) {
+            output(Level.TRACE, message.get(), null);
+        }
     }
 
     public void warn(final Object message)
     {
-        logger.warn(message);
+        output(Level.WARN, message, null);
     }
 
     public void warn(final Object message, final Exception exception)
     {
-        logger.warn(message, exception);
+        output(Level.WARN, message, exception);
+    }
+
+    public void warn(final MessageSupplier message)
+    {
+        if (logger.isEnabledFor(Level.WARN)) {
+            output(Level.WARN, message.get(), null);
+        }
+    }
+
+    private void output(final Level level, final Object message, final Throwable exception)
+    {
+        final AsyncOutput async = asyncOutput != null ? asyncOutput : globalAsyncOutput;
+        if (async == null) {
+            logger.log(FQCN, level, message, exception);
+        } else if (logger.isEnabledFor(level)) {
+            final LoggingEvent event = new LoggingEvent(FQCN, logger, level, message == null ? null : message.toString(), exception);
+
+            // read the values that log4j otherwise takes from the current thread when the event is written
+            event.getThreadName();
+            event.getNDC();
+            event.getMDCCopy();
+
+            async.add(new LogEvent(logger, event));
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Supplies a log message on demand.  Only invoked if the requested level is enabled.
+     */
+    public interface MessageSupplier {
+        String get();
+    }
+
+    private static class LogEvent {
+        private final org.apache.log4j.Logger logger;
+        private final LoggingEvent loggingEvent;
+
+        private LogEvent(final org.apache.log4j.Logger logger, final LoggingEvent loggingEvent)
+        {
+            this.logger = logger;
+            this.loggingEvent = loggingEvent;
+        }
+    }
+
+    /**
+     * Bounded ring buffer of log events, drained to log4j by a single daemon thread.  Adding an event never
+     * blocks; if the buffer is full the oldest pending event is discarded.
+     */
+    private static class AsyncOutput implements Runnable {
+        private final static String THREAD_NAME = "LDAP Chai ChaiLogger output thread";
+
+        private final BlockingQueue<LogEvent> buffer;
+        private final AtomicLong discardCount = new AtomicLong();
+        private volatile boolean running = true;
+
+        private AsyncOutput(final int bufferSize)
+        {
+            buffer = new ArrayBlockingQueue<LogEvent>(bufferSize);
+
+            final Thread thread = new Thread(this, THREAD_NAME);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void add(final LogEvent event)
+        {
+            while (!buffer.offer(event)) {
+                if (buffer.poll() != null) {
+                    discardCount.incrementAndGet();
+                }
+            }
+        }
+
+        private void shutdown()
+        {
+            running = false;
+        }
+
+        public void run()
+        {
+            final org.apache.log4j.Logger internalLogger = org.apache.log4j.Logger.getLogger(FQCN);
+            long reportedDiscards = 0;
+            while (running || !buffer.isEmpty()) {
+                try {
+                    final LogEvent event = buffer.poll(1, TimeUnit.SECONDS);
+                    final long currentDiscards = discardCount.get();
+                    if (currentDiscards != reportedDiscards) {
+                        internalLogger.warn("log output buffer overflow, " + (currentDiscards - reportedDiscards) + " log events discarded");
+                        reportedDiscards = currentDiscards;
+                    }
+                    if (event != null) {
+                        event.logger.callAppenders(event.loggingEvent);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    try {
+                        internalLogger.error("error during async log output: " + e.getMessage(), e);
+                    } catch (Exception e2) {
+                    }
+                }
+            }
+        }
     }
 }
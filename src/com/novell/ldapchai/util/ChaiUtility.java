@@ -27,6 +27,8 @@ import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.provider.ChaiProviderFactory;
 import com.novell.ldapchai.provider.ChaiSetting;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.*;
 
 /**
@@ -45,6 +47,8 @@ public class ChaiUtility {
 
     private static final ChaiLogger LOGGER = ChaiLogger.getLogger(ChaiUtility.class);
 
+    private static final FilterTemplate UNIQUE_NAME_FILTER = FilterTemplate.compile("(" + ChaiConstant.ATTR_LDAP_COMMON_NAME + "={0})");
+
 // -------------------------- STATIC METHODS --------------------------
 
     /**
@@ -119,24 +123,22 @@ public class ChaiUtility {
 
         // Now we have a base name, let's runServer testing it...
         String uniqueCN;
-        StringBuilder filter;
+        final SearchHelper searchHelper = new SearchHelper(ChaiProvider.SEARCH_SCOPE.ONE);
+        searchHelper.returnNoAttributes();
 
         final Random randomNumber = new Random();
         int iExt = randomNumber.nextInt() % 1000; // Start with a random 3 digit number
         String sExt = null;
 
         while (true) {
-            // Initialize the String Buffer and Unique DN.
-            filter = new StringBuilder(64);
-
             if (sExt != null) {
                 uniqueCN = cnStripped.append(sExt).toString();
             } else {
                 uniqueCN = cnStripped.toString();
             }
-            filter.append("(").append(ChaiConstant.ATTR_LDAP_COMMON_NAME).append("=").append(uniqueCN).append(")");
+            searchHelper.setFilter(UNIQUE_NAME_FILTER, uniqueCN);
 
-            final Map<String, Map<String,String>> results = provider.search(containerDN, filter.toString(), null, ChaiProvider.SEARCH_SCOPE.ONE);
+            final Map<String, Map<String,String>> results = provider.search(containerDN, searchHelper);
             if (results.size() == 0) {
                 // No object found!
                 break;
@@ -175,7 +177,8 @@ public class ChaiUtility {
     }
 
     /**
-     * Convert to an LDIF format.  Useful for debugging or other purposes
+     * Convert to an LDIF format.  Useful for debugging or other purposes.  Values that are not safe as LDIF text are
+     * base64 encoded.  To export many entries, use {@link LdifWriter#writeSearch(ChaiProvider, String, SearchHelper)}.
      *
      * @param theEntry A valid {@code ChaiEntry}
      * @return A string containing a properly formated LDIF view of the entry.
@@ -185,20 +188,16 @@ public class ChaiUtility {
     public static String entryToLDIF(final ChaiEntry theEntry)
             throws ChaiUnavailableException, ChaiOperationException
     {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("dn: ").append(theEntry.getEntryDN()).append("\n");
-
         final Map<String, Map<String, List<String>>> results = theEntry.getChaiProvider().searchMultiValues(theEntry.getEntryDN(), "(objectClass=*)", null, ChaiProvider.SEARCH_SCOPE.BASE);
         final Map<String, List<String>> props = results.get(theEntry.getEntryDN());
 
-        for (final String attrName : props.keySet()) {
-            final List<String> values = props.get(attrName);
-            for (final String value : values) {
-                sb.append(attrName).append(": ").append(value).append('\n');
-            }
+        final StringWriter stringWriter = new StringWriter();
+        try {
+            new LdifWriter(stringWriter).writeEntry(theEntry.getEntryDN(), props);
+        } catch (IOException e) {
+            throw new IllegalStateException("unexpected error writing to string: " + e.getMessage());
         }
-
-        return sb.toString();
+        return stringWriter.toString();
     }
 
     private static ChaiEntry findPartitionRoot(final ChaiEntry theEntry)
@@ -72,6 +72,13 @@ public class ConfigObjectRecord {
     private String guid2;
     private String payload;
 
+    /**
+     * The stored value this record was parsed from, the payload is only extracted from it when requested.  It is
+     * never cleared by a read, so records shared between threads need no synchronization to be read.
+     */
+    private String storedValue;
+    private int payloadStart;
+
     private String attr;
     private ChaiEntry objectEntry;
 
@@ -159,24 +166,40 @@ public class ConfigObjectRecord {
         final List<ConfigObjectRecord> cors = new ArrayList<ConfigObjectRecord>();
 
         for (final String value : values) {
+            //Values of other record types are skipped without being parsed.
+            if (!mayHaveRecordType(value, recordType)) {
+                continue;
+            }
+
             final ConfigObjectRecord loopRec = parseString(value);
-            loopRec.objectEntry = ldapEntry;
-            loopRec.attr = attr;
-            cors.add(loopRec);
-
-            //If it doesnt match any of the tests, then remove the record.
-            if (!loopRec.getRecordType().equalsIgnoreCase(recordType)) {
-                cors.remove(loopRec);
-            } else if (guid1 != null && !guid1.contains(loopRec.getGuid1())) {
-                cors.remove(loopRec);
-            } else if (guid2 != null && !guid2.contains(loopRec.getGuid2())) {
-                cors.remove(loopRec);
+            if (loopRec.getRecordType().equalsIgnoreCase(recordType)
+                    && (guid1 == null || guid1.contains(loopRec.getGuid1()))
+                    && (guid2 == null || guid2.contains(loopRec.getGuid2()))) {
+                loopRec.objectEntry = ldapEntry;
+                loopRec.attr = attr;
+                cors.add(loopRec);
             }
         }
 
         return cors;
     }
 
+    /**
+     * Quick test of the record type of a stored value.  Returns false only if the value can not be a record of
+     * the supplied type (compared case insensitively), in which case the value does not need to be parsed.
+     */
+    private static boolean mayHaveRecordType(final String value, final String recordType)
+    {
+        if (value == null || value.startsWith(RECORD_SEPERATOR)) {
+            // let the parser deal with these.
+            return true;
+        }
+
+        final int typeLength = recordType.length();
+        return value.regionMatches(true, 0, recordType, 0, typeLength)
+                && (value.length() == typeLength || value.startsWith(RECORD_SEPERATOR, typeLength));
+    }
+
     /**
      * Read a string value and convert to a {@code ConfigObjectRecord}.
      *
@@ -194,21 +217,40 @@ public class ConfigObjectRecord {
         return cor;
     }
 
+    /**
+     * Parses the type and guid values.  Like a {@link StringTokenizer}, empty values between seperators are
+     * skipped.  The payload is everything after the guid2 value and one seperator, and is only extracted by {@link #getPayload()}.
+     */
     private void parseObjectRecord(final String inputString)
     {
-        final StringTokenizer st = new StringTokenizer(inputString, ConfigObjectRecord.RECORD_SEPERATOR);
+        final int length = inputString.length();
+        final String[] header = new String[3];
+        int position = 0;
 
-        try {
-            recordType = st.nextToken();
-            guid1 = st.nextToken();
-            guid2 = st.nextToken();
-            payload = st.nextToken("");
-            if (payload.startsWith(RECORD_SEPERATOR)) {
-                payload = payload.substring(RECORD_SEPERATOR.length(), payload.length());
+        for (int i = 0; i < header.length; i++) {
+            while (inputString.startsWith(RECORD_SEPERATOR, position)) {
+                position += RECORD_SEPERATOR.length();
+            }
+            if (position >= length) {
+                throw new IllegalArgumentException("incomplete COR string. missing components");
             }
-        } catch (NoSuchElementException e) {
+            int end = inputString.indexOf(RECORD_SEPERATOR, position);
+            if (end < 0) {
+                end = length;
+            }
+            header[i] = inputString.substring(position, end);
+            position = end;
+        }
+
+        if (position >= length) {
             throw new IllegalArgumentException("incomplete COR string. missing components");
         }
+
+        recordType = header[0];
+        guid1 = header[1];
+        guid2 = header[2];
+        storedValue = inputString;
+        payloadStart = inputString.startsWith(RECORD_SEPERATOR, position) ? position + RECORD_SEPERATOR.length() : position;
     }
 
 // --------------------------- CONSTRUCTORS ---------------------------
@@ -249,7 +291,8 @@ public class ConfigObjectRecord {
      */
     public final String getPayload()
     {
-        return payload;
+        final String value = storedValue;
+        return value == null ? payload : value.substring(payloadStart);
     }
 
     /**
@@ -277,6 +320,7 @@ public class ConfigObjectRecord {
             throws ChaiOperationException, ChaiUnavailableException
     {
         this.payload = payload;
+        this.storedValue = null;
 
         Set<String> currentValues = null;
         try {
@@ -288,6 +332,9 @@ public class ConfigObjectRecord {
         //If there is already a value there, just replace it
         if (currentValues != null) {
             for (final String currentValue : currentValues) {
+                if (!mayHaveRecordType(currentValue, recordType)) {
+                    continue;
+                }
                 final ConfigObjectRecord record = ConfigObjectRecord.parseString(currentValue);
                 if (record.getRecordType().equals(recordType) && record.getGuid1().equals(guid1) && record.getGuid2().equals(guid2)) {
                     final String existingValue = record.toString();
@@ -316,6 +363,7 @@ public class ConfigObjectRecord {
         sb.append(ConfigObjectRecord.RECORD_SEPERATOR);
         sb.append(guid2 != null ? guid2 : ConfigObjectRecord.EMPTY_RECORD_VALUE);
         sb.append(ConfigObjectRecord.RECORD_SEPERATOR);
+        final String payload = getPayload();
         sb.append(payload != null ? payload : ConfigObjectRecord.EMPTY_RECORD_VALUE);
 
         return sb.toString();
@@ -0,0 +1,205 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A precompiled ldap filter with numbered parameters, such as {@code (&(objectClass=inetOrgPerson)(cn={0}))}.
+ * <p/>
+ * The template is checked once, when it is compiled, and each {@link #bind(Object...)} only escapes the arguments and
+ * joins them with the precompiled text, so a filter shape used for many searches is neither rebuilt nor re-parsed.
+ * Arguments are always escaped; a {@code byte[]} argument has every byte escaped.  The parameter syntax is the one
+ * used by JNDI's {@code DirContext.search(name, filterExpr, filterArgs, controls)}, so providers that support filter
+ * arguments can pass {@link #getPattern()} and the arguments through unchanged (see
+ * {@link SearchHelper#setFilter(FilterTemplate, Object...)}).
+ * <pre>
+ *   private static final FilterTemplate USER_FILTER = FilterTemplate.compile("(&(objectClass=inetOrgPerson)(cn={0}))");
+ *   ...
+ *   searchHelper.setFilter(USER_FILTER, username);
+ * </pre>
+ * Instances are immutable and thread safe.
+ *
+ * @author Jason D. Rivard
+ */
+public final class FilterTemplate implements Serializable {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final long serialVersionUID = 1L;
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final String pattern;
+
+    /**
+     * Literal text, alternating with parameters: literals[0], parameters[0], literals[1], ... literals[n].
+     */
+    private final String[] literals;
+    private final int[] parameters;
+    private final int parameterCount;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Compile a filter template.
+     *
+     * @param pattern an RFC 4515 filter where assertion values may be (or contain) {@code {n}} parameters
+     * @return the compiled template
+     * @throws IllegalArgumentException if the pattern is not a valid filter
+     */
+    public static FilterTemplate compile(final String pattern)
+    {
+        return new FilterTemplate(pattern);
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private FilterTemplate(final String pattern)
+    {
+        if (pattern == null) {
+            throw new NullPointerException("pattern is required");
+        }
+
+        final List<String> literalList = new ArrayList<String>();
+        final List<Integer> parameterList = new ArrayList<Integer>();
+        int maxParameter = -1;
+        int literalStart = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            if (c == '{') {
+                final int close = pattern.indexOf('}', i);
+                if (close == -1) {
+                    throw new IllegalArgumentException("unterminated parameter at position " + i + " of filter: " + pattern);
+                }
+                final int parameter;
+                try {
+                    parameter = Integer.parseInt(pattern.substring(i + 1, close));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid parameter at position " + i + " of filter: " + pattern);
+                }
+                if (parameter < 0) {
+                    throw new IllegalArgumentException("invalid parameter at position " + i + " of filter: " + pattern);
+                }
+                literalList.add(pattern.substring(literalStart, i));
+                parameterList.add(parameter);
+                maxParameter = Math.max(maxParameter, parameter);
+                i = close + 1;
+                literalStart = i;
+            } else {
+                i += c == '\\' ? 2 : 1;
+            }
+        }
+        literalList.add(pattern.substring(literalStart));
+
+        this.pattern = pattern;
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.parameters = new int[parameterList.size()];
+        for (int p = 0; p < parameters.length; p++) {
+            parameters[p] = parameterList.get(p);
+        }
+        this.parameterCount = maxParameter + 1;
+
+        // check the filter structure, using a value for each parameter
+        final Object[] sampleArguments = new Object[parameterCount];
+        for (int p = 0; p < parameterCount; p++) {
+            sampleArguments[p] = "x";
+        }
+        LdapFilter.parse(bind(sampleArguments));
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @return the template text, as passed to {@link #compile(String)}
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * @return the number of arguments {@link #bind(Object...)} requires
+     */
+    public int getParameterCount()
+    {
+        return parameterCount;
+    }
+
+// ------------------------ CANONICAL METHODS ------------------------
+
+    public boolean equals(final Object o)
+    {
+        return this == o || (o instanceof FilterTemplate && pattern.equals(((FilterTemplate) o).pattern));
+    }
+
+    public int hashCode()
+    {
+        return pattern.hashCode();
+    }
+
+    public String toString()
+    {
+        return pattern;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Substitute the escaped arguments for the template's parameters.
+     *
+     * @param arguments one argument for each parameter; {@code byte[]} arguments are escaped byte by byte, other
+     *                  arguments are converted with {@code toString()} and escaped
+     * @return the filter string
+     * @throws IllegalArgumentException if there are fewer arguments than parameters, or an argument is null
+     */
+    public String bind(final Object... arguments)
+    {
+        final int argumentCount = arguments == null ? 0 : arguments.length;
+        if (argumentCount < parameterCount) {
+            throw new IllegalArgumentException("filter " + pattern + " requires " + parameterCount + " arguments, but " + argumentCount + " supplied");
+        }
+
+        final StringBuilder sb = new StringBuilder(pattern.length() + 16 * parameters.length);
+        for (int i = 0; i < parameters.length; i++) {
+            sb.append(literals[i]);
+            final Object argument = arguments[parameters[i]];
+            if (argument == null) {
+                throw new IllegalArgumentException("argument " + parameters[i] + " for filter " + pattern + " is null");
+            }
+            sb.append(argument instanceof byte[] ? LdapFilter.escapeValue((byte[]) argument) : LdapFilter.escapeValue(argument.toString()));
+        }
+        sb.append(literals[parameters.length]);
+        return sb.toString();
+    }
+
+    /**
+     * Substitute the arguments and return the result as a filter.
+     *
+     * @param arguments one argument for each parameter
+     * @return the bound filter
+     */
+    public LdapFilter bindFilter(final Object... arguments)
+    {
+        return LdapFilter.parse(bind(arguments));
+    }
+}
@@ -0,0 +1,728 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+
+/**
+ * An immutable ldap search filter, held as a tree of filter components.
+ * <p/>
+ * Filters are built with the static factory methods, or parsed from RFC 4515 strings with {@link #parse(String)}.
+ * Assertion values are stored unescaped and escaped again by {@link #toString()}, so values containing
+ * {@code *}, {@code (}, {@code )} or {@code \} can never change the structure of a filter.
+ * <pre>
+ *   final LdapFilter filter = LdapFilter.and(
+ *           LdapFilter.equality("objectClass", "inetOrgPerson"),
+ *           LdapFilter.equality("cn", userInput));
+ *   searchHelper.setFilter(filter);
+ * </pre>
+ * {@link #normalize()} returns an equivalent filter in a canonical form, which {@link SearchHelper} uses so that
+ * equivalent filters compare (and cache) as equal.  For filters that are used repeatedly with different values, see
+ * {@link FilterTemplate}.
+ *
+ * @author Jason D. Rivard
+ */
+public final class LdapFilter implements Serializable {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final Type type;
+    private final String attribute;
+    private final String value;
+    private final List<LdapFilter> children;
+
+    // substring components
+    private final String initial;
+    private final List<String> any;
+    private final String finalValue;
+
+    // extensible match components
+    private final String matchingRule;
+    private final boolean dnAttributes;
+
+    private transient volatile String stringValue;
+
+// -------------------------- ENUMERATIONS --------------------------
+
+    public enum Type {
+        AND,
+        OR,
+        NOT,
+        EQUALITY,
+        SUBSTRING,
+        GREATER_OR_EQUAL,
+        LESS_OR_EQUAL,
+        PRESENT,
+        APPROX,
+        EXTENSIBLE,
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    public static LdapFilter and(final LdapFilter... filters)
+    {
+        return and(Arrays.asList(filters));
+    }
+
+    public static LdapFilter and(final Collection<LdapFilter> filters)
+    {
+        return composite(Type.AND, filters);
+    }
+
+    public static LdapFilter or(final LdapFilter... filters)
+    {
+        return or(Arrays.asList(filters));
+    }
+
+    public static LdapFilter or(final Collection<LdapFilter> filters)
+    {
+        return composite(Type.OR, filters);
+    }
+
+    public static LdapFilter not(final LdapFilter filter)
+    {
+        if (filter == null) {
+            throw new NullPointerException("filter is required");
+        }
+        return new LdapFilter(Type.NOT, null, null, Collections.singletonList(filter), null, null, null, null, false);
+    }
+
+    public static LdapFilter equality(final String attribute, final String value)
+    {
+        return simple(Type.EQUALITY, attribute, value);
+    }
+
+    public static LdapFilter greaterOrEqual(final String attribute, final String value)
+    {
+        return simple(Type.GREATER_OR_EQUAL, attribute, value);
+    }
+
+    public static LdapFilter lessOrEqual(final String attribute, final String value)
+    {
+        return simple(Type.LESS_OR_EQUAL, attribute, value);
+    }
+
+    public static LdapFilter approx(final String attribute, final String value)
+    {
+        return simple(Type.APPROX, attribute, value);
+    }
+
+    public static LdapFilter present(final String attribute)
+    {
+        checkAttribute(attribute);
+        return new LdapFilter(Type.PRESENT, attribute, null, null, null, null, null, null, false);
+    }
+
+    /**
+     * A substring filter, such as {@code (cn=jo*sm*th)}.
+     *
+     * @param attribute  the attribute name
+     * @param initial    the value the attribute must start with, or null
+     * @param any        values that must appear, in order, in the middle of the attribute, or null
+     * @param finalValue the value the attribute must end with, or null
+     * @return a new filter
+     */
+    public static LdapFilter substring(final String attribute, final String initial, final List<String> any, final String finalValue)
+    {
+        checkAttribute(attribute);
+        final List<String> anyCopy = any == null ? Collections.<String>emptyList() : Collections.unmodifiableList(new ArrayList<String>(any));
+        if (isEmpty(initial) && anyCopy.isEmpty() && isEmpty(finalValue)) {
+            throw new IllegalArgumentException("substring filter requires at least one component");
+        }
+        return new LdapFilter(Type.SUBSTRING, attribute, null, null, emptyToNull(initial), anyCopy, emptyToNull(finalValue), null, false);
+    }
+
+    /**
+     * An extensible match filter, such as {@code (cn:caseExactMatch:=Fred)}.
+     *
+     * @param attribute    the attribute name, or null if a matching rule is given
+     * @param matchingRule the matching rule name or OID, or null
+     * @param dnAttributes true if the attributes of the entry's DN should also be matched
+     * @param value        the assertion value
+     * @return a new filter
+     */
+    public static LdapFilter extensible(final String attribute, final String matchingRule, final boolean dnAttributes, final String value)
+    {
+        if (isEmpty(attribute) && isEmpty(matchingRule)) {
+            throw new IllegalArgumentException("extensible match requires an attribute or matching rule");
+        }
+        if (value == null) {
+            throw new NullPointerException("value is required");
+        }
+        return new LdapFilter(Type.EXTENSIBLE, emptyToNull(attribute), value, null, null, null, null, emptyToNull(matchingRule), dnAttributes);
+    }
+
+    /**
+     * Build an equality, presence or substring filter from a value in which {@code *} is a wildcard.  All other
+     * characters are literal.  For example {@code wildcard("cn", "jo*")} returns the filter {@code (cn=jo*)}, and
+     * {@code wildcard("cn", "a(b)")} returns {@code (cn=a\28b\29)}.
+     *
+     * @param attribute the attribute name
+     * @param pattern   the value, with {@code *} as a wildcard
+     * @return a new filter
+     */
+    public static LdapFilter wildcard(final String attribute, final String pattern)
+    {
+        if (pattern == null) {
+            throw new NullPointerException("value is required");
+        }
+        if (pattern.indexOf('*') == -1) {
+            return equality(attribute, pattern);
+        }
+        if ("*".equals(pattern)) {
+            return present(attribute);
+        }
+        return substringFromParts(attribute, pattern.split("\\*", -1));
+    }
+
+    /**
+     * Escape an assertion value as required by RFC 4515.
+     *
+     * @param value an unescaped value
+     * @return the value with {@code *}, {@code (}, {@code )}, {@code \} and NUL escaped
+     */
+    public static String escapeValue(final String value)
+    {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '*' || c == '(' || c == ')' || c == '\\' || c == 0) {
+                if (sb == null) {
+                    sb = new StringBuilder(value.length() + 8);
+                    sb.append(value, 0, i);
+                }
+                appendHexEscape(sb, c);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+
+    /**
+     * Escape every byte of a binary assertion value.
+     *
+     * @param value a binary value
+     * @return the escaped value
+     */
+    public static String escapeValue(final byte[] value)
+    {
+        final StringBuilder sb = new StringBuilder(value.length * 3);
+        for (final byte b : value) {
+            appendHexEscape(sb, b & 0xff);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse an RFC 4515 filter string.  A filter without enclosing parentheses, such as {@code cn=fred}, is also
+     * accepted.
+     *
+     * @param filter the filter string
+     * @return the parsed filter
+     * @throws IllegalArgumentException if the filter is not valid
+     */
+    public static LdapFilter parse(final String filter)
+    {
+        if (filter == null) {
+            throw new NullPointerException("filter is required");
+        }
+        final String trimmed = filter.trim();
+        final Parser parser = new Parser(trimmed.startsWith("(") ? trimmed : "(" + trimmed + ")");
+        final LdapFilter result = parser.parseFilter();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("unexpected text at position " + parser.pos + " of filter: " + filter);
+        }
+        return result;
+    }
+
+    private static LdapFilter composite(final Type type, final Collection<LdapFilter> filters)
+    {
+        if (filters == null || filters.isEmpty()) {
+            throw new IllegalArgumentException("requires at least one filter");
+        }
+        for (final LdapFilter filter : filters) {
+            if (filter == null) {
+                throw new NullPointerException("filter is required");
+            }
+        }
+        final List<LdapFilter> children = Collections.unmodifiableList(new ArrayList<LdapFilter>(filters));
+        return new LdapFilter(type, null, null, children, null, null, null, null, false);
+    }
+
+    private static LdapFilter simple(final Type type, final String attribute, final String value)
+    {
+        checkAttribute(attribute);
+        if (value == null) {
+            throw new NullPointerException("value is required");
+        }
+        return new LdapFilter(type, attribute, value, null, null, null, null, null, false);
+    }
+
+    private static LdapFilter substringFromParts(final String attribute, final String[] parts)
+    {
+        final List<String> any = new ArrayList<String>();
+        for (int i = 1; i < parts.length - 1; i++) {
+            if (parts[i].length() > 0) {
+                any.add(parts[i]);
+            }
+        }
+        if (isEmpty(parts[0]) && any.isEmpty() && isEmpty(parts[parts.length - 1])) {
+            return present(attribute);
+        }
+        return substring(attribute, parts[0], any, parts[parts.length - 1]);
+    }
+
+    private static void checkAttribute(final String attribute)
+    {
+        if (attribute == null || attribute.length() < 1) {
+            throw new IllegalArgumentException("attribute name is required");
+        }
+    }
+
+    private static boolean isEmpty(final String value)
+    {
+        return value == null || value.length() == 0;
+    }
+
+    private static String emptyToNull(final String value)
+    {
+        return isEmpty(value) ? null : value;
+    }
+
+    private static void appendHexEscape(final StringBuilder sb, final int value)
+    {
+        sb.append('\\').append(HEX[(value >> 4) & 0xf]).append(HEX[value & 0xf]);
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private LdapFilter(
+            final Type type,
+            final String attribute,
+            final String value,
+            final List<LdapFilter> children,
+            final String initial,
+            final List<String> any,
+            final String finalValue,
+            final String matchingRule,
+            final boolean dnAttributes
+    )
+    {
+        this.type = type;
+        this.attribute = attribute;
+        this.value = value;
+        this.children = children == null ? Collections.<LdapFilter>emptyList() : children;
+        this.initial = initial;
+        this.any = any == null ? Collections.<String>emptyList() : any;
+        this.finalValue = finalValue;
+        this.matchingRule = matchingRule;
+        this.dnAttributes = dnAttributes;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return the attribute name, or null for {@code AND}, {@code OR} and {@code NOT} filters
+     */
+    public String getAttribute()
+    {
+        return attribute;
+    }
+
+    /**
+     * @return the unescaped assertion value of a simple or extensible filter, otherwise null
+     */
+    public String getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return the child filters of an {@code AND}, {@code OR} or {@code NOT} filter, otherwise an empty list
+     */
+    public List<LdapFilter> getChildren()
+    {
+        return children;
+    }
+
+    public String getSubInitial()
+    {
+        return initial;
+    }
+
+    public List<String> getSubAny()
+    {
+        return any;
+    }
+
+    public String getSubFinal()
+    {
+        return finalValue;
+    }
+
+    public String getMatchingRule()
+    {
+        return matchingRule;
+    }
+
+    public boolean isDnAttributes()
+    {
+        return dnAttributes;
+    }
+
+// ------------------------ CANONICAL METHODS ------------------------
+
+    public boolean equals(final Object o)
+    {
+        return this == o || (o instanceof LdapFilter && toString().equals(o.toString()));
+    }
+
+    public int hashCode()
+    {
+        return toString().hashCode();
+    }
+
+    /**
+     * @return the filter as an escaped RFC 4515 string
+     */
+    public String toString()
+    {
+        String result = stringValue;
+        if (result == null) {
+            final StringBuilder sb = new StringBuilder();
+            appendTo(sb);
+            result = sb.toString();
+            stringValue = result;
+        }
+        return result;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Return an equivalent filter in canonical form.  Attribute names and matching rules are lower cased, nested
+     * {@code AND}s and {@code OR}s are flattened, their children are de-duplicated and sorted, single child
+     * {@code AND}s and {@code OR}s are replaced by their child and double negations are removed.  Assertion values
+     * are not changed, as their matching rules are not known.
+     *
+     * @return the normalized filter
+     */
+    public LdapFilter normalize()
+    {
+        switch (type) {
+            case AND:
+            case OR: {
+                final SortedMap<String, LdapFilter> normalizedChildren = new TreeMap<String, LdapFilter>();
+                for (final LdapFilter child : children) {
+                    final LdapFilter normalizedChild = child.normalize();
+                    if (normalizedChild.type == type) {
+                        for (final LdapFilter grandChild : normalizedChild.children) {
+                            normalizedChildren.put(grandChild.toString(), grandChild);
+                        }
+                    } else {
+                        normalizedChildren.put(normalizedChild.toString(), normalizedChild);
+                    }
+                }
+                if (normalizedChildren.size() == 1) {
+                    return normalizedChildren.values().iterator().next();
+                }
+                return composite(type, normalizedChildren.values());
+            }
+
+            case NOT: {
+                final LdapFilter normalizedChild = children.get(0).normalize();
+                if (normalizedChild.type == Type.NOT) {
+                    return normalizedChild.children.get(0);
+                }
+                return not(normalizedChild);
+            }
+
+            default:
+                return new LdapFilter(
+                        type,
+                        attribute == null ? null : attribute.toLowerCase(),
+                        value,
+                        null,
+                        initial,
+                        any,
+                        finalValue,
+                        matchingRule == null ? null : matchingRule.toLowerCase(),
+                        dnAttributes
+                );
+        }
+    }
+
+    private void appendTo(final StringBuilder sb)
+    {
+        sb.append('(');
+        switch (type) {
+            case AND:
+            case OR:
+            case NOT:
+                sb.append(type == Type.AND ? '&' : type == Type.OR ? '|' : '!');
+                for (final LdapFilter child : children) {
+                    child.appendTo(sb);
+                }
+                break;
+
+            case EQUALITY:
+                sb.append(attribute).append('=').append(escapeValue(value));
+                break;
+
+            case GREATER_OR_EQUAL:
+                sb.append(attribute).append(">=").append(escapeValue(value));
+                break;
+
+            case LESS_OR_EQUAL:
+                sb.append(attribute).append("<=").append(escapeValue(value));
+                break;
+
+            case APPROX:
+                sb.append(attribute).append("~=").append(escapeValue(value));
+                break;
+
+            case PRESENT:
+                sb.append(attribute).append("=*");
+                break;
+
+            case SUBSTRING:
+                sb.append(attribute).append('=');
+                if (initial != null) {
+                    sb.append(escapeValue(initial));
+                }
+                sb.append('*');
+                for (final String anyValue : any) {
+                    sb.append(escapeValue(anyValue)).append('*');
+                }
+                if (finalValue != null) {
+                    sb.append(escapeValue(finalValue));
+                }
+                break;
+
+            case EXTENSIBLE:
+                if (attribute != null) {
+                    sb.append(attribute);
+                }
+                if (dnAttributes) {
+                    sb.append(":dn");
+                }
+                if (matchingRule != null) {
+                    sb.append(':').append(matchingRule);
+                }
+                sb.append(":=").append(escapeValue(value));
+                break;
+
+            default:
+                throw new IllegalStateException("unknown filter type " + type);
+        }
+        sb.append(')');
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class Parser {
+        private final String filter;
+        private int pos;
+
+        private Parser(final String filter)
+        {
+            this.filter = filter;
+        }
+
+        private boolean atEnd()
+        {
+            while (pos < filter.length() && filter.charAt(pos) == ' ') {
+                pos++;
+            }
+            return pos >= filter.length();
+        }
+
+        private LdapFilter parseFilter()
+        {
+            expect('(');
+            if (pos >= filter.length()) {
+                throw error("unexpected end");
+            }
+
+            final LdapFilter result;
+            final char c = filter.charAt(pos);
+            if (c == '&' || c == '|') {
+                pos++;
+                final List<LdapFilter> children = new ArrayList<LdapFilter>();
+                while (pos < filter.length() && filter.charAt(pos) == '(') {
+                    children.add(parseFilter());
+                }
+                result = composite(c == '&' ? Type.AND : Type.OR, children);
+            } else if (c == '!') {
+                pos++;
+                result = not(parseFilter());
+            } else {
+                result = parseItem();
+            }
+
+            expect(')');
+            return result;
+        }
+
+        private LdapFilter parseItem()
+        {
+            final int valueEnd = findValueEnd();
+            final String item = filter.substring(pos, valueEnd);
+            pos = valueEnd;
+
+            final int equals = item.indexOf('=');
+            if (equals < 1) {
+                throw error("missing attribute or operator in '" + item + "'");
+            }
+
+            final String rawValue = item.substring(equals + 1);
+            final char operator = item.charAt(equals - 1);
+            switch (operator) {
+                case '>':
+                    return greaterOrEqual(item.substring(0, equals - 1), unescape(rawValue));
+                case '<':
+                    return lessOrEqual(item.substring(0, equals - 1), unescape(rawValue));
+                case '~':
+                    return approx(item.substring(0, equals - 1), unescape(rawValue));
+                case ':':
+                    return parseExtensible(item.substring(0, equals - 1), unescape(rawValue));
+                default:
+                    final String attributeName = item.substring(0, equals);
+                    if (rawValue.indexOf('*') == -1) {
+                        return equality(attributeName, unescape(rawValue));
+                    }
+                    final String[] rawParts = rawValue.split("\\*", -1);
+                    final String[] parts = new String[rawParts.length];
+                    for (int i = 0; i < rawParts.length; i++) {
+                        parts[i] = unescape(rawParts[i]);
+                    }
+                    return substringFromParts(attributeName, parts);
+            }
+        }
+
+        private LdapFilter parseExtensible(final String description, final String assertionValue)
+        {
+            final String[] parts = description.split(":", -1);
+            final String attributeName = parts[0];
+            boolean dn = false;
+            String rule = null;
+            for (int i = 1; i < parts.length; i++) {
+                if ("dn".equalsIgnoreCase(parts[i]) && i == 1 && rule == null) {
+                    dn = true;
+                } else if (rule == null && parts[i].length() > 0) {
+                    rule = parts[i];
+                } else {
+                    throw error("invalid extensible match '" + description + "'");
+                }
+            }
+            return extensible(attributeName, rule, dn, assertionValue);
+        }
+
+        private int findValueEnd()
+        {
+            int i = pos;
+            while (i < filter.length()) {
+                final char c = filter.charAt(i);
+                if (c == ')') {
+                    return i;
+                }
+                if (c == '(') {
+                    throw error("unescaped '(' in value");
+                }
+                if (c == '\\') {
+                    i++;
+                }
+                i++;
+            }
+            throw error("unterminated filter component");
+        }
+
+        private String unescape(final String escaped)
+        {
+            if (escaped.indexOf('\\') == -1) {
+                return escaped;
+            }
+            final StringBuilder sb = new StringBuilder(escaped.length());
+            final ByteArrayOutputStream escapedBytes = new ByteArrayOutputStream();
+            for (int i = 0; i < escaped.length(); i++) {
+                final char c = escaped.charAt(i);
+                if (c == '\\' && i + 2 < escaped.length() && isHex(escaped.charAt(i + 1)) && isHex(escaped.charAt(i + 2))) {
+                    // escaped bytes are utf-8, and a character may span several escapes
+                    escapedBytes.write(Integer.parseInt(escaped.substring(i + 1, i + 3), 16));
+                    i += 2;
+                } else {
+                    flushBytes(escapedBytes, sb);
+                    if (c == '\\' && i + 1 < escaped.length()) {
+                        // RFC 1960 style escape of a single character
+                        sb.append(escaped.charAt(++i));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+            flushBytes(escapedBytes, sb);
+            return sb.toString();
+        }
+
+        private static void flushBytes(final ByteArrayOutputStream escapedBytes, final StringBuilder sb)
+        {
+            if (escapedBytes.size() > 0) {
+                try {
+                    sb.append(escapedBytes.toString("UTF-8"));
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException("UTF-8 is not supported", e);
+                }
+                escapedBytes.reset();
+            }
+        }
+
+        private static boolean isHex(final char c)
+        {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+
+        private void expect(final char c)
+        {
+            if (pos >= filter.length() || filter.charAt(pos) != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private IllegalArgumentException error(final String message)
+        {
+            return new IllegalArgumentException(message + " at position " + pos + " of filter: " + filter);
+        }
+    }
+}
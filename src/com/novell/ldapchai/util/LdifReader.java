@@ -0,0 +1,388 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.provider.ChaiModification;
+import com.novell.ldapchai.provider.ChaiWritePipeline;
+import com.novell.ldapchai.util.internal.Base64Util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the content records of an RFC 2849 LDIF file, one record at a time.
+ * <p/>
+ * Supports comments, folded lines and base64 ({@code attr:: value}) values.  The {@code version} line and
+ * {@code changetype: add} are accepted and ignored; other change records and {@code attr:< url} values are
+ * rejected.  Base64 values that are valid UTF-8 are returned as text, others as binary values.
+ * <p/>
+ * {@link #importEntries(ChaiWritePipeline, int, List)} creates the entries read through a {@link ChaiWritePipeline},
+ * so an import holds at most one batch of entries in memory.  Entries are only written concurrently when the
+ * pipeline was created with more than one provider, and are written in a transaction, bypassing the provider
+ * wrappers, when the pipeline uses transactions; see {@link ChaiWritePipeline}.
+ * Instances are not thread safe.
+ *
+ * @author Jason D. Rivard
+ * @see LdifWriter
+ */
+public class LdifReader implements Closeable {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final BufferedReader reader;
+    private String pendingLine;
+    private int lineNumber;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Create a reader for a channel, such as a {@code FileChannel}.
+     *
+     * @param channel the channel to read from; it is closed by {@link #close()}
+     * @param gzip    if true, the input is gzip compressed
+     * @return a new reader
+     * @throws IOException if the gzip header can not be read
+     */
+    public static LdifReader forChannel(final ReadableByteChannel channel, final boolean gzip)
+            throws IOException
+    {
+        InputStream inputStream = Channels.newInputStream(channel);
+        if (gzip) {
+            inputStream = new GZIPInputStream(inputStream, 64 * 1024);
+        }
+        return new LdifReader(new BufferedReader(new InputStreamReader(inputStream, UTF8), 64 * 1024));
+    }
+
+    private static String trimLeadingSpaces(final String value)
+    {
+        int start = 0;
+        while (start < value.length() && value.charAt(start) == ' ') {
+            start++;
+        }
+        return value.substring(start);
+    }
+
+    /**
+     * Return the parent of a dn, splitting at the first comma that is not escaped.
+     */
+    private static String parentDN(final String dn)
+    {
+        for (int i = 0; i < dn.length(); i++) {
+            final char c = dn.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ',') {
+                return dn.substring(i + 1).trim();
+            }
+        }
+        return "";
+    }
+
+    private static <V> void addValue(final Map<String, List<V>> map, final String name, final V value)
+    {
+        List<V> values = map.get(name);
+        if (values == null) {
+            values = new ArrayList<V>();
+            map.put(name, values);
+        }
+        values.add(value);
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param reader the reader to read from; it is closed by {@link #close()}
+     */
+    public LdifReader(final Reader reader)
+    {
+        if (reader == null) {
+            throw new NullPointerException("reader must not be null");
+        }
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface Closeable ---------------------
+
+    public void close()
+            throws IOException
+    {
+        reader.close();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Read the next record.
+     *
+     * @return the next record, or null at the end of the input
+     * @throws IOException if the input can not be read or is not valid LDIF
+     */
+    public Record readRecord()
+            throws IOException
+    {
+        String dn = null;
+        final Map<String, List<String>> attributes = new LinkedHashMap<String, List<String>>();
+        final Map<String, List<byte[]>> binaryAttributes = new LinkedHashMap<String, List<byte[]>>();
+
+        for (String line = readLogicalLine(); line != null; line = readLogicalLine()) {
+            if (line.length() == 0) {
+                if (dn != null) {
+                    break;
+                }
+                continue;
+            }
+
+            final int colon = line.indexOf(':');
+            if (colon < 1) {
+                throw new IOException("invalid LDIF line " + lineNumber + ": " + line);
+            }
+
+            final String name = line.substring(0, colon);
+            final Object value = parseValue(line, colon);
+
+            if (dn == null) {
+                if ("version".equalsIgnoreCase(name)) {
+                    continue;
+                }
+                if (!"dn".equalsIgnoreCase(name) || !(value instanceof String)) {
+                    throw new IOException("expected dn at LDIF line " + lineNumber + ": " + line);
+                }
+                dn = (String) value;
+            } else if ("changetype".equalsIgnoreCase(name)) {
+                if (!"add".equalsIgnoreCase(String.valueOf(value))) {
+                    throw new IOException("unsupported changetype '" + value + "' at LDIF line " + lineNumber);
+                }
+            } else if (value instanceof byte[]) {
+                addValue(binaryAttributes, name, (byte[]) value);
+            } else {
+                addValue(attributes, name, (String) value);
+            }
+        }
+
+        return dn == null ? null : new Record(dn, attributes, binaryAttributes);
+    }
+
+    /**
+     * Queue every remaining record as an entry creation on {@code pipeline}, executing the pipeline after every
+     * {@code batchSize} entries and once more at the end of the input.
+     * <p/>
+     * Each entry is created with its object classes and the first value of each text attribute; any further values and
+     * binary values are added by a modify that the pipeline sends after the create.  Records should appear after
+     * their parent, as in a file written by {@link LdifWriter}; a pipeline barrier is inserted whenever an entry's
+     * parent was queued in the same batch.
+     *
+     * @param pipeline  the pipeline to write with; anything already queued is executed with the first batch
+     * @param batchSize the number of entries to queue before executing the pipeline
+     * @param failures  if not null, the results of operations that did not succeed are added to this list
+     * @return the number of entries that were created without error
+     * @throws IOException if the input can not be read or is not valid LDIF
+     */
+    public long importEntries(final ChaiWritePipeline pipeline, final int batchSize, final List<ChaiWritePipeline.Result> failures)
+            throws IOException
+    {
+        if (pipeline == null) {
+            throw new NullPointerException("pipeline must not be null");
+        }
+
+        final Set<String> batchDNs = new HashSet<String>();
+        final Set<String> stageDNs = new HashSet<String>();
+        long successCount = 0;
+
+        for (Record record = readRecord(); record != null; record = readRecord()) {
+            final String normalizedDN = record.getDN().trim().toLowerCase();
+            if (stageDNs.contains(parentDN(normalizedDN))) {
+                pipeline.barrier();
+                stageDNs.clear();
+            }
+
+            queueRecord(pipeline, record);
+            batchDNs.add(normalizedDN);
+            stageDNs.add(normalizedDN);
+
+            if (batchDNs.size() >= Math.max(1, batchSize)) {
+                successCount += executeBatch(pipeline, batchDNs, failures);
+                stageDNs.clear();
+            }
+        }
+
+        if (!batchDNs.isEmpty()) {
+            successCount += executeBatch(pipeline, batchDNs, failures);
+        }
+        return successCount;
+    }
+
+    private static void queueRecord(final ChaiWritePipeline pipeline, final Record record)
+    {
+        final Set<String> objectClasses = new LinkedHashSet<String>();
+        final Map<String, String> createAttributes = new LinkedHashMap<String, String>();
+        final List<ChaiModification> modifications = new ArrayList<ChaiModification>();
+
+        for (final Map.Entry<String, List<String>> entry : record.getAttributes().entrySet()) {
+            final List<String> values = entry.getValue();
+            if ("objectClass".equalsIgnoreCase(entry.getKey())) {
+                objectClasses.addAll(values);
+            } else {
+                createAttributes.put(entry.getKey(), values.get(0));
+                if (values.size() > 1) {
+                    final List<String> remaining = values.subList(1, values.size());
+                    modifications.add(ChaiModification.add(entry.getKey(), remaining.toArray(new String[remaining.size()])));
+                }
+            }
+        }
+
+        for (final Map.Entry<String, List<byte[]>> entry : record.getBinaryAttributes().entrySet()) {
+            final List<byte[]> values = entry.getValue();
+            modifications.add(ChaiModification.addBinary(entry.getKey(), values.toArray(new byte[values.size()][])));
+        }
+
+        pipeline.createEntry(record.getDN(), objectClasses, createAttributes);
+        if (!modifications.isEmpty()) {
+            pipeline.modify(record.getDN(), modifications);
+        }
+    }
+
+    private static long executeBatch(final ChaiWritePipeline pipeline, final Set<String> batchDNs, final List<ChaiWritePipeline.Result> failures)
+    {
+        final Set<String> failedDNs = new HashSet<String>();
+        for (final ChaiWritePipeline.Result result : pipeline.execute()) {
+            if (!result.isSuccess()) {
+                failedDNs.add(result.getOperation().getEntryDN().trim().toLowerCase());
+                if (failures != null) {
+                    failures.add(result);
+                }
+            }
+        }
+
+        failedDNs.retainAll(batchDNs);
+        final long successCount = batchDNs.size() - failedDNs.size();
+        batchDNs.clear();
+        return successCount;
+    }
+
+    private Object parseValue(final String line, final int colon)
+            throws IOException
+    {
+        if (line.startsWith("::", colon)) {
+            final byte[] decoded = Base64Util.decode(line.substring(colon + 2).trim());
+            try {
+                return UTF8.newDecoder().decode(ByteBuffer.wrap(decoded)).toString();
+            } catch (CharacterCodingException e) {
+                return decoded;
+            }
+        }
+        if (line.startsWith(":<", colon)) {
+            throw new IOException("URL values are not supported, LDIF line " + lineNumber);
+        }
+        return trimLeadingSpaces(line.substring(colon + 1));
+    }
+
+    /**
+     * Read a line with any continuation lines appended, skipping comments.
+     */
+    private String readLogicalLine()
+            throws IOException
+    {
+        String line = nextPhysicalLine();
+        while (line != null && line.startsWith("#")) {
+            line = nextPhysicalLine();
+            while (line != null && line.startsWith(" ")) {
+                // continuation of a comment
+                line = nextPhysicalLine();
+            }
+        }
+        if (line == null) {
+            return null;
+        }
+
+        final StringBuilder sb = new StringBuilder(line);
+        for (String next = nextPhysicalLine(); next != null; next = nextPhysicalLine()) {
+            if (next.startsWith(" ")) {
+                sb.append(next, 1, next.length());
+            } else {
+                pendingLine = next;
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private String nextPhysicalLine()
+            throws IOException
+    {
+        if (pendingLine != null) {
+            final String line = pendingLine;
+            pendingLine = null;
+            return line;
+        }
+        lineNumber++;
+        return reader.readLine();
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A single LDIF content record.
+     */
+    public static class Record {
+        private final String dn;
+        private final Map<String, List<String>> attributes;
+        private final Map<String, List<byte[]>> binaryAttributes;
+
+        private Record(final String dn, final Map<String, List<String>> attributes, final Map<String, List<byte[]>> binaryAttributes)
+        {
+            this.dn = dn;
+            this.attributes = attributes;
+            this.binaryAttributes = binaryAttributes;
+        }
+
+        public String getDN()
+        {
+            return dn;
+        }
+
+        /**
+         * @return the text values of the record, keyed by attribute name in the order they first appear
+         */
+        public Map<String, List<String>> getAttributes()
+        {
+            return attributes;
+        }
+
+        /**
+         * @return the base64 encoded values of the record that are not valid UTF-8 text
+         */
+        public Map<String, List<byte[]>> getBinaryAttributes()
+        {
+            return binaryAttributes;
+        }
+    }
+}
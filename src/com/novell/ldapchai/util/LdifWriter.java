@@ -0,0 +1,368 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.SearchResultHandler;
+import com.novell.ldapchai.util.internal.Base64Util;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes entries as RFC 2849 LDIF content records.
+ * <p/>
+ * Values that are not safe to write as text (values with control or non ascii characters, or that begin with a space,
+ * colon or less-than sign, or end with a space) are base64 encoded, and lines longer than 76 characters are folded.
+ * Entries are written as they are supplied, so {@link #writeSearch(ChaiProvider, String, SearchHelper)} exports any
+ * number of entries in constant memory:
+ * <pre>
+ *   final LdifWriter ldifWriter = LdifWriter.forChannel(new FileOutputStream("export.ldif.gz").getChannel(), true);
+ *   try {
+ *       ldifWriter.setBinaryAttributes(Collections.singleton("jpegPhoto"));
+ *       ldifWriter.writeSearch(provider, "o=example", new SearchHelper("(objectClass=*)"));
+ *   } finally {
+ *       ldifWriter.close();
+ *   }
+ * </pre>
+ * Instances are not thread safe.
+ *
+ * @author Jason D. Rivard
+ * @see LdifReader
+ */
+public class LdifWriter implements Closeable, Flushable {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAX_LINE_LENGTH = 76;
+
+    private static final String LINE_SEPARATOR = "\n";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final Writer writer;
+    private final Set<String> binaryAttributes = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+    private boolean versionWritten;
+    private long entryCount;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Create a writer for a channel, such as a {@code FileChannel}.
+     *
+     * @param channel the channel to write to; it is closed by {@link #close()}
+     * @param gzip    if true, the output is gzip compressed
+     * @return a new writer
+     * @throws IOException if the gzip header can not be written
+     */
+    public static LdifWriter forChannel(final WritableByteChannel channel, final boolean gzip)
+            throws IOException
+    {
+        OutputStream outputStream = Channels.newOutputStream(channel);
+        if (gzip) {
+            outputStream = new GZIPOutputStream(outputStream, 64 * 1024);
+        }
+        return new LdifWriter(new BufferedWriter(new OutputStreamWriter(outputStream, UTF8), 64 * 1024));
+    }
+
+    /**
+     * Test if a value can be written as text, the RFC 2849 SAFE-STRING production, also excluding a trailing space.
+     */
+    static boolean isSafeString(final String value)
+    {
+        if (value.length() == 0) {
+            return true;
+        }
+
+        final char first = value.charAt(0);
+        if (first == ' ' || first == ':' || first == '<') {
+            return false;
+        }
+        if (value.charAt(value.length() - 1) == ' ') {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == 0 || c == '\n' || c == '\r' || c > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param writer the writer to write to; it is closed by {@link #close()}.  For large exports the writer should
+     *               be buffered.
+     */
+    public LdifWriter(final Writer writer)
+    {
+        if (writer == null) {
+            throw new NullPointerException("writer must not be null");
+        }
+        this.writer = writer;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @return the number of entries written
+     */
+    public long getEntryCount()
+    {
+        return entryCount;
+    }
+
+    public Set<String> getBinaryAttributes()
+    {
+        return Collections.unmodifiableSet(binaryAttributes);
+    }
+
+    /**
+     * Set the attributes that have binary values.  Search results only contain string values, so
+     * {@link #writeSearch(ChaiProvider, String, SearchHelper)} reads the values of these attributes separately, using
+     * {@link ChaiProvider#readMultiByteAttribute(String, String)}, for each entry that has them.
+     *
+     * @param binaryAttributes names of the binary attributes
+     */
+    public void setBinaryAttributes(final Collection<String> binaryAttributes)
+    {
+        this.binaryAttributes.clear();
+        if (binaryAttributes != null) {
+            this.binaryAttributes.addAll(binaryAttributes);
+        }
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface Closeable ---------------------
+
+    public void close()
+            throws IOException
+    {
+        writer.close();
+    }
+
+// --------------------- Interface Flushable ---------------------
+
+    public void flush()
+            throws IOException
+    {
+        writer.flush();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Write the {@code version: 1} line that begins an LDIF file.  It must be written before any entry, and is
+     * written by {@link #writeSearch(ChaiProvider, String, SearchHelper)} if it has not been already.
+     *
+     * @throws IOException if the output can not be written
+     */
+    public void writeVersion()
+            throws IOException
+    {
+        if (entryCount > 0) {
+            throw new IllegalStateException("version must be written before any entry");
+        }
+        if (!versionWritten) {
+            writer.write("version: 1");
+            writer.write(LINE_SEPARATOR);
+            writer.write(LINE_SEPARATOR);
+            versionWritten = true;
+        }
+    }
+
+    /**
+     * Write an entry with string values.
+     *
+     * @param entryDN         the dn of the entry
+     * @param attributeValues the values of each attribute
+     * @throws IOException if the output can not be written
+     */
+    public void writeEntry(final String entryDN, final Map<String, List<String>> attributeValues)
+            throws IOException
+    {
+        writeEntry(entryDN, attributeValues, null);
+    }
+
+    /**
+     * Write an entry with string and binary values.  Binary values are always base64 encoded.
+     *
+     * @param entryDN         the dn of the entry
+     * @param attributeValues the string values of each attribute, may be null
+     * @param binaryValues    the binary values of each attribute, may be null.  Attributes that appear here are not
+     *                        written from {@code attributeValues}.
+     * @throws IOException if the output can not be written
+     */
+    public void writeEntry(final String entryDN, final Map<String, List<String>> attributeValues, final Map<String, byte[][]> binaryValues)
+            throws IOException
+    {
+        if (entryDN == null) {
+            throw new NullPointerException("entryDN must not be null");
+        }
+
+        writeLine("dn", entryDN);
+
+        if (attributeValues != null) {
+            for (final Map.Entry<String, List<String>> entry : attributeValues.entrySet()) {
+                if (binaryValues != null && containsIgnoreCase(binaryValues.keySet(), entry.getKey())) {
+                    continue;
+                }
+                if (entry.getValue() != null) {
+                    for (final String value : entry.getValue()) {
+                        writeLine(entry.getKey(), value);
+                    }
+                }
+            }
+        }
+
+        if (binaryValues != null) {
+            for (final Map.Entry<String, byte[][]> entry : binaryValues.entrySet()) {
+                if (entry.getValue() != null) {
+                    for (final byte[] value : entry.getValue()) {
+                        writeFolded(entry.getKey() + ":: " + Base64Util.encodeBytes(value));
+                    }
+                }
+            }
+        }
+
+        writer.write(LINE_SEPARATOR);
+        entryCount++;
+    }
+
+    /**
+     * Write the results of a search as they are received, using
+     * {@link ChaiProvider#searchMultiValues(String, SearchHelper, SearchResultHandler)}.  The version line is written
+     * first if it has not been already.
+     *
+     * @param provider     the provider to search with
+     * @param baseDN       the base of the search
+     * @param searchHelper the search; its attributes should include any {@link #getBinaryAttributes()}
+     * @return the number of entries written
+     * @throws IOException              if the output can not be written
+     * @throws ChaiOperationException   If an error is encountered during the search
+     * @throws ChaiUnavailableException If no directory servers are reachable
+     */
+    public long writeSearch(final ChaiProvider provider, final String baseDN, final SearchHelper searchHelper)
+            throws IOException, ChaiOperationException, ChaiUnavailableException
+    {
+        if (!versionWritten && entryCount == 0) {
+            writeVersion();
+        }
+
+        final long startCount = entryCount;
+        final Exception[] failure = new Exception[1];
+        provider.searchMultiValues(baseDN, searchHelper, new SearchResultHandler() {
+            public boolean handleResult(final String entryDN, final Map<String, List<String>> attributeValues)
+            {
+                try {
+                    writeEntry(entryDN, attributeValues, readBinaryValues(provider, entryDN, attributeValues));
+                    return true;
+                } catch (Exception e) {
+                    failure[0] = e;
+                    return false;
+                }
+            }
+        });
+
+        if (failure[0] instanceof IOException) {
+            throw (IOException) failure[0];
+        } else if (failure[0] instanceof ChaiOperationException) {
+            throw (ChaiOperationException) failure[0];
+        } else if (failure[0] instanceof ChaiUnavailableException) {
+            throw (ChaiUnavailableException) failure[0];
+        } else if (failure[0] != null) {
+            throw (RuntimeException) failure[0];
+        }
+
+        return entryCount - startCount;
+    }
+
+    private Map<String, byte[][]> readBinaryValues(final ChaiProvider provider, final String entryDN, final Map<String, List<String>> attributeValues)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        if (binaryAttributes.isEmpty() || attributeValues == null) {
+            return null;
+        }
+
+        Map<String, byte[][]> binaryValues = null;
+        for (final String attributeName : attributeValues.keySet()) {
+            if (binaryAttributes.contains(attributeName)) {
+                if (binaryValues == null) {
+                    binaryValues = new LinkedHashMap<String, byte[][]>();
+                }
+                binaryValues.put(attributeName, provider.readMultiByteAttribute(entryDN, attributeName));
+            }
+        }
+        return binaryValues;
+    }
+
+    private void writeLine(final String name, final String value)
+            throws IOException
+    {
+        if (value == null) {
+            return;
+        }
+        if (isSafeString(value)) {
+            writeFolded(name + ": " + value);
+        } else {
+            writeFolded(name + ":: " + Base64Util.encodeBytes(value.getBytes(UTF8)));
+        }
+    }
+
+    private void writeFolded(final String line)
+            throws IOException
+    {
+        if (line.length() <= MAX_LINE_LENGTH) {
+            writer.write(line);
+            writer.write(LINE_SEPARATOR);
+            return;
+        }
+
+        writer.write(line, 0, MAX_LINE_LENGTH);
+        writer.write(LINE_SEPARATOR);
+        for (int pos = MAX_LINE_LENGTH; pos < line.length(); pos += MAX_LINE_LENGTH - 1) {
+            writer.write(' ');
+            writer.write(line, pos, Math.min(MAX_LINE_LENGTH - 1, line.length() - pos));
+            writer.write(LINE_SEPARATOR);
+        }
+    }
+
+    private static boolean containsIgnoreCase(final Set<String> names, final String name)
+    {
+        for (final String loopName : names) {
+            if (loopName.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util;
+
+import com.novell.ldapchai.ChaiPasswordPolicy;
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.exception.ChaiError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Evaluates a password against the rules of a {@link ChaiPasswordPolicy} without contacting the directory.
+ * <p/>
+ * The rule values are read from the policy once, when the checker is constructed, so a checker built from a cached
+ * policy can be re-used to give feedback on every keystroke without any ldap operations.  Instances are immutable and
+ * safe for use by multiple threads.
+ * <p/>
+ * The following rules are evaluated:
+ * <ul>
+ * <li>{@link ChaiPasswordRule#MinimumLength}, {@link ChaiPasswordRule#MaximumLength}</li>
+ * <li>minimum and maximum upper case, lower case, numeric and special characters</li>
+ * <li>{@link ChaiPasswordRule#AllowNumeric}, {@link ChaiPasswordRule#AllowSpecial} and the first/last character rules</li>
+ * <li>{@link ChaiPasswordRule#MaximumRepeat}, {@link ChaiPasswordRule#MaximumSequentialRepeat}</li>
+ * <li>{@link ChaiPasswordRule#MinimumUnique}</li>
+ * <li>{@link ChaiPasswordRule#ADComplexity}, limited to the character category requirement</li>
+ * <li>{@link ChaiPasswordRule#DisallowedValues}, {@link ChaiPasswordRule#DisallowedAttributes}</li>
+ * </ul>
+ * Rules that depend on directory state, such as password history ({@link ChaiPasswordRule#UniqueRequired}) and
+ * minimum lifetime, can only be evaluated by the directory.  A password that passes this checker may therefore still be
+ * rejected by the server.
+ * <p/>
+ * Lengths and character counts are measured in unicode code points.  Upper case, lower case and numeric characters are
+ * classified using {@link Character#isUpperCase(int)}, {@link Character#isLowerCase(int)} and {@link Character#isDigit(int)},
+ * any character that is neither a letter nor a digit is considered special.
+ *
+ * @author Jason D. Rivard
+ * @see ChaiPasswordPolicy
+ */
+public class PasswordRuleChecker {
+// ----------------------------- CONSTANTS ----------------------------
+
+    /**
+     * Number of character categories (upper, lower, numeric, special, other letters) of which at least three must
+     * be present when {@link ChaiPasswordRule#ADComplexity} is enabled.
+     */
+    private static final int AD_COMPLEXITY_MIN_CATEGORIES = 3;
+
+    private static final int ASCII_LIMIT = 128;
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final boolean policyEnabled;
+    private final boolean caseSensitive;
+
+    private final int minLength;
+    private final int maxLength;
+    private final int minUpper;
+    private final int maxUpper;
+    private final int minLower;
+    private final int maxLower;
+    private final int minNumeric;
+    private final int maxNumeric;
+    private final int minSpecial;
+    private final int maxSpecial;
+    private final int minUnique;
+    private final int maxRepeat;
+    private final int maxSequentialRepeat;
+
+    private final boolean allowNumeric;
+    private final boolean allowFirstNumeric;
+    private final boolean allowLastNumeric;
+    private final boolean allowSpecial;
+    private final boolean allowFirstSpecial;
+    private final boolean allowLastSpecial;
+    private final boolean adComplexity;
+
+    private final List<String> disallowedValues;
+    private final List<String> disallowedAttributes;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * Create a checker for the rules of a password policy.
+     *
+     * @param policy the policy to read rule values from
+     * @throws NullPointerException if policy is null
+     */
+    public PasswordRuleChecker(final ChaiPasswordPolicy policy)
+    {
+        if (policy == null) {
+            throw new NullPointerException("policy can not be null");
+        }
+
+        policyEnabled = readBoolean(policy, ChaiPasswordRule.PolicyEnabled);
+        caseSensitive = readBoolean(policy, ChaiPasswordRule.CaseSensitive);
+
+        minLength = readInt(policy, ChaiPasswordRule.MinimumLength);
+        maxLength = readInt(policy, ChaiPasswordRule.MaximumLength);
+        minUpper = readInt(policy, ChaiPasswordRule.MinimumUpperCase);
+        maxUpper = readInt(policy, ChaiPasswordRule.MaximumUpperCase);
+        minLower = readInt(policy, ChaiPasswordRule.MinimumLowerCase);
+        maxLower = readInt(policy, ChaiPasswordRule.MaximumLowerCase);
+        minNumeric = readInt(policy, ChaiPasswordRule.MinimumNumeric);
+        maxNumeric = readInt(policy, ChaiPasswordRule.MaximumNumeric);
+        minSpecial = readInt(policy, ChaiPasswordRule.MinimumSpecial);
+        maxSpecial = readInt(policy, ChaiPasswordRule.MaximumSpecial);
+        minUnique = readInt(policy, ChaiPasswordRule.MinimumUnique);
+        maxRepeat = readInt(policy, ChaiPasswordRule.MaximumRepeat);
+        maxSequentialRepeat = readInt(policy, ChaiPasswordRule.MaximumSequentialRepeat);
+
+        allowNumeric = readBoolean(policy, ChaiPasswordRule.AllowNumeric);
+        allowFirstNumeric = readBoolean(policy, ChaiPasswordRule.AllowFirstCharNumeric);
+        allowLastNumeric = readBoolean(policy, ChaiPasswordRule.AllowLastCharNumeric);
+        allowSpecial = readBoolean(policy, ChaiPasswordRule.AllowSpecial);
+        allowFirstSpecial = readBoolean(policy, ChaiPasswordRule.AllowFirstCharSpecial);
+        allowLastSpecial = readBoolean(policy, ChaiPasswordRule.AllowLastCharSpecial);
+        adComplexity = readBoolean(policy, ChaiPasswordRule.ADComplexity);
+
+        disallowedValues = readList(policy, ChaiPasswordRule.DisallowedValues, caseSensitive);
+        disallowedAttributes = readList(policy, ChaiPasswordRule.DisallowedAttributes, true);
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    private static String readValue(final ChaiPasswordPolicy policy, final ChaiPasswordRule rule)
+    {
+        final String value = policy.getValue(rule);
+        return value == null ? rule.getDefaultValue() : value;
+    }
+
+    private static boolean readBoolean(final ChaiPasswordPolicy policy, final ChaiPasswordRule rule)
+    {
+        return StringHelper.convertStrToBoolean(readValue(policy, rule));
+    }
+
+    private static int readInt(final ChaiPasswordPolicy policy, final ChaiPasswordRule rule)
+    {
+        return StringHelper.convertStrToInt(readValue(policy, rule), 0);
+    }
+
+    private static List<String> readList(final ChaiPasswordPolicy policy, final ChaiPasswordRule rule, final boolean caseSensitive)
+    {
+        final List<String> values = new ArrayList<String>();
+        for (final String value : StringHelper.tokenizeString(readValue(policy, rule), "\n")) {
+            final String trimmed = value.trim();
+            if (trimmed.length() > 0) {
+                values.add(caseSensitive ? trimmed : trimmed.toLowerCase());
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private static void addError(final List<ChaiError> errors, final ChaiError error)
+    {
+        if (!errors.contains(error)) {
+            errors.add(error);
+        }
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * Names of the attributes whose values may not appear in the password.  Callers that supply attribute values to
+     * {@link #check(String, java.util.Map)} need only read these attributes.
+     *
+     * @return an unmodifiable list of attribute names, never null
+     */
+    public List<String> getDisallowedAttributes()
+    {
+        return disallowedAttributes;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Evaluate a password, ignoring the {@link ChaiPasswordRule#DisallowedAttributes} rule.
+     *
+     * @param password the password to evaluate
+     * @return all rule violations in the order they were detected, or an empty list if the password passes every rule
+     */
+    public List<ChaiError> check(final String password)
+    {
+        return check(password, null);
+    }
+
+    /**
+     * Evaluate a password.
+     *
+     * @param password        the password to evaluate
+     * @param attributeValues values of the user's {@link #getDisallowedAttributes() disallowed attributes}, keyed by
+     *                        attribute name.  Attribute names are matched without regard to case, as ldap attribute
+     *                        names are.  May be null, in which case the disallowed attribute rule is not evaluated.
+     * @return all rule violations in the order they were detected, or an empty list if the password passes every rule
+     */
+    public List<ChaiError> check(final String password, final Map<String, String> attributeValues)
+    {
+        final List<ChaiError> errors = new ArrayList<ChaiError>();
+        if (!policyEnabled) {
+            return errors;
+        }
+
+        final String value = password == null ? "" : password;
+
+        int length = 0;
+        int upperCount = 0;
+        int lowerCount = 0;
+        int otherAlphaCount = 0;
+        int numericCount = 0;
+        int specialCount = 0;
+        int uniqueCount = 0;
+        int highestRepeat = 0;
+        int highestSequentialRepeat = 0;
+
+        int firstChar = -1;
+        int lastChar = -1;
+        int sequentialRepeat = 0;
+
+        final int[] asciiCounts = new int[ASCII_LIMIT];
+        Map<Integer, int[]> otherCounts = null;
+
+        for (int i = 0; i < value.length(); ) {
+            final int c = value.codePointAt(i);
+            i += Character.charCount(c);
+            length++;
+
+            if (Character.isDigit(c)) {
+                numericCount++;
+            } else if (Character.isLetter(c)) {
+                if (Character.isUpperCase(c)) {
+                    upperCount++;
+                } else if (Character.isLowerCase(c)) {
+                    lowerCount++;
+                } else {
+                    otherAlphaCount++;
+                }
+            } else {
+                specialCount++;
+            }
+
+            sequentialRepeat = c == lastChar ? sequentialRepeat + 1 : 1;
+            if (sequentialRepeat > highestSequentialRepeat) {
+                highestSequentialRepeat = sequentialRepeat;
+            }
+
+            final int occurrences;
+            if (c < ASCII_LIMIT) {
+                occurrences = ++asciiCounts[c];
+            } else {
+                if (otherCounts == null) {
+                    otherCounts = new HashMap<Integer, int[]>();
+                }
+                int[] counter = otherCounts.get(c);
+                if (counter == null) {
+                    counter = new int[1];
+                    otherCounts.put(c, counter);
+                }
+                occurrences = ++counter[0];
+            }
+            if (occurrences == 1) {
+                uniqueCount++;
+            }
+            if (occurrences > highestRepeat) {
+                highestRepeat = occurrences;
+            }
+
+            if (firstChar == -1) {
+                firstChar = c;
+            }
+            lastChar = c;
+        }
+
+        if (minLength > 0 && length < minLength) {
+            addError(errors, ChaiError.PASSWORD_TOO_SHORT);
+        }
+        if (maxLength > 0 && length > maxLength) {
+            addError(errors, ChaiError.PASSWORD_TOO_LONG);
+        }
+
+        if (minUpper > 0 && upperCount < minUpper) {
+            addError(errors, ChaiError.PASSWORD_NOT_ENOUGH_UPPER);
+        }
+        if (maxUpper > 0 && upperCount > maxUpper) {
+            addError(errors, ChaiError.PASSWORD_TOO_MANY_UPPER);
+        }
+        if (minLower > 0 && lowerCount < minLower) {
+            addError(errors, ChaiError.PASSWORD_NOT_ENOUGH_LOWER);
+        }
+        if (maxLower > 0 && lowerCount > maxLower) {
+            addError(errors, ChaiError.PASSWORD_TOO_MANY_LOWER);
+        }
+
+        if (!allowNumeric && numericCount > 0) {
+            addError(errors, ChaiError.PASSWORD_NUMERIC_DISALLOWED);
+        } else {
+            if (minNumeric > 0 && numericCount < minNumeric) {
+                addError(errors, ChaiError.PASSWORD_NOT_ENOUGH_NUM);
+            }
+            if (maxNumeric > 0 && numericCount > maxNumeric) {
+                addError(errors, ChaiError.PASSWORD_TOO_MANY_NUMERIC);
+            }
+            if (!allowFirstNumeric && firstChar != -1 && Character.isDigit(firstChar)) {
+                addError(errors, ChaiError.PASSWORD_FIRST_IS_NUMERIC);
+            }
+            if (!allowLastNumeric && lastChar != -1 && Character.isDigit(lastChar)) {
+                addError(errors, ChaiError.PASSWORD_LAST_IS_NUMERIC);
+            }
+        }
+
+        if (!allowSpecial && specialCount > 0) {
+            addError(errors, ChaiError.PASSWORD_SPECIAL_DISALLOWED);
+        } else {
+            if (minSpecial > 0 && specialCount < minSpecial) {
+                addError(errors, ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL);
+            }
+            if (maxSpecial > 0 && specialCount > maxSpecial) {
+                addError(errors, ChaiError.PASSWORD_TOO_MANY_SPECIAL);
+            }
+            if (!allowFirstSpecial && firstChar != -1 && !Character.isLetterOrDigit(firstChar)) {
+                addError(errors, ChaiError.PASSWORD_FIRST_IS_SPECIAL);
+            }
+            if (!allowLastSpecial && lastChar != -1 && !Character.isLetterOrDigit(lastChar)) {
+                addError(errors, ChaiError.PASSWORD_LAST_IS_SPECIAL);
+            }
+        }
+
+        if (maxRepeat > 0 && highestRepeat > maxRepeat) {
+            addError(errors, ChaiError.PASSWORD_TOO_MANY_REPEAT);
+        }
+        if (maxSequentialRepeat > 0 && highestSequentialRepeat > maxSequentialRepeat) {
+            addError(errors, ChaiError.PASSWORD_TOO_MANY_REPEAT);
+        }
+        if (minUnique > 0 && uniqueCount < minUnique) {
+            addError(errors, ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE);
+        }
+
+        if (adComplexity) {
+            int categories = 0;
+            for (final int count : new int[] {upperCount, lowerCount, otherAlphaCount, numericCount, specialCount}) {
+                if (count > 0) {
+                    categories++;
+                }
+            }
+            if (categories < AD_COMPLEXITY_MIN_CATEGORIES) {
+                addError(errors, ChaiError.PASSWORD_BADPASSWORD);
+            }
+        }
+
+        if (!disallowedValues.isEmpty() && value.length() > 0) {
+            final String compareValue = caseSensitive ? value : value.toLowerCase();
+            for (final String disallowedValue : disallowedValues) {
+                if (compareValue.contains(disallowedValue)) {
+                    addError(errors, ChaiError.PASSWORD_INWORDLIST);
+                    break;
+                }
+            }
+        }
+
+        if (attributeValues != null && !disallowedAttributes.isEmpty() && value.length() > 0) {
+            final String compareValue = value.toLowerCase();
+            final Map<String, String> caseInsensitiveValues = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+            caseInsensitiveValues.putAll(attributeValues);
+            for (final String attributeName : disallowedAttributes) {
+                final String attributeValue = caseInsensitiveValues.get(attributeName);
+                if (attributeValue != null && attributeValue.trim().length() > 0 && compareValue.contains(attributeValue.trim().toLowerCase())) {
+                    addError(errors, ChaiError.PASSWORD_SAMEASATTR);
+                    break;
+                }
+            }
+        }
+
+        return errors;
+    }
+}
@@ -26,6 +26,12 @@ import java.util.*;
 
 /**
  * {@code SearchHelper} is a mutable helper class for managing LDAP search queries.
+ * <p/>
+ * The filter may be set as a string, as an {@link LdapFilter}, or as a {@link FilterTemplate} and its arguments.
+ * Values given to the attribute/value setters such as {@link #setFilter(String, String)} and
+ * {@link #setFilterAnd(java.util.Map)} are escaped, except that {@code *} remains a wildcard.  Two helpers are
+ * {@link #equals(Object) equal} when their {@link #getCanonicalFilter() canonical filters} and other parameters are
+ * equal, so equivalent searches share a cache entry in the caching provider.
  *
  * @author Jason D. Rivard
  */
@@ -40,6 +46,9 @@ public class SearchHelper implements Serializable, Cloneable {
 // ------------------------------ FIELDS ------------------------------
 
     private String filter = DEFAULT_FILTER;
+    private FilterTemplate filterTemplate = null;
+    private Object[] filterArguments = null;
+    private transient String canonicalFilter = null;
     private ChaiProvider.SEARCH_SCOPE searchScope = DEFAULT_SCOPE;
     private Set<String> attributes = null;
     private int maxResults = DEFAULT_MAX_RESULTS;
@@ -72,7 +81,34 @@ public class SearchHelper implements Serializable, Cloneable {
      */
     public void setFilter(final String filter)
     {
-        this.filter = filter == null ? DEFAULT_FILTER : filter;
+        assignFilter(filter == null ? DEFAULT_FILTER : filter, null, null);
+    }
+
+    /**
+     * Set the filter.
+     *
+     * @param filter A filter.  <i>null</i> will set the filter to {@link #DEFAULT_FILTER}.
+     */
+    public void setFilter(final LdapFilter filter)
+    {
+        assignFilter(filter == null ? DEFAULT_FILTER : filter.toString(), null, null);
+    }
+
+    /**
+     * Set the filter to a compiled template and its arguments.  The arguments are escaped when they are bound.  Providers
+     * that support filter arguments are given the template pattern and the arguments rather than the bound string.
+     *
+     * @param filterTemplate A compiled filter template
+     * @param arguments      One argument for each template parameter
+     * @throws IllegalArgumentException if there are too few arguments for the template
+     */
+    public void setFilter(final FilterTemplate filterTemplate, final Object... arguments)
+    {
+        if (filterTemplate == null) {
+            throw new NullPointerException("filterTemplate is required");
+        }
+        final Object[] argumentsCopy = arguments == null ? new Object[0] : arguments.clone();
+        assignFilter(filterTemplate.bind(argumentsCopy), filterTemplate, argumentsCopy);
     }
 
     /**
@@ -285,6 +321,46 @@ public class SearchHelper implements Serializable, Cloneable {
         return filter;
     }
 
+    /**
+     * The template used to set the current filter.
+     *
+     * @return the filter template, or null if the filter was not set using {@link #setFilter(FilterTemplate, Object...)}
+     */
+    public FilterTemplate getFilterTemplate()
+    {
+        return filterTemplate;
+    }
+
+    /**
+     * The (unescaped) arguments bound to the current {@link #getFilterTemplate() filter template}.
+     *
+     * @return a copy of the arguments, or null if the filter was not set from a template
+     */
+    public Object[] getFilterArguments()
+    {
+        return filterArguments == null ? null : filterArguments.clone();
+    }
+
+    /**
+     * The current filter in canonical form, as returned by {@link LdapFilter#normalize()}.  If the filter can not
+     * be parsed, the filter string is returned unchanged.
+     *
+     * @return the canonical filter string
+     */
+    public String getCanonicalFilter()
+    {
+        String result = canonicalFilter;
+        if (result == null) {
+            try {
+                result = LdapFilter.parse(filter).normalize().toString();
+            } catch (IllegalArgumentException e) {
+                result = filter;
+            }
+            canonicalFilter = result;
+        }
+        return result;
+    }
+
     public int getMaxResults()
     {
         return maxResults;
@@ -343,7 +419,7 @@ public class SearchHelper implements Serializable, Cloneable {
         if (maxResults != that.maxResults) return false;
         if (timeLimit != that.timeLimit) return false;
         if (attributes != null ? !attributes.equals(that.attributes) : that.attributes != null) return false;
-        if (filter != null ? !filter.equals(that.filter) : that.filter != null) return false;
+        if (!getCanonicalFilter().equals(that.getCanonicalFilter())) return false;
         if (searchScope != that.searchScope) return false;
 
         return true;
@@ -351,7 +427,7 @@ public class SearchHelper implements Serializable, Cloneable {
 
     @Override
     public int hashCode() {
-        int result = filter != null ? filter.hashCode() : 0;
+        int result = getCanonicalFilter().hashCode();
         result = 31 * result + (searchScope != null ? searchScope.hashCode() : 0);
         result = 31 * result + (attributes != null ? attributes.hashCode() : 0);
         result = 31 * result + maxResults;
@@ -395,7 +471,15 @@ public class SearchHelper implements Serializable, Cloneable {
      */
     public void clearFilter()
     {
-        filter = DEFAULT_FILTER;
+        assignFilter(DEFAULT_FILTER, null, null);
+    }
+
+    private void assignFilter(final String filter, final FilterTemplate filterTemplate, final Object[] filterArguments)
+    {
+        this.filter = filter;
+        this.filterTemplate = filterTemplate;
+        this.filterArguments = filterArguments;
+        this.canonicalFilter = null;
     }
 
     /**
@@ -421,33 +505,11 @@ public class SearchHelper implements Serializable, Cloneable {
             throw new IllegalArgumentException("requires at least one key");
         }
 
-        final List<FilterSequence> filters = new ArrayList<FilterSequence>();
+        final List<LdapFilter> filters = new ArrayList<LdapFilter>();
         for (final String name : nameValuePairs.keySet()) {
-            filters.add(new FilterSequence(name, nameValuePairs.get(name), FilterSequence.MatchingRuleEnum.EQUALS));
-        }
-        setFilterBind(filters, "&");
-    }
-
-    private void setFilterBind(final List<FilterSequence> filterSequences, final String operator)
-    {
-        if (filterSequences == null || filterSequences.size() < 1) {
-            throw new IllegalArgumentException("requires at least one key");
-        }
-
-        final StringBuilder sb = new StringBuilder();
-
-        if (filterSequences.size() > 1) {
-            sb.append("(");
-            sb.append(operator);
-            for (final FilterSequence sequence : filterSequences) {
-                sb.append(sequence.toString());
-            }
-            sb.append(")");
-        } else {
-            sb.append(filterSequences.get(0).toString());
+            filters.add(LdapFilter.wildcard(name, nameValuePairs.get(name)));
         }
-
-        filter = sb.toString();
+        setFilter(filters.size() > 1 ? LdapFilter.and(filters) : filters.get(0));
     }
 
     /**
@@ -484,11 +546,7 @@ public class SearchHelper implements Serializable, Cloneable {
      */
     public void setFilterExists(final String attributeName)
     {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("(");
-        sb.append(new FilterSequence(attributeName, "*", FilterSequence.MatchingRuleEnum.EQUALS));
-        sb.append(")");
-        this.filter = sb.toString();
+        setFilter(LdapFilter.present(attributeName));
     }
 
     /**
@@ -506,18 +564,11 @@ public class SearchHelper implements Serializable, Cloneable {
      */
     public void setFilterExists(final Set<String> attributeNames)
     {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("(&");
-
+        final List<LdapFilter> filters = new ArrayList<LdapFilter>();
         for (final String name : attributeNames) {
-            sb.append("(");
-            sb.append(new FilterSequence(name, "*", FilterSequence.MatchingRuleEnum.EQUALS));
-            sb.append(")");
+            filters.add(LdapFilter.present(name));
         }
-
-        sb.append(")");
-
-        filter = sb.toString();
+        setFilter(LdapFilter.and(filters));
     }
 
     /**
@@ -535,8 +586,7 @@ public class SearchHelper implements Serializable, Cloneable {
      */
     public void setFilterNot(final String attributeName, final String value)
     {
-        this.setFilter(attributeName, value);
-        filter = "(!" + filter + ")";
+        setFilter(LdapFilter.not(LdapFilter.wildcard(attributeName, value)));
     }
 
     /**
@@ -554,7 +604,7 @@ public class SearchHelper implements Serializable, Cloneable {
      */
     public void setFilter(final String attributeName, final String value)
     {
-        filter = new FilterSequence(attributeName, value).toString();
+        setFilter(LdapFilter.wildcard(attributeName, value));
     }
 
     /**
@@ -580,11 +630,11 @@ public class SearchHelper implements Serializable, Cloneable {
             throw new IllegalArgumentException("requires at least one key");
         }
 
-        final List<FilterSequence> filters = new ArrayList<FilterSequence>();
+        final List<LdapFilter> filters = new ArrayList<LdapFilter>();
         for (final String name : nameValuePairs.keySet()) {
-            filters.add(new FilterSequence(name, nameValuePairs.get(name), FilterSequence.MatchingRuleEnum.EQUALS));
+            filters.add(LdapFilter.wildcard(name, nameValuePairs.get(name)));
         }
-        setFilterBind(filters, "|");
+        setFilter(filters.size() > 1 ? LdapFilter.or(filters) : filters.get(0));
     }
 
     /**
@@ -606,68 +656,4 @@ public class SearchHelper implements Serializable, Cloneable {
         }
         setFilterOr(newMap);
     }
-
-// -------------------------- INNER CLASSES --------------------------
-
-    static class FilterSequence {
-        public enum MatchingRuleEnum {
-            EQUALS("="),
-            APPROX_EQUALS("~="),
-            GREATER(">="),
-            LESS("<=");
-
-            private String matchCode;
-
-            private MatchingRuleEnum(final String matchCode)
-            {
-                this.matchCode = matchCode;
-            }
-
-            public String getMatchCode()
-            {
-                return matchCode;
-            }
-        }
-
-        private String attr;
-        private String value;
-        private MatchingRuleEnum matchingRule;
-
-
-        public FilterSequence(final String attr, final String value, final MatchingRuleEnum matchingRule)
-        {
-            if (attr == null) {
-                throw new NullPointerException("attr is required");
-            }
-
-            this.attr = attr;
-            this.value = value;
-            this.matchingRule = matchingRule;
-        }
-
-        public FilterSequence(final String attr, final String value)
-        {
-            this(attr, value, MatchingRuleEnum.EQUALS);
-        }
-
-        public String getAttr()
-        {
-            return attr;
-        }
-
-        public String getValue()
-        {
-            return value;
-        }
-
-        public MatchingRuleEnum getMatchingRule()
-        {
-            return matchingRule;
-        }
-
-        public String toString()
-        {
-            return "(" + attr + matchingRule.getMatchCode() + value + ")";
-        }
-    }
 }
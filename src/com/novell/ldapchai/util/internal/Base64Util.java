@@ -1568,6 +1568,266 @@ public class Base64Util
     }   // end decodeFileToFile
 
 
+/* ********  F A S T   P A T H   M E T H O D S  ******** */
+
+
+    /**
+     * Returns the length of the standard, padded Base64 encoding of
+     * <var>len</var> bytes.
+     *
+     * @param len number of bytes to encode
+     * @return number of Base64 characters
+     */
+    public static int encodedLength( int len ) {
+        return ( ( len + 2 ) / 3 ) * 4;
+    }   // end encodedLength
+
+
+    /**
+     * Encodes bytes into a caller supplied array using the standard
+     * alphabet, with padding and without line breaks.  The output is
+     * identical to {@link #encodeBytes(byte[])}, but no options are
+     * interpreted and nothing is allocated.
+     *
+     * @param source the data to encode
+     * @param off offset in source where data starts
+     * @param len number of bytes to encode
+     * @param destination the array to hold the encoded bytes
+     * @param destOffset offset in destination where the output starts
+     * @return the number of bytes written, see {@link #encodedLength(int)}
+     * @throws IllegalArgumentException if the offsets are invalid or
+     *         destination is too small
+     */
+    public static int encodeTo( byte[] source, int off, int len, byte[] destination, int destOffset ) {
+        checkRange( source, off, len );
+        final int outLen = encodedLength( len );
+        checkRange( destination, destOffset, outLen );
+
+        int d = destOffset;
+        for( int s = 0; s < len; s += 3 ) {
+            final int group = encodeGroup( source, off + s, Math.min( 3, len - s ) );
+            destination[d++] = (byte) ( group >>> 24 );
+            destination[d++] = (byte) ( group >>> 16 );
+            destination[d++] = (byte) ( group >>> 8 );
+            destination[d++] = (byte) group;
+        }   // end for
+
+        return d - destOffset;
+    }   // end encodeTo
+
+
+    /**
+     * Encodes a byte array to Base64 bytes using the standard alphabet,
+     * see {@link #encodeTo(byte[], int, int, byte[], int)}.
+     *
+     * @param source the data to encode
+     * @return the encoded bytes
+     * @throws NullPointerException if source array is null
+     */
+    public static byte[] encodeToBytes( byte[] source ) {
+        final byte[] encoded = new byte[ encodedLength( source.length ) ];
+        encodeTo( source, 0, source.length, encoded, 0 );
+        return encoded;
+    }   // end encodeToBytes
+
+
+    /**
+     * Encodes a byte array to a Base64 string using the standard alphabet.
+     * The result is identical to {@link #encodeBytes(byte[])}, but is built
+     * directly from the alphabet without intermediate arrays.
+     *
+     * @param source the data to encode
+     * @return the encoded string
+     * @throws NullPointerException if source array is null
+     */
+    public static String encodeToString( byte[] source ) {
+        final char[] chars = new char[ encodedLength( source.length ) ];
+        int d = 0;
+        for( int s = 0; s < source.length; s += 3 ) {
+            final int group = encodeGroup( source, s, Math.min( 3, source.length - s ) );
+            chars[d++] = (char) ( group >>> 24 );
+            chars[d++] = (char) ( ( group >>> 16 ) & 0xff );
+            chars[d++] = (char) ( ( group >>> 8 ) & 0xff );
+            chars[d++] = (char) ( group & 0xff );
+        }   // end for
+        return new String( chars );
+    }   // end encodeToString
+
+
+    /**
+     * Tests whether <var>encoded</var> is the standard Base64 encoding of
+     * <var>source</var>, without encoding <var>source</var> into a new
+     * string.  Like {@link String#equalsIgnoreCase(String)}, ASCII letters
+     * may optionally be compared without regard to case.
+     *
+     * @param source the raw bytes
+     * @param encoded the Base64 string to compare with, may be null
+     * @param ignoreCase whether letters are compared case insensitively
+     * @return true if the encoding of source equals encoded
+     * @throws NullPointerException if source array is null
+     */
+    public static boolean encodedEquals( byte[] source, String encoded, boolean ignoreCase ) {
+        if( encoded == null ) {
+            return false;
+        }   // end if
+
+        final int outLen = encodedLength( source.length );
+        if( encoded.length() != outLen ) {
+            return false;
+        }   // end if
+
+        int i = 0;
+        for( int s = 0; s < source.length; s += 3 ) {
+            final int group = encodeGroup( source, s, Math.min( 3, source.length - s ) );
+            for( int shift = 24; shift >= 0; shift -= 8 ) {
+                final int expected = ( group >>> shift ) & 0xff;
+                final int actual = encoded.charAt( i++ );
+                if( expected != actual ) {
+                    if( !ignoreCase || toLowerAscii( expected ) != toLowerAscii( actual ) ) {
+                        return false;
+                    }   // end if
+                }   // end if
+            }   // end for
+        }   // end for
+        return true;
+    }   // end encodedEquals
+
+
+    /**
+     * Decodes standard Base64 bytes into a caller supplied array.  Unlike
+     * {@link #decode(byte[], int, int, int)} the input must be exactly a
+     * multiple of four bytes, padded, and contain no white space.
+     *
+     * @param source the Base64 encoded data
+     * @param off offset in source where data starts
+     * @param len number of bytes to decode
+     * @param destination the array to hold the decoded bytes
+     * @param destOffset offset in destination where the output starts
+     * @return the number of bytes written, see {@link #decodedLength(byte[], int, int)}
+     * @throws IllegalArgumentException if the input is not valid, or the
+     *         offsets are invalid or destination is too small
+     */
+    public static int decodeTo( byte[] source, int off, int len, byte[] destination, int destOffset ) {
+        final int outLen = decodedLength( source, off, len );
+        checkRange( destination, destOffset, outLen );
+
+        final byte[] decodabet = _STANDARD_DECODABET;
+        final int end = off + len;
+        int d = destOffset;
+        for( int s = off; s < end; s += 4 ) {
+            final int b0 = decodeValue( decodabet, source[s] );
+            final int b1 = decodeValue( decodabet, source[s + 1] );
+            final boolean last = s + 4 == end;
+            if( last && source[s + 2] == EQUALS_SIGN ) {
+                if( source[s + 3] != EQUALS_SIGN ) {
+                    throw new IllegalArgumentException( "Invalid Base64 padding at offset " + ( s + 3 ) );
+                }   // end if
+                destination[d++] = (byte) ( b0 << 2 | b1 >>> 4 );
+            } else if( last && source[s + 3] == EQUALS_SIGN ) {
+                final int b2 = decodeValue( decodabet, source[s + 2] );
+                destination[d++] = (byte) ( b0 << 2 | b1 >>> 4 );
+                destination[d++] = (byte) ( b1 << 4 | b2 >>> 2 );
+            } else {
+                final int b2 = decodeValue( decodabet, source[s + 2] );
+                final int b3 = decodeValue( decodabet, source[s + 3] );
+                destination[d++] = (byte) ( b0 << 2 | b1 >>> 4 );
+                destination[d++] = (byte) ( b1 << 4 | b2 >>> 2 );
+                destination[d++] = (byte) ( b2 << 6 | b3 );
+            }   // end else
+        }   // end for
+
+        return d - destOffset;
+    }   // end decodeTo
+
+
+    /**
+     * Decodes standard Base64 bytes, see
+     * {@link #decodeTo(byte[], int, int, byte[], int)}.
+     *
+     * @param source the Base64 encoded data
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if the input is not valid
+     * @throws NullPointerException if source array is null
+     */
+    public static byte[] decodeToBytes( byte[] source ) {
+        final byte[] decoded = new byte[ decodedLength( source, 0, source.length ) ];
+        decodeTo( source, 0, source.length, decoded, 0 );
+        return decoded;
+    }   // end decodeToBytes
+
+
+    /**
+     * Returns the number of bytes {@link #decodeTo(byte[], int, int, byte[], int)}
+     * will write for the given input.
+     *
+     * @param source the Base64 encoded data
+     * @param off offset in source where data starts
+     * @param len number of encoded bytes
+     * @return number of decoded bytes
+     * @throws IllegalArgumentException if len is not a multiple of four or
+     *         the offsets are invalid
+     */
+    public static int decodedLength( byte[] source, int off, int len ) {
+        checkRange( source, off, len );
+        if( len % 4 != 0 ) {
+            throw new IllegalArgumentException( "Base64 input length must be a multiple of four: " + len );
+        }   // end if
+        if( len == 0 ) {
+            return 0;
+        }   // end if
+
+        int padding = 0;
+        if( source[off + len - 1] == EQUALS_SIGN ) {
+            padding++;
+            if( source[off + len - 2] == EQUALS_SIGN ) {
+                padding++;
+            }   // end if
+        }   // end if
+        return len / 4 * 3 - padding;
+    }   // end decodedLength
+
+
+    /**
+     * Encodes one group of up to three bytes using the standard alphabet,
+     * returning the four output bytes packed into an int, most significant
+     * byte first.  Missing input bytes are padded with equals signs.
+     */
+    private static int encodeGroup( byte[] source, int off, int count ) {
+        final byte[] alphabet = _STANDARD_ALPHABET;
+        final int bits = ( source[off] & 0xff ) << 16
+                | ( count > 1 ? ( source[off + 1] & 0xff ) << 8 : 0 )
+                | ( count > 2 ? ( source[off + 2] & 0xff ) : 0 );
+        return alphabet[ bits >>> 18 ] << 24
+                | alphabet[ ( bits >>> 12 ) & 0x3f ] << 16
+                | ( count > 1 ? alphabet[ ( bits >>> 6 ) & 0x3f ] : EQUALS_SIGN ) << 8
+                | ( count > 2 ? alphabet[ bits & 0x3f ] : EQUALS_SIGN );
+    }   // end encodeGroup
+
+
+    private static int decodeValue( byte[] decodabet, byte b ) {
+        final int value = b >= 0 && b < decodabet.length ? decodabet[b] : -9;
+        if( value < 0 ) {
+            throw new IllegalArgumentException( "Invalid Base64 character: " + (char) ( b & 0xff ) );
+        }   // end if
+        return value;
+    }   // end decodeValue
+
+
+    private static int toLowerAscii( int c ) {
+        return c >= 'A' && c <= 'Z' ? c + ( 'a' - 'A' ) : c;
+    }   // end toLowerAscii
+
+
+    private static void checkRange( byte[] array, int off, int len ) {
+        if( off < 0 || len < 0 || off + len > array.length ) {
+            throw new IllegalArgumentException( String.format(
+                "Cannot access array of length %d at offset %d for %d bytes", array.length, off, len ) );
+        }   // end if
+    }   // end checkRange
+
+
+
+
     /* ********  I N N E R   C L A S S   I N P U T S T R E A M  ******** */
 
 
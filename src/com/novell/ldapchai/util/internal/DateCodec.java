@@ -0,0 +1,397 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.util.internal;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts the date syntaxes used by directories to and from {@link Date}.  All methods are static and thread
+ * safe.  The ldap generalized time, Windows FILETIME and chai timestamp syntaxes are converted with plain
+ * arithmetic, so no {@link java.util.Calendar} or {@link DateFormat} is created per call.
+ * <p/>
+ * Dates are converted using the proleptic Gregorian calendar in UTC.  Dates before the Gregorian cutover in
+ * 1582 are therefore not the same as those produced by {@link java.util.GregorianCalendar}, which no directory
+ * time syntax can express anyway.
+ *
+ * @author Jason D. Rivard
+ */
+public final class DateCodec {
+// ----------------------------- CONSTANTS ----------------------------
+
+    /**
+     * Milliseconds between the Windows FILETIME epoch (1601-01-01T00:00:00Z) and the java epoch.
+     */
+    public static final long WINDOWS_EPOCH_OFFSET_MS = -11644473600000L;
+
+    private static final long MS_PER_SECOND = 1000L;
+    private static final long MS_PER_MINUTE = 60 * MS_PER_SECOND;
+    private static final long MS_PER_HOUR = 60 * MS_PER_MINUTE;
+    private static final long MS_PER_DAY = 24 * MS_PER_HOUR;
+
+    private static final String CHAI_TIMESTAMP_PATTERN = "yyyy-MM-dd HH:mm:ss Z";
+
+    private static final int MAX_CACHED_PATTERNS = 32;
+
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Parsed {@link SimpleDateFormat} patterns.  Formats are not thread safe, so these are never used
+     * directly; each caller gets a clone, which is much cheaper than compiling the pattern again.
+     */
+    private static final Map<String, SimpleDateFormat> FORMAT_PROTOTYPES = new ConcurrentHashMap<String, SimpleDateFormat>();
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private DateCodec()
+    {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Parse an ldap generalized time value, such as {@code 19941216103200Z} or {@code 20140101120000.123Z}.
+     * A fraction of a second and a {@code +hhmm} or {@code -hhmm} offset in place of {@code Z} are also accepted.
+     *
+     * @param value a generalized time value
+     * @return the date
+     * @throws NullPointerException     if value is null
+     * @throws IllegalArgumentException if value is not a valid generalized time
+     */
+    public static Date parseGeneralizedTime(final String value)
+    {
+        if (value == null) {
+            throw new NullPointerException("value must not be null");
+        }
+
+        if (value.length() < 15) {
+            throw new IllegalArgumentException("generalized time value '" + value + "' is too short");
+        }
+
+        final int year = digits(value, 0, 4);
+        final int month = digits(value, 4, 2);
+        final int day = digits(value, 6, 2);
+        final int hour = digits(value, 8, 2);
+        final int minute = digits(value, 10, 2);
+        final int second = digits(value, 12, 2);
+
+        int position = 14;
+        int millis = 0;
+        if (value.charAt(position) == '.' || value.charAt(position) == ',') {
+            position++;
+            final int fractionStart = position;
+            while (position < value.length() && isDigit(value.charAt(position))) {
+                if (position - fractionStart < 3) {
+                    millis = millis * 10 + (value.charAt(position) - '0');
+                }
+                position++;
+            }
+            if (position == fractionStart) {
+                throw new IllegalArgumentException("generalized time value '" + value + "' has an empty fraction");
+            }
+            for (int i = position - fractionStart; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        final long offsetMs = parseOffset(value, position);
+
+        return new Date(toEpochMs(value, year, month, day, hour, minute, second) + millis - offsetMs);
+    }
+
+    /**
+     * Format a date as an ldap generalized time value in UTC, such as {@code 19941216103200Z}.
+     *
+     * @param date the date to format
+     * @return a generalized time value without a fraction of a second
+     * @throws NullPointerException if date is null
+     */
+    public static String formatGeneralizedTime(final Date date)
+    {
+        if (date == null) {
+            throw new NullPointerException("date must not be null");
+        }
+
+        final StringBuilder sb = new StringBuilder(15);
+        appendDateTime(sb, date.getTime(), "", "", "");
+        sb.append('Z');
+        return sb.toString();
+    }
+
+    /**
+     * Parse a Windows FILETIME value, the number of 100 nanosecond intervals since 1601-01-01T00:00:00Z, as
+     * used by Active Directory attributes such as {@code pwdLastSet}.
+     *
+     * @param value a FILETIME value
+     * @return the date
+     * @throws NullPointerException  if value is null
+     * @throws NumberFormatException if value is not a number
+     */
+    public static Date parseWindowsFileTime(final String value)
+    {
+        if (value == null) {
+            throw new NullPointerException("value must not be null");
+        }
+
+        final long timestampAsNs = Long.parseLong(value);
+        return new Date(timestampAsNs / 10000 + WINDOWS_EPOCH_OFFSET_MS);
+    }
+
+    /**
+     * Format a date as a Windows FILETIME value.
+     *
+     * @param date the date to format
+     * @return the number of 100 nanosecond intervals since 1601-01-01T00:00:00Z
+     * @throws NullPointerException if date is null
+     */
+    public static String formatWindowsFileTime(final Date date)
+    {
+        if (date == null) {
+            throw new NullPointerException("date must not be null");
+        }
+
+        return String.valueOf((date.getTime() - WINDOWS_EPOCH_OFFSET_MS) * 10000);
+    }
+
+    /**
+     * Parse a timestamp in the {@code yyyy-MM-dd HH:mm:ss Z} pattern used in chai's stored records, such as
+     * {@code 2014-01-01 12:00:00 +0000}.  Values that do not exactly match the pattern are parsed with a
+     * {@link SimpleDateFormat}, so any value accepted by earlier versions is still accepted.
+     *
+     * @param value a timestamp value
+     * @return the date
+     * @throws ParseException if value can not be parsed
+     */
+    public static Date parseChaiTimestamp(final String value)
+            throws ParseException
+    {
+        if (value == null) {
+            throw new NullPointerException("value must not be null");
+        }
+
+        if (value.length() == 25
+                && value.charAt(4) == '-' && value.charAt(7) == '-' && value.charAt(10) == ' '
+                && value.charAt(13) == ':' && value.charAt(16) == ':' && value.charAt(19) == ' '
+                && (value.charAt(20) == '+' || value.charAt(20) == '-')
+                && allDigits(value, 0, 4) && allDigits(value, 5, 2) && allDigits(value, 8, 2)
+                && allDigits(value, 11, 2) && allDigits(value, 14, 2) && allDigits(value, 17, 2)
+                && allDigits(value, 21, 4)) {
+            final int year = digits(value, 0, 4);
+            final int month = digits(value, 5, 2);
+            final int day = digits(value, 8, 2);
+            final int hour = digits(value, 11, 2);
+            final int minute = digits(value, 14, 2);
+            final int second = digits(value, 17, 2);
+            final int offsetHours = digits(value, 21, 2);
+            final int offsetMinutes = digits(value, 23, 2);
+            if (month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month)
+                    && hour < 24 && minute < 60 && second < 60 && offsetHours < 24 && offsetMinutes < 60) {
+                final long epochMs = toEpochMs(value, year, month, day, hour, minute, second);
+                return new Date(epochMs - parseOffset(value, 20));
+            }
+        }
+
+        final SimpleDateFormat format = dateFormat(CHAI_TIMESTAMP_PATTERN);
+        format.setTimeZone(TimeZone.getTimeZone("Zulu"));
+        return format.parse(value);
+    }
+
+    /**
+     * Format a date in the {@code yyyy-MM-dd HH:mm:ss Z} pattern used in chai's stored records, in UTC.
+     *
+     * @param date the date to format
+     * @return a timestamp value such as {@code 2014-01-01 12:00:00 +0000}
+     */
+    public static String formatChaiTimestamp(final Date date)
+    {
+        if (date == null) {
+            throw new NullPointerException("date must not be null");
+        }
+
+        final StringBuilder sb = new StringBuilder(25);
+        appendDateTime(sb, date.getTime(), "-", " ", ":");
+        sb.append(" +0000");
+        return sb.toString();
+    }
+
+    /**
+     * Get a {@link SimpleDateFormat} for a pattern, such as one read from the directory.  The returned instance
+     * belongs to the caller and may be modified.  Compiled patterns are cached, so repeatedly requesting the same
+     * pattern only costs a clone.
+     *
+     * @param pattern a {@link SimpleDateFormat} pattern
+     * @return a new format instance
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public static SimpleDateFormat dateFormat(final String pattern)
+    {
+        SimpleDateFormat prototype = FORMAT_PROTOTYPES.get(pattern);
+        if (prototype == null) {
+            prototype = new SimpleDateFormat(pattern);
+            if (FORMAT_PROTOTYPES.size() < MAX_CACHED_PATTERNS) {
+                FORMAT_PROTOTYPES.put(pattern, prototype);
+            }
+        }
+        return (SimpleDateFormat) prototype.clone();
+    }
+
+    private static long toEpochMs(
+            final String value,
+            final int year,
+            final int month,
+            final int day,
+            final int hour,
+            final int minute,
+            final int second
+    )
+    {
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour > 23 || minute > 59 || second > 60) {
+            throw new IllegalArgumentException("date value '" + value + "' is out of range");
+        }
+
+        return daysFromCivil(year, month, day) * MS_PER_DAY + hour * MS_PER_HOUR + minute * MS_PER_MINUTE + second * MS_PER_SECOND;
+    }
+
+    private static long parseOffset(final String value, final int position)
+    {
+        if (position == value.length() - 1 && (value.charAt(position) == 'Z' || value.charAt(position) == 'z')) {
+            return 0;
+        }
+
+        final int remaining = value.length() - position;
+        if ((remaining == 3 || remaining == 5) && (value.charAt(position) == '+' || value.charAt(position) == '-')) {
+            final int hours = digits(value, position + 1, 2);
+            final int minutes = remaining == 5 ? digits(value, position + 3, 2) : 0;
+            if (hours < 24 && minutes < 60) {
+                final long offsetMs = hours * MS_PER_HOUR + minutes * MS_PER_MINUTE;
+                return value.charAt(position) == '-' ? -offsetMs : offsetMs;
+            }
+        }
+
+        throw new IllegalArgumentException("date value '" + value + "' must end in 'Z' or a +hhmm offset");
+    }
+
+    private static void appendDateTime(final StringBuilder sb, final long epochMs, final String dateSeparator, final String middleSeparator, final String timeSeparator)
+    {
+        final long epochDay = floorDiv(epochMs, MS_PER_DAY);
+        final long msOfDay = epochMs - epochDay * MS_PER_DAY;
+
+        // civil-from-days, see http://howardhinnant.github.io/date_algorithms.html
+        final long z = epochDay + 719468;
+        final long era = floorDiv(z, 146097);
+        final long dayOfEra = z - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long mp = (5 * dayOfYear + 2) / 153;
+        final int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendPadded(sb, year, 4);
+        sb.append(dateSeparator);
+        appendPadded(sb, month, 2);
+        sb.append(dateSeparator);
+        appendPadded(sb, day, 2);
+        sb.append(middleSeparator);
+        appendPadded(sb, msOfDay / MS_PER_HOUR, 2);
+        sb.append(timeSeparator);
+        appendPadded(sb, (msOfDay % MS_PER_HOUR) / MS_PER_MINUTE, 2);
+        sb.append(timeSeparator);
+        appendPadded(sb, (msOfDay % MS_PER_MINUTE) / MS_PER_SECOND, 2);
+    }
+
+    // days-from-civil, see http://howardhinnant.github.io/date_algorithms.html
+    private static long daysFromCivil(final int year, final int month, final int day)
+    {
+        final long y = month <= 2 ? year - 1 : year;
+        final long era = floorDiv(y, 400);
+        final long yearOfEra = y - era * 400;
+        final long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(final int year, final int month)
+    {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static long floorDiv(final long x, final long y)
+    {
+        final long q = x / y;
+        return (x % y != 0 && ((x < 0) != (y < 0))) ? q - 1 : q;
+    }
+
+    private static void appendPadded(final StringBuilder sb, final long value, final int width)
+    {
+        final String digits = String.valueOf(value);
+        for (int i = digits.length(); i < width; i++) {
+            sb.append('0');
+        }
+        sb.append(digits);
+    }
+
+    private static int digits(final String value, final int start, final int length)
+    {
+        if (value.length() < start + length) {
+            throw new IllegalArgumentException("date value '" + value + "' is too short");
+        }
+
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            final char c = value.charAt(i);
+            if (!isDigit(c)) {
+                throw new IllegalArgumentException("date value '" + value + "' has a non-digit at position " + i);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean allDigits(final String value, final int start, final int length)
+    {
+        for (int i = start; i < start + length; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(final char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.cr;
+
+import com.novell.ldapchai.ChaiFactory;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Checks that {@link AnswerVerificationCache} re-uses results, expires them, evicts the least recently used entry and
+ * wipes the key bytes of every entry it drops.
+ */
+public class AnswerVerificationCacheTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://answerverificationcache";
+    private static final String USER_DN = "cn=user1,o=test";
+
+    private static final int SIZE = 10;
+    private static final long MAX_AGE = 60 * 1000;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        AnswerVerificationCache.clear();
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        AnswerVerificationCache.clear();
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    /**
+     * The key bytes of the cached entries, least recently used first.  These are the arrays held by the cache, not
+     * copies.
+     */
+    private static List<byte[]> cachedKeys()
+            throws Exception
+    {
+        final Field cacheField = AnswerVerificationCache.class.getDeclaredField("CACHE");
+        cacheField.setAccessible(true);
+        final Map<?, ?> cache = (Map<?, ?>) cacheField.get(null);
+        final List<byte[]> keys = new ArrayList<byte[]>();
+        synchronized (cache) {
+            for (final Object key : cache.keySet()) {
+                final Field valueField = key.getClass().getDeclaredField("value");
+                valueField.setAccessible(true);
+                keys.add((byte[]) valueField.get(key));
+            }
+        }
+        return keys;
+    }
+
+    private static boolean isWiped(final byte[] key)
+    {
+        for (final byte b : key) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void testHit()
+            throws Exception
+    {
+        final CountingAnswer answer = new CountingAnswer("red");
+
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", SIZE, MAX_AGE));
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", SIZE, MAX_AGE));
+        Assert.assertEquals(1, answer.tests);
+
+        // failed tests are cached too
+        Assert.assertFalse(AnswerVerificationCache.testAnswer(answer, "blue", SIZE, MAX_AGE));
+        Assert.assertFalse(AnswerVerificationCache.testAnswer(answer, "blue", SIZE, MAX_AGE));
+        Assert.assertEquals(2, answer.tests);
+
+        // the same response to a different answer is a different entry
+        final CountingAnswer otherAnswer = new CountingAnswer("red");
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(otherAnswer, "red", SIZE, MAX_AGE));
+        Assert.assertEquals(1, otherAnswer.tests);
+        Assert.assertEquals(3, cachedKeys().size());
+    }
+
+    public void testDisabled()
+            throws Exception
+    {
+        final CountingAnswer answer = new CountingAnswer("red");
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", 0, MAX_AGE));
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", 0, MAX_AGE));
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", SIZE, 0));
+        Assert.assertEquals(3, answer.tests);
+        Assert.assertEquals(0, cachedKeys().size());
+    }
+
+    public void testExpiry()
+            throws Exception
+    {
+        final CountingAnswer answer = new CountingAnswer("red");
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", SIZE, 200));
+        final byte[] expiredKey = cachedKeys().get(0);
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", SIZE, 200));
+        Assert.assertEquals(1, answer.tests);
+
+        Thread.sleep(300);
+
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", SIZE, 200));
+        Assert.assertEquals(2, answer.tests);
+        Assert.assertTrue(isWiped(expiredKey));
+        Assert.assertEquals(1, cachedKeys().size());
+        Assert.assertFalse(isWiped(cachedKeys().get(0)));
+    }
+
+    public void testLeastRecentlyUsedEviction()
+            throws Exception
+    {
+        final CountingAnswer answer = new CountingAnswer("one");
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "one", 2, MAX_AGE));
+        Assert.assertFalse(AnswerVerificationCache.testAnswer(answer, "two", 2, MAX_AGE));
+        final List<byte[]> keys = cachedKeys();
+        final byte[] oneKey = keys.get(0);
+        final byte[] twoKey = keys.get(1);
+
+        // using "one" again makes "two" the least recently used, so it is the one dropped for "three"
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "one", 2, MAX_AGE));
+        Assert.assertFalse(AnswerVerificationCache.testAnswer(answer, "three", 2, MAX_AGE));
+        Assert.assertEquals(3, answer.tests);
+        Assert.assertEquals(2, cachedKeys().size());
+        Assert.assertTrue(isWiped(twoKey));
+        Assert.assertFalse(isWiped(oneKey));
+
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "one", 2, MAX_AGE));
+        Assert.assertEquals(3, answer.tests);
+        Assert.assertFalse(AnswerVerificationCache.testAnswer(answer, "two", 2, MAX_AGE));
+        Assert.assertEquals(4, answer.tests);
+    }
+
+    public void testClearWipesKeys()
+            throws Exception
+    {
+        final CountingAnswer answer = new CountingAnswer("red");
+        Assert.assertTrue(AnswerVerificationCache.testAnswer(answer, "red", SIZE, MAX_AGE));
+        Assert.assertFalse(AnswerVerificationCache.testAnswer(answer, "blue", SIZE, MAX_AGE));
+        final List<byte[]> keys = cachedKeys();
+
+        AnswerVerificationCache.clear();
+        Assert.assertEquals(0, cachedKeys().size());
+        for (final byte[] key : keys) {
+            Assert.assertTrue(isWiped(key));
+        }
+    }
+
+    public void testResponseSetSettings()
+            throws Exception
+    {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        values.put("objectClass", Collections.singletonList("inetOrgPerson"));
+        InMemoryDirectory.forURL(LDAP_URL).putEntry(USER_DN, values);
+
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.CR_DEFAULT_FORMAT_TYPE, Answer.FormatType.SHA512_SALT.toString());
+        chaiConfig.setSetting(ChaiSetting.CR_VERIFY_CACHE_SIZE, String.valueOf(SIZE));
+        final ChaiProvider provider = ChaiProviderFactory.createProvider(chaiConfig);
+        try {
+            final ChaiUser user = ChaiFactory.createChaiUser(USER_DN, provider);
+            final Map<Challenge, String> responses = new LinkedHashMap<Challenge, String>();
+            responses.put(new ChaiChallenge(true, "Where were you born?", 1, 255, true), "here");
+            responses.put(new ChaiChallenge(true, "What is your favourite colour?", 1, 255, true), "red");
+            final ChaiResponseSet responseSet = ChaiCrFactory.newChaiResponseSet(responses, Locale.ENGLISH, 0, chaiConfig, null);
+            Assert.assertTrue(ChaiCrFactory.writeChaiResponseSet(responseSet, user));
+
+            // a response set read with the cache enabled caches one result per challenge
+            final ChaiResponseSet readResponseSet = ChaiCrFactory.readChaiResponseSet(user);
+            Assert.assertTrue(readResponseSet.test(responses));
+            Assert.assertEquals(2, cachedKeys().size());
+
+            // the settings are runtime configuration and are not serialized with the response set
+            for (final String fieldName : new String[]{"verifyCacheSize", "verifyCacheMaxAge"}) {
+                final int modifiers = ChaiResponseSet.class.getDeclaredField(fieldName).getModifiers();
+                Assert.assertTrue(fieldName, Modifier.isTransient(modifiers));
+            }
+        } finally {
+            provider.close();
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A salted digest answer that counts how often it is actually tested.
+     */
+    private static class CountingAnswer extends HashSaltAnswer {
+        private int tests;
+
+        private CountingAnswer(final String answer)
+        {
+            super(configuration(), answer);
+        }
+
+        private static AnswerFactory.AnswerConfiguration configuration()
+        {
+            final AnswerFactory.AnswerConfiguration answerConfiguration = new AnswerFactory.AnswerConfiguration();
+            answerConfiguration.setFormatType(FormatType.SHA512_SALT);
+            answerConfiguration.setHashCount(1000);
+            answerConfiguration.setCaseInsensitive(false);
+            return answerConfiguration;
+        }
+
+        public boolean testAnswer(final String testResponse)
+        {
+            tests++;
+            return super.testAnswer(testResponse);
+        }
+    }
+}
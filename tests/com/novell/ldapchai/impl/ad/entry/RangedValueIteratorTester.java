@@ -0,0 +1,213 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl.ad.entry;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.ChaiFactory;
+import com.novell.ldapchai.ChaiGroup;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import com.novell.ldapchai.tests.util.ServerConditions;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Pages through the members of Active Directory groups with {@link RangedValueIterator}, against an in memory
+ * directory returning at most a few values per search, and checks the compare based
+ * {@link ChaiGroup#isMember(String)}.
+ */
+public class RangedValueIteratorTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://rangedvalueiterator";
+    private static final String GROUP_DN = "cn=group,o=test";
+    private static final String NESTED_GROUP_DN = "cn=nested,o=test";
+
+    private static final int MAX_VALUE_RANGE = 3;
+
+// ------------------------------ FIELDS ------------------------------
+
+    private ChaiProvider provider;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        ServerConditions.forURL(LDAP_URL).reset().setMaxValueRange(MAX_VALUE_RANGE);
+
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        provider = ChaiProviderFactory.createProvider(chaiConfig);
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        provider.close();
+        InMemoryDirectory.remove(LDAP_URL);
+        ServerConditions.forURL(LDAP_URL).reset();
+    }
+
+    private static List<String> memberDNs(final int count)
+    {
+        final List<String> memberDNs = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            memberDNs.add("cn=user" + i + ",o=test");
+        }
+        return memberDNs;
+    }
+
+    private static void putGroup(final String groupDN, final List<String> memberDNs)
+    {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        values.put("objectClass", Collections.singletonList("group"));
+        if (!memberDNs.isEmpty()) {
+            values.put(ChaiConstant.ATTR_LDAP_MEMBER, memberDNs);
+        }
+        InMemoryDirectory.forURL(LDAP_URL).putEntry(groupDN, values);
+    }
+
+    /**
+     * Iterate the group's members, returning them along with the number of searches used.
+     */
+    private List<String> iterateMembers(final long[] searches)
+            throws Exception
+    {
+        final ServerConditions conditions = ServerConditions.forURL(LDAP_URL);
+        final long before = conditions.getOperationCount();
+        final List<String> members = new ArrayList<String>();
+        for (final Iterator<String> iter = new GroupImpl(GROUP_DN, provider).iterateMemberDNs(); iter.hasNext(); ) {
+            members.add(iter.next());
+        }
+        searches[0] = conditions.getOperationCount() - before;
+        return members;
+    }
+
+    public void testMultipleRanges()
+            throws Exception
+    {
+        final long[] searches = new long[1];
+
+        // 0-2, 3-5, then 6-* with the last value
+        putGroup(GROUP_DN, memberDNs(7));
+        Assert.assertEquals(memberDNs(7), iterateMembers(searches));
+        Assert.assertEquals(3, searches[0]);
+
+        // 0-2, 3-5, 6-8, then 9-* with the last two values
+        putGroup(GROUP_DN, memberDNs(11));
+        Assert.assertEquals(memberDNs(11), iterateMembers(searches));
+        Assert.assertEquals(4, searches[0]);
+    }
+
+    public void testFinalRange()
+            throws Exception
+    {
+        final long[] searches = new long[1];
+
+        // a final range ending exactly at the page size is returned as 3-*, so no empty range is requested
+        putGroup(GROUP_DN, memberDNs(6));
+        Assert.assertEquals(memberDNs(6), iterateMembers(searches));
+        Assert.assertEquals(2, searches[0]);
+
+        // fewer values than the limit are returned as a single 0-* range
+        putGroup(GROUP_DN, memberDNs(2));
+        Assert.assertEquals(memberDNs(2), iterateMembers(searches));
+        Assert.assertEquals(1, searches[0]);
+
+        // without a limit every value is in the 0-* range
+        ServerConditions.forURL(LDAP_URL).setMaxValueRange(0);
+        putGroup(GROUP_DN, memberDNs(20));
+        Assert.assertEquals(memberDNs(20), iterateMembers(searches));
+        Assert.assertEquals(1, searches[0]);
+
+        putGroup(GROUP_DN, Collections.<String>emptyList());
+        Assert.assertEquals(Collections.<String>emptyList(), iterateMembers(searches));
+        Assert.assertEquals(1, searches[0]);
+    }
+
+    public void testIteratorContract()
+            throws Exception
+    {
+        putGroup(GROUP_DN, memberDNs(4));
+        final Iterator<String> iter = new GroupImpl(GROUP_DN, provider).iterateMemberDNs();
+        for (final String memberDN : memberDNs(4)) {
+            Assert.assertTrue(iter.hasNext());
+            Assert.assertTrue(iter.hasNext());
+            Assert.assertEquals(memberDN, iter.next());
+        }
+        Assert.assertFalse(iter.hasNext());
+        try {
+            iter.next();
+            Assert.fail("next() after the last value should fail");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            iter.remove();
+            Assert.fail("remove() should not be supported");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testGetMembers()
+            throws Exception
+    {
+        putGroup(GROUP_DN, memberDNs(8));
+        final Set<String> memberDNs = new HashSet<String>();
+        for (final ChaiUser member : new GroupImpl(GROUP_DN, provider).getMembers()) {
+            memberDNs.add(member.getEntryDN());
+        }
+        Assert.assertEquals(new HashSet<String>(memberDNs(8)), memberDNs);
+    }
+
+    public void testIsMember()
+            throws Exception
+    {
+        final List<String> groupMembers = new ArrayList<String>(memberDNs(8));
+        groupMembers.add(NESTED_GROUP_DN);
+        putGroup(GROUP_DN, groupMembers);
+        putGroup(NESTED_GROUP_DN, Collections.singletonList("cn=nesteduser,o=test"));
+
+        final ServerConditions conditions = ServerConditions.forURL(LDAP_URL);
+        final ChaiGroup[] groups = {new GroupImpl(GROUP_DN, provider), ChaiFactory.createChaiGroup(GROUP_DN, provider)};
+        for (final ChaiGroup group : groups) {
+            // a member past the first range is found with one compare, not by reading the membership
+            final long before = conditions.getOperationCount();
+            Assert.assertTrue(group.isMember("cn=user7,o=test"));
+            Assert.assertEquals(1, conditions.getOperationCount() - before);
+
+            Assert.assertTrue(group.isMember("CN=User0,O=Test"));
+            Assert.assertTrue(group.isMember(NESTED_GROUP_DN));
+            Assert.assertFalse(group.isMember("cn=user8,o=test"));
+
+            // membership is direct only
+            Assert.assertFalse(group.isMember("cn=nesteduser,o=test"));
+        }
+    }
+}
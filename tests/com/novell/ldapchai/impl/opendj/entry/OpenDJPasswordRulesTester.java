@@ -0,0 +1,416 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.impl.opendj.entry;
+
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.DirectoryChangeFeed;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Compiles OpenDJ password policies from policy and validator values, and checks each validator's accepted and
+ * rejected passwords, the reported {@link ChaiPasswordRule} values and the policy cache.
+ */
+public class OpenDJPasswordRulesTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://opendjpasswordrules";
+    private static final String POLICY_DN = "cn=policy,cn=password policies,cn=config";
+
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+    private static final String DIGITS = "0123456789";
+
+    private static final String BOLD_UPPER_A = "\uD835\uDC00"; // U+1D400
+    private static final String BOLD_UPPER_Z = "\uD835\uDC19"; // U+1D419
+    private static final String BOLD_LOWER_A = "\uD835\uDC1A"; // U+1D41A
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Attribute values, a name may be repeated to give it several values.
+     */
+    private static Map<String, List<String>> values(final String... namesAndValues)
+    {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            List<String> valueList = values.get(namesAndValues[i]);
+            if (valueList == null) {
+                valueList = new ArrayList<String>();
+                values.put(namesAndValues[i], valueList);
+            }
+            valueList.add(namesAndValues[i + 1]);
+        }
+        return values;
+    }
+
+    private static OpenDJPasswordRules rules(final Map<String, List<String>> validatorValues)
+    {
+        final List<Map<String, List<String>>> validators = new ArrayList<Map<String, List<String>>>();
+        validators.add(validatorValues);
+        return new OpenDJPasswordRules(values(), validators);
+    }
+
+    private static OpenDJPasswordRules policyRules(final Map<String, List<String>> policyValues)
+    {
+        return new OpenDJPasswordRules(policyValues, Collections.<Map<String, List<String>>>emptyList());
+    }
+
+    private static void assertErrors(final OpenDJPasswordRules rules, final String password, final ChaiError... expected)
+    {
+        Assert.assertEquals(password, Arrays.asList(expected), rules.validate(password, null));
+    }
+
+    private static Map<String, List<String>> characterSetValidator(final String... namesAndValues)
+    {
+        final Map<String, List<String>> values = values(namesAndValues);
+        values.put("objectClass", Arrays.asList("top", OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_OBJECTCLASS_NAME));
+        return values;
+    }
+
+    public void testLengthValidator()
+    {
+        final List<Map<String, List<String>>> validators = new ArrayList<Map<String, List<String>>>();
+        validators.add(values("objectClass", OpenDJPasswordPolicy.VALIDATOR_LENGTH_BASED_OBJECTCLASS_NAME,
+                OpenDJPasswordPolicy.VALIDATOR_MIN_LENGTH_ATTR_NAME, "4",
+                OpenDJPasswordPolicy.VALIDATOR_MAX_LENGTH_ATTR_NAME, "8"));
+        validators.add(values("objectClass", OpenDJPasswordPolicy.VALIDATOR_LENGTH_BASED_OBJECTCLASS_NAME,
+                OpenDJPasswordPolicy.VALIDATOR_MIN_LENGTH_ATTR_NAME, "3",
+                OpenDJPasswordPolicy.VALIDATOR_MAX_LENGTH_ATTR_NAME, "6"));
+        validators.add(values("objectClass", OpenDJPasswordPolicy.VALIDATOR_LENGTH_BASED_OBJECTCLASS_NAME,
+                OpenDJPasswordRules.VALIDATOR_ENABLED_ATTR_NAME, "false",
+                OpenDJPasswordPolicy.VALIDATOR_MIN_LENGTH_ATTR_NAME, "20"));
+        final OpenDJPasswordRules rules = new OpenDJPasswordRules(values(), validators);
+
+        // the strictest enabled validator wins
+        Assert.assertEquals("4", rules.getValue(ChaiPasswordRule.MinimumLength));
+        Assert.assertEquals("6", rules.getValue(ChaiPasswordRule.MaximumLength));
+        assertErrors(rules, "abc", ChaiError.PASSWORD_TOO_SHORT);
+        assertErrors(rules, "abcd");
+        assertErrors(rules, "abcdef");
+        assertErrors(rules, "abcdefg", ChaiError.PASSWORD_TOO_LONG);
+        assertErrors(rules, null, ChaiError.PASSWORD_TOO_SHORT);
+
+        // lengths are counted in code points
+        assertErrors(rules, BOLD_UPPER_A + BOLD_UPPER_A + BOLD_UPPER_A + BOLD_UPPER_A);
+    }
+
+    public void testCharacterSetClassification()
+    {
+        final OpenDJPasswordRules rules = rules(characterSetValidator(
+                OpenDJPasswordPolicy.VALIDATOR_ALLOW_UNCLASSIFIED_ATTR_NAME, "false",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "1:" + UPPER,
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "1:" + LOWER,
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "2:" + DIGITS,
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "1:!@#"));
+
+        Assert.assertEquals("1", rules.getValue(ChaiPasswordRule.MinimumUpperCase));
+        Assert.assertEquals("1", rules.getValue(ChaiPasswordRule.MinimumLowerCase));
+        Assert.assertEquals("2", rules.getValue(ChaiPasswordRule.MinimumNumeric));
+        Assert.assertEquals("1", rules.getValue(ChaiPasswordRule.MinimumSpecial));
+        Assert.assertEquals("true", rules.getValue(ChaiPasswordRule.AllowNumeric));
+        Assert.assertEquals("true", rules.getValue(ChaiPasswordRule.AllowSpecial));
+
+        assertErrors(rules, "Ab12!");
+        assertErrors(rules, "ab12!", ChaiError.PASSWORD_NOT_ENOUGH_UPPER);
+        assertErrors(rules, "AB12!", ChaiError.PASSWORD_NOT_ENOUGH_LOWER);
+        assertErrors(rules, "Ab1!", ChaiError.PASSWORD_NOT_ENOUGH_NUM);
+        assertErrors(rules, "Ab12", ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL);
+        assertErrors(rules, "Ab12!~", ChaiError.PASSWORD_INVALID_CHAR);
+        assertErrors(rules, "", ChaiError.PASSWORD_NOT_ENOUGH_UPPER, ChaiError.PASSWORD_NOT_ENOUGH_LOWER,
+                ChaiError.PASSWORD_NOT_ENOUGH_NUM, ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL);
+    }
+
+    public void testCharacterSetRanges()
+    {
+        final OpenDJPasswordRules rules = rules(characterSetValidator(
+                OpenDJPasswordPolicy.VALIDATOR_ALLOW_UNCLASSIFIED_ATTR_NAME, "false",
+                OpenDJPasswordRules.VALIDATOR_CHARACTER_SET_RANGES_ATTR_NAME, "1:a-z",
+                OpenDJPasswordRules.VALIDATOR_CHARACTER_SET_RANGES_ATTR_NAME, "1:A-Z0-9",
+                OpenDJPasswordRules.VALIDATOR_CHARACTER_SET_RANGES_ATTR_NAME, "0:" + BOLD_UPPER_A + "-" + BOLD_UPPER_Z));
+
+        // a set mixing upper case and digits has no single rule, and an optional set adds nothing to a minimum
+        Assert.assertEquals("1", rules.getValue(ChaiPasswordRule.MinimumLowerCase));
+        Assert.assertEquals("0", rules.getValue(ChaiPasswordRule.MinimumUpperCase));
+        Assert.assertEquals("true", rules.getValue(ChaiPasswordRule.AllowNumeric));
+        Assert.assertEquals("false", rules.getValue(ChaiPasswordRule.AllowSpecial));
+
+        assertErrors(rules, "abC");
+        assertErrors(rules, "ab7");
+        assertErrors(rules, "abc", ChaiError.PASSWORD_BADPASSWORD);
+        assertErrors(rules, "AB7", ChaiError.PASSWORD_NOT_ENOUGH_LOWER);
+        assertErrors(rules, "a7" + BOLD_UPPER_Z);
+        assertErrors(rules, "a7" + BOLD_UPPER_Z + BOLD_LOWER_A, ChaiError.PASSWORD_INVALID_CHAR);
+        assertErrors(rules, "a7-", ChaiError.PASSWORD_INVALID_CHAR);
+    }
+
+    public void testMalformedCharacterSets()
+    {
+        final OpenDJPasswordRules rules = rules(characterSetValidator(
+                OpenDJPasswordPolicy.VALIDATOR_ALLOW_UNCLASSIFIED_ATTR_NAME, "false",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "abc",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "x:abc",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "1:",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "1:" + LOWER));
+
+        Assert.assertEquals("1", rules.getValue(ChaiPasswordRule.MinimumLowerCase));
+        assertErrors(rules, "abc");
+        assertErrors(rules, "ABC", ChaiError.PASSWORD_NOT_ENOUGH_LOWER, ChaiError.PASSWORD_INVALID_CHAR);
+    }
+
+    public void testMinCharacterSets()
+    {
+        final OpenDJPasswordRules rules = rules(characterSetValidator(
+                OpenDJPasswordPolicy.VALIDATOR_ALLOW_UNCLASSIFIED_ATTR_NAME, "true",
+                OpenDJPasswordRules.VALIDATOR_MIN_CHARACTER_SETS_ATTR_NAME, "3",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "1:" + LOWER,
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "0:" + UPPER,
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "0:" + DIGITS,
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "0:!@#"));
+
+        assertErrors(rules, "aB1");
+        assertErrors(rules, "a!1~");
+        assertErrors(rules, "aB~~", ChaiError.PASSWORD_BADPASSWORD);
+        assertErrors(rules, "B1!", ChaiError.PASSWORD_NOT_ENOUGH_LOWER);
+        assertErrors(rules, "abc", ChaiError.PASSWORD_BADPASSWORD);
+
+        // the minimum only counts the sets of its own validator
+        final List<Map<String, List<String>>> validators = new ArrayList<Map<String, List<String>>>();
+        validators.add(characterSetValidator(
+                OpenDJPasswordRules.VALIDATOR_MIN_CHARACTER_SETS_ATTR_NAME, "2",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "0:" + LOWER,
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "0:" + UPPER));
+        validators.add(characterSetValidator(
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "0:" + DIGITS));
+        final OpenDJPasswordRules twoValidators = new OpenDJPasswordRules(values(), validators);
+        assertErrors(twoValidators, "aB");
+        assertErrors(twoValidators, "a1", ChaiError.PASSWORD_BADPASSWORD);
+    }
+
+    public void testUnclassifiedCharacters()
+    {
+        final OpenDJPasswordRules noValidators = policyRules(values());
+        Assert.assertEquals("true", noValidators.getValue(ChaiPasswordRule.AllowNumeric));
+        Assert.assertEquals("true", noValidators.getValue(ChaiPasswordRule.AllowSpecial));
+        assertErrors(noValidators, "any thing 1!");
+
+        final OpenDJPasswordRules lettersOnly = rules(characterSetValidator(
+                OpenDJPasswordPolicy.VALIDATOR_ALLOW_UNCLASSIFIED_ATTR_NAME, "false",
+                OpenDJPasswordPolicy.VALIDATOR_CHARACTER_SET_ATTR_NAME, "0:" + LOWER + UPPER));
+        Assert.assertEquals("false", lettersOnly.getValue(ChaiPasswordRule.AllowNumeric));
+        Assert.assertEquals("false", lettersOnly.getValue(ChaiPasswordRule.AllowSpecial));
+        assertErrors(lettersOnly, "Letters");
+        assertErrors(lettersOnly, "Letters1", ChaiError.PASSWORD_INVALID_CHAR);
+    }
+
+    public void testRepeatedCharacters()
+    {
+        final Map<String, List<String>> validator = values("objectClass", OpenDJPasswordPolicy.VALIDATOR_REPEATED_CHARS_OBJECTCLASS_NAME,
+                OpenDJPasswordPolicy.VALIDATOR_MAX_CONSECUTIVE_LENGTH_ATTR_NAME, "2");
+        final OpenDJPasswordRules caseInsensitive = rules(validator);
+        Assert.assertEquals("2", caseInsensitive.getValue(ChaiPasswordRule.MaximumSequentialRepeat));
+        assertErrors(caseInsensitive, "aabaa");
+        assertErrors(caseInsensitive, "abAaA", ChaiError.PASSWORD_TOO_MANY_REPEAT);
+
+        validator.put(OpenDJPasswordRules.VALIDATOR_CASE_SENSITIVE_ATTR_NAME, Collections.singletonList("true"));
+        final OpenDJPasswordRules caseSensitive = rules(validator);
+        assertErrors(caseSensitive, "abAaA");
+        assertErrors(caseSensitive, "abaaa", ChaiError.PASSWORD_TOO_MANY_REPEAT);
+        assertErrors(caseSensitive, BOLD_UPPER_A + BOLD_UPPER_A + BOLD_UPPER_A, ChaiError.PASSWORD_TOO_MANY_REPEAT);
+    }
+
+    public void testUniqueCharacters()
+    {
+        final Map<String, List<String>> validator = values("objectClass", OpenDJPasswordPolicy.VALIDATOR_UNIQUE_CHARS_OBJECTCLASS_NAME,
+                OpenDJPasswordPolicy.VALIDATOR_MIN_UNIQUE_ATTR_NAME, "3");
+        final OpenDJPasswordRules caseInsensitive = rules(validator);
+        Assert.assertEquals("3", caseInsensitive.getValue(ChaiPasswordRule.MinimumUnique));
+        assertErrors(caseInsensitive, "abcabc");
+        assertErrors(caseInsensitive, "abAB", ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE);
+
+        validator.put(OpenDJPasswordRules.VALIDATOR_CASE_SENSITIVE_ATTR_NAME, Collections.singletonList("true"));
+        final OpenDJPasswordRules caseSensitive = rules(validator);
+        assertErrors(caseSensitive, "abAB");
+        assertErrors(caseSensitive, "abab", ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE);
+    }
+
+    public void testAttributeValues()
+    {
+        final Map<String, List<String>> validator = values("objectClass", OpenDJPasswordPolicy.VALIDATOR_ATTRIBUTE_VALUE_OBJECTCLASS_NAME,
+                OpenDJPasswordPolicy.VALIDATOR_MATCH_ATTRIBUTE_ATTR_NAME, "cn");
+        final Map<String, String> attributeValues = new HashMap<String, String>();
+        attributeValues.put("CN", "JSmith");
+
+        final OpenDJPasswordRules reversed = rules(validator);
+        Assert.assertEquals("cn", reversed.getValue(ChaiPasswordRule.DisallowedAttributes));
+        Assert.assertEquals(Collections.singletonList(ChaiError.PASSWORD_SAMEASATTR), reversed.validate("jsmith", attributeValues));
+        Assert.assertEquals(Collections.singletonList(ChaiError.PASSWORD_SAMEASATTR), reversed.validate("htimsj", attributeValues));
+        Assert.assertEquals(Collections.<ChaiError>emptyList(), reversed.validate("jsmith1", attributeValues));
+        Assert.assertEquals(Collections.<ChaiError>emptyList(), reversed.validate("jsmith", null));
+
+        validator.put(OpenDJPasswordRules.VALIDATOR_TEST_REVERSED_ATTR_NAME, Collections.singletonList("false"));
+        final OpenDJPasswordRules forwardOnly = rules(validator);
+        Assert.assertEquals(Collections.singletonList(ChaiError.PASSWORD_SAMEASATTR), forwardOnly.validate("JSMITH", attributeValues));
+        Assert.assertEquals(Collections.<ChaiError>emptyList(), forwardOnly.validate("htimsj", attributeValues));
+    }
+
+    public void testPolicyValues()
+    {
+        final OpenDJPasswordRules rules = policyRules(values(
+                OpenDJPasswordPolicy.MAX_PASSWORD_AGE_ATTR_NAME, "86400",
+                OpenDJPasswordPolicy.LAST_LOGIN_TIME_ATTR_ATTR_NAME, "ds-pwp-last-login-time",
+                OpenDJPasswordPolicy.LAST_LOGIN_TIME_FORMAT_ATTR_NAME, "yyyyMMddHHmmss'Z'"));
+        Assert.assertEquals("86400", rules.getValue(ChaiPasswordRule.ExpirationInterval));
+        Assert.assertEquals("86400", rules.getValue(ChaiPasswordRule.ExpirationInterval.getKey()));
+        Assert.assertEquals("ds-pwp-last-login-time", rules.getLastLoginTimeAttribute());
+        Assert.assertEquals("yyyyMMddHHmmss'Z'", rules.getLastLoginTimeFormat());
+        Assert.assertEquals(ChaiPasswordRule.values().length, rules.getKeys().size());
+    }
+
+    public void testCache()
+            throws Exception
+    {
+        final InMemoryDirectory directory = new InMemoryDirectory();
+        directory.putEntry(POLICY_DN, values("objectClass", "ds-cfg-password-policy", OpenDJPasswordPolicy.MAX_PASSWORD_AGE_ATTR_NAME, "1"));
+        InMemoryDirectory.register(LDAP_URL, directory);
+        final ChaiProvider provider = createProvider(LDAP_URL, "600000");
+        try {
+            final OpenDJPasswordRules rules = OpenDJPasswordRules.forPolicy(POLICY_DN, provider);
+            Assert.assertSame(rules, OpenDJPasswordRules.forPolicy(POLICY_DN, provider));
+            Assert.assertSame(rules, OpenDJPasswordRules.forPolicy(POLICY_DN.toUpperCase(), provider));
+
+            // the cache is cleared when it is full
+            for (int i = 0; i < 256; i++) {
+                final String policyDn = "cn=policy" + i + ",cn=password policies,cn=config";
+                directory.putEntry(policyDn, values("objectClass", "ds-cfg-password-policy"));
+                OpenDJPasswordRules.forPolicy(policyDn, provider);
+            }
+            Assert.assertNotSame(rules, OpenDJPasswordRules.forPolicy(POLICY_DN, provider));
+        } finally {
+            provider.close();
+            InMemoryDirectory.remove(LDAP_URL);
+        }
+    }
+
+    public void testCacheDisabled()
+            throws Exception
+    {
+        final InMemoryDirectory directory = new InMemoryDirectory();
+        directory.putEntry(POLICY_DN, values("objectClass", "ds-cfg-password-policy", OpenDJPasswordPolicy.MAX_PASSWORD_AGE_ATTR_NAME, "1"));
+        InMemoryDirectory.register(LDAP_URL, directory);
+        final ChaiProvider provider = createProvider(LDAP_URL, "0");
+        try {
+            final OpenDJPasswordRules rules = OpenDJPasswordRules.forPolicy(POLICY_DN, provider);
+            Assert.assertNotSame(rules, OpenDJPasswordRules.forPolicy(POLICY_DN, provider));
+        } finally {
+            provider.close();
+            InMemoryDirectory.remove(LDAP_URL);
+        }
+    }
+
+    public void testChangeFeedInvalidation()
+            throws Exception
+    {
+        final InMemoryDirectory directory = new InMemoryDirectory();
+        directory.putEntry("", values("objectClass", "top", "lastChangeNumber", "1"));
+        directory.putEntry("cn=changelog", values("objectClass", "container"));
+        directory.putEntry("changeNumber=1,cn=changelog", values("changeNumber", "1", "targetDN", "cn=config", "changeType", "add"));
+        directory.putEntry(POLICY_DN, values("objectClass", "ds-cfg-password-policy", OpenDJPasswordPolicy.MAX_PASSWORD_AGE_ATTR_NAME, "1"));
+        directory.putEntry("cn=other,cn=password policies,cn=config", values("objectClass", "ds-cfg-password-policy"));
+        InMemoryDirectory.register(LDAP_URL, directory);
+
+        final ChaiProvider provider = createProvider(LDAP_URL, "600000");
+        final DirectoryChangeFeed feed = DirectoryChangeFeed.forConfiguration(provider.getChaiConfiguration());
+        try {
+            waitFor(feed, 1);
+            final OpenDJPasswordRules rules = OpenDJPasswordRules.forPolicy(POLICY_DN, provider);
+            final OpenDJPasswordRules otherRules = OpenDJPasswordRules.forPolicy("cn=other,cn=password policies,cn=config", provider);
+            Assert.assertEquals("1", rules.getValue(ChaiPasswordRule.ExpirationInterval));
+
+            directory.putEntry(POLICY_DN, values("objectClass", "ds-cfg-password-policy", OpenDJPasswordPolicy.MAX_PASSWORD_AGE_ATTR_NAME, "2"));
+            directory.putEntry("changeNumber=2,cn=changelog", values("changeNumber", "2", "targetDN", POLICY_DN, "changeType", "modify"));
+            waitFor(feed, 2);
+
+            Assert.assertEquals("2", OpenDJPasswordRules.forPolicy(POLICY_DN, provider).getValue(ChaiPasswordRule.ExpirationInterval));
+            Assert.assertSame(otherRules, OpenDJPasswordRules.forPolicy("cn=other,cn=password policies,cn=config", provider));
+        } finally {
+            feed.release();
+            provider.close();
+            InMemoryDirectory.remove(LDAP_URL);
+        }
+    }
+
+    public void testReadLastLoginTime()
+            throws Exception
+    {
+        final InMemoryDirectory directory = new InMemoryDirectory();
+        directory.putEntry(POLICY_DN, values("objectClass", "ds-cfg-password-policy",
+                OpenDJPasswordPolicy.LAST_LOGIN_TIME_ATTR_ATTR_NAME, "lastLogin",
+                OpenDJPasswordPolicy.LAST_LOGIN_TIME_FORMAT_ATTR_NAME, "yyyy-MM-dd"));
+        directory.putEntry("cn=nopolicy,o=test", values("objectClass", "inetOrgPerson",
+                InetOrgPerson.ATTR_LAST_LOGIN_TIME_DEFAULT, "20140101120000Z"));
+        directory.putEntry("cn=policy,o=test", values("objectClass", "inetOrgPerson",
+                InetOrgPerson.ATTR_PASSWORD_POLICY_SUBENTRY_DN, POLICY_DN,
+                "lastLogin", "2014-01-01",
+                InetOrgPerson.ATTR_LAST_LOGIN_TIME_DEFAULT, "20000101000000Z"));
+        InMemoryDirectory.register(LDAP_URL, directory);
+        final ChaiProvider provider = createProvider(LDAP_URL, "0");
+        try {
+            // without a password policy the default attribute is read
+            Assert.assertEquals(1388577600000L, new InetOrgPersonImpl("cn=nopolicy,o=test", provider).readLastLoginTime().getTime());
+
+            final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+            Assert.assertEquals(format.parse("2014-01-01"), new InetOrgPersonImpl("cn=policy,o=test", provider).readLastLoginTime());
+        } finally {
+            provider.close();
+            InMemoryDirectory.remove(LDAP_URL);
+        }
+    }
+
+    private static ChaiProvider createProvider(final String ldapURL, final String cacheMaxAge)
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(ldapURL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.OPENDJ_PASSWORD_POLICY_CACHE_MAX_AGE, cacheMaxAge);
+        chaiConfig.setSetting(ChaiSetting.CACHE_CHANGE_FEED_POLL_INTERVAL, "50");
+        return ChaiProviderFactory.createProvider(chaiConfig);
+    }
+
+    private static void waitFor(final DirectoryChangeFeed feed, final long eventCount)
+            throws InterruptedException
+    {
+        final long endTime = System.currentTimeMillis() + 10 * 1000;
+        while (feed.getEventCount() < eventCount && System.currentTimeMillis() < endTime) {
+            Thread.sleep(20);
+        }
+        Assert.assertTrue("timed out waiting for change feed events", feed.getEventCount() >= eventCount);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.provider;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Checks that {@link WireTraceWrapper} stops serializing a traced result once the maximum length is reached.
+ */
+public class WireTraceWrapperTester extends TestCase {
+// -------------------------- OTHER METHODS --------------------------
+
+    public void testShortResult()
+    {
+        Assert.assertEquals("[\"a\",\"b\"]", WireTraceWrapper.toTruncatedJson(Arrays.asList("a", "b"), 100));
+        Assert.assertEquals("[\"a\",\"b\"]", WireTraceWrapper.toTruncatedJson(Arrays.asList("a", "b"), 9));
+        Assert.assertEquals("{\"cn\":\"<user>\"}", WireTraceWrapper.toTruncatedJson(Collections.singletonMap("cn", "<user>"), 0));
+    }
+
+    public void testTruncatedResult()
+    {
+        Assert.assertEquals("[\"a\",\"b\"...[truncated]", WireTraceWrapper.toTruncatedJson(Arrays.asList("a", "b", "c"), 8));
+        Assert.assertEquals("[\"a\",\"b\"...[truncated]", WireTraceWrapper.toTruncatedJson(Arrays.asList("a", "b"), 8));
+    }
+
+    public void testStopsSerializing()
+    {
+        final CountingList values = new CountingList(1000000);
+        final String json = WireTraceWrapper.toTruncatedJson(values, 100);
+        Assert.assertTrue(json, json.endsWith("...[truncated]"));
+        Assert.assertEquals(100 + "...[truncated]".length(), json.length());
+
+        // only the values needed to fill the output were read
+        Assert.assertTrue(String.valueOf(values.reads), values.reads < 50);
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A large list of strings that counts how many of its values are read.
+     */
+    private static class CountingList extends AbstractList<String> {
+        private final int size;
+        private int reads;
+
+        private CountingList(final int size)
+        {
+            this.size = size;
+        }
+
+        public String get(final int index)
+        {
+            reads++;
+            return "value" + index;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.util.internal.Base64Util;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the allocation free {@link Base64Util} methods against the legacy encoder.
+ */
+public class Base64UtilTester extends TestCase {
+// -------------------------- OTHER METHODS --------------------------
+
+    private static byte[] ascii(final String value)
+            throws Exception
+    {
+        return value.getBytes("US-ASCII");
+    }
+
+    public void testMatchesLegacyEncoder()
+            throws Exception
+    {
+        final Random random = new Random(1);
+        for (int length = 0; length < 70; length++) {
+            final byte[] raw = new byte[length];
+            random.nextBytes(raw);
+            final String legacy = Base64Util.encodeBytes(raw);
+
+            Assert.assertEquals(legacy, Base64Util.encodeToString(raw));
+            Assert.assertEquals(legacy, new String(Base64Util.encodeToBytes(raw), "US-ASCII"));
+            Assert.assertTrue(Base64Util.encodedEquals(raw, legacy, false));
+            Assert.assertTrue(Arrays.equals(raw, Base64Util.decodeToBytes(ascii(legacy))));
+        }
+    }
+
+    public void testEncodedEqualsPadding()
+            throws Exception
+    {
+        Assert.assertTrue(Base64Util.encodedEquals(ascii(""), "", false));
+        Assert.assertTrue(Base64Util.encodedEquals(ascii("f"), "Zg==", false));
+        Assert.assertTrue(Base64Util.encodedEquals(ascii("fo"), "Zm8=", false));
+        Assert.assertTrue(Base64Util.encodedEquals(ascii("foo"), "Zm9v", false));
+
+        // missing, extra or wrong padding
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("f"), "Zg", false));
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("f"), "Zg=", false));
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("fo"), "Zm8==", false));
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("fo"), "Zm8A", false));
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("foo"), "Zm9v====", false));
+    }
+
+    public void testEncodedEqualsCase()
+            throws Exception
+    {
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("foo"), "ZM9V", false));
+        Assert.assertTrue(Base64Util.encodedEquals(ascii("foo"), "ZM9V", true));
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("foo"), "Zm9w", true));
+        Assert.assertFalse(Base64Util.encodedEquals(ascii("foo"), null, true));
+    }
+
+    public void testDecodePadding()
+            throws Exception
+    {
+        Assert.assertEquals(0, Base64Util.decodeToBytes(ascii("")).length);
+        Assert.assertEquals("f", new String(Base64Util.decodeToBytes(ascii("Zg==")), "US-ASCII"));
+        Assert.assertEquals("fo", new String(Base64Util.decodeToBytes(ascii("Zm8=")), "US-ASCII"));
+        Assert.assertEquals("foobar", new String(Base64Util.decodeToBytes(ascii("Zm9vYmFy")), "US-ASCII"));
+
+        assertInvalid("Zg");
+        assertInvalid("Zg=");
+        assertInvalid("Zm8==");
+        assertInvalid("Z===");
+        assertInvalid("Zg=A");
+        assertInvalid("Zg==Zg==");
+    }
+
+    public void testDecodeIllegalInput()
+            throws Exception
+    {
+        assertInvalid("Zm9v YmFy");
+        assertInvalid("Zm9v\nYmFy");
+        assertInvalid("Zm9-");
+        assertInvalid("Zm9_");
+        assertInvalid("Zm9v" + '\u00e9' + "mFy");
+
+        final byte[] nonAscii = ascii("Zm9v");
+        nonAscii[1] = (byte) 0x80;
+        try {
+            Base64Util.decodeToBytes(nonAscii);
+            Assert.fail("non ascii input should not decode");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testDecodeToOffsets()
+            throws Exception
+    {
+        final byte[] source = ascii("xxZm9vYmE=yy");
+        final byte[] destination = new byte[8];
+        Arrays.fill(destination, (byte) '-');
+
+        Assert.assertEquals(5, Base64Util.decodedLength(source, 2, 8));
+        Assert.assertEquals(5, Base64Util.decodeTo(source, 2, 8, destination, 2));
+        Assert.assertEquals("--fooba-", new String(destination, "US-ASCII"));
+
+        try {
+            Base64Util.decodeTo(source, 2, 8, destination, 4);
+            Assert.fail("destination too small should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            Base64Util.decodeTo(source, 6, 8, destination, 0);
+            Assert.fail("source range past the end should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void assertInvalid(final String encoded)
+            throws Exception
+    {
+        try {
+            Base64Util.decodeToBytes(encoded.getBytes("ISO-8859-1"));
+            Assert.fail("'" + encoded + "' should not decode");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Tests the provider cache enabled by {@link ChaiSetting#CACHE_ENABLE} against an in memory directory.
+ */
+public class CachingWrapperTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://cachingwrapper";
+    private static final String ENTRY_DN = "cn=user1,o=test";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private InMemoryDirectory directory;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static Map<String, List<String>> values(final String description)
+    {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        values.put("objectClass", Collections.singletonList("person"));
+        values.put("description", Collections.singletonList(description));
+        return values;
+    }
+
+    private static ChaiProvider createProvider(final String maximumAge, final String maximumSize)
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.CACHE_ENABLE, "true");
+        chaiConfig.setSetting(ChaiSetting.CACHE_MAXIMUM_AGE, maximumAge);
+        chaiConfig.setSetting(ChaiSetting.CACHE_MAXIMUM_SIZE, maximumSize);
+        return ChaiProviderFactory.createProvider(chaiConfig);
+    }
+
+    protected void setUp()
+            throws Exception
+    {
+        directory = InMemoryDirectory.forURL(LDAP_URL);
+        directory.putEntry(ENTRY_DN, values("one"));
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    public void testCachedReadsAndModifyInvalidation()
+            throws Exception
+    {
+        final ChaiProvider provider = createProvider("60000", "128");
+        try {
+            Assert.assertEquals("one", provider.readStringAttribute(ENTRY_DN, "description"));
+
+            // changed behind the provider's back, so the cached value is still returned
+            directory.putEntry(ENTRY_DN, values("two"));
+            Assert.assertEquals("one", provider.readStringAttribute(ENTRY_DN, "description"));
+
+            // a modify through the provider clears the cache
+            provider.writeStringAttribute(ENTRY_DN, "description", Collections.singleton("three"), true);
+            Assert.assertEquals("three", provider.readStringAttribute(ENTRY_DN, "description"));
+        } finally {
+            provider.close();
+        }
+    }
+
+    public void testMaximumAge()
+            throws Exception
+    {
+        // the maximum size is larger than the age, so swapped settings would keep the value for a second
+        final ChaiProvider provider = createProvider("100", "1000");
+        try {
+            Assert.assertEquals("one", provider.readStringAttribute(ENTRY_DN, "description"));
+            directory.putEntry(ENTRY_DN, values("two"));
+            Thread.sleep(300);
+            Assert.assertEquals("two", provider.readStringAttribute(ENTRY_DN, "description"));
+        } finally {
+            provider.close();
+        }
+    }
+}
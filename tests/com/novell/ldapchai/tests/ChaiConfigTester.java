@@ -19,6 +19,7 @@
 
 package com.novell.ldapchai.tests;
 
+import com.novell.ldapchai.provider.ChaiConfiguration;
 import com.novell.ldapchai.provider.ChaiSetting;
 import junit.framework.TestCase;
 import org.junit.Assert;
@@ -49,4 +50,33 @@ public class ChaiConfigTester extends TestCase {
             setting.validateValue(setting.getDefaultValue());
         }
     }
+
+    public void testLockedSnapshot()
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration("ldap://host1:389,ldap://host2:389", "cn=admin", "password");
+        chaiConfig.setSetting(ChaiSetting.CACHE_MAXIMUM_SIZE, "42");
+        chaiConfig.setSetting(ChaiSetting.CACHE_ENABLE, "true");
+
+        final ChaiConfiguration unlockedCopy = (ChaiConfiguration) chaiConfig.clone();
+        chaiConfig.lock();
+
+        for (final ChaiSetting setting : ChaiSetting.values()) {
+            Assert.assertEquals(unlockedCopy.getSetting(setting), chaiConfig.getSetting(setting));
+            Assert.assertEquals(unlockedCopy.getBooleanSetting(setting), chaiConfig.getBooleanSetting(setting));
+        }
+
+        Assert.assertEquals(42, chaiConfig.getIntSetting(ChaiSetting.CACHE_MAXIMUM_SIZE));
+        Assert.assertTrue(chaiConfig.getBooleanSetting(ChaiSetting.CACHE_ENABLE));
+        Assert.assertEquals(unlockedCopy.bindURLsAsList(), chaiConfig.bindURLsAsList());
+        Assert.assertEquals(2, chaiConfig.bindURLsAsList().size());
+        Assert.assertSame(chaiConfig.getSnapshot(), chaiConfig.getSnapshot());
+
+        try {
+            chaiConfig.getIntSetting(ChaiSetting.BIND_DN);
+            Assert.fail("non integer setting should not be readable as an int");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.ChaiFactory;
+import com.novell.ldapchai.cr.*;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Verifies the stored response sets of a population of users in an in memory directory, checking the status
+ * reported for users with correct, incorrect and missing responses and the number of users processed.
+ */
+public class ChaiCrBatchVerifierTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://chaicrbatchverifier";
+    private static final String BASE_DN = "o=test";
+
+    private static final int PASS_USERS = 25;
+    private static final int FAIL_USERS = 10;
+    private static final int MISSING_USERS = 5;
+
+    private static final Challenge CHALLENGE = new ChaiChallenge(true, "What is your favourite colour?", 1, 255, true);
+
+// ------------------------------ FIELDS ------------------------------
+
+    private ChaiProvider provider;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.CR_BATCH_VERIFY_THREADS, "2");
+        provider = ChaiProviderFactory.createProvider(chaiConfig);
+
+        final InMemoryDirectory directory = InMemoryDirectory.forURL(LDAP_URL);
+        final String storageAttribute = chaiConfig.getSetting(ChaiSetting.CR_CHAI_STORAGE_ATTRIBUTE);
+        for (int i = 0; i < PASS_USERS + FAIL_USERS + MISSING_USERS + 1; i++) {
+            final String userDN = userDN(i);
+            final Map<String, List<String>> values = new HashMap<String, List<String>>();
+            values.put("objectClass", Collections.singletonList("inetOrgPerson"));
+            values.put("cn", Collections.singletonList("user" + i));
+            if (i >= PASS_USERS + FAIL_USERS + MISSING_USERS) {
+                // no storage attribute at all, so not returned by the search
+                directory.putEntry(userDN, values);
+            } else if (i >= PASS_USERS + FAIL_USERS) {
+                // a value of the storage attribute, but not a response set record
+                values.put(storageAttribute, Collections.singletonList("0099#.#.#other record"));
+                directory.putEntry(userDN, values);
+            } else {
+                directory.putEntry(userDN, values);
+                final ChaiResponseSet responseSet = ChaiCrFactory.newChaiResponseSet(
+                        Collections.singletonMap(CHALLENGE, "colour" + i), Locale.ENGLISH, 0, chaiConfig, null);
+                Assert.assertTrue(ChaiCrFactory.writeChaiResponseSet(responseSet, ChaiFactory.createChaiUser(userDN, provider)));
+            }
+        }
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        provider.close();
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    private static String userDN(final int index)
+    {
+        return "cn=user" + index + "," + BASE_DN;
+    }
+
+    private static int userIndex(final String userDN)
+    {
+        return Integer.parseInt(userDN.substring("cn=user".length(), userDN.indexOf(',')));
+    }
+
+    /**
+     * Correct responses for the pass users, and incorrect responses for the others.
+     */
+    private static ChaiCrBatchVerifier.ResponseSource responseSource()
+    {
+        return new ChaiCrBatchVerifier.ResponseSource() {
+            public Map<Challenge, String> getResponses(final String userDN, final ResponseSet responseSet)
+            {
+                final int index = userIndex(userDN);
+                return Collections.singletonMap(CHALLENGE, index < PASS_USERS ? "colour" + index : "wrong");
+            }
+        };
+    }
+
+    public void testVerify()
+            throws Exception
+    {
+        final Map<String, ChaiCrBatchVerifier.Status> statuses = new HashMap<String, ChaiCrBatchVerifier.Status>();
+        final Thread callingThread = Thread.currentThread();
+        final int processed = new ChaiCrBatchVerifier(provider).verify(BASE_DN, "(objectClass=inetOrgPerson)", responseSource(), new ChaiCrBatchVerifier.ResultHandler() {
+            public void handleResult(final ChaiCrBatchVerifier.Result result)
+            {
+                Assert.assertSame(callingThread, Thread.currentThread());
+                Assert.assertNull(result.toString(), statuses.put(result.getUserDN(), result.getStatus()));
+            }
+        });
+
+        Assert.assertEquals(PASS_USERS + FAIL_USERS + MISSING_USERS, processed);
+        Assert.assertEquals(processed, statuses.size());
+
+        final Map<ChaiCrBatchVerifier.Status, Integer> counts = new HashMap<ChaiCrBatchVerifier.Status, Integer>();
+        for (final Map.Entry<String, ChaiCrBatchVerifier.Status> entry : statuses.entrySet()) {
+            final int index = userIndex(entry.getKey());
+            final ChaiCrBatchVerifier.Status expected = index < PASS_USERS
+                    ? ChaiCrBatchVerifier.Status.PASSED
+                    : index < PASS_USERS + FAIL_USERS ? ChaiCrBatchVerifier.Status.FAILED : ChaiCrBatchVerifier.Status.NO_RESPONSE_SET;
+            Assert.assertEquals(entry.getKey(), expected, entry.getValue());
+            final Integer count = counts.get(entry.getValue());
+            counts.put(entry.getValue(), count == null ? 1 : count + 1);
+        }
+        Assert.assertEquals(Integer.valueOf(PASS_USERS), counts.get(ChaiCrBatchVerifier.Status.PASSED));
+        Assert.assertEquals(Integer.valueOf(FAIL_USERS), counts.get(ChaiCrBatchVerifier.Status.FAILED));
+        Assert.assertEquals(Integer.valueOf(MISSING_USERS), counts.get(ChaiCrBatchVerifier.Status.NO_RESPONSE_SET));
+    }
+
+    public void testNotTested()
+            throws Exception
+    {
+        final List<ChaiCrBatchVerifier.Result> results = new ArrayList<ChaiCrBatchVerifier.Result>();
+        final int processed = new ChaiCrBatchVerifier(provider).verify(BASE_DN, "cn=user0", new ChaiCrBatchVerifier.ResponseSource() {
+            public Map<Challenge, String> getResponses(final String userDN, final ResponseSet responseSet)
+            {
+                return null;
+            }
+        }, new ChaiCrBatchVerifier.ResultHandler() {
+            public void handleResult(final ChaiCrBatchVerifier.Result result)
+            {
+                results.add(result);
+            }
+        });
+
+        Assert.assertEquals(1, processed);
+        Assert.assertEquals(ChaiCrBatchVerifier.Status.NOT_TESTED, results.get(0).getStatus());
+        Assert.assertNotNull(results.get(0).getResponseSet());
+    }
+
+    public void testHandlerFailureAbandonsSearch()
+            throws Exception
+    {
+        final int[] handled = new int[1];
+        try {
+            new ChaiCrBatchVerifier(provider).verify(BASE_DN, null, responseSource(), new ChaiCrBatchVerifier.ResultHandler() {
+                public void handleResult(final ChaiCrBatchVerifier.Result result)
+                {
+                    handled[0]++;
+                    throw new IllegalArgumentException("handler failure");
+                }
+            });
+            Assert.fail("the handler's exception should be re-thrown");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("handler failure", e.getMessage());
+        }
+        Assert.assertEquals(1, handled[0]);
+    }
+}
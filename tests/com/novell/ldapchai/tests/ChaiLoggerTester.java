@@ -0,0 +1,123 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.util.ChaiLogger;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.MDC;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that asynchronous log output keeps the calling thread's context.
+ */
+public class ChaiLoggerTester extends TestCase {
+// ------------------------------ FIELDS ------------------------------
+
+    private final CapturingAppender appender = new CapturingAppender();
+    private Logger log4jLogger;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        log4jLogger = Logger.getLogger(ChaiLoggerTester.class);
+        log4jLogger.setAdditivity(false);
+        log4jLogger.setLevel(Level.DEBUG);
+        log4jLogger.addAppender(appender);
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        log4jLogger.removeAppender(appender);
+        log4jLogger.setLevel(null);
+        log4jLogger.setAdditivity(true);
+    }
+
+    public void testAsyncEventKeepsCallerContext()
+            throws Exception
+    {
+        final ChaiLogger logger = ChaiLogger.getAsyncLogger(ChaiLoggerTester.class, 16);
+        final Thread caller = new Thread("async logger caller") {
+            public void run()
+            {
+                MDC.put("user", "cn=user1,o=test");
+                try {
+                    logger.debug("debug message");
+                    logger.trace("disabled message");
+                    logger.warn("warn message");
+                } finally {
+                    MDC.remove("user");
+                }
+            }
+        };
+        caller.start();
+        caller.join();
+
+        final List<LoggingEvent> events = appender.waitFor(2);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("debug message", events.get(0).getMessage());
+        Assert.assertEquals(Level.DEBUG, events.get(0).getLevel());
+        Assert.assertEquals("warn message", events.get(1).getMessage());
+        for (final LoggingEvent event : events) {
+            Assert.assertEquals("async logger caller", event.getThreadName());
+            Assert.assertEquals("cn=user1,o=test", event.getMDC("user"));
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class CapturingAppender extends AppenderSkeleton {
+        private final List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+
+        protected synchronized void append(final LoggingEvent event)
+        {
+            events.add(event);
+            notifyAll();
+        }
+
+        synchronized List<LoggingEvent> waitFor(final int count)
+                throws InterruptedException
+        {
+            final long endTime = System.currentTimeMillis() + 10 * 1000;
+            while (events.size() < count && System.currentTimeMillis() < endTime) {
+                wait(100);
+            }
+            return new ArrayList<LoggingEvent>(events);
+        }
+
+        public void close()
+        {
+        }
+
+        public boolean requiresLayout()
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.provider.*;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import com.novell.ldapchai.util.SearchHelper;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Tests the change log mode of {@link DirectoryChangeFeed} against an in memory directory, which has no persistent
+ * search support.
+ */
+public class ChangeFeedTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://changefeed";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private InMemoryDirectory directory;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static Map<String, List<String>> values(final String... namesAndValues)
+    {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            values.put(namesAndValues[i], Collections.singletonList(namesAndValues[i + 1]));
+        }
+        return values;
+    }
+
+    protected void setUp()
+            throws Exception
+    {
+        directory = new InMemoryDirectory();
+        directory.putEntry("", values("objectClass", "top", "lastChangeNumber", "1"));
+        directory.putEntry("cn=changelog", values("objectClass", "container"));
+        directory.putEntry("changeNumber=1,cn=changelog", values("changeNumber", "1", "targetDN", "o=test", "changeType", "add"));
+        directory.putEntry("o=test", values("objectClass", "organization"));
+        directory.putEntry("cn=user1,o=test", values("objectClass", "person", "description", "one"));
+        InMemoryDirectory.register(LDAP_URL, directory);
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    public void testChangelogInvalidation()
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.CACHE_ENABLE, "true");
+        chaiConfig.setSetting(ChaiSetting.CACHE_MAXIMUM_AGE, "600000");
+        chaiConfig.setSetting(ChaiSetting.CACHE_CHANGE_FEED_ENABLE, "true");
+        chaiConfig.setSetting(ChaiSetting.CACHE_CHANGE_FEED_POLL_INTERVAL, "50");
+
+        final ChaiProvider provider = ChaiProviderFactory.createProvider(chaiConfig);
+        final DirectoryChangeFeed feed = DirectoryChangeFeed.forConfiguration(chaiConfig);
+        try {
+            waitFor(feed, 1);
+            Assert.assertEquals(DirectoryChangeFeed.Mode.CHANGELOG, feed.getActiveMode());
+            Assert.assertTrue(feed.isConnected());
+
+            final SearchHelper searchHelper = new SearchHelper("(objectClass=person)");
+            Assert.assertEquals("one", provider.readStringAttribute("cn=user1,o=test", "description"));
+            Assert.assertEquals(1, provider.search("o=test", searchHelper).size());
+
+            // changes made by another client are not seen until they appear in the change log
+            directory.putEntry("cn=user1,o=test", values("objectClass", "person", "description", "two"));
+            directory.putEntry("cn=user2,o=test", values("objectClass", "person", "description", "x"));
+            Assert.assertEquals("one", provider.readStringAttribute("cn=user1,o=test", "description"));
+
+            directory.putEntry("changeNumber=2,cn=changelog", values("changeNumber", "2", "targetDN", "cn=user1,o=test", "changeType", "modify"));
+            directory.putEntry("changeNumber=3,cn=changelog", values("changeNumber", "3", "targetDN", "cn=user2,o=test", "changeType", "add"));
+            waitFor(feed, 3);
+
+            Assert.assertEquals("two", provider.readStringAttribute("cn=user1,o=test", "description"));
+            Assert.assertEquals(2, provider.search("o=test", searchHelper).size());
+
+            // local modifications invalidate the modified entry immediately
+            provider.writeStringAttribute("cn=user1,o=test", "description", Collections.singleton("three"), true);
+            Assert.assertEquals("three", provider.readStringAttribute("cn=user1,o=test", "description"));
+        } finally {
+            feed.release();
+            provider.close();
+        }
+
+        Assert.assertFalse(feed.isRunning());
+    }
+
+    public void testChangelogGap()
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.CACHE_ENABLE, "true");
+        chaiConfig.setSetting(ChaiSetting.CACHE_MAXIMUM_AGE, "600000");
+        chaiConfig.setSetting(ChaiSetting.CACHE_CHANGE_FEED_ENABLE, "true");
+        chaiConfig.setSetting(ChaiSetting.CACHE_CHANGE_FEED_POLL_INTERVAL, "50");
+
+        final ChaiProvider provider = ChaiProviderFactory.createProvider(chaiConfig);
+        final DirectoryChangeFeed feed = DirectoryChangeFeed.forConfiguration(chaiConfig);
+        try {
+            waitFor(feed, 1);
+            Assert.assertEquals(1, feed.getResyncCount());
+            Assert.assertEquals("one", provider.readStringAttribute("cn=user1,o=test", "description"));
+
+            // change 3, the only record of the change to user1, is missing from the batch
+            directory.putEntry("cn=user1,o=test", values("objectClass", "person", "description", "two"));
+            directory.putEntry("changeNumber=2,cn=changelog", values("changeNumber", "2", "targetDN", "o=test", "changeType", "modify"));
+            directory.putEntry("changeNumber=4,cn=changelog", values("changeNumber", "4", "targetDN", "cn=user2,o=test", "changeType", "add"));
+            waitFor(feed, 4);
+            Assert.assertEquals(2, feed.getResyncCount());
+            Assert.assertEquals("two", provider.readStringAttribute("cn=user1,o=test", "description"));
+
+            // the directory reports later changes, but the change log no longer holds any of them
+            directory.putEntry("cn=user1,o=test", values("objectClass", "person", "description", "three"));
+            directory.putEntry("", values("objectClass", "top", "lastChangeNumber", "1200"));
+            waitFor(feed, 5);
+            Assert.assertEquals(3, feed.getResyncCount());
+            Assert.assertEquals("three", provider.readStringAttribute("cn=user1,o=test", "description"));
+
+            // polling resumes after the reported change number
+            directory.putEntry("cn=user1,o=test", values("objectClass", "person", "description", "four"));
+            directory.putEntry("changeNumber=1201,cn=changelog", values("changeNumber", "1201", "targetDN", "cn=user1,o=test", "changeType", "modify"));
+            waitFor(feed, 6);
+            Assert.assertEquals(3, feed.getResyncCount());
+            Assert.assertEquals("four", provider.readStringAttribute("cn=user1,o=test", "description"));
+        } finally {
+            feed.release();
+            provider.close();
+        }
+    }
+
+    public void testUnsupportedDirectory()
+            throws Exception
+    {
+        // a root DSE without change log attributes, so the feed never reports changes
+        directory.putEntry("", values("objectClass", "top"));
+
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.CACHE_ENABLE, "true");
+        chaiConfig.setSetting(ChaiSetting.CACHE_MAXIMUM_AGE, "600000");
+        chaiConfig.setSetting(ChaiSetting.CACHE_CHANGE_FEED_ENABLE, "true");
+
+        final ChaiProvider provider = ChaiProviderFactory.createProvider(chaiConfig);
+        final DirectoryChangeFeed feed = DirectoryChangeFeed.forConfiguration(chaiConfig);
+        try {
+            final SearchHelper searchHelper = new SearchHelper("(objectClass=person)");
+            Assert.assertEquals(1, provider.search("o=test", searchHelper).size());
+            directory.putEntry("cn=user2,o=test", values("objectClass", "person", "description", "x"));
+            Assert.assertFalse(feed.isConnected());
+
+            // without a connected feed a local modification clears every cached result, not just the modified entry
+            provider.writeStringAttribute("cn=user1,o=test", "description", Collections.singleton("three"), true);
+            Assert.assertEquals(2, provider.search("o=test", searchHelper).size());
+        } finally {
+            feed.release();
+            provider.close();
+        }
+    }
+
+    private static void waitFor(final DirectoryChangeFeed feed, final long eventCount)
+            throws InterruptedException
+    {
+        final long endTime = System.currentTimeMillis() + 10 * 1000;
+        while (feed.getEventCount() < eventCount && System.currentTimeMillis() < endTime) {
+            Thread.sleep(20);
+        }
+        Assert.assertTrue("timed out waiting for change feed events", feed.getEventCount() >= eventCount);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.util.ConfigObjectRecord;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.StringTokenizer;
+
+/**
+ * Checks that {@link ConfigObjectRecord#parseString(String)} splits stored values the same way the original
+ * {@link StringTokenizer} based parser did, including empty fields and leading separators.
+ */
+public class ConfigObjectRecordTester extends TestCase {
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * The original parser, returning the type, guids and payload, or null if the value was rejected.
+     */
+    private static List<String> tokenizerParse(final String input)
+    {
+        final StringTokenizer st = new StringTokenizer(input, ConfigObjectRecord.RECORD_SEPERATOR);
+        try {
+            final String recordType = st.nextToken();
+            final String guid1 = st.nextToken();
+            final String guid2 = st.nextToken();
+            String payload = st.nextToken("");
+            if (payload.startsWith(ConfigObjectRecord.RECORD_SEPERATOR)) {
+                payload = payload.substring(ConfigObjectRecord.RECORD_SEPERATOR.length());
+            }
+            return Arrays.asList(recordType, guid1, guid2, payload);
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    private static List<String> parse(final String input)
+    {
+        try {
+            final ConfigObjectRecord record = ConfigObjectRecord.parseString(input);
+            return Arrays.asList(record.getRecordType(), record.getGuid1(), record.getGuid2(), record.getPayload());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void assertParse(final String input, final String... expected)
+    {
+        Assert.assertEquals(input, expected.length == 0 ? null : Arrays.asList(expected), parse(input));
+    }
+
+    public void testFields()
+    {
+        assertParse("0001#.#.#<xml/>", "0001", ".", ".", "<xml/>");
+        assertParse("0002#{3F25}#guid2#a#b##c", "0002", "{3F25}", "guid2", "a#b##c");
+        assertParse("0001#.#.#", "0001", ".", ".", "");
+        assertParse("0001#.#.##", "0001", ".", ".", "#");
+        assertParse("0001#.#.###payload", "0001", ".", ".", "##payload");
+    }
+
+    public void testEmptyFieldsAndLeadingSeparators()
+    {
+        // empty type and guid fields are skipped, so the next value moves up
+        assertParse("#0001#a#b#payload", "0001", "a", "b", "payload");
+        assertParse("###0001#a#b#payload", "0001", "a", "b", "payload");
+        assertParse("0001##a#b#payload", "0001", "a", "b", "payload");
+        assertParse("0001#a###b#payload", "0001", "a", "b", "payload");
+        assertParse("0001#a#b##payload", "0001", "a", "b", "#payload");
+    }
+
+    public void testIncomplete()
+    {
+        assertParse("");
+        assertParse("#");
+        assertParse("####");
+        assertParse("0001");
+        assertParse("0001#a");
+        assertParse("0001#a#b");
+        assertParse("0001##a##b");
+    }
+
+    public void testMatchesTokenizer()
+    {
+        // every string of up to eight characters made of a separator and two other characters
+        final char[] alphabet = {'#', 'a', '.'};
+        for (int length = 0; length <= 8; length++) {
+            final int combinations = (int) Math.pow(alphabet.length, length);
+            for (int n = 0; n < combinations; n++) {
+                final StringBuilder sb = new StringBuilder();
+                for (int i = 0, remaining = n; i < length; i++, remaining /= alphabet.length) {
+                    sb.append(alphabet[remaining % alphabet.length]);
+                }
+                final String input = sb.toString();
+                Assert.assertEquals(input, tokenizerParse(input), parse(input));
+            }
+        }
+    }
+
+    public void testPayloadReadsHaveNoSideEffects()
+            throws Exception
+    {
+        final ConfigObjectRecord record = ConfigObjectRecord.parseString("0001#a#b#payload");
+        final Thread[] threads = new Thread[8];
+        final String[] payloads = new String[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run()
+                {
+                    payloads[index] = record.getPayload();
+                }
+            };
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        for (final String payload : payloads) {
+            Assert.assertEquals("payload", payload);
+        }
+        Assert.assertEquals("payload", record.getPayload());
+        Assert.assertEquals("0001#a#b#payload", record.toString());
+    }
+
+    public void testToString()
+    {
+        for (final String input : new String[]{"0001#.#.#<xml/>", "0001#a#b#", "0001#a#b#p#q"}) {
+            Assert.assertEquals(input, ConfigObjectRecord.parseString(input).toString());
+        }
+    }
+}
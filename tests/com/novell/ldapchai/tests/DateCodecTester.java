@@ -0,0 +1,136 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.util.internal.DateCodec;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Checks {@link DateCodec} against known values and against {@link SimpleDateFormat}.
+ */
+public class DateCodecTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final long NOON_2014 = 1388577600000L; // 2014-01-01T12:00:00Z
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public void testFractionalSeconds()
+            throws Exception
+    {
+        Assert.assertEquals(NOON_2014, DateCodec.parseGeneralizedTime("20140101120000Z").getTime());
+        Assert.assertEquals(NOON_2014 + 123, DateCodec.parseGeneralizedTime("20140101120000.123Z").getTime());
+        Assert.assertEquals(NOON_2014 + 500, DateCodec.parseGeneralizedTime("20140101120000.5Z").getTime());
+        Assert.assertEquals(NOON_2014 + 100, DateCodec.parseGeneralizedTime("20140101120000,1Z").getTime());
+        Assert.assertEquals(NOON_2014 + 123, DateCodec.parseGeneralizedTime("20140101120000.123999Z").getTime());
+        assertInvalid("20140101120000.Z");
+    }
+
+    public void testOffsets()
+            throws Exception
+    {
+        Assert.assertEquals(NOON_2014 - 90 * 60 * 1000, DateCodec.parseGeneralizedTime("20140101120000+0130").getTime());
+        Assert.assertEquals(NOON_2014 + 5 * 60 * 60 * 1000, DateCodec.parseGeneralizedTime("20140101120000-05").getTime());
+        Assert.assertEquals(NOON_2014 - 60 * 60 * 1000 + 250, DateCodec.parseGeneralizedTime("20140101120000.25+0100").getTime());
+        Assert.assertEquals(NOON_2014, DateCodec.parseGeneralizedTime("20140101120000z").getTime());
+        Assert.assertEquals(NOON_2014, DateCodec.parseChaiTimestamp("2014-01-01 13:00:00 +0100").getTime());
+        assertInvalid("20140101120000");
+        assertInvalid("20140101120000+2400");
+        assertInvalid("20140101120000Zjunk");
+    }
+
+    public void testPre1970()
+            throws Exception
+    {
+        Assert.assertEquals(-2208988800000L, DateCodec.parseGeneralizedTime("19000101000000Z").getTime());
+        Assert.assertEquals(DateCodec.WINDOWS_EPOCH_OFFSET_MS, DateCodec.parseGeneralizedTime("16010101000000Z").getTime());
+        Assert.assertEquals(-14182940000L, DateCodec.parseGeneralizedTime("19690720201740Z").getTime());
+
+        Assert.assertEquals("19691231235959Z", DateCodec.formatGeneralizedTime(new Date(-1)));
+        Assert.assertEquals("19000101000000Z", DateCodec.formatGeneralizedTime(new Date(-2208988800000L)));
+        Assert.assertEquals("1969-12-31 23:59:59 +0000", DateCodec.formatChaiTimestamp(new Date(-1)));
+    }
+
+    public void testWindowsFileTime()
+            throws Exception
+    {
+        Assert.assertEquals(DateCodec.WINDOWS_EPOCH_OFFSET_MS, DateCodec.parseWindowsFileTime("0").getTime());
+        Assert.assertEquals("0", DateCodec.formatWindowsFileTime(new Date(DateCodec.WINDOWS_EPOCH_OFFSET_MS)));
+        Assert.assertEquals("116444736000000000", DateCodec.formatWindowsFileTime(new Date(0)));
+
+        // Active Directory uses the largest value for "never"
+        final Date never = DateCodec.parseWindowsFileTime(String.valueOf(Long.MAX_VALUE));
+        Assert.assertEquals(910692730085477L, never.getTime());
+        Assert.assertEquals("9223372036854770000", DateCodec.formatWindowsFileTime(never));
+
+        try {
+            DateCodec.parseWindowsFileTime("9223372036854775808");
+            Assert.fail("value larger than a long should not parse");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    public void testMatchesSimpleDateFormat()
+            throws Exception
+    {
+        final SimpleDateFormat zuluFormat = new SimpleDateFormat("yyyyMMddHHmmss'Z'");
+        zuluFormat.setTimeZone(TimeZone.getTimeZone("Zulu"));
+
+        final long minTime = DateCodec.parseGeneralizedTime("16010101000000Z").getTime();
+        final long maxTime = DateCodec.parseGeneralizedTime("99991231235959Z").getTime();
+        final Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            final long time = minTime + (long) (random.nextDouble() * (maxTime - minTime)) / 1000 * 1000;
+            final Date date = new Date(time);
+            final String expected = zuluFormat.format(date);
+            Assert.assertEquals(expected, DateCodec.formatGeneralizedTime(date));
+            Assert.assertEquals(zuluFormat.parse(expected), DateCodec.parseGeneralizedTime(expected));
+        }
+    }
+
+    public void testOutOfRange()
+            throws Exception
+    {
+        assertInvalid("20140230000000Z");
+        assertInvalid("20141301000000Z");
+        assertInvalid("20140101240000Z");
+        assertInvalid("2014010112000Z");
+        assertInvalid("2014O101120000Z");
+        Assert.assertEquals(951782400000L, DateCodec.parseGeneralizedTime("20000229000000Z").getTime());
+        assertInvalid("19000229000000Z");
+    }
+
+    private static void assertInvalid(final String value)
+    {
+        try {
+            DateCodec.parseGeneralizedTime(value);
+            Assert.fail("'" + value + "' should not parse");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
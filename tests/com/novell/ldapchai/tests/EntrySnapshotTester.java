@@ -0,0 +1,108 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.ChaiFactory;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import com.novell.ldapchai.tests.util.ServerConditions;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Tests that reads of prefetched attributes are answered from the entry snapshot, using an in memory directory.
+ */
+public class EntrySnapshotTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://snapshot";
+    private static final String USER_DN = "cn=user1,o=test";
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        final InMemoryDirectory directory = new InMemoryDirectory();
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        values.put("objectClass", Arrays.asList("top", "person"));
+        values.put("description", Collections.singletonList("one"));
+        values.put("loginDisabled", Collections.singletonList("TRUE"));
+        values.put("loginTime", Collections.singletonList("20100101120000Z"));
+        directory.putEntry("o=test", Collections.singletonMap("objectClass", Collections.singletonList("organization")));
+        directory.putEntry(USER_DN, values);
+        InMemoryDirectory.register(LDAP_URL, directory);
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    public void testPrefetch()
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        final ChaiProvider provider = ChaiProviderFactory.createProvider(chaiConfig);
+        final ServerConditions conditions = ServerConditions.forURL(LDAP_URL);
+
+        try {
+            final ChaiUser user = ChaiFactory.createChaiUser(USER_DN, provider);
+            final Set<String> attributes = new HashSet<String>(user.getStatusAttributes());
+            attributes.addAll(Arrays.asList("description", "loginTime", "objectClass", "mail"));
+            user.prefetch(attributes);
+
+            // every prefetched attribute, including one without a value, is read without a directory operation
+            final long operationCount = conditions.getOperationCount();
+            Assert.assertEquals("one", user.readStringAttribute("DESCRIPTION"));
+            Assert.assertNull(user.readStringAttribute("mail"));
+            Assert.assertEquals(2, user.readMultiStringAttribute("objectClass").size());
+            Assert.assertNotNull(user.readDateAttribute("loginTime"));
+            Assert.assertFalse(user.isAccountEnabled());
+            Assert.assertEquals(2, user.readStringAttributes(new HashSet<String>(Arrays.asList("description", "mail", "loginTime"))).size());
+            Assert.assertEquals(operationCount, conditions.getOperationCount());
+
+            // other attributes are still read from the directory
+            Assert.assertNull(user.readStringAttribute("telephoneNumber"));
+            Assert.assertEquals(operationCount + 1, conditions.getOperationCount());
+
+            // a modification through the entry discards the snapshot
+            user.writeStringAttribute("description", "two");
+            Assert.assertEquals("two", user.readStringAttribute("description"));
+
+            user.prefetch(Collections.singleton("description"));
+            user.clearSnapshot();
+            final long clearedCount = conditions.getOperationCount();
+            Assert.assertEquals("two", user.readStringAttribute("description"));
+            Assert.assertEquals(clearedCount + 1, conditions.getOperationCount());
+        } finally {
+            provider.close();
+        }
+    }
+}
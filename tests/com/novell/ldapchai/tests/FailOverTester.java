@@ -26,12 +26,14 @@ import com.novell.ldapchai.provider.ChaiConfiguration;
 import com.novell.ldapchai.provider.ChaiProvider;
 import com.novell.ldapchai.provider.ChaiProviderFactory;
 import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.FailOverHarness;
 import com.novell.ldapchai.tests.util.TcpProxy;
 import junit.framework.TestCase;
 import org.junit.Assert;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.List;
 
 /**
  */
@@ -124,6 +126,34 @@ public class FailOverTester extends TestCase {
         TestHelper.doBasicNonDestructiveUserTest(testUser);
     }
 
+    public void testFailOverTiming()
+            throws Exception
+    {
+        TestHelper.configureLogging();
+        final ChaiConfiguration baseConfig = makeChaiConfig(TestHelper.bindURL);
+        final FailOverHarness harness = new FailOverHarness(figureDestSocketAddress(), basePort + 10, 2, baseConfig, new URI(TestHelper.bindURL).getScheme());
+
+        final FailOverHarness.Probe probe = new FailOverHarness.Probe() {
+            public void probe(final ChaiProvider provider)
+                    throws Exception
+            {
+                provider.readStringAttribute(TestHelper.bindDN, "objectClass");
+            }
+        };
+
+        TcpProxy.setDoOutput(false);
+        try {
+            final List<FailOverHarness.Report> reports = harness.runAll(FailOverHarness.standardScenarios(), probe, 100);
+            for (final FailOverHarness.Report report : reports) {
+                System.out.println(report);
+                Assert.assertNull(report.getStepError());
+                Assert.assertTrue(report.getTimeToFailOver() >= 0);
+            }
+        } finally {
+            TcpProxy.setDoOutput(true);
+        }
+    }
+
     private static InetSocketAddress figureDestSocketAddress()
             throws Exception
     {
@@ -0,0 +1,157 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.provider.*;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import com.novell.ldapchai.util.LdifReader;
+import com.novell.ldapchai.util.LdifWriter;
+import com.novell.ldapchai.util.SearchHelper;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.*;
+
+/**
+ * Exports an in memory directory with {@link LdifWriter} and imports it into another with {@link LdifReader}.
+ */
+public class LdifTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String SOURCE_URL = "ldap://ldif-source";
+    private static final String TARGET_URL = "ldap://ldif-target";
+
+    private static final byte[] PHOTO = new byte[]{(byte) 0xFF, (byte) 0xD8, 0, 1, 2, (byte) 0x80, (byte) 0xFE};
+
+// ------------------------------ FIELDS ------------------------------
+
+    private InMemoryDirectory targetDirectory;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static Map<String, List<String>> values(final String... namesAndValues)
+    {
+        final Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            List<String> list = values.get(namesAndValues[i]);
+            if (list == null) {
+                list = new ArrayList<String>();
+                values.put(namesAndValues[i], list);
+            }
+            list.add(namesAndValues[i + 1]);
+        }
+        return values;
+    }
+
+    private static ChaiProvider createProvider(final String ldapURL)
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(ldapURL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        return ChaiProviderFactory.createProvider(chaiConfig);
+    }
+
+    protected void setUp()
+            throws Exception
+    {
+        final InMemoryDirectory sourceDirectory = new InMemoryDirectory();
+        sourceDirectory.putEntry("o=test", values("objectClass", "organization", "o", "test"));
+        sourceDirectory.putEntry("ou=people,o=test", values("objectClass", "organizationalUnit", "ou", "people"));
+        sourceDirectory.putEntry("cn=user1,ou=people,o=test", values(
+                "objectClass", "person",
+                "cn", "user1",
+                "sn", "M\u00fcller",
+                "description", " leading space",
+                "description", "a long value that will need to be folded across more than one line of the ldif output file",
+                "jpegPhoto", new String(PHOTO, "ISO-8859-1")
+        ));
+        InMemoryDirectory.register(SOURCE_URL, sourceDirectory);
+
+        targetDirectory = new InMemoryDirectory();
+        InMemoryDirectory.register(TARGET_URL, targetDirectory);
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        InMemoryDirectory.remove(SOURCE_URL);
+        InMemoryDirectory.remove(TARGET_URL);
+    }
+
+    public void testValueEncoding()
+            throws Exception
+    {
+        final StringWriter stringWriter = new StringWriter();
+        final LdifWriter ldifWriter = new LdifWriter(stringWriter);
+        ldifWriter.writeEntry("cn=user1,o=test", values("sn", "M\u00fcller", "description", " x", "cn", "user1"));
+
+        final String ldif = stringWriter.toString();
+        Assert.assertTrue(ldif.contains("cn: user1\n"));
+        Assert.assertTrue(ldif.contains("sn:: TcO8bGxlcg==\n"));
+        Assert.assertTrue(ldif.contains("description:: IHg=\n"));
+
+        final LdifReader.Record record = new LdifReader(new StringReader(ldif)).readRecord();
+        Assert.assertEquals("cn=user1,o=test", record.getDN());
+        Assert.assertEquals("M\u00fcller", record.getAttributes().get("sn").get(0));
+        Assert.assertEquals(" x", record.getAttributes().get("description").get(0));
+    }
+
+    public void testExportImport()
+            throws Exception
+    {
+        final ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        final ChaiProvider sourceProvider = createProvider(SOURCE_URL);
+        try {
+            final LdifWriter ldifWriter = LdifWriter.forChannel(Channels.newChannel(exported), true);
+            ldifWriter.setBinaryAttributes(Collections.singleton("jpegPhoto"));
+            final long count = ldifWriter.writeSearch(sourceProvider, "o=test", new SearchHelper("(objectClass=*)"));
+            ldifWriter.close();
+            Assert.assertEquals(3, count);
+        } finally {
+            sourceProvider.close();
+        }
+
+        final ChaiProvider targetProvider = createProvider(TARGET_URL);
+        try {
+            final ChaiWritePipeline pipeline = new ChaiWritePipeline(targetProvider);
+            pipeline.setMaxOutstanding(4);
+
+            final List<ChaiWritePipeline.Result> failures = new ArrayList<ChaiWritePipeline.Result>();
+            final LdifReader ldifReader = LdifReader.forChannel(Channels.newChannel(new ByteArrayInputStream(exported.toByteArray())), true);
+            final long count = ldifReader.importEntries(pipeline, 2, failures);
+            ldifReader.close();
+
+            Assert.assertTrue(failures.toString(), failures.isEmpty());
+            Assert.assertEquals(3, count);
+            Assert.assertEquals(3, targetDirectory.size());
+
+            final String userDN = "cn=user1,ou=people,o=test";
+            Assert.assertEquals("M\u00fcller", targetProvider.readStringAttribute(userDN, "sn"));
+            Assert.assertEquals(2, targetProvider.readMultiStringAttribute(userDN, "description").size());
+            Assert.assertTrue(targetProvider.readMultiStringAttribute(userDN, "description").contains(" leading space"));
+            Assert.assertTrue(Arrays.equals(PHOTO, targetProvider.readMultiByteAttribute(userDN, "jpegPhoto")[0]));
+        } finally {
+            targetProvider.close();
+        }
+    }
+}
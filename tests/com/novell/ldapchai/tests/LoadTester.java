@@ -0,0 +1,72 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.ChaiEntry;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.LoadGenerator;
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LoadTester extends TestCase {
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        TestHelper.setUp();
+    }
+
+    public void testMixedLoad()
+            throws Exception
+    {
+        final ChaiEntry testContainer = TestHelper.createTestContainer();
+
+        final List<String> userDNs = new ArrayList<String>();
+        for (int i = 0; i < TestHelper.testBulkIterations; i++) {
+            final String dn = "cn=loadUser" + i + "," + testContainer.getEntryDN();
+            final Map<String, String> props = new HashMap<String, String>();
+            props.put("givenName", "first" + i);
+            props.put("sn", "last" + i);
+            TestHelper.getProvider().createEntry(dn, "inetOrgPerson", props);
+            userDNs.add(dn);
+        }
+
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(TestHelper.bindURL, TestHelper.bindDN, TestHelper.bindPW);
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, TestHelper.testProviderImpl);
+        chaiConfig.setSetting(ChaiSetting.PROMISCUOUS_SSL, "true");
+        chaiConfig.setSetting(ChaiSetting.STATISTICS_ENABLE, "true");
+
+        final LoadGenerator.Report report = new LoadGenerator(chaiConfig, userDNs)
+                .setThreads(TestHelper.testBulkIterations)
+                .setDuration(10 * 1000)
+                .run();
+
+        System.out.println(report);
+        Assert.assertTrue(report.getTotalCount() > 0);
+        Assert.assertNotNull(report.getProviderStatistics());
+    }
+}
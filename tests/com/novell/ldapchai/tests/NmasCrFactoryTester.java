@@ -0,0 +1,226 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.ChaiConstant;
+import com.novell.ldapchai.cr.ChallengeSet;
+import com.novell.ldapchai.impl.edir.NmasCrFactory;
+import com.novell.ldapchai.impl.edir.entry.NspmPasswordPolicy;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import com.novell.ldapchai.tests.util.ServerConditions;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+/**
+ * Reads NMAS challenge set policies from an in memory directory, checking when
+ * {@link NmasCrFactory#readAssignedChallengeSet(ChaiProvider, com.novell.ldapchai.ChaiPasswordPolicy, Locale)} re-uses a
+ * cached set, revalidates it with the modifyTimestamp, reads it again, or does not cache it at all.
+ */
+public class NmasCrFactoryTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String CHALLENGE_SET_DN = "cn=challenge set,cn=security";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private String ldapURL;
+    private ChaiProvider provider;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void tearDown()
+            throws Exception
+    {
+        if (provider != null) {
+            provider.close();
+        }
+        InMemoryDirectory.remove(ldapURL);
+        ServerConditions.forURL(ldapURL).reset();
+    }
+
+    /**
+     * Create a provider with its own bind URL, so cached sets of other tests are not seen.
+     */
+    private void createProvider(final String maxAge)
+            throws Exception
+    {
+        ldapURL = "ldap://nmascrfactory-" + getName().toLowerCase();
+        writeChallengeSet("What is your name?", "20140101120000Z");
+
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(ldapURL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.EDIRECTORY_CHALLENGE_SET_CACHE_MAX_AGE, maxAge);
+        provider = ChaiProviderFactory.createProvider(chaiConfig);
+    }
+
+    private void writeChallengeSet(final String question, final String modifyTimestamp)
+    {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        values.put("objectClass", Collections.singletonList("nsimChallengeSet"));
+        values.put("nsimRequiredQuestions", Collections.singletonList(
+                "<RequiredQuestions><Question MinLength=\"2\" MaxLength=\"100\">" + question + "</Question></RequiredQuestions>"));
+        values.put(ChaiConstant.ATTR_EDIR_MODIFIED_TIMESTAMP, Collections.singletonList(modifyTimestamp));
+        InMemoryDirectory.forURL(ldapURL).putEntry(CHALLENGE_SET_DN, values);
+    }
+
+    /**
+     * Read the challenge set, returning it along with the number of ldap operations the read used.
+     */
+    private ChallengeSet readChallengeSet(final long[] operations)
+            throws Exception
+    {
+        final ServerConditions conditions = ServerConditions.forURL(ldapURL);
+        final long before = conditions.getOperationCount();
+        final ChallengeSet challengeSet = NmasCrFactory.readAssignedChallengeSet(provider, passwordPolicy(), Locale.ENGLISH);
+        operations[0] = conditions.getOperationCount() - before;
+        return challengeSet;
+    }
+
+    /**
+     * A password policy naming the challenge set, the only part of the policy the factory reads.
+     */
+    private static NspmPasswordPolicy passwordPolicy()
+    {
+        return (NspmPasswordPolicy) Proxy.newProxyInstance(
+                NspmPasswordPolicy.class.getClassLoader(),
+                new Class<?>[]{NspmPasswordPolicy.class},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args)
+                    {
+                        if ("getChallengeSetDN".equals(method.getName())) {
+                            return CHALLENGE_SET_DN;
+                        }
+                        if ("readStringAttribute".equals(method.getName())) {
+                            return "guid";
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static String questionText(final ChallengeSet challengeSet)
+    {
+        Assert.assertEquals(1, challengeSet.getChallenges().size());
+        return challengeSet.getChallenges().get(0).getChallengeText();
+    }
+
+    public void testCacheHit()
+            throws Exception
+    {
+        createProvider("60000");
+        final long[] operations = new long[1];
+
+        final ChallengeSet first = readChallengeSet(operations);
+        Assert.assertEquals(1, operations[0]);
+        Assert.assertEquals("What is your name?", questionText(first));
+        Assert.assertEquals("guid", first.getIdentifier());
+        Assert.assertEquals(2, first.getChallenges().get(0).getMinLength());
+
+        // a set younger than the max age is returned without reading the directory
+        writeChallengeSet("Where were you born?", "20140101130000Z");
+        final ChallengeSet second = readChallengeSet(operations);
+        Assert.assertEquals(0, operations[0]);
+        Assert.assertSame(first, second);
+
+        // the shared set is locked
+        try {
+            first.getChallenges().get(0).setChallengeText("changed");
+            Assert.fail("a cached challenge set should be locked");
+        } catch (Exception e) {
+            // expected
+        }
+    }
+
+    public void testModifyTimestampRevalidation()
+            throws Exception
+    {
+        createProvider("0");
+        final long[] operations = new long[1];
+
+        final ChallengeSet first = readChallengeSet(operations);
+        Assert.assertEquals(1, operations[0]);
+
+        // an unchanged modifyTimestamp keeps the cached set, even though the questions were changed underneath it
+        writeChallengeSet("Where were you born?", "20140101120000Z");
+        final ChallengeSet second = readChallengeSet(operations);
+        Assert.assertEquals(1, operations[0]);
+        Assert.assertSame(first, second);
+
+        // a changed modifyTimestamp causes the full entry to be read again
+        writeChallengeSet("Where were you born?", "20140101130000Z");
+        final ChallengeSet third = readChallengeSet(operations);
+        Assert.assertEquals(2, operations[0]);
+        Assert.assertNotSame(first, third);
+        Assert.assertEquals("Where were you born?", questionText(third));
+
+        final ChallengeSet fourth = readChallengeSet(operations);
+        Assert.assertEquals(1, operations[0]);
+        Assert.assertSame(third, fourth);
+    }
+
+    public void testMaxAgeExpiry()
+            throws Exception
+    {
+        createProvider("200");
+        final long[] operations = new long[1];
+
+        final ChallengeSet first = readChallengeSet(operations);
+        writeChallengeSet("Where were you born?", "20140101130000Z");
+        Assert.assertSame(first, readChallengeSet(operations));
+        Assert.assertEquals(0, operations[0]);
+
+        Thread.sleep(300);
+
+        final ChallengeSet expired = readChallengeSet(operations);
+        Assert.assertEquals(2, operations[0]);
+        Assert.assertEquals("Where were you born?", questionText(expired));
+
+        // the new set is cached for the max age again
+        Assert.assertSame(expired, readChallengeSet(operations));
+        Assert.assertEquals(0, operations[0]);
+    }
+
+    public void testNegativeMaxAgeDisablesCache()
+            throws Exception
+    {
+        createProvider("-1");
+        final long[] operations = new long[1];
+
+        final ChallengeSet first = readChallengeSet(operations);
+        Assert.assertEquals(1, operations[0]);
+        final ChallengeSet second = readChallengeSet(operations);
+        Assert.assertEquals(1, operations[0]);
+        Assert.assertNotSame(first, second);
+
+        // changes are seen immediately, even with an unchanged modifyTimestamp
+        writeChallengeSet("Where were you born?", "20140101120000Z");
+        Assert.assertEquals("Where were you born?", questionText(readChallengeSet(operations)));
+    }
+}
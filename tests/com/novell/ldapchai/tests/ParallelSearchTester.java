@@ -0,0 +1,145 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.provider.*;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import com.novell.ldapchai.util.SearchHelper;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Compares the results of {@link ChaiParallelSearch} with a serial search of an in memory directory.
+ */
+public class ParallelSearchTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://parallelsearch";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private final List<ChaiProvider> providers = new ArrayList<ChaiProvider>();
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static Map<String, List<String>> values(final String... namesAndValues)
+    {
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            values.put(namesAndValues[i], Collections.singletonList(namesAndValues[i + 1]));
+        }
+        return values;
+    }
+
+    protected void setUp()
+            throws Exception
+    {
+        final InMemoryDirectory directory = new InMemoryDirectory();
+        directory.putEntry("o=test", values("objectClass", "organization"));
+        directory.putEntry("cn=admin,o=test", values("objectClass", "person", "uid", "admin"));
+        for (final String ou : new String[]{"east", "west", "north"}) {
+            directory.putEntry("ou=" + ou + ",o=test", values("objectClass", "organizationalUnit"));
+            directory.putEntry("ou=staff,ou=" + ou + ",o=test", values("objectClass", "organizationalUnit"));
+            for (int i = 0; i < 10; i++) {
+                final String uid = (char) ('a' + i) + ou + i;
+                directory.putEntry("cn=" + uid + ",ou=staff,ou=" + ou + ",o=test", values("objectClass", "person", "uid", uid));
+            }
+        }
+        directory.putEntry("cn=nouid,ou=east,o=test", values("objectClass", "person"));
+        directory.putEntry("cn=sub,cn=admin,o=test", values("objectClass", "person", "uid", "sub"));
+        InMemoryDirectory.register(LDAP_URL, directory);
+
+        for (int i = 0; i < 2; i++) {
+            final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+            chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+            providers.add(ChaiProviderFactory.createProvider(chaiConfig));
+        }
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        for (final ChaiProvider provider : providers) {
+            provider.close();
+        }
+        providers.clear();
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    public void testContainerPartitions()
+            throws Exception
+    {
+        final SearchHelper searchHelper = new SearchHelper("(objectClass=person)");
+        final Set<String> expected = providers.get(0).searchMultiValues("o=test", searchHelper).keySet();
+        Assert.assertEquals(33, expected.size());
+
+        final ChaiParallelSearch parallelSearch = new ChaiParallelSearch(providers);
+        parallelSearch.setThreads(3);
+        Assert.assertEquals(expected, parallelSearch.searchMultiValues("o=test", searchHelper).keySet());
+    }
+
+    public void testSingleProvider()
+            throws Exception
+    {
+        final SearchHelper searchHelper = new SearchHelper("(objectClass=person)");
+        final Set<String> expected = providers.get(0).searchMultiValues("o=test", searchHelper).keySet();
+
+        // the default thread count is capped at the single provider, so it is never used from two threads
+        final ChaiParallelSearch parallelSearch = new ChaiParallelSearch(providers.get(0));
+        Assert.assertEquals(expected, parallelSearch.searchMultiValues("o=test", searchHelper).keySet());
+        Assert.assertFalse(parallelSearch.isShareProviders());
+    }
+
+    public void testFilterPartitions()
+            throws Exception
+    {
+        final SearchHelper searchHelper = new SearchHelper("(objectClass=person)");
+        final Set<String> expected = providers.get(0).searchMultiValues("o=test", searchHelper).keySet();
+
+        final ChaiParallelSearch parallelSearch = new ChaiParallelSearch(providers);
+        parallelSearch.setPartitionFilters(ChaiParallelSearch.prefixPartitions("uid", "a", "b", "c", "d"));
+
+        final List<String> results = new ArrayList<String>();
+        final long count = parallelSearch.search("o=test", searchHelper, new SearchResultHandler() {
+            public boolean handleResult(final String entryDN, final Map<String, List<String>> attributeValues)
+            {
+                results.add(entryDN);
+                return true;
+            }
+        });
+
+        Assert.assertEquals(expected.size(), count);
+        Assert.assertEquals(expected.size(), results.size());
+        Assert.assertEquals(expected, new HashSet<String>(results));
+    }
+
+    public void testMaxResults()
+            throws Exception
+    {
+        final SearchHelper searchHelper = new SearchHelper("(objectClass=person)");
+        searchHelper.setMaxResults(5);
+
+        final ChaiParallelSearch parallelSearch = new ChaiParallelSearch(providers);
+        Assert.assertEquals(5, parallelSearch.searchMultiValues("o=test", searchHelper).size());
+    }
+}
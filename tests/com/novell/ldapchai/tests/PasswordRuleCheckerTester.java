@@ -0,0 +1,201 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.ChaiPasswordRule;
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.util.DefaultChaiPasswordPolicy;
+import com.novell.ldapchai.util.PasswordRuleChecker;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Evaluates each rule of {@link PasswordRuleChecker}, including passwords with characters outside the basic
+ * multilingual plane, which are two chars but one code point.
+ */
+public class PasswordRuleCheckerTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String BOLD_UPPER_A = "\uD835\uDC00"; // U+1D400, upper case letter
+    private static final String BOLD_LOWER_A = "\uD835\uDC1A"; // U+1D41A, lower case letter
+    private static final String BOLD_DIGIT_ZERO = "\uD835\uDFCE"; // U+1D7CE, digit
+    private static final String EMOJI = "\uD83D\uDE00"; // U+1F600, neither letter nor digit
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static PasswordRuleChecker checker(final Object... rulesAndValues)
+    {
+        final Map<ChaiPasswordRule, String> rules = new HashMap<ChaiPasswordRule, String>();
+        for (int i = 0; i < rulesAndValues.length; i += 2) {
+            rules.put((ChaiPasswordRule) rulesAndValues[i], (String) rulesAndValues[i + 1]);
+        }
+        return new PasswordRuleChecker(DefaultChaiPasswordPolicy.createDefaultChaiPasswordPolicyByRule(rules));
+    }
+
+    private static void assertErrors(final PasswordRuleChecker checker, final String password, final ChaiError... expected)
+    {
+        Assert.assertEquals(password, Arrays.asList(expected), checker.check(password));
+    }
+
+    public void testPolicyDisabled()
+    {
+        final PasswordRuleChecker checker = checker(ChaiPasswordRule.PolicyEnabled, "false", ChaiPasswordRule.MinimumLength, "10");
+        assertErrors(checker, "short");
+    }
+
+    public void testLength()
+    {
+        final PasswordRuleChecker checker = checker(ChaiPasswordRule.MinimumLength, "4", ChaiPasswordRule.MaximumLength, "5");
+        assertErrors(checker, "abc", ChaiError.PASSWORD_TOO_SHORT);
+        assertErrors(checker, "abcd");
+        assertErrors(checker, "abcdef", ChaiError.PASSWORD_TOO_LONG);
+
+        // lengths are counted in code points, not chars
+        assertErrors(checker, BOLD_UPPER_A + BOLD_LOWER_A + "x", ChaiError.PASSWORD_TOO_SHORT);
+        assertErrors(checker, BOLD_UPPER_A + BOLD_LOWER_A + BOLD_UPPER_A + BOLD_LOWER_A + BOLD_UPPER_A);
+    }
+
+    public void testUpperAndLowerCase()
+    {
+        final PasswordRuleChecker checker = checker(
+                ChaiPasswordRule.MinimumUpperCase, "2", ChaiPasswordRule.MaximumUpperCase, "3",
+                ChaiPasswordRule.MinimumLowerCase, "2", ChaiPasswordRule.MaximumLowerCase, "3");
+        assertErrors(checker, "Abcde", ChaiError.PASSWORD_NOT_ENOUGH_UPPER, ChaiError.PASSWORD_TOO_MANY_LOWER);
+        assertErrors(checker, "ABCDe", ChaiError.PASSWORD_TOO_MANY_UPPER, ChaiError.PASSWORD_NOT_ENOUGH_LOWER);
+        assertErrors(checker, "ABcd");
+        assertErrors(checker, BOLD_UPPER_A + "B" + BOLD_LOWER_A + "c");
+        assertErrors(checker, BOLD_UPPER_A + BOLD_UPPER_A + BOLD_UPPER_A + BOLD_UPPER_A + "ab", ChaiError.PASSWORD_TOO_MANY_UPPER);
+    }
+
+    public void testNumeric()
+    {
+        assertErrors(checker(), "abc1", ChaiError.PASSWORD_NUMERIC_DISALLOWED);
+        assertErrors(checker(), "abc" + BOLD_DIGIT_ZERO, ChaiError.PASSWORD_NUMERIC_DISALLOWED);
+
+        final PasswordRuleChecker checker = checker(
+                ChaiPasswordRule.AllowNumeric, "true",
+                ChaiPasswordRule.MinimumNumeric, "2", ChaiPasswordRule.MaximumNumeric, "3");
+        assertErrors(checker, "abc1", ChaiError.PASSWORD_NOT_ENOUGH_NUM);
+        assertErrors(checker, "a1b" + BOLD_DIGIT_ZERO);
+        assertErrors(checker, "a1234", ChaiError.PASSWORD_TOO_MANY_NUMERIC);
+
+        final PasswordRuleChecker positionChecker = checker(
+                ChaiPasswordRule.AllowNumeric, "true",
+                ChaiPasswordRule.AllowFirstCharNumeric, "false", ChaiPasswordRule.AllowLastCharNumeric, "false");
+        assertErrors(positionChecker, "a1b");
+        assertErrors(positionChecker, "1ab", ChaiError.PASSWORD_FIRST_IS_NUMERIC);
+        assertErrors(positionChecker, BOLD_DIGIT_ZERO + "ab", ChaiError.PASSWORD_FIRST_IS_NUMERIC);
+        assertErrors(positionChecker, "ab" + BOLD_DIGIT_ZERO, ChaiError.PASSWORD_LAST_IS_NUMERIC);
+    }
+
+    public void testSpecial()
+    {
+        assertErrors(checker(), "abc!", ChaiError.PASSWORD_SPECIAL_DISALLOWED);
+        assertErrors(checker(), "abc" + EMOJI, ChaiError.PASSWORD_SPECIAL_DISALLOWED);
+
+        final PasswordRuleChecker checker = checker(
+                ChaiPasswordRule.AllowSpecial, "true",
+                ChaiPasswordRule.MinimumSpecial, "2", ChaiPasswordRule.MaximumSpecial, "2");
+        assertErrors(checker, "abc!", ChaiError.PASSWORD_NOT_ENOUGH_SPECIAL);
+        assertErrors(checker, "a!b" + EMOJI);
+        assertErrors(checker, "a!b" + EMOJI + "#", ChaiError.PASSWORD_TOO_MANY_SPECIAL);
+
+        final PasswordRuleChecker positionChecker = checker(
+                ChaiPasswordRule.AllowSpecial, "true",
+                ChaiPasswordRule.AllowFirstCharSpecial, "false", ChaiPasswordRule.AllowLastCharSpecial, "false");
+        assertErrors(positionChecker, "a!b");
+        assertErrors(positionChecker, EMOJI + "ab", ChaiError.PASSWORD_FIRST_IS_SPECIAL);
+        assertErrors(positionChecker, "ab" + EMOJI, ChaiError.PASSWORD_LAST_IS_SPECIAL);
+
+        // letters outside the basic multilingual plane are not special
+        assertErrors(positionChecker, BOLD_UPPER_A + "b" + BOLD_LOWER_A);
+    }
+
+    public void testRepeat()
+    {
+        final PasswordRuleChecker checker = checker(ChaiPasswordRule.AllowSpecial, "true", ChaiPasswordRule.MaximumRepeat, "2");
+        assertErrors(checker, "abab");
+        assertErrors(checker, "ababa", ChaiError.PASSWORD_TOO_MANY_REPEAT);
+        assertErrors(checker, EMOJI + "a" + EMOJI);
+        assertErrors(checker, EMOJI + "a" + EMOJI + "b" + EMOJI, ChaiError.PASSWORD_TOO_MANY_REPEAT);
+
+        // surrogate pairs sharing a high surrogate are different characters
+        assertErrors(checker, BOLD_UPPER_A + BOLD_LOWER_A + BOLD_DIGIT_ZERO, ChaiError.PASSWORD_NUMERIC_DISALLOWED);
+
+        final PasswordRuleChecker sequentialChecker = checker(ChaiPasswordRule.AllowSpecial, "true", ChaiPasswordRule.MaximumSequentialRepeat, "2");
+        assertErrors(sequentialChecker, "aabaa");
+        assertErrors(sequentialChecker, "abbba", ChaiError.PASSWORD_TOO_MANY_REPEAT);
+        assertErrors(sequentialChecker, "a" + EMOJI + EMOJI + "b");
+        assertErrors(sequentialChecker, "a" + EMOJI + EMOJI + EMOJI, ChaiError.PASSWORD_TOO_MANY_REPEAT);
+    }
+
+    public void testUnique()
+    {
+        final PasswordRuleChecker checker = checker(ChaiPasswordRule.AllowSpecial, "true", ChaiPasswordRule.MinimumUnique, "3");
+        assertErrors(checker, "aabb", ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE);
+        assertErrors(checker, "abc");
+        assertErrors(checker, "a" + EMOJI + EMOJI, ChaiError.PASSWORD_NOT_ENOUGH_UNIQUE);
+        assertErrors(checker, "a" + EMOJI + BOLD_UPPER_A);
+    }
+
+    public void testADComplexity()
+    {
+        final PasswordRuleChecker checker = checker(
+                ChaiPasswordRule.AllowNumeric, "true", ChaiPasswordRule.AllowSpecial, "true", ChaiPasswordRule.ADComplexity, "true");
+        assertErrors(checker, "abcdef", ChaiError.PASSWORD_BADPASSWORD);
+        assertErrors(checker, "abcDEF", ChaiError.PASSWORD_BADPASSWORD);
+        assertErrors(checker, "abcDE1");
+        assertErrors(checker, "abc12" + EMOJI);
+        assertErrors(checker, BOLD_UPPER_A + BOLD_LOWER_A + BOLD_DIGIT_ZERO);
+    }
+
+    public void testDisallowedValues()
+    {
+        final PasswordRuleChecker insensitiveChecker = checker(
+                ChaiPasswordRule.CaseSensitive, "false", ChaiPasswordRule.DisallowedValues, "password\n secret \n");
+        assertErrors(insensitiveChecker, "myPassWord", ChaiError.PASSWORD_INWORDLIST);
+        assertErrors(insensitiveChecker, "xSECRETx", ChaiError.PASSWORD_INWORDLIST);
+        assertErrors(insensitiveChecker, "passwor");
+
+        final PasswordRuleChecker sensitiveChecker = checker(
+                ChaiPasswordRule.CaseSensitive, "true", ChaiPasswordRule.DisallowedValues, "password\nsecret");
+        assertErrors(sensitiveChecker, "myPassWord");
+        assertErrors(sensitiveChecker, "mypassword", ChaiError.PASSWORD_INWORDLIST);
+    }
+
+    public void testDisallowedAttributes()
+    {
+        final PasswordRuleChecker checker = checker(ChaiPasswordRule.DisallowedAttributes, "cn\ngivenName");
+        Assert.assertEquals(Arrays.asList("cn", "givenName"), checker.getDisallowedAttributes());
+
+        final Map<String, String> attributeValues = new HashMap<String, String>();
+        attributeValues.put("CN", "JSmith");
+        attributeValues.put("givenname", " John ");
+
+        Assert.assertEquals(Collections.singletonList(ChaiError.PASSWORD_SAMEASATTR), checker.check("xxjsmithxx", attributeValues));
+        Assert.assertEquals(Collections.singletonList(ChaiError.PASSWORD_SAMEASATTR), checker.check("JOHNxx", attributeValues));
+        Assert.assertEquals(Collections.<ChaiError>emptyList(), checker.check("jsmitxjohx", attributeValues));
+
+        // without attribute values the rule is not evaluated
+        Assert.assertEquals(Collections.<ChaiError>emptyList(), checker.check("xxjsmithxx", null));
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.ChaiFactory;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.cr.*;
+import com.novell.ldapchai.exception.ChaiValidationException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Writes response sets containing markup, line breaks and CDATA terminators to an in memory directory and reads them
+ * back, checking that the stored record is escaped and that nothing is lost.
+ */
+public class ResponseSetStorageTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://responsesetstorage";
+    private static final String USER_DN = "cn=user1,o=test";
+
+    private static final String[][] CHALLENGES_AND_ANSWERS = {
+            {"What is <your> \"favourite\" & 'best' colour?", "a < b & c > d \"quoted\" 'single'"},
+            {"Where were you born?", "line one\r\nline two\rline three\nline four"},
+            {"What ends a <![CDATA[ section ]]>?", "the answer is ]]> and <![CDATA[ x ]]>"},
+            {"Tab\tin the question?", "\ttabbed\tanswer "},
+    };
+
+// ------------------------------ FIELDS ------------------------------
+
+    private ChaiProvider provider;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        final InMemoryDirectory directory = InMemoryDirectory.forURL(LDAP_URL);
+        final Map<String, List<String>> values = new HashMap<String, List<String>>();
+        values.put("objectClass", Collections.singletonList("inetOrgPerson"));
+        directory.putEntry(USER_DN, values);
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        if (provider != null) {
+            provider.close();
+        }
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    private ChaiUser createUser(final String storageFormat)
+            throws Exception
+    {
+        return createUser(storageFormat, Answer.FormatType.TEXT);
+    }
+
+    private ChaiUser createUser(final String storageFormat, final Answer.FormatType formatType)
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        chaiConfig.setSetting(ChaiSetting.CR_DEFAULT_FORMAT_TYPE, formatType.toString());
+        chaiConfig.setSetting(ChaiSetting.CR_CASE_INSENSITIVE, "false");
+        chaiConfig.setSetting(ChaiSetting.CR_CHAI_STORAGE_FORMAT, storageFormat);
+        provider = ChaiProviderFactory.createProvider(chaiConfig);
+        return ChaiFactory.createChaiUser(USER_DN, provider);
+    }
+
+    private static Map<Challenge, String> responses()
+    {
+        final Map<Challenge, String> responses = new LinkedHashMap<Challenge, String>();
+        for (final String[] challengeAndAnswer : CHALLENGES_AND_ANSWERS) {
+            responses.put(new ChaiChallenge(true, challengeAndAnswer[0], 1, 255, true), challengeAndAnswer[1]);
+        }
+        return responses;
+    }
+
+    private ResponseSet writeAndRead(final ChaiUser user)
+            throws Exception
+    {
+        final ChaiResponseSet responseSet = ChaiCrFactory.newChaiResponseSet(responses(), Locale.FRENCH, 0, provider.getChaiConfiguration(), "set<1>");
+        Assert.assertTrue(ChaiCrFactory.writeChaiResponseSet(responseSet, user));
+        return ChaiCrFactory.readChaiResponseSet(user);
+    }
+
+    private String storedValue()
+            throws Exception
+    {
+        final String attributeName = provider.getChaiConfiguration().getSetting(ChaiSetting.CR_CHAI_STORAGE_ATTRIBUTE);
+        return provider.readStringAttribute(USER_DN, attributeName);
+    }
+
+    private static void assertSameResponses(final ResponseSet readResponseSet)
+            throws Exception
+    {
+        Assert.assertNotNull(readResponseSet);
+        Assert.assertEquals("set<1>", readResponseSet.getChallengeSet().getIdentifier());
+        Assert.assertEquals(Locale.FRENCH, readResponseSet.getChallengeSet().getLocale());
+
+        final List<String> challengeTexts = new ArrayList<String>();
+        for (final Challenge challenge : readResponseSet.getChallengeSet().getChallenges()) {
+            challengeTexts.add(challenge.getChallengeText());
+        }
+        final List<String> expectedTexts = new ArrayList<String>();
+        for (final String[] challengeAndAnswer : CHALLENGES_AND_ANSWERS) {
+            expectedTexts.add(challengeAndAnswer[0]);
+        }
+        Assert.assertEquals(expectedTexts, challengeTexts);
+
+        // every answer is still correct, and the line breaks were not normalized
+        final Map<Challenge, String> responses = responses();
+        Assert.assertTrue(readResponseSet.test(responses));
+        for (final Map.Entry<Challenge, String> entry : responses.entrySet()) {
+            if (entry.getValue().indexOf('\r') != -1) {
+                entry.setValue(entry.getValue().replace("\r", ""));
+            }
+        }
+        Assert.assertFalse(readResponseSet.test(responses));
+    }
+
+    public void testXmlEscaping()
+            throws Exception
+    {
+        final ChaiUser user = createUser(ChaiResponseSet.StorageFormat.XML.toString());
+        final ResponseSet readResponseSet = writeAndRead(user);
+
+        final String stored = storedValue();
+        Assert.assertTrue(stored, stored.contains("&lt;your&gt; \"favourite\" &amp; 'best'"));
+        Assert.assertTrue(stored, stored.contains("line one&#xD;\nline two&#xD;line three\nline four"));
+        Assert.assertTrue(stored, stored.contains("]]&gt;"));
+        Assert.assertFalse(stored, stored.contains("]]>"));
+        Assert.assertTrue(stored, stored.contains("challengeSetID=\"set&lt;1&gt;\""));
+
+        assertSameResponses(readResponseSet);
+    }
+
+    public void testJsonRoundTrip()
+            throws Exception
+    {
+        for (final Answer.FormatType formatType : new Answer.FormatType[]{Answer.FormatType.TEXT, Answer.FormatType.SHA512_SALT}) {
+            final ChaiUser user = createUser(ChaiResponseSet.StorageFormat.JSON.toString(), formatType);
+            final ChaiResponseSet responseSet = ChaiCrFactory.newChaiResponseSet(responses(), Locale.FRENCH, 0, provider.getChaiConfiguration(), "set<1>");
+            Assert.assertTrue(ChaiCrFactory.writeChaiResponseSet(responseSet, user));
+            final String stored = storedValue();
+            Assert.assertTrue(stored, stored.contains("{"));
+
+            final ResponseSet readResponseSet = ChaiCrFactory.readChaiResponseSet(user);
+            assertSameResponses(readResponseSet);
+
+            // hashes, salts, flags and the timestamp all survive, so the XML form of both is identical
+            Assert.assertEquals(responseSet.stringValue(), readResponseSet.stringValue());
+
+            provider.close();
+            provider = null;
+        }
+    }
+
+    public void testXmlReaderCdataAndReferences()
+            throws Exception
+    {
+        // as written by other tools: the answer split across CDATA sections, and line breaks as character references
+        final String record = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ResponseSet minRandomRequired=\"0\" locale=\"fr\" version=\"2\">"
+                + "<response adminDefined=\"true\" required=\"true\" minLength=\"1\" maxLength=\"255\">"
+                + "<challenge><![CDATA[What ends a <section>?]]></challenge>"
+                + "<answer format=\"TEXT\"><![CDATA[x ]]]]><![CDATA[> y]]>&#13;&#10;z &amp; &#x1F600;</answer>"
+                + "</response></ResponseSet>";
+
+        final ResponseSet responseSet = ChaiCrFactory.parseChaiResponseSetXML(record);
+        final Challenge challenge = responseSet.getChallengeSet().getChallenges().get(0);
+        Assert.assertEquals("What ends a <section>?", challenge.getChallengeText());
+        Assert.assertTrue(responseSet.test(Collections.singletonMap(challenge, "x ]]> y\r\nz & \uD83D\uDE00")));
+        Assert.assertFalse(responseSet.test(Collections.singletonMap(challenge, "x ]]> y\nz & \uD83D\uDE00")));
+    }
+
+    public void testXmlReaderRejectsDoctype()
+            throws Exception
+    {
+        final String record = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<!DOCTYPE ResponseSet [<!ENTITY answer \"entity\">]>"
+                + "<ResponseSet minRandomRequired=\"0\" locale=\"fr\" version=\"2\">"
+                + "<response adminDefined=\"true\" required=\"true\" minLength=\"1\" maxLength=\"255\">"
+                + "<challenge>Question?</challenge>"
+                + "<answer format=\"TEXT\">&answer;</answer>"
+                + "</response></ResponseSet>";
+
+        // the record is not read at all, so it has no challenges to satisfy the challenge set
+        try {
+            ChaiCrFactory.parseChaiResponseSetXML(record);
+            Assert.fail("a record with a DTD should not be read");
+        } catch (ChaiValidationException e) {
+            // expected
+        }
+    }
+}
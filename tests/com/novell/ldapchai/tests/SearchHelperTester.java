@@ -19,6 +19,8 @@
 
 package com.novell.ldapchai.tests;
 
+import com.novell.ldapchai.util.FilterTemplate;
+import com.novell.ldapchai.util.LdapFilter;
 import com.novell.ldapchai.util.SearchHelper;
 import junit.framework.Assert;
 import junit.framework.TestCase;
@@ -43,4 +45,94 @@ public class SearchHelperTester extends TestCase {
 
         Assert.assertEquals(expectedFilter, filterFromHelper);
     }
+
+    public void testFilterEscaping()
+            throws Exception
+    {
+        final SearchHelper sh = new SearchHelper();
+        sh.setFilter("cn", "Smith (admin)*");
+        Assert.assertEquals("(cn=Smith \\28admin\\29*)", sh.getFilter());
+
+        sh.setFilterExists("cn");
+        Assert.assertEquals("(cn=*)", sh.getFilter());
+
+        sh.setFilterNot("cn", "a\\b");
+        Assert.assertEquals("(!(cn=a\\5cb))", sh.getFilter());
+
+        Assert.assertEquals("\\2a\\28\\29\\5c\\00", LdapFilter.escapeValue("*()\\\u0000"));
+        Assert.assertEquals("\\01\\ff", LdapFilter.escapeValue(new byte[]{1, (byte) 0xff}));
+    }
+
+    public void testFilterParse()
+            throws Exception
+    {
+        final String[] filters = {
+                "(&(objectClass=inetOrgPerson)(|(cn=jo*)(sn=*sm*th))(!(loginDisabled=TRUE)))",
+                "(cn:caseExactMatch:=Fred)",
+                "(:dn:2.4.6.8.10:=Dino)",
+                "(uid>=100)",
+                "(cn=a\\2ab\\c3\\a9)",
+        };
+        for (final String filter : filters) {
+            Assert.assertEquals(filter.replace("\\c3\\a9", "\u00e9"), LdapFilter.parse(filter).toString());
+        }
+
+        for (final String badFilter : new String[]{"(cn=joe", "(&)", "(cn=a)(sn=b)", "(cn)"}) {
+            try {
+                LdapFilter.parse(badFilter);
+                Assert.fail("filter should not parse: " + badFilter);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testFilterTemplate()
+            throws Exception
+    {
+        final FilterTemplate template = FilterTemplate.compile("(&(objectClass=inetOrgPerson)(|(cn={0})(mail={1}*)))");
+        Assert.assertEquals(2, template.getParameterCount());
+        Assert.assertEquals("(&(objectClass=inetOrgPerson)(|(cn=joe\\29)(mail=joe*)))", template.bind("joe)", "joe"));
+
+        final SearchHelper sh = new SearchHelper();
+        sh.setFilter(template, "joe", "j*e");
+        Assert.assertEquals("(&(objectClass=inetOrgPerson)(|(cn=joe)(mail=j\\2ae*)))", sh.getFilter());
+        Assert.assertSame(template, sh.getFilterTemplate());
+        Assert.assertEquals("j*e", sh.getFilterArguments()[1]);
+
+        sh.setFilter("(cn=joe)");
+        Assert.assertNull(sh.getFilterTemplate());
+        Assert.assertNull(sh.getFilterArguments());
+
+        try {
+            template.bind("joe");
+            Assert.fail("missing argument should not bind");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            FilterTemplate.compile("(cn={0}");
+            Assert.fail("invalid template should not compile");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCanonicalFilter()
+            throws Exception
+    {
+        final SearchHelper sh1 = new SearchHelper("(&(objectClass=inetOrgPerson)(cn=joe))");
+        final SearchHelper sh2 = new SearchHelper("(&(CN=joe)(&(objectclass=inetOrgPerson))(cn=joe))");
+        Assert.assertEquals(sh1.getCanonicalFilter(), sh2.getCanonicalFilter());
+        Assert.assertEquals(sh1, sh2);
+        Assert.assertEquals(sh1.hashCode(), sh2.hashCode());
+
+        sh2.setFilter("(!(!(cn=joe)))");
+        Assert.assertEquals("(cn=joe)", sh2.getCanonicalFilter());
+        Assert.assertFalse(sh1.equals(sh2));
+
+        final SearchHelper sh3 = new SearchHelper("(&(cn=joe)");
+        Assert.assertEquals("(&(cn=joe)", sh3.getCanonicalFilter());
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests;
+
+import com.novell.ldapchai.provider.*;
+import com.novell.ldapchai.tests.util.InMemoryDirectory;
+import com.novell.ldapchai.tests.util.InMemoryProvider;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that a {@link ChaiWritePipeline} never uses one provider from more than one thread at a time, and that
+ * operations against one entry stay on one provider however its DN is written.
+ */
+public class WritePipelineTester extends TestCase {
+// ----------------------------- CONSTANTS ----------------------------
+
+    private static final String LDAP_URL = "ldap://writepipeline";
+
+// ------------------------------ FIELDS ------------------------------
+
+    private InMemoryDirectory directory;
+    private final List<ChaiProvider> providers = new ArrayList<ChaiProvider>();
+    private final List<ConcurrencyCheck> checks = new ArrayList<ConcurrencyCheck>();
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected void setUp()
+            throws Exception
+    {
+        directory = InMemoryDirectory.forURL(LDAP_URL);
+        directory.putEntry("o=test", Collections.singletonMap("objectClass", Collections.singletonList("organization")));
+    }
+
+    protected void tearDown()
+            throws Exception
+    {
+        for (final ChaiProvider provider : providers) {
+            provider.close();
+        }
+        InMemoryDirectory.remove(LDAP_URL);
+    }
+
+    private ChaiProvider createProvider()
+            throws Exception
+    {
+        final ChaiConfiguration chaiConfig = new ChaiConfiguration(LDAP_URL, "", "");
+        chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+        final ChaiProvider realProvider = ChaiProviderFactory.createProvider(chaiConfig);
+        providers.add(realProvider);
+
+        final ConcurrencyCheck check = new ConcurrencyCheck(realProvider);
+        checks.add(check);
+        return (ChaiProvider) Proxy.newProxyInstance(ChaiProvider.class.getClassLoader(), new Class<?>[]{ChaiProvider.class}, check);
+    }
+
+    public void testSingleProvider()
+            throws Exception
+    {
+        final ChaiWritePipeline pipeline = new ChaiWritePipeline(createProvider());
+        pipeline.setMaxOutstanding(4);
+        createUsers(pipeline, 40);
+
+        Assert.assertEquals(41, directory.size());
+        Assert.assertEquals(1, checks.get(0).maxInFlight);
+    }
+
+    public void testMultipleProviders()
+            throws Exception
+    {
+        final List<ChaiProvider> pipelineProviders = Arrays.asList(createProvider(), createProvider(), createProvider());
+        final ChaiWritePipeline pipeline = new ChaiWritePipeline(pipelineProviders);
+        pipeline.setMaxOutstanding(2);
+        createUsers(pipeline, 40);
+
+        Assert.assertEquals(41, directory.size());
+        for (final ConcurrencyCheck check : checks) {
+            Assert.assertTrue(check.maxInFlight <= 1);
+        }
+
+        // only as many providers as the maximum outstanding operations are used
+        Assert.assertEquals(0, checks.get(2).callCount.get());
+    }
+
+    public void testSameEntryDifferentSpelling()
+            throws Exception
+    {
+        final List<ChaiProvider> pipelineProviders = Arrays.asList(createProvider(), createProvider(), createProvider());
+        final ChaiWritePipeline pipeline = new ChaiWritePipeline(pipelineProviders);
+        pipeline.setMaxOutstanding(3);
+        for (int i = 0; i < 20; i++) {
+            pipeline.createEntry("cn=user" + i + ",o=test", "person", Collections.singletonMap("sn", "user" + i));
+            pipeline.modify("CN=User" + i + " , O=Test", Collections.singletonList(ChaiModification.add("description", "first")));
+            pipeline.modify(" cn = user" + i + ", o = test ", Collections.singletonList(ChaiModification.add("description", "second")));
+        }
+        for (final ChaiWritePipeline.Result result : pipeline.execute()) {
+            Assert.assertTrue(result.toString(), result.isSuccess());
+        }
+
+        // each entry's create and modifies formed one lane, so were sent by one provider in the order queued
+        for (int i = 0; i < 20; i++) {
+            final String userDN = "cn=user" + i + ",o=test";
+            int lanes = 0;
+            for (final ConcurrencyCheck check : checks) {
+                final List<String> operations = check.entryOperations.get(userDN);
+                if (operations != null) {
+                    lanes++;
+                    Assert.assertEquals(Arrays.asList("createEntry", "modify", "modify"), operations);
+                }
+            }
+            Assert.assertEquals(userDN, 1, lanes);
+        }
+    }
+
+    private static void createUsers(final ChaiWritePipeline pipeline, final int count)
+    {
+        for (int i = 0; i < count; i++) {
+            pipeline.createEntry("cn=user" + i + ",o=test", "person", Collections.singletonMap("sn", "user" + i));
+        }
+        for (final ChaiWritePipeline.Result result : pipeline.execute()) {
+            Assert.assertTrue(result.toString(), result.isSuccess());
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Records the largest number of calls in progress on a provider at the same time.
+     */
+    private static class ConcurrencyCheck implements InvocationHandler {
+        private final ChaiProvider realProvider;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger callCount = new AtomicInteger();
+        private final Map<String, List<String>> entryOperations = Collections.synchronizedMap(new HashMap<String, List<String>>());
+        private volatile int maxInFlight;
+
+        private ConcurrencyCheck(final ChaiProvider realProvider)
+        {
+            this.realProvider = realProvider;
+        }
+
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable
+        {
+            final int current = inFlight.incrementAndGet();
+            callCount.incrementAndGet();
+            if (args != null && args.length > 0 && args[0] instanceof String && !method.getName().startsWith("get")) {
+                final String entryDN = DirectoryChangeEvent.normalizeDN((String) args[0]);
+                synchronized (entryOperations) {
+                    List<String> operations = entryOperations.get(entryDN);
+                    if (operations == null) {
+                        operations = new ArrayList<String>();
+                        entryOperations.put(entryDN, operations);
+                    }
+                    operations.add(method.getName());
+                }
+            }
+            synchronized (this) {
+                maxInFlight = Math.max(maxInFlight, current);
+            }
+            try {
+                Thread.sleep(1);
+                return method.invoke(realProvider, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,522 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests.util;
+
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ChaiSetting;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs scripted fault scenarios against a set of {@link TcpProxy}s in front of one ldap server, and reports how
+ * quickly a {@link ChaiProvider} using those proxies as its bind URLs recovers.
+ * <p/>
+ * For each scenario a fresh provider is created and a {@link Probe} operation is run in a loop while the scenario's
+ * steps are applied to the proxies at their scheduled offsets.  The time to fail over is measured from the first
+ * step to the completion of the first successful probe started after it.
+ * <pre>
+ *   final FailOverHarness harness = new FailOverHarness(ldapServerAddress, 5000, 2, baseConfig, "ldap");
+ *   final FailOverHarness.Scenario scenario = new FailOverHarness.Scenario("outage", 20 * 1000)
+ *           .outage(0, 2 * 1000, 10 * 1000);
+ *   System.out.println(harness.run(scenario, probe, 100));
+ * </pre>
+ *
+ * @author Jason D. Rivard
+ */
+public class FailOverHarness {
+// ------------------------------ FIELDS ------------------------------
+
+    private final InetSocketAddress destination;
+    private final int basePort;
+    private final int proxyCount;
+    private final ChaiConfiguration baseConfig;
+    private final String urlScheme;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * A set of scenarios that each disrupt the first proxy, which is the initially active server, for ten seconds.
+     *
+     * @return the standard scenarios
+     */
+    public static List<Scenario> standardScenarios()
+    {
+        final long start = 2 * 1000;
+        final long duration = 10 * 1000;
+        final long total = 20 * 1000;
+
+        final List<Scenario> scenarios = new ArrayList<Scenario>();
+        scenarios.add(new Scenario("outage", total).outage(0, start, duration));
+        scenarios.add(new Scenario("connection-drop", total).at(start, 0, Actions.DROP_CONNECTIONS));
+        scenarios.add(new Scenario("stall", total).stall(0, start, duration));
+        scenarios.add(new Scenario("half-open", total).halfOpen(0, start, duration));
+        scenarios.add(new Scenario("high-latency", total).latency(0, start, duration, 2 * 1000));
+        scenarios.add(new Scenario("low-bandwidth", total).bandwidth(0, start, duration, 1024));
+        return scenarios;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param destination the ldap server the proxies forward to
+     * @param basePort    the first proxy listens on {@code basePort}, the next on {@code basePort + 1} and so on
+     * @param proxyCount  number of proxies, each used as one of the provider's bind URLs
+     * @param baseConfig  configuration for the provider, the bind URLs are replaced with the proxy URLs
+     * @param urlScheme   the scheme of the proxy URLs, "ldap" or "ldaps"
+     */
+    public FailOverHarness(
+            final InetSocketAddress destination,
+            final int basePort,
+            final int proxyCount,
+            final ChaiConfiguration baseConfig,
+            final String urlScheme
+    )
+    {
+        this.destination = destination;
+        this.basePort = basePort;
+        this.proxyCount = proxyCount;
+        this.baseConfig = baseConfig;
+        this.urlScheme = urlScheme;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Run each scenario in turn.
+     */
+    public List<Report> runAll(final List<Scenario> scenarios, final Probe probe, final long probeInterval)
+            throws Exception
+    {
+        final List<Report> reports = new ArrayList<Report>();
+        for (final Scenario scenario : scenarios) {
+            reports.add(run(scenario, probe, probeInterval));
+        }
+        return reports;
+    }
+
+    /**
+     * Run a scenario.
+     *
+     * @param scenario      the scenario to run
+     * @param probe         the operation to measure
+     * @param probeInterval pause in ms between probes
+     * @return the results of the scenario
+     * @throws Exception if the proxies can not be started, or the probe fails before any fault is injected
+     */
+    public Report run(final Scenario scenario, final Probe probe, final long probeInterval)
+            throws Exception
+    {
+        final TcpProxy[] proxies = new TcpProxy[proxyCount];
+        final StringBuilder urls = new StringBuilder();
+        for (int i = 0; i < proxyCount; i++) {
+            proxies[i] = new TcpProxy(new InetSocketAddress("localhost", basePort + i), destination);
+            proxies[i].start();
+            urls.append(i > 0 ? "," : "").append(urlScheme).append("://localhost:").append(basePort + i);
+        }
+
+        final ChaiConfiguration config = (ChaiConfiguration) baseConfig.clone();
+        config.setSetting(ChaiSetting.BIND_URLS, urls.toString());
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ChaiProvider provider = null;
+        try {
+            provider = ChaiProviderFactory.createProvider(config);
+            probe.probe(provider);
+
+            final Report report = new Report(scenario.getName(), proxies);
+            for (final Step step : scenario.steps) {
+                scheduler.schedule(new Runnable() {
+                    public void run()
+                    {
+                        try {
+                            step.action.apply(proxies[step.proxyIndex]);
+                            report.stepApplied(System.currentTimeMillis());
+                        } catch (Exception e) {
+                            report.stepFailed(e);
+                        }
+                    }
+                }, step.offset, TimeUnit.MILLISECONDS);
+            }
+
+            final long endTime = System.currentTimeMillis() + scenario.getDuration();
+            while (System.currentTimeMillis() < endTime) {
+                final long startTime = System.currentTimeMillis();
+                Exception error = null;
+                try {
+                    probe.probe(provider);
+                } catch (Exception e) {
+                    error = e;
+                }
+                report.probeCompleted(startTime, System.currentTimeMillis(), error);
+                if (probeInterval > 0) {
+                    Thread.sleep(probeInterval);
+                }
+            }
+
+            report.finish(proxies);
+            return report;
+        } finally {
+            scheduler.shutdownNow();
+            if (provider != null) {
+                provider.close();
+            }
+            for (final TcpProxy proxy : proxies) {
+                if (proxy.isRunning()) {
+                    proxy.stop();
+                }
+            }
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * An operation whose availability and duration are measured.
+     */
+    public interface Probe {
+        void probe(ChaiProvider provider)
+                throws Exception;
+    }
+
+    /**
+     * A change made to a proxy by a scenario step.
+     */
+    public interface Action {
+        void apply(TcpProxy proxy)
+                throws IOException;
+    }
+
+    /**
+     * Common {@link Action}s.
+     */
+    public static class Actions {
+        public static final Action STOP = new Action() {
+            public void apply(final TcpProxy proxy)
+                    throws IOException
+            {
+                proxy.stop();
+            }
+        };
+
+        public static final Action START = new Action() {
+            public void apply(final TcpProxy proxy)
+                    throws IOException
+            {
+                proxy.start();
+            }
+        };
+
+        public static final Action DROP_CONNECTIONS = new Action() {
+            public void apply(final TcpProxy proxy)
+            {
+                proxy.dropConnections();
+            }
+        };
+
+        public static final Action CLEAR_FAULTS = new Action() {
+            public void apply(final TcpProxy proxy)
+            {
+                proxy.clearFaults();
+            }
+        };
+
+        public static Action stall(final long duration)
+        {
+            return new Action() {
+                public void apply(final TcpProxy proxy)
+                {
+                    proxy.stall(duration);
+                }
+            };
+        }
+
+        public static Action halfOpen(final boolean halfOpen)
+        {
+            return new Action() {
+                public void apply(final TcpProxy proxy)
+                {
+                    proxy.setHalfOpen(halfOpen);
+                }
+            };
+        }
+
+        public static Action latency(final long latency)
+        {
+            return new Action() {
+                public void apply(final TcpProxy proxy)
+                {
+                    proxy.setLatency(latency);
+                }
+            };
+        }
+
+        public static Action bandwidth(final long bandwidth)
+        {
+            return new Action() {
+                public void apply(final TcpProxy proxy)
+                {
+                    proxy.setBandwidth(bandwidth);
+                }
+            };
+        }
+
+        private Actions()
+        {
+        }
+    }
+
+    /**
+     * A named, timed script of proxy actions.
+     */
+    public static class Scenario {
+        private final String name;
+        private final long duration;
+        private final List<Step> steps = new ArrayList<Step>();
+
+        /**
+         * @param name     name used in the report
+         * @param duration total time in ms to run probes for
+         */
+        public Scenario(final String name, final long duration)
+        {
+            this.name = name;
+            this.duration = duration;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getDuration()
+        {
+            return duration;
+        }
+
+        /**
+         * Apply {@code action} to a proxy {@code offset} ms after the scenario starts.
+         */
+        public Scenario at(final long offset, final int proxyIndex, final Action action)
+        {
+            steps.add(new Step(offset, proxyIndex, action));
+            return this;
+        }
+
+        /**
+         * Stop a proxy, closing its connections and refusing new ones, then start it again.
+         */
+        public Scenario outage(final int proxyIndex, final long offset, final long duration)
+        {
+            at(offset, proxyIndex, Actions.STOP);
+            return at(offset + duration, proxyIndex, Actions.START);
+        }
+
+        public Scenario stall(final int proxyIndex, final long offset, final long duration)
+        {
+            return at(offset, proxyIndex, Actions.stall(duration));
+        }
+
+        /**
+         * Make a proxy half open, then drop the connections it corrupted and return it to normal.
+         */
+        public Scenario halfOpen(final int proxyIndex, final long offset, final long duration)
+        {
+            at(offset, proxyIndex, Actions.halfOpen(true));
+            at(offset + duration, proxyIndex, Actions.halfOpen(false));
+            return at(offset + duration, proxyIndex, Actions.DROP_CONNECTIONS);
+        }
+
+        public Scenario latency(final int proxyIndex, final long offset, final long duration, final long latency)
+        {
+            at(offset, proxyIndex, Actions.latency(latency));
+            return at(offset + duration, proxyIndex, Actions.latency(0));
+        }
+
+        public Scenario bandwidth(final int proxyIndex, final long offset, final long duration, final long bandwidth)
+        {
+            at(offset, proxyIndex, Actions.bandwidth(bandwidth));
+            return at(offset + duration, proxyIndex, Actions.bandwidth(0));
+        }
+    }
+
+    private static class Step {
+        private final long offset;
+        private final int proxyIndex;
+        private final Action action;
+
+        private Step(final long offset, final int proxyIndex, final Action action)
+        {
+            this.offset = offset;
+            this.proxyIndex = proxyIndex;
+            this.action = action;
+        }
+    }
+
+    /**
+     * The results of one scenario run.  Times are in ms.
+     */
+    public static class Report {
+        private final String scenarioName;
+        private final int[] initialConnections;
+        private final int[] connectionCounts;
+
+        private volatile long faultTime;
+        private volatile Exception stepError;
+
+        private int probes;
+        private int errors;
+        private final Map<String, Integer> errorCounts = new TreeMap<String, Integer>();
+        private long totalProbeTime;
+        private long maxProbeTime;
+        private long timeToFailOver = -1;
+
+        private Report(final String scenarioName, final TcpProxy[] proxies)
+        {
+            this.scenarioName = scenarioName;
+            this.initialConnections = new int[proxies.length];
+            this.connectionCounts = new int[proxies.length];
+            for (int i = 0; i < proxies.length; i++) {
+                initialConnections[i] = proxies[i].getConnectionCount();
+            }
+        }
+
+        private synchronized void stepApplied(final long time)
+        {
+            if (faultTime == 0) {
+                faultTime = time;
+            }
+        }
+
+        private void stepFailed(final Exception e)
+        {
+            stepError = e;
+        }
+
+        private void probeCompleted(final long startTime, final long endTime, final Exception error)
+        {
+            final long elapsed = endTime - startTime;
+            probes++;
+            totalProbeTime += elapsed;
+            maxProbeTime = Math.max(maxProbeTime, elapsed);
+
+            if (error != null) {
+                errors++;
+                final String key = error.getClass().getSimpleName();
+                final Integer count = errorCounts.get(key);
+                errorCounts.put(key, count == null ? 1 : count + 1);
+            } else if (timeToFailOver < 0) {
+                final long currentFaultTime = faultTime;
+                if (currentFaultTime != 0 && startTime >= currentFaultTime) {
+                    timeToFailOver = endTime - currentFaultTime;
+                }
+            }
+        }
+
+        private void finish(final TcpProxy[] proxies)
+        {
+            for (int i = 0; i < proxies.length; i++) {
+                connectionCounts[i] = proxies[i].getConnectionCount() - initialConnections[i];
+            }
+        }
+
+        public String getScenarioName()
+        {
+            return scenarioName;
+        }
+
+        public int getProbes()
+        {
+            return probes;
+        }
+
+        public int getErrors()
+        {
+            return errors;
+        }
+
+        /**
+         * @return the number of errors, by exception class name
+         */
+        public Map<String, Integer> getErrorCounts()
+        {
+            return Collections.unmodifiableMap(errorCounts);
+        }
+
+        /**
+         * @return time from the first scenario step until a probe started after it succeeded, or -1 if none did
+         */
+        public long getTimeToFailOver()
+        {
+            return timeToFailOver;
+        }
+
+        public long getMaxProbeTime()
+        {
+            return maxProbeTime;
+        }
+
+        public long getAverageProbeTime()
+        {
+            return probes == 0 ? 0 : totalProbeTime / probes;
+        }
+
+        /**
+         * @return the number of connections accepted by each proxy during the scenario
+         */
+        public int[] getConnectionCounts()
+        {
+            return connectionCounts.clone();
+        }
+
+        /**
+         * @return an error thrown while applying a scenario step, or null
+         */
+        public Exception getStepError()
+        {
+            return stepError;
+        }
+
+        public String toString()
+        {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("scenario=").append(scenarioName);
+            sb.append(", probes=").append(probes);
+            sb.append(", errors=").append(errors);
+            if (!errorCounts.isEmpty()) {
+                sb.append(" ").append(errorCounts);
+            }
+            sb.append(", timeToFailOver=").append(timeToFailOver < 0 ? "never" : timeToFailOver + "ms");
+            sb.append(", avgProbe=").append(getAverageProbeTime()).append("ms");
+            sb.append(", maxProbe=").append(maxProbeTime).append("ms");
+            sb.append(", connections=").append(Arrays.toString(connectionCounts));
+            if (stepError != null) {
+                sb.append(", stepError=").append(stepError.getMessage());
+            }
+            return sb.toString();
+        }
+    }
+}
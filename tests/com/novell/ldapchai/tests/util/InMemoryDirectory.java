@@ -0,0 +1,756 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests.util;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.provider.ChaiModification;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.util.LdifReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread safe, in memory set of directory entries used by {@link InMemoryProvider}, which may be populated from
+ * LDIF with {@link #loadLdif(Reader)}.
+ * <p/>
+ * Directories are registered by ldap URL, so every {@code InMemoryProvider} created for the same URL (for example by
+ * {@link com.novell.ldapchai.provider.ChaiProviderFactory} or by fail over) sees the same entries.  Attribute names
+ * and values are compared case insensitively, DNs are compared after lower casing and removing spaces around
+ * separators.
+ *
+ * @author Jason D. Rivard
+ */
+public class InMemoryDirectory {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final Map<String, InMemoryDirectory> DIRECTORIES = new ConcurrentHashMap<String, InMemoryDirectory>();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private volatile boolean bindRequired;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Return the directory registered for an ldap URL, creating an empty one if there is none.
+     *
+     * @param ldapURL the ldap URL
+     * @return the directory for the URL
+     */
+    public static InMemoryDirectory forURL(final String ldapURL)
+    {
+        final String key = ldapURL.toLowerCase();
+        synchronized (DIRECTORIES) {
+            InMemoryDirectory directory = DIRECTORIES.get(key);
+            if (directory == null) {
+                directory = new InMemoryDirectory();
+                DIRECTORIES.put(key, directory);
+            }
+            return directory;
+        }
+    }
+
+    /**
+     * Register {@code directory} for an ldap URL, replacing any directory registered before.  Registering the same
+     * directory for several URLs simulates replicated servers, for example for fail over tests.
+     *
+     * @param ldapURL   the ldap URL
+     * @param directory the directory to use for the URL
+     */
+    public static void register(final String ldapURL, final InMemoryDirectory directory)
+    {
+        DIRECTORIES.put(ldapURL.toLowerCase(), directory);
+    }
+
+    /**
+     * Remove the directory registered for an ldap URL.
+     *
+     * @param ldapURL the ldap URL
+     */
+    public static void remove(final String ldapURL)
+    {
+        DIRECTORIES.remove(ldapURL.toLowerCase());
+    }
+
+    static String normalizeDN(final String dn)
+    {
+        final StringBuilder sb = new StringBuilder(dn.length());
+        boolean skipSpace = true;
+        for (int i = 0; i < dn.length(); i++) {
+            final char c = dn.charAt(i);
+            if (c == ' ' && skipSpace) {
+                continue;
+            }
+            if (c == ',' || c == '=') {
+                while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ') {
+                    sb.setLength(sb.length() - 1);
+                }
+                skipSpace = true;
+            } else {
+                skipSpace = false;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ' ') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public InMemoryDirectory()
+    {
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Add or replace an entry.
+     *
+     * @param dn         DN of the entry
+     * @param attributes the entry's attributes, each with one or more values
+     */
+    public void putEntry(final String dn, final Map<String, List<String>> attributes)
+    {
+        final Entry entry = new Entry(dn);
+        for (final Map.Entry<String, List<String>> attribute : attributes.entrySet()) {
+            for (final String value : attribute.getValue()) {
+                entry.addValue(attribute.getKey(), value);
+            }
+        }
+        entries.put(normalizeDN(dn), entry);
+    }
+
+    /**
+     * Add or replace the entries of an LDIF file, see {@link LdifReader}.  Binary values are stored as ISO-8859-1
+     * strings, as read by {@link InMemoryProvider#readMultiByteAttribute(String, String)}.
+     *
+     * @param reader the LDIF content
+     * @return the number of entries read
+     * @throws IOException if the input can not be read or is not valid LDIF
+     */
+    public int loadLdif(final Reader reader)
+            throws IOException
+    {
+        final LdifReader ldifReader = new LdifReader(reader);
+        int count = 0;
+        for (LdifReader.Record record = ldifReader.readRecord(); record != null; record = ldifReader.readRecord()) {
+            final Map<String, List<String>> attributes = new LinkedHashMap<String, List<String>>(record.getAttributes());
+            for (final Map.Entry<String, List<byte[]>> binaryAttribute : record.getBinaryAttributes().entrySet()) {
+                final List<String> values = new ArrayList<String>();
+                if (attributes.containsKey(binaryAttribute.getKey())) {
+                    values.addAll(attributes.get(binaryAttribute.getKey()));
+                }
+                for (final byte[] value : binaryAttribute.getValue()) {
+                    values.add(InMemoryProvider.binaryToString(value));
+                }
+                attributes.put(binaryAttribute.getKey(), values);
+            }
+            putEntry(record.getDN(), attributes);
+            count++;
+        }
+        return count;
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public boolean isBindRequired()
+    {
+        return bindRequired;
+    }
+
+    /**
+     * When true, providers must bind as an existing entry with a matching {@code userPassword} value.  Otherwise (the
+     * default) any bind DN and password are accepted.
+     */
+    public void setBindRequired(final boolean bindRequired)
+    {
+        this.bindRequired = bindRequired;
+    }
+
+    void createEntry(final String dn, final Set<String> objectClasses, final Map<String, String> attributes)
+            throws ChaiOperationException
+    {
+        final Entry entry = new Entry(dn);
+        for (final String objectClass : objectClasses) {
+            entry.addValue("objectClass", objectClass);
+        }
+        if (attributes != null) {
+            for (final Map.Entry<String, String> attribute : attributes.entrySet()) {
+                entry.addValue(attribute.getKey(), attribute.getValue());
+            }
+        }
+
+        synchronized (entries) {
+            final String key = normalizeDN(dn);
+            if (entries.containsKey(key)) {
+                throw new ChaiOperationException("entry already exists: " + dn, ChaiError.UNKNOWN);
+            }
+            entries.put(key, entry);
+        }
+    }
+
+    void deleteEntry(final String dn)
+            throws ChaiOperationException
+    {
+        if (entries.remove(normalizeDN(dn)) == null) {
+            throw noSuchEntry(dn);
+        }
+    }
+
+    List<String> readValues(final String dn, final String attribute)
+            throws ChaiOperationException
+    {
+        final Entry entry = getEntry(dn);
+        synchronized (entry) {
+            final List<String> values = entry.getValues(attribute);
+            return values == null ? Collections.<String>emptyList() : new ArrayList<String>(values);
+        }
+    }
+
+    Map<String, String> readFirstValues(final String dn, final Set<String> attributes)
+            throws ChaiOperationException
+    {
+        final Entry entry = getEntry(dn);
+        synchronized (entry) {
+            return entry.firstValues(attributes);
+        }
+    }
+
+    /**
+     * Test a simple bind.  The bind succeeds if the entry exists and has a matching (clear text)
+     * {@code userPassword} value.
+     */
+    boolean authenticate(final String dn, final String password)
+    {
+        final Entry entry = entries.get(normalizeDN(dn));
+        if (entry == null || password == null) {
+            return false;
+        }
+        synchronized (entry) {
+            final List<String> values = entry.getValues("userPassword");
+            return values != null && values.contains(password);
+        }
+    }
+
+    boolean compare(final String dn, final String attribute, final String value)
+            throws ChaiOperationException
+    {
+        final Entry entry = getEntry(dn);
+        synchronized (entry) {
+            return entry.hasValue(attribute, value);
+        }
+    }
+
+    void modify(final String dn, final List<ChaiModification> modifications)
+            throws ChaiOperationException
+    {
+        final Entry entry = getEntry(dn);
+        synchronized (entry) {
+            final Entry working = entry.copy();
+            for (final ChaiModification modification : modifications) {
+                final String attribute = modification.getAttributeName();
+                final List<String> values = new ArrayList<String>();
+                if (modification.isBinary()) {
+                    for (final byte[] value : modification.getBinaryValues()) {
+                        values.add(InMemoryProvider.binaryToString(value));
+                    }
+                } else {
+                    values.addAll(Arrays.asList(modification.getStringValues()));
+                }
+
+                switch (modification.getType()) {
+                    case ADD:
+                        for (final String value : values) {
+                            working.addValue(attribute, value);
+                        }
+                        break;
+
+                    case DELETE:
+                        if (values.isEmpty()) {
+                            if (working.getValues(attribute) == null) {
+                                throw new ChaiOperationException("no such attribute " + attribute + " on " + dn, ChaiError.NO_SUCH_ATTRIBUTE);
+                            }
+                            working.removeAttribute(attribute);
+                        } else {
+                            for (final String value : values) {
+                                if (!working.removeValue(attribute, value)) {
+                                    throw new ChaiOperationException("no such value for " + attribute + " on " + dn, ChaiError.NO_SUCH_VALUE);
+                                }
+                            }
+                        }
+                        break;
+
+                    case REPLACE:
+                        working.removeAttribute(attribute);
+                        for (final String value : values) {
+                            working.addValue(attribute, value);
+                        }
+                        break;
+
+                    default:
+                        throw new IllegalStateException("unexpected modification type " + modification.getType());
+                }
+            }
+            entry.replaceWith(working);
+        }
+    }
+
+    Map<String, Map<String, List<String>>> search(
+            final String baseDN,
+            final String filter,
+            final Set<String> attributes,
+            final ChaiProvider.SEARCH_SCOPE scope,
+            final int maxResults
+    )
+            throws ChaiOperationException
+    {
+        final String normalizedBase = normalizeDN(baseDN == null ? "" : baseDN);
+        if (normalizedBase.length() > 0 && scope != ChaiProvider.SEARCH_SCOPE.SUBTREE && !entries.containsKey(normalizedBase)) {
+            throw noSuchEntry(baseDN);
+        }
+
+        final FilterNode filterNode = FilterNode.parse(filter == null ? "(objectClass=*)" : filter);
+        final Map<String, Map<String, List<String>>> results = new LinkedHashMap<String, Map<String, List<String>>>();
+        for (final Map.Entry<String, Entry> loopEntry : entries.entrySet()) {
+            if (maxResults > 0 && results.size() >= maxResults) {
+                break;
+            }
+
+            if (!inScope(loopEntry.getKey(), normalizedBase, scope)) {
+                continue;
+            }
+
+            final Entry entry = loopEntry.getValue();
+            synchronized (entry) {
+                if (filterNode.matches(entry)) {
+                    results.put(entry.dn, entry.allValues(attributes));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static boolean inScope(final String dn, final String base, final ChaiProvider.SEARCH_SCOPE scope)
+    {
+        switch (scope) {
+            case BASE:
+                return dn.equals(base);
+
+            case ONE: {
+                if (base.length() == 0) {
+                    return dn.indexOf(',') < 0;
+                }
+                final int comma = dn.indexOf(',');
+                return comma > 0 && dn.substring(comma + 1).equals(base);
+            }
+
+            default:
+                return base.length() == 0 || dn.equals(base) || dn.endsWith("," + base);
+        }
+    }
+
+    private Entry getEntry(final String dn)
+            throws ChaiOperationException
+    {
+        final Entry entry = entries.get(normalizeDN(dn));
+        if (entry == null) {
+            throw noSuchEntry(dn);
+        }
+        return entry;
+    }
+
+    private static ChaiOperationException noSuchEntry(final String dn)
+    {
+        return new ChaiOperationException("no such entry: " + dn, ChaiError.NO_SUCH_ENTRY);
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    static class Entry {
+        private final String dn;
+        private Map<String, String> names = new HashMap<String, String>();
+        private Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+
+        Entry(final String dn)
+        {
+            this.dn = dn;
+        }
+
+        List<String> getValues(final String attribute)
+        {
+            return values.get(attribute.toLowerCase());
+        }
+
+        void addValue(final String attribute, final String value)
+        {
+            final String key = attribute.toLowerCase();
+            List<String> list = values.get(key);
+            if (list == null) {
+                list = new ArrayList<String>(1);
+                values.put(key, list);
+                names.put(key, attribute);
+            }
+            if (!containsIgnoreCase(list, value)) {
+                list.add(value);
+            }
+        }
+
+        boolean removeValue(final String attribute, final String value)
+        {
+            final List<String> list = getValues(attribute);
+            if (list == null) {
+                return false;
+            }
+            for (final Iterator<String> iter = list.iterator(); iter.hasNext(); ) {
+                if (iter.next().equalsIgnoreCase(value)) {
+                    iter.remove();
+                    if (list.isEmpty()) {
+                        removeAttribute(attribute);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void removeAttribute(final String attribute)
+        {
+            values.remove(attribute.toLowerCase());
+            names.remove(attribute.toLowerCase());
+        }
+
+        boolean hasValue(final String attribute, final String value)
+        {
+            final List<String> list = getValues(attribute);
+            return list != null && containsIgnoreCase(list, value);
+        }
+
+        Map<String, String> firstValues(final Set<String> attributes)
+        {
+            final Map<String, String> result = new LinkedHashMap<String, String>();
+            if (attributes == null || attributes.isEmpty()) {
+                for (final Map.Entry<String, List<String>> loopEntry : values.entrySet()) {
+                    result.put(names.get(loopEntry.getKey()), loopEntry.getValue().get(0));
+                }
+            } else {
+                for (final String attribute : attributes) {
+                    final List<String> list = getValues(attribute);
+                    if (list != null) {
+                        result.put(attribute, list.get(0));
+                    }
+                }
+            }
+            return result;
+        }
+
+        Map<String, List<String>> allValues(final Set<String> attributes)
+        {
+            final Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+            if (attributes == null || attributes.isEmpty()) {
+                for (final Map.Entry<String, List<String>> loopEntry : values.entrySet()) {
+                    result.put(names.get(loopEntry.getKey()), new ArrayList<String>(loopEntry.getValue()));
+                }
+            } else {
+                for (final String attribute : attributes) {
+                    final List<String> list = getValues(attribute);
+                    if (list != null) {
+                        result.put(attribute, new ArrayList<String>(list));
+                    }
+                }
+            }
+            return result;
+        }
+
+        Entry copy()
+        {
+            final Entry copy = new Entry(dn);
+            copy.names = new HashMap<String, String>(names);
+            for (final Map.Entry<String, List<String>> loopEntry : values.entrySet()) {
+                copy.values.put(loopEntry.getKey(), new ArrayList<String>(loopEntry.getValue()));
+            }
+            return copy;
+        }
+
+        void replaceWith(final Entry other)
+        {
+            this.names = other.names;
+            this.values = other.values;
+        }
+
+        private static boolean containsIgnoreCase(final List<String> list, final String value)
+        {
+            for (final String loopValue : list) {
+                if (loopValue.equalsIgnoreCase(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A parsed RFC 4515 search filter.  Supports and, or, not, equality, presence, substring, greater-or-equal,
+     * less-or-equal and approximate (treated as equality) items.  Values are compared case insensitively, and ordered
+     * numerically when both sides are integers.
+     */
+    abstract static class FilterNode {
+        abstract boolean matches(Entry entry);
+
+        static FilterNode parse(final String filter)
+                throws ChaiOperationException
+        {
+            final String trimmed = filter.trim();
+            final int[] position = new int[]{0};
+            final FilterNode node;
+            try {
+                node = parseNode(trimmed.startsWith("(") ? trimmed : "(" + trimmed + ")", position);
+            } catch (RuntimeException e) {
+                throw new ChaiOperationException("invalid filter '" + filter + "': " + e.getMessage(), ChaiError.UNKNOWN);
+            }
+            return node;
+        }
+
+        private static FilterNode parseNode(final String filter, final int[] position)
+        {
+            expect(filter, position, '(');
+            final char type = filter.charAt(position[0]);
+            final FilterNode node;
+            if (type == '&' || type == '|') {
+                position[0]++;
+                final List<FilterNode> children = new ArrayList<FilterNode>();
+                while (filter.charAt(position[0]) == '(') {
+                    children.add(parseNode(filter, position));
+                }
+                node = new ListNode(type == '&', children);
+            } else if (type == '!') {
+                position[0]++;
+                node = new NotNode(parseNode(filter, position));
+            } else {
+                final int end = filter.indexOf(')', position[0]);
+                if (end < 0) {
+                    throw new IllegalArgumentException("unterminated filter item");
+                }
+                node = parseItem(filter.substring(position[0], end));
+                position[0] = end;
+            }
+            expect(filter, position, ')');
+            return node;
+        }
+
+        private static FilterNode parseItem(final String item)
+        {
+            final int equals = item.indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException("missing '=' in filter item '" + item + "'");
+            }
+
+            final char operator = item.charAt(equals - 1);
+            if (operator == '>' || operator == '<' || operator == '~') {
+                final String attribute = item.substring(0, equals - 1);
+                final String value = unescape(item.substring(equals + 1));
+                return new CompareNode(attribute, value, operator);
+            }
+
+            final String attribute = item.substring(0, equals);
+            final String value = item.substring(equals + 1);
+            if ("*".equals(value)) {
+                return new PresentNode(attribute);
+            }
+            if (value.indexOf('*') >= 0) {
+                final String[] parts = value.split("\\*", -1);
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = unescape(parts[i]).toLowerCase();
+                }
+                return new SubstringNode(attribute, parts);
+            }
+            return new CompareNode(attribute, unescape(value), '=');
+        }
+
+        private static String unescape(final String value)
+        {
+            if (value.indexOf('\\') < 0) {
+                return value;
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '\\' && i + 2 < value.length()) {
+                    sb.append((char) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                    i += 2;
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        private static void expect(final String filter, final int[] position, final char c)
+        {
+            if (position[0] >= filter.length() || filter.charAt(position[0]) != c) {
+                throw new IllegalArgumentException("expected '" + c + "' at position " + position[0]);
+            }
+            position[0]++;
+        }
+    }
+
+    private static class ListNode extends FilterNode {
+        private final boolean and;
+        private final List<FilterNode> children;
+
+        private ListNode(final boolean and, final List<FilterNode> children)
+        {
+            this.and = and;
+            this.children = children;
+        }
+
+        boolean matches(final Entry entry)
+        {
+            for (final FilterNode child : children) {
+                if (child.matches(entry) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+    }
+
+    private static class NotNode extends FilterNode {
+        private final FilterNode child;
+
+        private NotNode(final FilterNode child)
+        {
+            this.child = child;
+        }
+
+        boolean matches(final Entry entry)
+        {
+            return !child.matches(entry);
+        }
+    }
+
+    private static class PresentNode extends FilterNode {
+        private final String attribute;
+
+        private PresentNode(final String attribute)
+        {
+            this.attribute = attribute;
+        }
+
+        boolean matches(final Entry entry)
+        {
+            return entry.getValues(attribute) != null;
+        }
+    }
+
+    private static class CompareNode extends FilterNode {
+        private final String attribute;
+        private final String value;
+        private final char operator;
+
+        private CompareNode(final String attribute, final String value, final char operator)
+        {
+            this.attribute = attribute;
+            this.value = value;
+            this.operator = operator;
+        }
+
+        boolean matches(final Entry entry)
+        {
+            final List<String> values = entry.getValues(attribute);
+            if (values == null) {
+                return false;
+            }
+            for (final String loopValue : values) {
+                final int comparison = compare(loopValue, value);
+                if (operator == '>' ? comparison >= 0 : operator == '<' ? comparison <= 0 : comparison == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int compare(final String left, final String right)
+        {
+            try {
+                final long leftNumber = Long.parseLong(left.trim());
+                final long rightNumber = Long.parseLong(right.trim());
+                return leftNumber < rightNumber ? -1 : leftNumber == rightNumber ? 0 : 1;
+            } catch (NumberFormatException e) {
+                return left.compareToIgnoreCase(right);
+            }
+        }
+    }
+
+    private static class SubstringNode extends FilterNode {
+        private final String attribute;
+        private final String[] parts;
+
+        private SubstringNode(final String attribute, final String[] parts)
+        {
+            this.attribute = attribute;
+            this.parts = parts;
+        }
+
+        boolean matches(final Entry entry)
+        {
+            final List<String> values = entry.getValues(attribute);
+            if (values == null) {
+                return false;
+            }
+            for (final String loopValue : values) {
+                if (matchesValue(loopValue.toLowerCase())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesValue(final String value)
+        {
+            if (!value.startsWith(parts[0])) {
+                return false;
+            }
+            int position = parts[0].length();
+            for (int i = 1; i < parts.length - 1; i++) {
+                final int found = value.indexOf(parts[i], position);
+                if (found < 0) {
+                    return false;
+                }
+                position = found + parts[i].length();
+            }
+            final String last = parts[parts.length - 1];
+            return value.length() - position >= last.length() && value.endsWith(last);
+        }
+    }
+}
@@ -0,0 +1,490 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests.util;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiOperationException;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiModification;
+import com.novell.ldapchai.provider.ChaiProviderImplementor;
+import com.novell.ldapchai.provider.ChaiSetting;
+import com.novell.ldapchai.provider.ProviderStatistics;
+import com.novell.ldapchai.provider.SearchResultHandler;
+import com.novell.ldapchai.util.SearchHelper;
+
+import javax.naming.ldap.ExtendedRequest;
+import javax.naming.ldap.ExtendedResponse;
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ChaiProviderImplementor} backed by an {@link InMemoryDirectory} instead of an ldap server.
+ * <p/>
+ * Used by the benchmarks and load tests to exercise Chai without network services.  Set
+ * {@link ChaiSetting#PROVIDER_IMPLEMENTATION} to this class name and create the provider with
+ * {@link com.novell.ldapchai.provider.ChaiProviderFactory#createProvider(ChaiConfiguration)} as usual; the
+ * directory and {@link ServerConditions} used are the ones registered for the first of the configuration's
+ * {@link ChaiSetting#BIND_URLS}.  When fail over is enabled each URL gets its own provider, so each URL can be given
+ * its own conditions while sharing one directory (see {@link InMemoryDirectory#register(String, InMemoryDirectory)}).
+ * <pre>
+ *   final InMemoryDirectory directory = new InMemoryDirectory();
+ *   directory.loadLdif(new FileReader("users.ldif"));
+ *   InMemoryDirectory.register("ldap://server1", directory);
+ *   InMemoryDirectory.register("ldap://server2", directory);
+ *   ServerConditions.forURL("ldap://server1").setLatency(5, 2).setPageSize(500);
+ *
+ *   final ChaiConfiguration chaiConfig = new ChaiConfiguration("ldap://server1,ldap://server2", bindDN, password);
+ *   chaiConfig.setSetting(ChaiSetting.PROVIDER_IMPLEMENTATION, InMemoryProvider.class.getName());
+ *   final ChaiProvider provider = ChaiProviderFactory.createProvider(chaiConfig);
+ *   ...
+ *   ServerConditions.forURL("ldap://server1").setDown(true);
+ * </pre>
+ * Extended operations are not supported.
+ *
+ * @author Jason D. Rivard
+ */
+public class InMemoryProvider implements ChaiProviderImplementor {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger(0);
+
+    private static final String BINARY_CHARSET = "ISO-8859-1";
+
+    private static final String RANGE_OPTION = ";range=";
+
+    private final int instanceNumber = INSTANCE_COUNTER.incrementAndGet();
+    private final Map<String, Object> providerProperties = new HashMap<String, Object>();
+
+    private volatile ConnectionState state = ConnectionState.NEW;
+    private ChaiConfiguration chaiConfig;
+    private String currentURL;
+    private InMemoryDirectory directory;
+    private ServerConditions conditions;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    static String binaryToString(final byte[] value)
+    {
+        try {
+            return new String(value, BINARY_CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    private static byte[] stringToBinary(final String value)
+    {
+        try {
+            return value.getBytes(BINARY_CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public InMemoryProvider()
+    {
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public void init(final ChaiConfiguration chaiConfig)
+            throws ChaiUnavailableException, IllegalStateException
+    {
+        if (state != ConnectionState.NEW) {
+            throw new IllegalStateException("provider has already been initialized");
+        }
+
+        this.chaiConfig = chaiConfig;
+        this.currentURL = chaiConfig.bindURLsAsList().get(0);
+        this.directory = InMemoryDirectory.forURL(currentURL);
+        this.conditions = ServerConditions.forURL(currentURL);
+
+        conditions.beforeOperation("bind to " + currentURL);
+        final String bindDN = chaiConfig.getSetting(ChaiSetting.BIND_DN);
+        if (directory.isBindRequired() && !directory.authenticate(bindDN, chaiConfig.getSetting(ChaiSetting.BIND_PASSWORD))) {
+            throw new ChaiUnavailableException("invalid credentials for " + bindDN, ChaiError.FAILED_AUTHENTICATION, true, true);
+        }
+
+        this.state = ConnectionState.OPEN;
+    }
+
+    public InMemoryDirectory getDirectory()
+    {
+        return directory;
+    }
+
+    public ServerConditions getConditions()
+    {
+        return conditions;
+    }
+
+    public void close()
+    {
+        state = ConnectionState.CLOSED;
+    }
+
+    public boolean isConnected()
+    {
+        return state == ConnectionState.OPEN;
+    }
+
+    public ChaiConfiguration getChaiConfiguration()
+    {
+        return chaiConfig;
+    }
+
+    public ProviderStatistics getProviderStatistics()
+    {
+        return null;
+    }
+
+    public Object getConnectionObject()
+    {
+        return directory;
+    }
+
+    public ConnectionState getConnectionState()
+    {
+        return state;
+    }
+
+    public String getCurrentConnectionURL()
+    {
+        return currentURL;
+    }
+
+    public Map<String, Object> getProviderProperties()
+    {
+        return providerProperties;
+    }
+
+    public boolean errorIsRetryable(final Exception e)
+    {
+        return e instanceof ChaiUnavailableException;
+    }
+
+    public String getIdentifier()
+    {
+        return String.valueOf(instanceNumber);
+    }
+
+    public DIRECTORY_VENDOR getDirectoryVendor()
+    {
+        return DIRECTORY_VENDOR.GENERIC;
+    }
+
+    public boolean compareStringAttribute(final String entryDN, final String attributeName, final String value)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        return directory.compare(entryDN, attributeName, value);
+    }
+
+    public void createEntry(final String entryDN, final String baseObjectClass, final Map<String, String> stringAttributes)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        createEntry(entryDN, Collections.singleton(baseObjectClass), stringAttributes);
+    }
+
+    public void createEntry(final String entryDN, final Set<String> baseObjectClasses, final Map<String, String> stringAttributes)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        directory.createEntry(entryDN, baseObjectClasses, stringAttributes);
+    }
+
+    public void deleteEntry(final String entryDN)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        directory.deleteEntry(entryDN);
+    }
+
+    public void deleteStringAttributeValue(final String entryDN, final String attributeName, final String value)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        final ChaiModification modification = value == null
+                ? ChaiModification.deleteAttribute(attributeName)
+                : ChaiModification.delete(attributeName, value);
+        directory.modify(entryDN, Collections.singletonList(modification));
+    }
+
+    public ExtendedResponse extendedOperation(final ExtendedRequest request)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        throw new ChaiOperationException("extended operations are not supported by " + this.getClass().getSimpleName(), ChaiError.UNSUPPORTED_OPERATION);
+    }
+
+    public byte[][] readMultiByteAttribute(final String entryDN, final String attribute)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        final List<String> values = directory.readValues(entryDN, attribute);
+        final byte[][] returnValues = new byte[values.size()][];
+        for (int i = 0; i < values.size(); i++) {
+            returnValues[i] = stringToBinary(values.get(i));
+        }
+        return returnValues;
+    }
+
+    public Set<String> readMultiStringAttribute(final String entryDN, final String attribute)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        return new LinkedHashSet<String>(directory.readValues(entryDN, attribute));
+    }
+
+    public String readStringAttribute(final String entryDN, final String attribute)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        final List<String> values = directory.readValues(entryDN, attribute);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    public Map<String, String> readStringAttributes(final String entryDN, final Set<String> attributes)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        return directory.readFirstValues(entryDN, attributes);
+    }
+
+    public void replaceStringAttribute(final String entryDN, final String attributeName, final String oldValue, final String newValue)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        final List<ChaiModification> modifications = new ArrayList<ChaiModification>();
+        modifications.add(ChaiModification.delete(attributeName, oldValue));
+        modifications.add(ChaiModification.add(attributeName, newValue));
+        directory.modify(entryDN, modifications);
+    }
+
+    public void replaceBinaryAttribute(final String entryDN, final String attributeName, final byte[] oldValue, final byte[] newValue)
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        final List<ChaiModification> modifications = new ArrayList<ChaiModification>();
+        modifications.add(ChaiModification.deleteBinary(attributeName, oldValue));
+        modifications.add(ChaiModification.addBinary(attributeName, newValue));
+        directory.modify(entryDN, modifications);
+    }
+
+    public Map<String, Map<String, String>> search(final String baseDN, final SearchHelper searchHelper)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return firstValues(searchMultiValues(baseDN, searchHelper));
+    }
+
+    public Map<String, Map<String, String>> search(final String baseDN, final String filter, final Set<String> attributes, final SEARCH_SCOPE searchScope)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        return firstValues(searchMultiValues(baseDN, filter, attributes, searchScope));
+    }
+
+    public Map<String, Map<String, List<String>>> searchMultiValues(final String baseDN, final SearchHelper searchHelper)
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        final Set<String> attributes = searchHelper.getAttributes();
+        final Map<String, Map<String, List<String>>> results = directory.search(baseDN, searchHelper.getFilter(), withoutRanges(attributes), searchHelper.getSearchScope(), searchHelper.getMaxResults());
+        conditions.afterSearch(results.size());
+        return applyValueRanges(results, attributes);
+    }
+
+    public Map<String, Map<String, List<String>>> searchMultiValues(final String baseDN, final String filter, final Set<String> attributes, final SEARCH_SCOPE searchScope)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        final Map<String, Map<String, List<String>>> results = directory.search(baseDN, filter, withoutRanges(attributes), searchScope, 0);
+        conditions.afterSearch(results.size());
+        return applyValueRanges(results, attributes);
+    }
+
+    public void searchMultiValues(final String baseDN, final SearchHelper searchHelper, final SearchResultHandler handler)
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        for (final Map.Entry<String, Map<String, List<String>>> entry : searchMultiValues(baseDN, searchHelper).entrySet()) {
+            if (!handler.handleResult(entry.getKey(), entry.getValue())) {
+                return;
+            }
+        }
+    }
+
+    public void writeBinaryAttribute(final String entryDN, final String attributeName, final byte[][] values, final boolean overwrite)
+            throws ChaiUnavailableException, ChaiOperationException
+    {
+        activityPreCheck();
+        final ChaiModification modification = overwrite
+                ? ChaiModification.replaceBinary(attributeName, values)
+                : ChaiModification.addBinary(attributeName, values);
+        directory.modify(entryDN, Collections.singletonList(modification));
+    }
+
+    public void writeStringAttribute(final String entryDN, final String attributeName, final Set<String> values, final boolean overwrite)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        final String[] valueArray = values.toArray(new String[values.size()]);
+        final ChaiModification modification = overwrite
+                ? ChaiModification.replace(attributeName, valueArray)
+                : ChaiModification.add(attributeName, valueArray);
+        directory.modify(entryDN, Collections.singletonList(modification));
+    }
+
+    public void writeStringAttributes(final String entryDN, final Map<String, String> attributeValueProps, final boolean overwrite)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        final List<ChaiModification> modifications = new ArrayList<ChaiModification>();
+        for (final Map.Entry<String, String> entry : attributeValueProps.entrySet()) {
+            modifications.add(overwrite
+                    ? ChaiModification.replace(entry.getKey(), entry.getValue())
+                    : ChaiModification.add(entry.getKey(), entry.getValue()));
+        }
+        directory.modify(entryDN, modifications);
+    }
+
+    public void modify(final String entryDN, final List<ChaiModification> modifications)
+            throws ChaiOperationException, ChaiUnavailableException
+    {
+        activityPreCheck();
+        directory.modify(entryDN, modifications);
+    }
+
+    public String toString()
+    {
+        return "InMemoryProvider #" + instanceNumber + " (" + state + ") " + currentURL;
+    }
+
+    private void activityPreCheck()
+            throws ChaiUnavailableException
+    {
+        if (state == ConnectionState.NEW) {
+            throw new IllegalStateException("ChaiProvider instance has not been initialized");
+        }
+
+        if (state == ConnectionState.CLOSED) {
+            throw new IllegalStateException("ChaiProvider instance has been closed");
+        }
+
+        conditions.beforeOperation("ldap operation on " + currentURL);
+    }
+
+    /**
+     * Strip Active Directory range options, such as {@code member;range=1500-*}, from requested attribute names.
+     */
+    private static Set<String> withoutRanges(final Set<String> attributes)
+    {
+        if (attributes == null) {
+            return null;
+        }
+
+        final Set<String> names = new LinkedHashSet<String>();
+        for (final String attribute : attributes) {
+            final int rangeIndex = attribute.toLowerCase().indexOf(RANGE_OPTION);
+            names.add(rangeIndex == -1 ? attribute : attribute.substring(0, rangeIndex));
+        }
+        return names;
+    }
+
+    /**
+     * Return the values of ranged attributes, and of attributes with more than
+     * {@link ServerConditions#getMaxValueRange()} values, the way Active Directory does.
+     */
+    private Map<String, Map<String, List<String>>> applyValueRanges(
+            final Map<String, Map<String, List<String>>> results,
+            final Set<String> attributes
+    )
+    {
+        final int maxValueRange = conditions.getMaxValueRange();
+
+        // lower case attribute name to requested {start, end}, with an end of -1 for "*"
+        final Map<String, int[]> requestedRanges = new HashMap<String, int[]>();
+        if (attributes != null) {
+            for (final String attribute : attributes) {
+                final String lowerName = attribute.toLowerCase();
+                final int rangeIndex = lowerName.indexOf(RANGE_OPTION);
+                if (rangeIndex != -1) {
+                    final String range = lowerName.substring(rangeIndex + RANGE_OPTION.length());
+                    final int dash = range.indexOf('-');
+                    final String end = range.substring(dash + 1);
+                    requestedRanges.put(lowerName.substring(0, rangeIndex), new int[]{
+                            Integer.parseInt(range.substring(0, dash)),
+                            "*".equals(end) ? -1 : Integer.parseInt(end)
+                    });
+                }
+            }
+        }
+
+        if (requestedRanges.isEmpty() && maxValueRange < 1) {
+            return results;
+        }
+
+        final Map<String, Map<String, List<String>>> rangedResults = new LinkedHashMap<String, Map<String, List<String>>>();
+        for (final Map.Entry<String, Map<String, List<String>>> entry : results.entrySet()) {
+            final Map<String, List<String>> rangedValues = new LinkedHashMap<String, List<String>>();
+            for (final Map.Entry<String, List<String>> attribute : entry.getValue().entrySet()) {
+                final List<String> values = attribute.getValue();
+                final int[] requestedRange = requestedRanges.get(attribute.getKey().toLowerCase());
+                if (requestedRange == null && (maxValueRange < 1 || values.size() <= maxValueRange)) {
+                    rangedValues.put(attribute.getKey(), values);
+                    continue;
+                }
+
+                final int start = requestedRange == null ? 0 : requestedRange[0];
+                if (start >= values.size()) {
+                    // nothing left in the requested range, so the attribute is not returned
+                    continue;
+                }
+
+                int end = requestedRange == null || requestedRange[1] < 0 ? values.size() - 1 : requestedRange[1];
+                if (maxValueRange > 0) {
+                    end = Math.min(end, start + maxValueRange - 1);
+                }
+                end = Math.min(end, values.size() - 1);
+
+                final String rangeEnd = end == values.size() - 1 ? "*" : String.valueOf(end);
+                rangedValues.put(attribute.getKey() + RANGE_OPTION + start + "-" + rangeEnd,
+                        new ArrayList<String>(values.subList(start, end + 1)));
+            }
+            rangedResults.put(entry.getKey(), rangedValues);
+        }
+        return rangedResults;
+    }
+
+    private static Map<String, Map<String, String>> firstValues(final Map<String, Map<String, List<String>>> results)
+    {
+        final Map<String, Map<String, String>> returnMap = new LinkedHashMap<String, Map<String, String>>();
+        for (final Map.Entry<String, Map<String, List<String>>> entry : results.entrySet()) {
+            final Map<String, String> attributes = new LinkedHashMap<String, String>();
+            for (final Map.Entry<String, List<String>> attribute : entry.getValue().entrySet()) {
+                attributes.put(attribute.getKey(), attribute.getValue().get(0));
+            }
+            returnMap.put(entry.getKey(), attributes);
+        }
+        return returnMap;
+    }
+}
@@ -0,0 +1,604 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests.util;
+
+import com.novell.ldapchai.ChaiFactory;
+import com.novell.ldapchai.ChaiUser;
+import com.novell.ldapchai.cr.ChaiCrFactory;
+import com.novell.ldapchai.cr.Challenge;
+import com.novell.ldapchai.cr.ResponseSet;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+import com.novell.ldapchai.provider.ChaiConfiguration;
+import com.novell.ldapchai.provider.ChaiProvider;
+import com.novell.ldapchai.provider.ChaiProviderFactory;
+import com.novell.ldapchai.provider.ProviderStatistics;
+import com.novell.ldapchai.util.SearchHelper;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drives a password self service style workload against a directory from many threads, and reports throughput,
+ * latency percentiles and the {@link ProviderStatistics} of the providers used.
+ * <p/>
+ * Each virtual user is a thread that repeatedly picks an {@link Operation} at random, weighted by the configured mix,
+ * and runs it against a random user from the target list.  By default all virtual users share one provider, as an
+ * application would.  Since providers are not thread safe, the shared provider is wrapped by
+ * {@link ChaiProviderFactory#synchronizedProvider(ChaiProvider)}, so its operations run one at a time and the measured
+ * latency includes the time spent waiting for it; {@link #setProviderPerThread(boolean)} gives each virtual user its
+ * own provider instead.
+ * <pre>
+ *   final LoadGenerator generator = new LoadGenerator(chaiConfig, userDNs)
+ *           .setThreads(16)
+ *           .setDuration(60 * 1000)
+ *           .setWeight(LoadGenerator.Operation.SET_PASSWORD, 0);
+ *   System.out.println(generator.run());
+ * </pre>
+ * {@link Operation#SET_PASSWORD} changes the target users' passwords, so the target users should be test users.
+ *
+ * @author Jason D. Rivard
+ */
+public class LoadGenerator {
+// ------------------------------ FIELDS ------------------------------
+
+    private final ChaiConfiguration chaiConfig;
+    private final List<String> userDNs;
+    private final Map<Operation, Integer> weights = new EnumMap<Operation, Integer>(Operation.class);
+
+    private int threads = 4;
+    private long duration = 10 * 1000;
+    private long thinkTime = 0;
+    private boolean providerPerThread = false;
+    private String searchBase;
+    private Map<String, String> crAnswers = Collections.emptyMap();
+    private String passwordPrefix = "LoadTest-";
+
+// -------------------------- ENUMERATIONS --------------------------
+
+    public enum Operation {
+        /**
+         * Search for a user by the value of its naming attribute, as done when a user enters their username.
+         */
+        USER_LOOKUP(40),
+
+        /**
+         * Read the user's password policy.
+         */
+        POLICY_READ(20),
+
+        /**
+         * Read the user's stored challenge/response set and, if answers are configured, test it.
+         */
+        CR_READ_AND_TEST(25),
+
+        /**
+         * Set a new random password for the user.
+         */
+        SET_PASSWORD(5),
+
+        /**
+         * Read the groups the user is a member of.
+         */
+        GROUP_MEMBERSHIP(10),;
+
+        private final int defaultWeight;
+
+        Operation(final int defaultWeight)
+        {
+            this.defaultWeight = defaultWeight;
+        }
+
+        public int getDefaultWeight()
+        {
+            return defaultWeight;
+        }
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param chaiConfig configuration used to create the providers
+     * @param userDNs    the users operated on
+     */
+    public LoadGenerator(final ChaiConfiguration chaiConfig, final Collection<String> userDNs)
+    {
+        if (userDNs == null || userDNs.isEmpty()) {
+            throw new IllegalArgumentException("at least one user DN is required");
+        }
+        this.chaiConfig = chaiConfig;
+        this.userDNs = new ArrayList<String>(userDNs);
+        for (final Operation operation : Operation.values()) {
+            weights.put(operation, operation.getDefaultWeight());
+        }
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public LoadGenerator setThreads(final int threads)
+    {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param duration time in ms to generate load for
+     */
+    public LoadGenerator setDuration(final long duration)
+    {
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * @param thinkTime pause in ms each virtual user takes between operations
+     */
+    public LoadGenerator setThinkTime(final long thinkTime)
+    {
+        this.thinkTime = thinkTime;
+        return this;
+    }
+
+    public LoadGenerator setProviderPerThread(final boolean providerPerThread)
+    {
+        this.providerPerThread = providerPerThread;
+        return this;
+    }
+
+    /**
+     * Set the relative weight of an operation in the mix.  A weight of zero removes it from the mix.
+     */
+    public LoadGenerator setWeight(final Operation operation, final int weight)
+    {
+        weights.put(operation, weight);
+        return this;
+    }
+
+    /**
+     * @param searchBase base DN for {@link Operation#USER_LOOKUP}, by default the parent of the user being looked up
+     */
+    public LoadGenerator setSearchBase(final String searchBase)
+    {
+        this.searchBase = searchBase;
+        return this;
+    }
+
+    /**
+     * @param crAnswers answers for {@link Operation#CR_READ_AND_TEST}, keyed by challenge text
+     */
+    public LoadGenerator setCrAnswers(final Map<String, String> crAnswers)
+    {
+        this.crAnswers = new HashMap<String, String>(crAnswers);
+        return this;
+    }
+
+    public LoadGenerator setPasswordPrefix(final String passwordPrefix)
+    {
+        this.passwordPrefix = passwordPrefix;
+        return this;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Generate load for the configured duration.
+     *
+     * @return the results
+     * @throws ChaiUnavailableException if a provider can not be created
+     * @throws InterruptedException     if interrupted while waiting for the virtual users
+     */
+    public Report run()
+            throws ChaiUnavailableException, InterruptedException
+    {
+        final Operation[] mix = buildMix();
+        final List<ChaiProvider> providers = new ArrayList<ChaiProvider>();
+        final Map<Operation, LatencyRecorder> recorders = new EnumMap<Operation, LatencyRecorder>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+
+        try {
+            if (providerPerThread) {
+                for (int i = 0; i < threads; i++) {
+                    providers.add(ChaiProviderFactory.createProvider(chaiConfig));
+                }
+            } else {
+                providers.add(ChaiProviderFactory.synchronizedProvider(ChaiProviderFactory.createProvider(chaiConfig)));
+            }
+
+            final AtomicBoolean stop = new AtomicBoolean(false);
+            final CountDownLatch finished = new CountDownLatch(threads);
+            for (int i = 0; i < threads; i++) {
+                final ChaiProvider provider = providers.get(providerPerThread ? i : 0);
+                final Thread thread = new Thread(new VirtualUser(provider, mix, recorders, stop, finished, i), "LoadGenerator-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            final long startTime = System.currentTimeMillis();
+            Thread.sleep(duration);
+            stop.set(true);
+            finished.await();
+            final long elapsed = System.currentTimeMillis() - startTime;
+
+            final Map<ProviderStatistics.Statistic, Long> statistics = sumStatistics(providers);
+            return new Report(threads, elapsed, recorders, statistics);
+        } finally {
+            for (final ChaiProvider provider : providers) {
+                provider.close();
+            }
+        }
+    }
+
+    private Operation[] buildMix()
+    {
+        final List<Operation> mix = new ArrayList<Operation>();
+        for (final Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                mix.add(entry.getKey());
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalStateException("all operation weights are zero");
+        }
+        return mix.toArray(new Operation[mix.size()]);
+    }
+
+    /**
+     * @return the counters of all providers added together, or null if statistics are not enabled
+     */
+    private static Map<ProviderStatistics.Statistic, Long> sumStatistics(final List<ChaiProvider> providers)
+    {
+        final Map<ProviderStatistics.Statistic, Long> totals = new EnumMap<ProviderStatistics.Statistic, Long>(ProviderStatistics.Statistic.class);
+        for (final ChaiProvider provider : providers) {
+            final ProviderStatistics providerStatistics = provider.getProviderStatistics();
+            if (providerStatistics == null) {
+                return null;
+            }
+            for (final Map.Entry<ProviderStatistics.Statistic, String> entry : providerStatistics.getStatistics().entrySet()) {
+                if (entry.getKey().name().endsWith("_COUNT")) {
+                    final Long current = totals.get(entry.getKey());
+                    final long value = Long.parseLong(entry.getValue());
+                    totals.put(entry.getKey(), current == null ? value : current + value);
+                }
+            }
+        }
+        return totals;
+    }
+
+    private void execute(final Operation operation, final ChaiProvider provider, final String userDN, final Random random)
+            throws Exception
+    {
+        final ChaiUser user = ChaiFactory.createChaiUser(userDN, provider);
+        switch (operation) {
+            case USER_LOOKUP: {
+                final int comma = userDN.indexOf(',');
+                final String rdn = comma == -1 ? userDN : userDN.substring(0, comma);
+                final String base = searchBase != null ? searchBase : (comma == -1 ? "" : userDN.substring(comma + 1));
+                final SearchHelper searchHelper = new SearchHelper("(" + rdn + ")");
+                searchHelper.setAttributes("cn", "givenName", "sn", "mail");
+                provider.search(base, searchHelper);
+                break;
+            }
+
+            case POLICY_READ:
+                user.getPasswordPolicy();
+                break;
+
+            case CR_READ_AND_TEST: {
+                final ResponseSet responseSet = ChaiCrFactory.readChaiResponseSet(user);
+                if (responseSet != null && !crAnswers.isEmpty()) {
+                    final Map<Challenge, String> responses = new LinkedHashMap<Challenge, String>();
+                    for (final Challenge challenge : responseSet.getChallengeSet().getChallenges()) {
+                        final String answer = crAnswers.get(challenge.getChallengeText());
+                        if (answer != null) {
+                            responses.put(challenge, answer);
+                        }
+                    }
+                    responseSet.test(responses);
+                }
+                break;
+            }
+
+            case SET_PASSWORD:
+                user.setPassword(passwordPrefix + Long.toString(random.nextLong() & Long.MAX_VALUE, 36));
+                break;
+
+            case GROUP_MEMBERSHIP:
+                user.getGroups();
+                break;
+
+            default:
+                throw new IllegalArgumentException("unknown operation " + operation);
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private class VirtualUser implements Runnable {
+        private final ChaiProvider provider;
+        private final Operation[] mix;
+        private final Map<Operation, LatencyRecorder> recorders;
+        private final AtomicBoolean stop;
+        private final CountDownLatch finished;
+        private final Random random;
+
+        private VirtualUser(
+                final ChaiProvider provider,
+                final Operation[] mix,
+                final Map<Operation, LatencyRecorder> recorders,
+                final AtomicBoolean stop,
+                final CountDownLatch finished,
+                final int seed
+        )
+        {
+            this.provider = provider;
+            this.mix = mix;
+            this.recorders = recorders;
+            this.stop = stop;
+            this.finished = finished;
+            this.random = new Random(System.nanoTime() + seed);
+        }
+
+        public void run()
+        {
+            try {
+                while (!stop.get()) {
+                    final Operation operation = mix[random.nextInt(mix.length)];
+                    final String userDN = userDNs.get(random.nextInt(userDNs.size()));
+
+                    final long startTime = System.nanoTime();
+                    boolean success = false;
+                    try {
+                        execute(operation, provider, userDN, random);
+                        success = true;
+                    } catch (Exception e) {
+                        recorders.get(operation).recordError(e);
+                    }
+                    if (success) {
+                        recorders.get(operation).record(System.nanoTime() - startTime);
+                    }
+
+                    if (thinkTime > 0) {
+                        Thread.sleep(thinkTime);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    /**
+     * Latencies, in nanoseconds, of the successful executions of one operation, plus an error count.
+     */
+    private static class LatencyRecorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+        private String lastError;
+
+        private synchronized void record(final long latency)
+        {
+            if (count == latencies.length) {
+                final long[] grown = new long[count * 2];
+                System.arraycopy(latencies, 0, grown, 0, count);
+                latencies = grown;
+            }
+            latencies[count++] = latency;
+        }
+
+        private synchronized void recordError(final Exception e)
+        {
+            errors++;
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+
+        private synchronized long[] sortedLatencies()
+        {
+            final long[] sorted = new long[count];
+            System.arraycopy(latencies, 0, sorted, 0, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Summary of one operation's executions.  Latencies are in ms.
+     */
+    public static class OperationResult {
+        private final int count;
+        private final int errors;
+        private final String lastError;
+        private final double average;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+        private final double max;
+
+        private OperationResult(final LatencyRecorder recorder)
+        {
+            final long[] sorted = recorder.sortedLatencies();
+            long total = 0;
+            for (final long latency : sorted) {
+                total += latency;
+            }
+            this.count = sorted.length;
+            this.errors = recorder.errors;
+            this.lastError = recorder.lastError;
+            this.average = sorted.length == 0 ? 0 : toMillis(total / sorted.length);
+            this.p50 = percentile(sorted, 50);
+            this.p90 = percentile(sorted, 90);
+            this.p99 = percentile(sorted, 99);
+            this.max = sorted.length == 0 ? 0 : toMillis(sorted[sorted.length - 1]);
+        }
+
+        private static double percentile(final long[] sorted, final int percentile)
+        {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            final int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return toMillis(sorted[Math.max(0, index)]);
+        }
+
+        private static double toMillis(final long nanos)
+        {
+            return nanos / 1000000.0;
+        }
+
+        /**
+         * @return the number of successful executions
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        public int getErrors()
+        {
+            return errors;
+        }
+
+        public String getLastError()
+        {
+            return lastError;
+        }
+
+        public double getAverage()
+        {
+            return average;
+        }
+
+        public double getP50()
+        {
+            return p50;
+        }
+
+        public double getP90()
+        {
+            return p90;
+        }
+
+        public double getP99()
+        {
+            return p99;
+        }
+
+        public double getMax()
+        {
+            return max;
+        }
+
+        public String toString()
+        {
+            return String.format("count=%d, errors=%d, avg=%.2fms, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms%s",
+                    count, errors, average, p50, p90, p99, max, lastError == null ? "" : ", lastError=" + lastError);
+        }
+    }
+
+    /**
+     * The results of a load run.
+     */
+    public static class Report {
+        private final int threads;
+        private final long elapsed;
+        private final Map<Operation, OperationResult> results = new EnumMap<Operation, OperationResult>(Operation.class);
+        private final Map<ProviderStatistics.Statistic, Long> providerStatistics;
+
+        private Report(
+                final int threads,
+                final long elapsed,
+                final Map<Operation, LatencyRecorder> recorders,
+                final Map<ProviderStatistics.Statistic, Long> providerStatistics
+        )
+        {
+            this.threads = threads;
+            this.elapsed = elapsed;
+            this.providerStatistics = providerStatistics;
+            for (final Map.Entry<Operation, LatencyRecorder> entry : recorders.entrySet()) {
+                results.put(entry.getKey(), new OperationResult(entry.getValue()));
+            }
+        }
+
+        /**
+         * @return the time the load ran for, in ms
+         */
+        public long getElapsed()
+        {
+            return elapsed;
+        }
+
+        public OperationResult getResult(final Operation operation)
+        {
+            return results.get(operation);
+        }
+
+        public int getTotalCount()
+        {
+            int total = 0;
+            for (final OperationResult result : results.values()) {
+                total += result.getCount();
+            }
+            return total;
+        }
+
+        public int getTotalErrors()
+        {
+            int total = 0;
+            for (final OperationResult result : results.values()) {
+                total += result.getErrors();
+            }
+            return total;
+        }
+
+        /**
+         * @return successful operations per second
+         */
+        public double getThroughput()
+        {
+            return elapsed == 0 ? 0 : getTotalCount() * 1000.0 / elapsed;
+        }
+
+        /**
+         * @return the provider counters (summed over all providers), or null if statistics are not enabled
+         */
+        public Map<ProviderStatistics.Statistic, Long> getProviderStatistics()
+        {
+            return providerStatistics == null ? null : Collections.unmodifiableMap(providerStatistics);
+        }
+
+        public String toString()
+        {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(String.format("threads=%d, elapsed=%dms, operations=%d, errors=%d, throughput=%.1f/s%n",
+                    threads, elapsed, getTotalCount(), getTotalErrors(), getThroughput()));
+            for (final Map.Entry<Operation, OperationResult> entry : results.entrySet()) {
+                if (entry.getValue().getCount() > 0 || entry.getValue().getErrors() > 0) {
+                    sb.append("  ").append(entry.getKey()).append(": ").append(entry.getValue()).append(String.format("%n"));
+                }
+            }
+            sb.append("  provider statistics: ").append(providerStatistics == null ? "not enabled" : providerStatistics.toString());
+            return sb.toString();
+        }
+    }
+}
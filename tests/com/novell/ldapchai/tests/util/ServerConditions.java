@@ -0,0 +1,239 @@
+/*
+ * LDAP Chai API
+ * Copyright (c) 2006-2010 Novell, Inc.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package com.novell.ldapchai.tests.util;
+
+import com.novell.ldapchai.exception.ChaiError;
+import com.novell.ldapchai.exception.ChaiUnavailableException;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulated network and server conditions for an {@link InMemoryProvider}, registered by ldap URL.
+ * <p/>
+ * Every operation (including the initial connect and bind) waits for the configured latency plus a random
+ * jitter, then fails with a {@link ChaiUnavailableException} if the server is marked down or, at random, at the
+ * configured failure rate.  Searches are returned in pages of {@link #getPageSize()} entries, and each page
+ * after the first costs another round trip of latency, as with the ldap paged results control.  Attributes with many
+ * values may be returned in ranges of {@link #getMaxValueRange()} values, as Active Directory does.
+ * <p/>
+ * Settings may be changed at any time, for example to take a server down in the middle of a fail over test.
+ *
+ * @author Jason D. Rivard
+ */
+public class ServerConditions {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final Map<String, ServerConditions> CONDITIONS = new ConcurrentHashMap<String, ServerConditions>();
+
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double failureRate;
+    private volatile boolean down;
+    private volatile int pageSize;
+    private volatile int maxValueRange;
+
+    private final Random random = new Random();
+    private final AtomicLong operationCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Return the conditions for an ldap URL, creating default conditions (no latency, no failures) if there are none.
+     *
+     * @param ldapURL the ldap URL
+     * @return the conditions for the URL
+     */
+    public static ServerConditions forURL(final String ldapURL)
+    {
+        final String key = ldapURL.toLowerCase();
+        synchronized (CONDITIONS) {
+            ServerConditions conditions = CONDITIONS.get(key);
+            if (conditions == null) {
+                conditions = new ServerConditions();
+                CONDITIONS.put(key, conditions);
+            }
+            return conditions;
+        }
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public ServerConditions()
+    {
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public long getLatencyMillis()
+    {
+        return latencyMillis;
+    }
+
+    /**
+     * Set the latency of each round trip, and the maximum random jitter added to it.
+     */
+    public ServerConditions setLatency(final long latencyMillis, final long jitterMillis)
+    {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        return this;
+    }
+
+    public double getFailureRate()
+    {
+        return failureRate;
+    }
+
+    /**
+     * Set the fraction (0.0 to 1.0) of operations that fail with a communication error.
+     */
+    public ServerConditions setFailureRate(final double failureRate)
+    {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    public boolean isDown()
+    {
+        return down;
+    }
+
+    /**
+     * Mark the server as down; every operation fails until it is marked up again.
+     */
+    public ServerConditions setDown(final boolean down)
+    {
+        this.down = down;
+        return this;
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * Set the number of search results returned per round trip, or zero to return every result at once.
+     */
+    public ServerConditions setPageSize(final int pageSize)
+    {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public int getMaxValueRange()
+    {
+        return maxValueRange;
+    }
+
+    /**
+     * Set the maximum number of values of one attribute returned by a search, or zero for no limit.  Like the Active
+     * Directory MaxValRange policy, attributes with more values are returned as {@code member;range=0-1499}, and the
+     * remaining values are requested with the {@code member;range=1500-*} attribute option.
+     */
+    public ServerConditions setMaxValueRange(final int maxValueRange)
+    {
+        this.maxValueRange = maxValueRange;
+        return this;
+    }
+
+    /**
+     * @return the number of operations attempted against this server, including failed ones
+     */
+    public long getOperationCount()
+    {
+        return operationCount.get();
+    }
+
+    /**
+     * @return the number of operations failed by these conditions
+     */
+    public long getFailureCount()
+    {
+        return failureCount.get();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Reset to no latency, no failures, no paging and no value ranges, and clear the counters.
+     */
+    public ServerConditions reset()
+    {
+        latencyMillis = 0;
+        jitterMillis = 0;
+        failureRate = 0;
+        down = false;
+        pageSize = 0;
+        maxValueRange = 0;
+        operationCount.set(0);
+        failureCount.set(0);
+        return this;
+    }
+
+    void beforeOperation(final String description)
+            throws ChaiUnavailableException
+    {
+        operationCount.incrementAndGet();
+        roundTrip();
+
+        final boolean fail;
+        synchronized (random) {
+            fail = down || (failureRate > 0 && random.nextDouble() < failureRate);
+        }
+        if (fail) {
+            failureCount.incrementAndGet();
+            throw new ChaiUnavailableException("simulated " + (down ? "server down" : "communication failure") + " during " + description, ChaiError.COMMUNICATION);
+        }
+    }
+
+    void afterSearch(final int resultCount)
+    {
+        final int currentPageSize = pageSize;
+        if (currentPageSize > 0) {
+            final int pages = (resultCount + currentPageSize - 1) / currentPageSize;
+            for (int i = 1; i < pages; i++) {
+                roundTrip();
+            }
+        }
+    }
+
+    private void roundTrip()
+    {
+        long delay = latencyMillis;
+        final long currentJitter = jitterMillis;
+        if (currentJitter > 0) {
+            synchronized (random) {
+                delay += (long) (random.nextDouble() * currentJitter);
+            }
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -22,28 +22,47 @@ package com.novell.ldapchai.tests.util;
 import com.novell.ldapchai.tests.TestHelper;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Simple java TcpProxy class.
  * <p/>
- * Used by Chai Tester to simulate multiple LDAP servers for failover testing.
+ * Used by Chai Tester to simulate multiple LDAP servers for failover testing.  All connections are serviced by a
+ * single non-blocking selector thread.  Faults can be injected while the proxy is running:
+ * <ul>
+ * <li>{@link #setLatency(long)} delays every chunk of data, in each direction</li>
+ * <li>{@link #setBandwidth(long)} caps the bytes per second forwarded, in each direction</li>
+ * <li>{@link #stall(long)} / {@link #setStalled(boolean)} hold data in the proxy without forwarding it</li>
+ * <li>{@link #setHalfOpen(boolean)} silently discards data while keeping connections open, as when a server or
+ * network path disappears without closing its connections</li>
+ * <li>{@link #dropConnections()} closes the current connections, {@link #stop()} also stops listening</li>
+ * </ul>
+ * Data discarded while half open leaves the ldap message stream of a connection corrupt, so such connections should
+ * not be expected to work once the proxy is no longer half open.  See {@link FailOverHarness} for running timed
+ * fault scenarios.
  *
  * @author Jason D. Rivard
  */
 public class TcpProxy {
 // ----------------------------- CONSTANTS ----------------------------
 
+    private static final int BUFFER_SIZE = 16 * 1024;
 
-// ------------------------------ FIELDS ------------------------------
+    /**
+     * Maximum bytes held per direction of a connection before the proxy stops reading from the sender.
+     */
+    private static final int MAX_PENDING_BYTES = 256 * 1024;
+
+    private static final long MAX_SELECT_WAIT = 1000;
 
-    private static final int TIMING_LOOP = 10;
+// ------------------------------ FIELDS ------------------------------
 
     private static boolean doOutput = true;
 
@@ -54,12 +73,20 @@ public class TcpProxy {
     private InetSocketAddress listenInfo;
     private InetSocketAddress destinationInfo;
 
-    private boolean running = false;
+    private volatile boolean running = false;
     private ServerThread serverThread;
-    private Set<ClientThread> clientThreads = new HashSet<ClientThread>();
     private int proxyCount = 0;
     private volatile int connectionCounter = 0;
 
+    private volatile long latency;
+    private volatile long bandwidth;
+    private volatile long stallUntil;
+    private volatile boolean halfOpen;
+    private volatile boolean dropRequested;
+
+    private final AtomicLong bytesForwarded = new AtomicLong();
+    private final AtomicLong bytesDiscarded = new AtomicLong();
+
 // -------------------------- STATIC METHODS --------------------------
 
     public static boolean isDoOutput()
@@ -98,8 +125,138 @@ public class TcpProxy {
         return listenInfo;
     }
 
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    public long getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * Delay each chunk of data read from either side by {@code latency} ms before forwarding it.
+     *
+     * @param latency delay in ms, or zero for none
+     */
+    public void setLatency(final long latency)
+    {
+        this.latency = latency;
+        wakeup();
+    }
+
+    public long getBandwidth()
+    {
+        return bandwidth;
+    }
+
+    /**
+     * Limit the data forwarded in each direction of each connection.
+     *
+     * @param bandwidth bytes per second, or zero for no limit
+     */
+    public void setBandwidth(final long bandwidth)
+    {
+        this.bandwidth = bandwidth;
+        wakeup();
+    }
+
+    public boolean isStalled()
+    {
+        return System.currentTimeMillis() < stallUntil;
+    }
+
+    /**
+     * Stop (or resume) forwarding data.  Data continues to be read, up to a limit per connection, and is forwarded
+     * once the proxy is no longer stalled.
+     */
+    public void setStalled(final boolean stalled)
+    {
+        this.stallUntil = stalled ? Long.MAX_VALUE : 0;
+        wakeup();
+    }
+
+    /**
+     * Stop forwarding data for {@code duration} ms.
+     *
+     * @param duration stall duration in ms
+     */
+    public void stall(final long duration)
+    {
+        this.stallUntil = System.currentTimeMillis() + duration;
+        wakeup();
+    }
+
+    public boolean isHalfOpen()
+    {
+        return halfOpen;
+    }
+
+    /**
+     * When half open, new and existing connections stay open but all data received from either side is discarded.
+     */
+    public void setHalfOpen(final boolean halfOpen)
+    {
+        this.halfOpen = halfOpen;
+        wakeup();
+    }
+
+    /**
+     * @return the number of connections accepted since the proxy was created
+     */
+    public int getConnectionCount()
+    {
+        return connectionCounter;
+    }
+
+    /**
+     * @return bytes forwarded in either direction since the proxy was created
+     */
+    public long getBytesForwarded()
+    {
+        return bytesForwarded.get();
+    }
+
+    /**
+     * @return bytes discarded while half open since the proxy was created
+     */
+    public long getBytesDiscarded()
+    {
+        return bytesDiscarded.get();
+    }
+
 // -------------------------- OTHER METHODS --------------------------
 
+    /**
+     * Close all current connections, while continuing to accept new ones.
+     */
+    public void dropConnections()
+    {
+        dropRequested = true;
+        wakeup();
+    }
+
+    /**
+     * Clear all injected faults.
+     */
+    public void clearFaults()
+    {
+        latency = 0;
+        bandwidth = 0;
+        stallUntil = 0;
+        halfOpen = false;
+        wakeup();
+    }
+
+    private void wakeup()
+    {
+        final ServerThread currentThread = serverThread;
+        if (currentThread != null) {
+            currentThread.selector.wakeup();
+        }
+    }
+
     private void output(final CharSequence str)
     {
         if (doOutput) {
@@ -110,129 +267,356 @@ public class TcpProxy {
 // -------------------------- INNER CLASSES --------------------------
 
     private class ServerThread implements Runnable {
-        private ServerSocket serverSocket;
+        private final Selector selector;
+        private final ServerSocketChannel serverChannel;
+        private final Set<Connection> connections = new HashSet<Connection>();
+        private Thread thread;
 
         private ServerThread()
                 throws IOException
         {
-            serverSocket = new ServerSocket(listenInfo.getPort(), BACKLOG, listenInfo.getAddress());
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            try {
+                serverChannel.socket().setReuseAddress(true);
+                serverChannel.socket().bind(listenInfo, BACKLOG);
+                serverChannel.configureBlocking(false);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                serverChannel.close();
+                selector.close();
+                throw e;
+            }
         }
 
         public void run()
         {
-            output("begining proxy listen on " + serverSocket.getInetAddress().toString() + ", forwarding to " + destinationInfo.toString());
-            while (running && serverSocket != null && !serverSocket.isClosed()) {
-                try {
-                    final Socket clientSocket = serverSocket.accept();
-                    output("accepted connecton #" + connectionCounter + " from " + clientSocket.getInetAddress().toString());
-                    final Socket destinationSocket = new Socket(destinationInfo.getAddress(), destinationInfo.getPort());
-                    final ClientThread ct = new ClientThread(clientSocket, destinationSocket, connectionCounter);
-                    new Thread(ct, "ClientThread #" + connectionCounter).start();
-                    clientThreads.add(ct);
-                } catch (Exception e) {
-                    if (running) {
-                        output("error during proxy listen: " + e.getMessage());
+            output("begining proxy listen on " + serverChannel.socket().getLocalSocketAddress() + ", forwarding to " + destinationInfo.toString());
+            try {
+                while (running) {
+                    selector.select(nextWait());
+
+                    if (dropRequested) {
+                        dropRequested = false;
+                        closeConnections();
                     }
+
+                    for (final Iterator<SelectionKey> iter = selector.selectedKeys().iterator(); iter.hasNext();) {
+                        final SelectionKey key = iter.next();
+                        iter.remove();
+                        if (key.isValid() && key.isAcceptable()) {
+                            accept();
+                        } else if (key.isValid()) {
+                            final Connection connection = (Connection) key.attachment();
+                            try {
+                                connection.handle(key);
+                            } catch (IOException e) {
+                                connection.close();
+                            }
+                        }
+                    }
+
+                    final long now = System.currentTimeMillis();
+                    for (final Iterator<Connection> iter = connections.iterator(); iter.hasNext();) {
+                        final Connection connection = iter.next();
+                        try {
+                            connection.pump(now);
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                        if (connection.closed) {
+                            iter.remove();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                output("error during proxy listen: " + e.getMessage());
+            } finally {
+                closeConnections();
+                try {
+                    serverChannel.close();
+                } catch (Exception e) { /* doesn't matter */ }
+                try {
+                    selector.close();
+                } catch (Exception e) { /* doesn't matter */ }
+                output("closing proxy on " + listenInfo.toString());
+            }
+        }
+
+        private void accept()
+        {
+            SocketChannel clientChannel = null;
+            SocketChannel destinationChannel = null;
+            try {
+                clientChannel = serverChannel.accept();
+                if (clientChannel == null) {
+                    return;
+                }
+                output("accepted connecton #" + connectionCounter + " from " + clientChannel.socket().getInetAddress().toString());
+                clientChannel.configureBlocking(false);
+                destinationChannel = SocketChannel.open();
+                destinationChannel.configureBlocking(false);
+                destinationChannel.connect(destinationInfo);
+                connections.add(new Connection(selector, clientChannel, destinationChannel, connectionCounter));
+            } catch (IOException e) {
+                if (running) {
+                    output("error during proxy listen: " + e.getMessage());
                 }
-                connectionCounter++;
+                closeQuietly(clientChannel);
+                closeQuietly(destinationChannel);
             }
-            output("closing proxy on " + serverSocket.getInetAddress().toString());
+            connectionCounter++;
+        }
+
+        /**
+         * @return the time until the next connection has delayed data to forward, capped at one second
+         */
+        private long nextWait()
+        {
+            final long now = System.currentTimeMillis();
+            long next = now + MAX_SELECT_WAIT;
+            for (final Connection connection : connections) {
+                next = Math.min(next, connection.nextEventTime(now));
+            }
+            return Math.max(1, next - now);
+        }
+
+        private void closeConnections()
+        {
+            for (final Connection connection : connections) {
+                connection.close();
+            }
+            connections.clear();
         }
 
         private void close()
-                throws IOException
         {
-            if (serverSocket != null) {
-                serverSocket.close();
-                serverSocket = null;
+            selector.wakeup();
+            if (thread != null && thread != Thread.currentThread()) {
+                try {
+                    thread.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
     }
 
-    private class ClientThread implements Runnable {
-        private InputStream clientInput;
-        private OutputStream clientOutput;
+    /**
+     * A proxied connection, made of a pipe in each direction.
+     */
+    private class Connection {
+        private final int connectionNumber;
+        private final SocketChannel clientChannel;
+        private final SocketChannel serverChannel;
+        private final SelectionKey clientKey;
+        private final SelectionKey serverKey;
+        private final Pipe upstream;
+        private final Pipe downstream;
+
+        private boolean connected;
+        private boolean closed;
+
+        private Connection(final Selector selector, final SocketChannel clientChannel, final SocketChannel serverChannel, final int connectionNumber)
+                throws IOException
+        {
+            this.connectionNumber = connectionNumber;
+            this.clientChannel = clientChannel;
+            this.serverChannel = serverChannel;
+            this.upstream = new Pipe(clientChannel, serverChannel);
+            this.downstream = new Pipe(serverChannel, clientChannel);
+            this.clientKey = clientChannel.register(selector, 0, this);
+            this.serverKey = serverChannel.register(selector, SelectionKey.OP_CONNECT, this);
+        }
 
-        private OutputStream serverOutput;
-        private InputStream serverInput;
+        private void handle(final SelectionKey key)
+                throws IOException
+        {
+            final long now = System.currentTimeMillis();
+            if (key.isConnectable()) {
+                serverChannel.finishConnect();
+                connected = true;
+            }
+            if (key.isReadable()) {
+                (key == clientKey ? upstream : downstream).read(now);
+            }
+        }
 
-        private Socket clientSocket;
-        private Socket serverSocket;
+        private void pump(final long now)
+                throws IOException
+        {
+            if (closed || !connected) {
+                return;
+            }
 
-        private boolean running = true;
-        private int connectionCounter;
+            final boolean upstreamBlocked = upstream.pump(now);
+            final boolean downstreamBlocked = downstream.pump(now);
 
-        private byte[] byteBuffer = new byte[1024];
+            if (upstream.isFinished() && downstream.isFinished()) {
+                close();
+                return;
+            }
 
-        private ClientThread(final Socket clientSocket, final Socket serverSocket, final int connectionCounter)
-                throws IOException
+            clientKey.interestOps((upstream.wantsRead() ? SelectionKey.OP_READ : 0) | (downstreamBlocked ? SelectionKey.OP_WRITE : 0));
+            serverKey.interestOps((downstream.wantsRead() ? SelectionKey.OP_READ : 0) | (upstreamBlocked ? SelectionKey.OP_WRITE : 0));
+        }
+
+        private long nextEventTime(final long now)
         {
-            this.clientSocket = clientSocket;
-            this.serverSocket = serverSocket;
+            return Math.min(upstream.nextEventTime(now), downstream.nextEventTime(now));
+        }
 
-            clientInput = clientSocket.getInputStream();
-            clientOutput = clientSocket.getOutputStream();
+        private void close()
+        {
+            if (!closed) {
+                closed = true;
+                closeQuietly(clientChannel);
+                closeQuietly(serverChannel);
+                output("closing connecton #" + connectionNumber);
+            }
+        }
+    }
+
+    /**
+     * One direction of a connection.  Data read from the source is queued with the time it may be forwarded, then
+     * written to the sink as latency, bandwidth and stalls allow.
+     */
+    private class Pipe {
+        private final SocketChannel source;
+        private final SocketChannel sink;
+        private final LinkedList<Chunk> queue = new LinkedList<Chunk>();
+
+        private int pendingBytes;
+        private boolean sourceClosed;
+        private boolean sinkShutdown;
+
+        private long allowance;
+        private long lastRefill = System.currentTimeMillis();
+
+        private Pipe(final SocketChannel source, final SocketChannel sink)
+        {
+            this.source = source;
+            this.sink = sink;
+        }
 
-            serverInput = serverSocket.getInputStream();
-            serverOutput = serverSocket.getOutputStream();
-            this.connectionCounter = connectionCounter;
+        private boolean wantsRead()
+        {
+            return !sourceClosed && pendingBytes < MAX_PENDING_BYTES;
         }
 
-        public void run()
+        private boolean isFinished()
         {
-            while (running && clientSocket.isConnected() && serverSocket.isConnected()) {
-                try {
-                    copyData(clientInput, serverOutput);
-                    copyData(serverInput, clientOutput);
-                    TestHelper.pause(TIMING_LOOP);
-                } catch (Exception e) {
-                    this.close();
+            return sourceClosed && sinkShutdown;
+        }
+
+        private void read(final long now)
+                throws IOException
+        {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            final int bytesRead = source.read(buffer);
+            if (bytesRead == -1) {
+                sourceClosed = true;
+            } else if (bytesRead > 0) {
+                if (halfOpen) {
+                    bytesDiscarded.addAndGet(bytesRead);
+                } else {
+                    buffer.flip();
+                    queue.add(new Chunk(buffer, now + latency));
+                    pendingBytes += bytesRead;
                 }
             }
-            output("closing connecton #" + connectionCounter);
         }
 
-        private void close()
+        /**
+         * Write any data that is due.
+         *
+         * @return true if the sink could not accept all the data that is due
+         */
+        private boolean pump(final long now)
+                throws IOException
         {
-            running = false;
-            try {
-                clientInput.close();
-            } catch (Exception e) { /* doesn't matter */ }
-            try {
-                clientOutput.close();
-            } catch (Exception e) { /* doesn't matter */ }
-            try {
-                serverInput.close();
-            } catch (Exception e) { /* doesn't matter */ }
-            try {
-                serverOutput.close();
-            } catch (Exception e) { /* doesn't matter */ }
+            while (!queue.isEmpty() && now >= stallUntil) {
+                final Chunk chunk = queue.getFirst();
+                if (chunk.releaseTime > now) {
+                    break;
+                }
 
-            try {
-                clientSocket.close();
-            } catch (Exception e) { /* doesn't matter */ }
-            try {
-                serverSocket.close();
-            } catch (Exception e) { /* doesn't matter */ }
+                int limit = chunk.data.remaining();
+                final long currentBandwidth = bandwidth;
+                if (currentBandwidth > 0) {
+                    refill(now, currentBandwidth);
+                    if (allowance <= 0) {
+                        break;
+                    }
+                    limit = (int) Math.min(limit, allowance);
+                }
+
+                final ByteBuffer slice = chunk.data.duplicate();
+                slice.limit(slice.position() + limit);
+                final int written = sink.write(slice);
+                chunk.data.position(chunk.data.position() + written);
+                pendingBytes -= written;
+                if (currentBandwidth > 0) {
+                    allowance -= written;
+                }
+                bytesForwarded.addAndGet(written);
+
+                if (written < limit) {
+                    return true;
+                }
+                if (!chunk.data.hasRemaining()) {
+                    queue.removeFirst();
+                }
+            }
 
-            clientInput = null;
-            clientOutput = null;
-            serverInput = null;
-            serverOutput = null;
+            if (queue.isEmpty() && sourceClosed && !sinkShutdown) {
+                sinkShutdown = true;
+                sink.socket().shutdownOutput();
+            }
+            return false;
         }
 
-        private void copyData(final InputStream is, final OutputStream os)
-                throws Exception
+        private void refill(final long now, final long currentBandwidth)
         {
-            int counter = 0;
-            while (is.available() > 0 && counter < 1000) {
-                final int bytesRead = is.read(byteBuffer);
-                if (bytesRead == -1) {
-                    throw new Exception("input stream closed");
-                }
-                os.write(byteBuffer, 0, bytesRead);
-                counter++;
+            final long burst = Math.max(currentBandwidth / 10, 1);
+            allowance = Math.min(burst, allowance + (now - lastRefill) * currentBandwidth / 1000);
+            lastRefill = now;
+        }
+
+        private long nextEventTime(final long now)
+        {
+            if (queue.isEmpty()) {
+                return Long.MAX_VALUE;
+            }
+            if (now < stallUntil) {
+                return stallUntil;
             }
+            final long releaseTime = queue.getFirst().releaseTime;
+            if (releaseTime > now) {
+                return releaseTime;
+            }
+            // waiting for bandwidth allowance or a writable sink
+            return now + 10;
+        }
+    }
+
+    private static class Chunk {
+        private final ByteBuffer data;
+        private final long releaseTime;
+
+        private Chunk(final ByteBuffer data, final long releaseTime)
+        {
+            this.data = data;
+            this.releaseTime = releaseTime;
+        }
+    }
+
+    private static void closeQuietly(final SocketChannel channel)
+    {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (Exception e) { /* doesn't matter */ }
         }
     }
 
@@ -261,18 +645,23 @@ public class TcpProxy {
             throw new IllegalStateException("already running");
         }
 
-        if (serverThread == null) {
-            running = true;
+        running = true;
+        try {
             serverThread = new ServerThread();
-            new Thread(serverThread).start();
+        } catch (IOException e) {
+            running = false;
+            throw e;
         }
+        serverThread.thread = new Thread(serverThread, "TcpProxy[" + proxyCount + "]");
+        serverThread.thread.setDaemon(true);
+        serverThread.thread.start();
     }
 
     public synchronized void stop()
             throws IOException
     {
         if (!running) {
-            throw new IllegalStateException("already running");
+            throw new IllegalStateException("not running");
         }
 
         running = false;
@@ -282,11 +671,5 @@ public class TcpProxy {
         }
 
         serverThread = null;
-
-        for (final ClientThread cThread : clientThreads) {
-            cThread.close();
-        }
-
-        clientThreads.clear();
     }
 }